@@ -0,0 +1,162 @@
+package com.flightsearch.backend.service;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.flightsearch.backend.config.AmadeusConfig;
+import com.flightsearch.backend.dto.amadeus.AmadeusDictionaries;
+import com.flightsearch.backend.dto.amadeus.AmadeusFlightOffer;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Benchmark Payloads
+ * Flight offers responses shaped like the ones Amadeus returns for /v2/shopping/flight-offers:
+ * a page of offers with one to three segments per itinerary, several carriers and aircraft,
+ * fare details per segment and traveler, and the "dictionaries" part. Built from a fixed seed,
+ * so every run (and every baseline) measures the same bytes.
+ */
+final class BenchmarkPayloads {
+
+    static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private static final String[] CARRIERS = {"AA", "DL", "UA", "AM", "IB"};
+    private static final String[] AIRCRAFT = {"738", "7M8", "320", "321", "789"};
+    // Connections used by the two and three segment itineraries
+    private static final String[] HUBS = {"DFW", "ATL", "ORD", "IAH", "MAD"};
+
+    static final Map<String, String> AIRPORT_NAMES = Map.of(
+        "MEX", "BENITO JUAREZ INTERNATIONAL", "JFK", "JOHN F KENNEDY INTL", "DFW", "DALLAS FT WORTH INTL",
+        "ATL", "HARTSFIELD-JACKSON ATLANTA INTL", "ORD", "CHICAGO O'HARE INTL", "IAH", "GEORGE BUSH INTERCONTINENTAL",
+        "MAD", "ADOLFO SUAREZ BARAJAS");
+
+    private BenchmarkPayloads() {
+    }
+
+    /**
+     * The response body of a search returning the given number of offers.
+     */
+    static byte[] response(int offers, boolean roundTrip) {
+        ObjectNode response = OBJECT_MAPPER.createObjectNode();
+        response.putObject("meta").put("count", offers);
+        ArrayNode data = response.putArray("data");
+        for (int i = 0; i < offers; i++) {
+            data.add(offer(i, roundTrip));
+        }
+        ObjectNode dictionaries = response.putObject("dictionaries");
+        ObjectNode carriers = dictionaries.putObject("carriers");
+        carriers.put("AA", "AMERICAN AIRLINES").put("DL", "DELTA AIR LINES").put("UA", "UNITED AIRLINES")
+            .put("AM", "AEROMEXICO").put("IB", "IBERIA");
+        ObjectNode aircraft = dictionaries.putObject("aircraft");
+        aircraft.put("738", "BOEING 737-800").put("7M8", "BOEING 737 MAX 8").put("320", "AIRBUS A320")
+            .put("321", "AIRBUS A321").put("789", "BOEING 787-9");
+        dictionaries.putObject("currencies").put("USD", "US DOLLAR");
+        try {
+            return OBJECT_MAPPER.writeValueAsBytes(response);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * The offers and dictionaries of a response, bound to the typed Amadeus model.
+     */
+    static OffersPage page(byte[] response) {
+        try {
+            return OBJECT_MAPPER.readValue(response, OffersPage.class);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * A service for calling the mapping methods; nothing is sent to Amadeus.
+     */
+    static AmadeusService service() {
+        AmadeusConfig config = new AmadeusConfig();
+        config.setBaseUrl("http://localhost:1");
+        config.setKey("benchmark");
+        config.setSecret("benchmark");
+        config.getHttp().setWarmUp(false);
+        config.getHttp().setMetrics(false);
+        return new AmadeusService(config, new SimpleMeterRegistry());
+    }
+
+    private static ObjectNode offer(int i, boolean roundTrip) {
+        ObjectNode offer = OBJECT_MAPPER.createObjectNode();
+        offer.put("type", "flight-offer");
+        offer.put("id", String.valueOf(i + 1));
+        offer.put("source", "GDS");
+        offer.put("instantTicketingRequired", false);
+        offer.put("nonHomogeneous", false);
+        offer.put("oneWay", false);
+        offer.put("lastTicketingDate", "2099-06-20");
+        offer.put("numberOfBookableSeats", 1 + i % 9);
+
+        String carrier = CARRIERS[i % CARRIERS.length];
+        int segmentCount = 0;
+        ArrayNode itineraries = offer.putArray("itineraries");
+        for (int direction = 0; direction < (roundTrip ? 2 : 1); direction++) {
+            int segments = 1 + (i + direction) % 3;
+            String from = direction == 0 ? "MEX" : "JFK";
+            String to = direction == 0 ? "JFK" : "MEX";
+            int day = direction == 0 ? 1 : 8;
+            ObjectNode itinerary = itineraries.addObject();
+            itinerary.put("duration", "PT" + (4 + 3 * segments) + "H" + (i * 7 % 60) + "M");
+            ArrayNode segmentNodes = itinerary.putArray("segments");
+            for (int s = 0; s < segments; s++) {
+                String departure = s == 0 ? from : HUBS[(i + s) % HUBS.length];
+                String arrival = s == segments - 1 ? to : HUBS[(i + s + 1) % HUBS.length];
+                int hour = 6 + 4 * s;
+                ObjectNode segment = segmentNodes.addObject();
+                segment.putObject("departure").put("iataCode", departure).put("terminal", String.valueOf(1 + s % 2))
+                    .put("at", String.format("2099-07-%02dT%02d:%02d:00", day, hour, i % 60));
+                segment.putObject("arrival").put("iataCode", arrival).put("terminal", String.valueOf(2 - s % 2))
+                    .put("at", String.format("2099-07-%02dT%02d:%02d:00", day, hour + 3, i % 60));
+                segment.put("carrierCode", carrier).put("number", String.valueOf(100 + (i * 13 + s) % 900));
+                segment.putObject("aircraft").put("code", AIRCRAFT[(i + s) % AIRCRAFT.length]);
+                // Every fourth offer has codeshare segments
+                segment.putObject("operating").put("carrierCode", i % 4 == 3 ? CARRIERS[(i + 1) % CARRIERS.length] : carrier);
+                segment.put("duration", "PT3H" + (i % 60) + "M").put("id", String.valueOf(++segmentCount));
+                segment.put("numberOfStops", 0).put("blacklistedInEU", false);
+            }
+        }
+
+        String total = String.format("%d.%02d", 250 + i * 37 % 900, i % 100);
+        ObjectNode price = offer.putObject("price");
+        price.put("currency", "USD").put("total", total).put("base", String.format("%d.00", 200 + i * 37 % 900))
+            .put("grandTotal", total);
+        price.putArray("fees").addObject().put("amount", "0.00").put("type", "SUPPLIER");
+        offer.putObject("pricingOptions").put("includedCheckedBagsOnly", true).putArray("fareType").add("PUBLISHED");
+        offer.putArray("validatingAirlineCodes").add(carrier);
+
+        ArrayNode travelerPricings = offer.putArray("travelerPricings");
+        ObjectNode traveler = travelerPricings.addObject();
+        traveler.put("travelerId", "1").put("fareOption", "STANDARD").put("travelerType", "ADULT");
+        traveler.putObject("price").put("currency", "USD").put("total", total).put("base", price.get("base").asText());
+        ArrayNode fareDetails = traveler.putArray("fareDetailsBySegment");
+        for (int s = 1; s <= segmentCount; s++) {
+            ObjectNode detail = fareDetails.addObject();
+            detail.put("segmentId", String.valueOf(s)).put("cabin", i % 10 == 0 ? "BUSINESS" : "ECONOMY")
+                .put("fareBasis", "NLX0AHBN").put("brandedFare", "BASIC").put("class", "N");
+            detail.putObject("includedCheckedBags").put("quantity", i % 2);
+            ArrayNode amenities = detail.putArray("amenities");
+            amenities.addObject().put("description", "CHECKED BAG 1PC").put("isChargeable", true)
+                .put("amenityType", "BAGGAGE");
+            amenities.addObject().put("description", "SNACK").put("isChargeable", false)
+                .put("amenityType", "MEAL");
+        }
+        return offer;
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    record OffersPage(List<AmadeusFlightOffer> data, AmadeusDictionaries dictionaries) {
+    }
+}
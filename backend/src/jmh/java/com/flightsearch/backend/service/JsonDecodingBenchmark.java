@@ -0,0 +1,105 @@
+package com.flightsearch.backend.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JSON Decoding Benchmark
+ * Reading a whole flight offers response body three ways: the streaming decoder searches use,
+ * binding it to the typed model in one go, and the JsonNode tree navigated with safeGetText,
+ * as the mapping did before the typed model.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonDecodingBenchmark {
+
+    @Param({"5", "50", "250"})
+    int offers;
+
+    @Param({"false", "true"})
+    boolean roundTrip;
+
+    private byte[] body;
+    private FlightOfferStreamDecoder decoder;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        body = BenchmarkPayloads.response(offers, roundTrip);
+        decoder = new FlightOfferStreamDecoder(BenchmarkPayloads.OBJECT_MAPPER);
+    }
+
+    @Benchmark
+    public void streamDecoder(Blackhole blackhole) throws IOException {
+        decoder.decode(new ByteArrayInputStream(body), blackhole::consume, blackhole::consume);
+    }
+
+    @Benchmark
+    public BenchmarkPayloads.OffersPage typedRecords() throws IOException {
+        return BenchmarkPayloads.OBJECT_MAPPER.readValue(body, BenchmarkPayloads.OffersPage.class);
+    }
+
+    // The fields the search result mapping reads
+    @Benchmark
+    public void treeWithSafeGetText(Blackhole blackhole) throws IOException {
+        for (JsonNode offer : BenchmarkPayloads.OBJECT_MAPPER.readTree(body).get("data")) {
+            blackhole.consume(safeGetText(offer, "id"));
+            blackhole.consume(safeGetText(offer, "price", "currency"));
+            blackhole.consume(safeGetText(offer, "price", "grandTotal"));
+            blackhole.consume(safeGetText(offer, "price", "base"));
+            JsonNode travelerPricings = offer.get("travelerPricings");
+            blackhole.consume(safeGetText(travelerPricings.get(0), "price", "total"));
+            for (JsonNode itinerary : offer.get("itineraries")) {
+                blackhole.consume(safeGetText(itinerary, "duration"));
+                for (JsonNode segment : itinerary.get("segments")) {
+                    blackhole.consume(safeGetText(segment, "departure", "iataCode"));
+                    blackhole.consume(safeGetText(segment, "departure", "at"));
+                    blackhole.consume(safeGetText(segment, "arrival", "iataCode"));
+                    blackhole.consume(safeGetText(segment, "arrival", "at"));
+                    blackhole.consume(safeGetText(segment, "carrierCode"));
+                    blackhole.consume(safeGetText(segment, "number"));
+                    blackhole.consume(safeGetText(segment, "duration"));
+                    blackhole.consume(safeGetText(segment, "aircraft", "code"));
+                    blackhole.consume(safeGetText(segment, "operating", "carrierCode"));
+                }
+            }
+            for (JsonNode fareDetails : travelerPricings.get(0).get("fareDetailsBySegment")) {
+                blackhole.consume(safeGetText(fareDetails, "cabin"));
+                blackhole.consume(safeGetText(fareDetails, "class"));
+            }
+        }
+    }
+
+    // The helper the JsonNode based mapping used
+    private static String safeGetText(JsonNode node, String... fieldNames) {
+        JsonNode currentNode = node;
+        for (String fieldName : fieldNames) {
+            if (currentNode != null && currentNode.has(fieldName) && !currentNode.get(fieldName).isNull()) {
+                currentNode = currentNode.get(fieldName);
+            } else {
+                return null;
+            }
+        }
+        return currentNode != null ? currentNode.asText() : null;
+    }
+}
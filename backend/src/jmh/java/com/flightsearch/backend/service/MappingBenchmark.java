@@ -0,0 +1,81 @@
+package com.flightsearch.backend.service;
+
+import com.flightsearch.backend.dto.FlightDetailsResponseDTO;
+import com.flightsearch.backend.dto.FlightSearchResultDTO;
+import com.flightsearch.backend.dto.amadeus.AmadeusFlightOffer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mapping Benchmark
+ * Mapping a whole page of decoded Amadeus offers: to /api/flights search results (one result
+ * per itinerary, then airport and airline names filled in, as a search does), and to
+ * /details responses, one per offer.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MappingBenchmark {
+
+    @Param({"5", "50", "250"})
+    int offers;
+
+    @Param({"false", "true"})
+    boolean roundTrip;
+
+    private AmadeusService service;
+    private List<AmadeusFlightOffer> page;
+    private Map<String, String> airlineNames;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        service = BenchmarkPayloads.service();
+        BenchmarkPayloads.OffersPage decoded = BenchmarkPayloads.page(BenchmarkPayloads.response(offers, roundTrip));
+        page = decoded.data();
+        airlineNames = decoded.dictionaries().carriers();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        service.shutdown();
+    }
+
+    @Benchmark
+    public List<FlightSearchResultDTO> searchResults() {
+        List<FlightSearchResultDTO> results = new ArrayList<>();
+        for (AmadeusFlightOffer offer : page) {
+            service.mapOfferToResults(offer, Map.of(), Map.of(), results);
+        }
+        service.applyNames(results, BenchmarkPayloads.AIRPORT_NAMES, airlineNames);
+        return results;
+    }
+
+    @Benchmark
+    public void flightDetails(Blackhole blackhole) {
+        for (AmadeusFlightOffer offer : page) {
+            FlightDetailsResponseDTO details = service.mapToFlightDetailsResponseDTO(offer.id(), offer, BenchmarkPayloads.AIRPORT_NAMES);
+            blackhole.consume(details);
+        }
+    }
+}
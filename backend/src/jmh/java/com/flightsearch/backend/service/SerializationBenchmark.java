@@ -0,0 +1,68 @@
+package com.flightsearch.backend.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.flightsearch.backend.dto.FlightSearchResultDTO;
+import com.flightsearch.backend.dto.amadeus.AmadeusFlightOffer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serialization Benchmark
+ * Writing the /api/flights response body of a page of search results: plain Jackson, as for
+ * an uncached response, and Jackson plus gzip and ETag, as done once per cached search.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SerializationBenchmark {
+
+    @Param({"5", "50", "250"})
+    int offers;
+
+    @Param({"false", "true"})
+    boolean roundTrip;
+
+    private List<FlightSearchResultDTO> results;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        AmadeusService service = BenchmarkPayloads.service();
+        BenchmarkPayloads.OffersPage page = BenchmarkPayloads.page(BenchmarkPayloads.response(offers, roundTrip));
+        results = new ArrayList<>();
+        for (AmadeusFlightOffer offer : page.data()) {
+            service.mapOfferToResults(offer, Map.of(), Map.of(), results);
+        }
+        service.applyNames(results, BenchmarkPayloads.AIRPORT_NAMES, page.dictionaries().carriers());
+        service.shutdown();
+    }
+
+    @Benchmark
+    public byte[] json() throws JsonProcessingException {
+        return BenchmarkPayloads.OBJECT_MAPPER.writeValueAsBytes(results);
+    }
+
+    @Benchmark
+    public byte[] jsonGzipAndEtag() {
+        // The gzip variant is only compressed when asked for
+        return SerializedResults.of(results, BenchmarkPayloads.OBJECT_MAPPER).gzip();
+    }
+}
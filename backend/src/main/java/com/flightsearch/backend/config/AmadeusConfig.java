@@ -3,6 +3,10 @@ package com.flightsearch.backend.config;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
 @Configuration
 @ConfigurationProperties(prefix = "amadeus.api")
 public class AmadeusConfig {
@@ -10,6 +14,18 @@ public class AmadeusConfig {
     private String key;
     private String secret;
     private String baseUrl;
+    private final Token token = new Token();
+    private final AirportCache airportCache = new AirportCache();
+    private final SearchCache searchCache = new SearchCache();
+    private final OfferCache offerCache = new OfferCache();
+    private final Search search = new Search();
+    private final Sessions sessions = new Sessions();
+    private final Matrix matrix = new Matrix();
+    private final MultiAirport multiAirport = new MultiAirport();
+    private final Batch batch = new Batch();
+    private final RateLimit rateLimit = new RateLimit();
+    private final Http http = new Http();
+    private final Execution execution = new Execution();
     
     // Getters and setters
     public String getKey() {
@@ -35,4 +51,914 @@ public class AmadeusConfig {
     public void setBaseUrl(String baseUrl) {
         this.baseUrl = baseUrl;
     }
-}
\ No newline at end of file
+
+    public Token getToken() {
+        return token;
+    }
+
+    public AirportCache getAirportCache() {
+        return airportCache;
+    }
+
+    public SearchCache getSearchCache() {
+        return searchCache;
+    }
+
+    public OfferCache getOfferCache() {
+        return offerCache;
+    }
+
+    public Search getSearch() {
+        return search;
+    }
+
+    public Sessions getSessions() {
+        return sessions;
+    }
+
+    public Matrix getMatrix() {
+        return matrix;
+    }
+
+    public MultiAirport getMultiAirport() {
+        return multiAirport;
+    }
+
+    public Batch getBatch() {
+        return batch;
+    }
+
+    public RateLimit getRateLimit() {
+        return rateLimit;
+    }
+
+    public Http getHttp() {
+        return http;
+    }
+
+    public Execution getExecution() {
+        return execution;
+    }
+
+    /**
+     * OAuth2 token handling (amadeus.api.token.*)
+     */
+    public static class Token {
+
+        // A token is no longer handed out once it is this close to its expires_in deadline
+        private Duration expiryMargin = Duration.ofSeconds(30);
+        // A background refresh starts once the token is this close to expiring
+        private Duration refreshAhead = Duration.ofMinutes(5);
+
+        public Duration getExpiryMargin() {
+            return expiryMargin;
+        }
+
+        public void setExpiryMargin(Duration expiryMargin) {
+            this.expiryMargin = expiryMargin;
+        }
+
+        public Duration getRefreshAhead() {
+            return refreshAhead;
+        }
+
+        public void setRefreshAhead(Duration refreshAhead) {
+            this.refreshAhead = refreshAhead;
+        }
+    }
+
+    /**
+     * IATA code to airport name cache (amadeus.api.airport-cache.*)
+     */
+    public static class AirportCache {
+
+        private long maxSize = 5000;
+        // Airport names almost never change
+        private Duration ttl = Duration.ofHours(24);
+        // Codes Amadeus does not know are remembered for a shorter time
+        private Duration negativeTtl = Duration.ofHours(1);
+
+        public long getMaxSize() {
+            return maxSize;
+        }
+
+        public void setMaxSize(long maxSize) {
+            this.maxSize = maxSize;
+        }
+
+        public Duration getTtl() {
+            return ttl;
+        }
+
+        public void setTtl(Duration ttl) {
+            this.ttl = ttl;
+        }
+
+        public Duration getNegativeTtl() {
+            return negativeTtl;
+        }
+
+        public void setNegativeTtl(Duration negativeTtl) {
+            this.negativeTtl = negativeTtl;
+        }
+    }
+
+    /**
+     * Flight search result cache (amadeus.api.search-cache.*)
+     */
+    public static class SearchCache {
+
+        private long maxEntries = 1000;
+        // Results younger than this are served as they are
+        private Duration ttl = Duration.ofMinutes(2);
+        // After the TTL, results are still served for this long while being refreshed in the background
+        private Duration staleWindow = Duration.ofMinutes(10);
+
+        public long getMaxEntries() {
+            return maxEntries;
+        }
+
+        public void setMaxEntries(long maxEntries) {
+            this.maxEntries = maxEntries;
+        }
+
+        public Duration getTtl() {
+            return ttl;
+        }
+
+        public void setTtl(Duration ttl) {
+            this.ttl = ttl;
+        }
+
+        public Duration getStaleWindow() {
+            return staleWindow;
+        }
+
+        public void setStaleWindow(Duration staleWindow) {
+            this.staleWindow = staleWindow;
+        }
+    }
+
+    /**
+     * Flight offer cache used by the details endpoint (amadeus.api.offer-cache.*)
+     */
+    public static class OfferCache {
+
+        private long maxEntries = 10000;
+        private DataSize maxWeight = DataSize.ofMegabytes(64);
+        // Upper bound of an offer's lifetime; offers whose last ticketing date comes earlier expire then
+        private Duration ttl = Duration.ofMinutes(30);
+        // Share of the max heap after a GC above which half of the cached offers are dropped
+        private double memoryPressureThreshold = 0.85;
+        // Offers are stored as Smile; encoded offers of at least compressMinSize are also deflated
+        private boolean compress = true;
+        private DataSize compressMinSize = DataSize.ofBytes(512);
+        // Where offers are kept: in this process only, or in segment files shared by all replicas
+        private StoreType store = StoreType.MEMORY;
+        private final Mapped mapped = new Mapped();
+
+        public enum StoreType { MEMORY, MAPPED }
+
+        public long getMaxEntries() {
+            return maxEntries;
+        }
+
+        public void setMaxEntries(long maxEntries) {
+            this.maxEntries = maxEntries;
+        }
+
+        public DataSize getMaxWeight() {
+            return maxWeight;
+        }
+
+        public void setMaxWeight(DataSize maxWeight) {
+            this.maxWeight = maxWeight;
+        }
+
+        public Duration getTtl() {
+            return ttl;
+        }
+
+        public void setTtl(Duration ttl) {
+            this.ttl = ttl;
+        }
+
+        public double getMemoryPressureThreshold() {
+            return memoryPressureThreshold;
+        }
+
+        public void setMemoryPressureThreshold(double memoryPressureThreshold) {
+            this.memoryPressureThreshold = memoryPressureThreshold;
+        }
+
+        public boolean isCompress() {
+            return compress;
+        }
+
+        public void setCompress(boolean compress) {
+            this.compress = compress;
+        }
+
+        public DataSize getCompressMinSize() {
+            return compressMinSize;
+        }
+
+        public void setCompressMinSize(DataSize compressMinSize) {
+            this.compressMinSize = compressMinSize;
+        }
+
+        public StoreType getStore() {
+            return store;
+        }
+
+        public void setStore(StoreType store) {
+            this.store = store;
+        }
+
+        public Mapped getMapped() {
+            return mapped;
+        }
+    }
+
+    /**
+     * Memory-mapped segment file offer store (amadeus.api.offer-cache.mapped.*)
+     */
+    public static class Mapped {
+
+        // Shared by all replicas that should see each other's offers
+        private String directory = "data/offers";
+        private DataSize segmentSize = DataSize.ofMegabytes(64);
+        // A segment takes new offers for this long, then it is sealed and a new one is started
+        private Duration segmentMaxAge = Duration.ofMinutes(10);
+        private Duration maintenanceInterval = Duration.ofMinutes(1);
+        // How often segments of other replicas are scanned for new offers (also right after a lookup misses)
+        private Duration catchUpInterval = Duration.ofSeconds(1);
+        // How long a lookup miss waits for the catch-up it asked for before answering not found
+        private Duration catchUpWait = Duration.ofSeconds(1);
+        // Sealed segments with less than this share of live data are rewritten
+        private double compactionThreshold = 0.5;
+        // Prefix of this replica's segment files, defaults to <hostname>-<pid>
+        private String nodeId = "";
+
+        public String getDirectory() {
+            return directory;
+        }
+
+        public void setDirectory(String directory) {
+            this.directory = directory;
+        }
+
+        public DataSize getSegmentSize() {
+            return segmentSize;
+        }
+
+        public void setSegmentSize(DataSize segmentSize) {
+            this.segmentSize = segmentSize;
+        }
+
+        public Duration getSegmentMaxAge() {
+            return segmentMaxAge;
+        }
+
+        public void setSegmentMaxAge(Duration segmentMaxAge) {
+            this.segmentMaxAge = segmentMaxAge;
+        }
+
+        public Duration getMaintenanceInterval() {
+            return maintenanceInterval;
+        }
+
+        public void setMaintenanceInterval(Duration maintenanceInterval) {
+            this.maintenanceInterval = maintenanceInterval;
+        }
+
+        public Duration getCatchUpInterval() {
+            return catchUpInterval;
+        }
+
+        public void setCatchUpInterval(Duration catchUpInterval) {
+            this.catchUpInterval = catchUpInterval;
+        }
+
+        public Duration getCatchUpWait() {
+            return catchUpWait;
+        }
+
+        public void setCatchUpWait(Duration catchUpWait) {
+            this.catchUpWait = catchUpWait;
+        }
+
+        public double getCompactionThreshold() {
+            return compactionThreshold;
+        }
+
+        public void setCompactionThreshold(double compactionThreshold) {
+            this.compactionThreshold = compactionThreshold;
+        }
+
+        public String getNodeId() {
+            return nodeId;
+        }
+
+        public void setNodeId(String nodeId) {
+            this.nodeId = nodeId;
+        }
+    }
+
+    /**
+     * Flight offers search requests (amadeus.api.search.*)
+     */
+    public static class Search {
+
+        // Amadeus does not return more offers than this for one search
+        public static final int MAX_RESULTS_LIMIT = 250;
+
+        // Offers requested from Amadeus when the caller does not ask for a number
+        private int maxResults = 50;
+
+        public int getMaxResults() {
+            return maxResults;
+        }
+
+        public void setMaxResults(int maxResults) {
+            this.maxResults = maxResults;
+        }
+    }
+
+    /**
+     * Server-side search sessions paged through with cursors (amadeus.api.sessions.*)
+     */
+    public static class Sessions {
+
+        // A session is dropped once it has not been read for this long
+        private Duration ttl = Duration.ofMinutes(15);
+        // Estimated heap all sessions together may use; least recently used sessions go first
+        private DataSize maxWeight = DataSize.ofMegabytes(32);
+        // Offers per page when the caller does not ask for a page size, and the largest page served
+        private int pageSize = 20;
+        private int maxPageSize = 100;
+
+        public Duration getTtl() {
+            return ttl;
+        }
+
+        public void setTtl(Duration ttl) {
+            this.ttl = ttl;
+        }
+
+        public DataSize getMaxWeight() {
+            return maxWeight;
+        }
+
+        public void setMaxWeight(DataSize maxWeight) {
+            this.maxWeight = maxWeight;
+        }
+
+        public int getPageSize() {
+            return pageSize;
+        }
+
+        public void setPageSize(int pageSize) {
+            this.pageSize = pageSize;
+        }
+
+        public int getMaxPageSize() {
+            return maxPageSize;
+        }
+
+        public void setMaxPageSize(int maxPageSize) {
+            this.maxPageSize = maxPageSize;
+        }
+    }
+
+    /**
+     * Flexible date fare matrix searches (amadeus.api.matrix.*)
+     */
+    public static class Matrix {
+
+        // Largest number of days a matrix may reach before and after the requested dates
+        private int maxWindow = 3;
+        // Cells searched at the same time for one matrix
+        private int concurrency = 4;
+        // Amadeus searches one matrix may start; cells beyond it are only served from cache
+        private int maxUpstreamCalls = 25;
+
+        public int getMaxWindow() {
+            return maxWindow;
+        }
+
+        public void setMaxWindow(int maxWindow) {
+            this.maxWindow = maxWindow;
+        }
+
+        public int getConcurrency() {
+            return concurrency;
+        }
+
+        public void setConcurrency(int concurrency) {
+            this.concurrency = concurrency;
+        }
+
+        public int getMaxUpstreamCalls() {
+            return maxUpstreamCalls;
+        }
+
+        public void setMaxUpstreamCalls(int maxUpstreamCalls) {
+            this.maxUpstreamCalls = maxUpstreamCalls;
+        }
+    }
+
+    /**
+     * Searches with several origin or destination airports, or metro codes (amadeus.api.multi-airport.*)
+     */
+    public static class MultiAirport {
+
+        // Origin/destination pairs searched at the same time for one request
+        private int concurrency = 4;
+        // Most pairs one request may expand to, e.g. NYC to LON is 3 x 6 = 18
+        private int maxPairs = 18;
+
+        public int getConcurrency() {
+            return concurrency;
+        }
+
+        public void setConcurrency(int concurrency) {
+            this.concurrency = concurrency;
+        }
+
+        public int getMaxPairs() {
+            return maxPairs;
+        }
+
+        public void setMaxPairs(int maxPairs) {
+            this.maxPairs = maxPairs;
+        }
+    }
+
+    /**
+     * Bulk searches posted to /api/flights/batch (amadeus.api.batch.*)
+     */
+    public static class Batch {
+
+        // Batch queries searching Amadeus at the same time, shared by all batches
+        private int concurrency = 4;
+        // Most queries one batch request may hold
+        private int maxQueries = 5000;
+
+        public int getConcurrency() {
+            return concurrency;
+        }
+
+        public void setConcurrency(int concurrency) {
+            this.concurrency = concurrency;
+        }
+
+        public int getMaxQueries() {
+            return maxQueries;
+        }
+
+        public void setMaxQueries(int maxQueries) {
+            this.maxQueries = maxQueries;
+        }
+    }
+
+    /**
+     * Outbound limits for Amadeus calls (amadeus.api.rate-limit.*): retries of 429 responses,
+     * shared by all endpoints, and a rate and concurrency limit per endpoint family
+     */
+    public static class RateLimit {
+
+        // Retries of a call Amadeus answered with 429 Too Many Requests
+        private int maxRetries = 3;
+        // Backoff before the first retry, doubled for every further one; Retry-After wins if longer
+        private Duration initialBackoff = Duration.ofMillis(200);
+        // Longest backoff; a Retry-After beyond it fails the call instead of holding it
+        private Duration maxBackoff = Duration.ofSeconds(10);
+        // Random extra delay, as a share of the backoff, so throttled calls do not retry in lockstep
+        private double jitter = 0.5;
+
+        // /v2/shopping/flight-offers
+        private final Endpoint flightOffers = new Endpoint(10, 2);
+        // /v1/reference-data/locations (airport search and airport names)
+        private final Endpoint locations = new Endpoint(10, 5);
+        // /v1/security/oauth2/token; refreshes are shared, so one call at a time is plenty
+        private final Endpoint token = new Endpoint(1, 2, 1, 1);
+
+        public int getMaxRetries() {
+            return maxRetries;
+        }
+
+        public void setMaxRetries(int maxRetries) {
+            this.maxRetries = maxRetries;
+        }
+
+        public Duration getInitialBackoff() {
+            return initialBackoff;
+        }
+
+        public void setInitialBackoff(Duration initialBackoff) {
+            this.initialBackoff = initialBackoff;
+        }
+
+        public Duration getMaxBackoff() {
+            return maxBackoff;
+        }
+
+        public void setMaxBackoff(Duration maxBackoff) {
+            this.maxBackoff = maxBackoff;
+        }
+
+        public double getJitter() {
+            return jitter;
+        }
+
+        public void setJitter(double jitter) {
+            this.jitter = jitter;
+        }
+
+        public Endpoint getFlightOffers() {
+            return flightOffers;
+        }
+
+        public Endpoint getLocations() {
+            return locations;
+        }
+
+        public Endpoint getToken() {
+            return token;
+        }
+
+        /**
+         * Bulkhead, token bucket, adaptive (AIMD) concurrency limit and circuit breaker of one
+         * endpoint family. Each family has its own, so a slow one cannot hold up the others.
+         */
+        public static class Endpoint {
+
+            // Calls started per second on average
+            private double permitsPerSecond;
+            // Calls that may start at once after a quiet period
+            private int burst;
+            // Longest a call may wait for the rate limit before it fails instead
+            private Duration maxWait = Duration.ofSeconds(5);
+            // Calls in flight at the same time: starts at initial, grows by one per limit
+            // successful calls, and is cut by decrease-factor on a 429 or a slow response
+            private int initialConcurrency = 4;
+            private int minConcurrency = 1;
+            private int maxConcurrency = 16;
+            // Bulkhead: calls waiting for a slot; beyond it calls fail at once
+            private int maxQueued = 100;
+            // Responses slower than this count as overload, like a 429, and as slow calls for the breaker
+            private Duration latencyThreshold = Duration.ofSeconds(8);
+            private double decreaseFactor = 0.5;
+            // At most one decrease per interval, so a burst of 429s does not collapse the limit
+            private Duration decreaseInterval = Duration.ofSeconds(1);
+            private final Circuit circuit = new Circuit();
+
+            public Endpoint() {
+            }
+
+            public Endpoint(double permitsPerSecond, int burst) {
+                this.permitsPerSecond = permitsPerSecond;
+                this.burst = burst;
+            }
+
+            public Endpoint(double permitsPerSecond, int burst, int initialConcurrency, int maxConcurrency) {
+                this(permitsPerSecond, burst);
+                this.initialConcurrency = initialConcurrency;
+                this.maxConcurrency = maxConcurrency;
+            }
+
+            public double getPermitsPerSecond() {
+                return permitsPerSecond;
+            }
+
+            public void setPermitsPerSecond(double permitsPerSecond) {
+                this.permitsPerSecond = permitsPerSecond;
+            }
+
+            public int getBurst() {
+                return burst;
+            }
+
+            public void setBurst(int burst) {
+                this.burst = burst;
+            }
+
+            public Duration getMaxWait() {
+                return maxWait;
+            }
+
+            public void setMaxWait(Duration maxWait) {
+                this.maxWait = maxWait;
+            }
+
+            public int getInitialConcurrency() {
+                return initialConcurrency;
+            }
+
+            public void setInitialConcurrency(int initialConcurrency) {
+                this.initialConcurrency = initialConcurrency;
+            }
+
+            public int getMinConcurrency() {
+                return minConcurrency;
+            }
+
+            public void setMinConcurrency(int minConcurrency) {
+                this.minConcurrency = minConcurrency;
+            }
+
+            public int getMaxConcurrency() {
+                return maxConcurrency;
+            }
+
+            public void setMaxConcurrency(int maxConcurrency) {
+                this.maxConcurrency = maxConcurrency;
+            }
+
+            public int getMaxQueued() {
+                return maxQueued;
+            }
+
+            public void setMaxQueued(int maxQueued) {
+                this.maxQueued = maxQueued;
+            }
+
+            public Duration getLatencyThreshold() {
+                return latencyThreshold;
+            }
+
+            public void setLatencyThreshold(Duration latencyThreshold) {
+                this.latencyThreshold = latencyThreshold;
+            }
+
+            public double getDecreaseFactor() {
+                return decreaseFactor;
+            }
+
+            public void setDecreaseFactor(double decreaseFactor) {
+                this.decreaseFactor = decreaseFactor;
+            }
+
+            public Duration getDecreaseInterval() {
+                return decreaseInterval;
+            }
+
+            public void setDecreaseInterval(Duration decreaseInterval) {
+                this.decreaseInterval = decreaseInterval;
+            }
+
+            public Circuit getCircuit() {
+                return circuit;
+            }
+        }
+
+        /**
+         * Circuit breaker of one endpoint family. It opens when, among the last window-size calls
+         * (and at least minimum-calls), the share of failures or of calls slower than the
+         * endpoint's latency threshold reaches its threshold. While open, calls fail at once;
+         * after open-duration a few trial calls decide whether it closes or opens again.
+         */
+        public static class Circuit {
+
+            private int windowSize = 20;
+            private int minimumCalls = 10;
+            // Percent of failed calls (5xx, connection errors, timeouts; not 4xx) that opens the circuit
+            private int failureRateThreshold = 50;
+            // Percent of slow calls that opens the circuit
+            private int slowCallRateThreshold = 80;
+            private Duration openDuration = Duration.ofSeconds(30);
+            // Trial calls let through after open-duration; all must succeed to close the circuit
+            private int halfOpenCalls = 3;
+
+            public int getWindowSize() {
+                return windowSize;
+            }
+
+            public void setWindowSize(int windowSize) {
+                this.windowSize = windowSize;
+            }
+
+            public int getMinimumCalls() {
+                return minimumCalls;
+            }
+
+            public void setMinimumCalls(int minimumCalls) {
+                this.minimumCalls = minimumCalls;
+            }
+
+            public int getFailureRateThreshold() {
+                return failureRateThreshold;
+            }
+
+            public void setFailureRateThreshold(int failureRateThreshold) {
+                this.failureRateThreshold = failureRateThreshold;
+            }
+
+            public int getSlowCallRateThreshold() {
+                return slowCallRateThreshold;
+            }
+
+            public void setSlowCallRateThreshold(int slowCallRateThreshold) {
+                this.slowCallRateThreshold = slowCallRateThreshold;
+            }
+
+            public Duration getOpenDuration() {
+                return openDuration;
+            }
+
+            public void setOpenDuration(Duration openDuration) {
+                this.openDuration = openDuration;
+            }
+
+            public int getHalfOpenCalls() {
+                return halfOpenCalls;
+            }
+
+            public void setHalfOpenCalls(int halfOpenCalls) {
+                this.halfOpenCalls = halfOpenCalls;
+            }
+        }
+    }
+
+    /**
+     * Connection pool and timeouts of the HTTP client calling Amadeus (amadeus.api.http.*)
+     */
+    public static class Http {
+
+        // Pooled connections to Amadeus; calls beyond it wait for a free connection
+        private int maxConnections = 50;
+        // Calls that may wait for a connection, and for how long, before failing
+        private int pendingAcquireMaxCount = 500;
+        private Duration pendingAcquireTimeout = Duration.ofSeconds(10);
+        // Idle connections are closed after max-idle-time (before Amadeus' load balancer drops
+        // them), every connection after max-life-time; checked every eviction-interval
+        private Duration maxIdleTime = Duration.ofSeconds(30);
+        private Duration maxLifeTime = Duration.ofMinutes(10);
+        private Duration evictionInterval = Duration.ofSeconds(30);
+        private Duration connectTimeout = Duration.ofSeconds(5);
+        private Duration writeTimeout = Duration.ofSeconds(10);
+        // Longest silence while waiting for or reading a response, per call
+        private Duration responseTimeout = Duration.ofSeconds(10);
+        // Flight offer searches take Amadeus several seconds
+        private Duration searchResponseTimeout = Duration.ofSeconds(30);
+        // Accept-Encoding: gzip, and decompression of gzip responses
+        private boolean compression = true;
+        // HTTP/2 (negotiated over TLS, falling back to HTTP/1.1); plain http always uses HTTP/1.1
+        private boolean http2 = true;
+        // Pool and client metrics (reactor.netty.*) in the global meter registry
+        private boolean metrics = true;
+        // At startup: prepare the event loops and DNS resolver, and fetch the access token,
+        // so the first search does not pay for the TLS handshake and token request
+        private boolean warmUp = true;
+
+        public int getMaxConnections() {
+            return maxConnections;
+        }
+
+        public void setMaxConnections(int maxConnections) {
+            this.maxConnections = maxConnections;
+        }
+
+        public int getPendingAcquireMaxCount() {
+            return pendingAcquireMaxCount;
+        }
+
+        public void setPendingAcquireMaxCount(int pendingAcquireMaxCount) {
+            this.pendingAcquireMaxCount = pendingAcquireMaxCount;
+        }
+
+        public Duration getPendingAcquireTimeout() {
+            return pendingAcquireTimeout;
+        }
+
+        public void setPendingAcquireTimeout(Duration pendingAcquireTimeout) {
+            this.pendingAcquireTimeout = pendingAcquireTimeout;
+        }
+
+        public Duration getMaxIdleTime() {
+            return maxIdleTime;
+        }
+
+        public void setMaxIdleTime(Duration maxIdleTime) {
+            this.maxIdleTime = maxIdleTime;
+        }
+
+        public Duration getMaxLifeTime() {
+            return maxLifeTime;
+        }
+
+        public void setMaxLifeTime(Duration maxLifeTime) {
+            this.maxLifeTime = maxLifeTime;
+        }
+
+        public Duration getEvictionInterval() {
+            return evictionInterval;
+        }
+
+        public void setEvictionInterval(Duration evictionInterval) {
+            this.evictionInterval = evictionInterval;
+        }
+
+        public Duration getConnectTimeout() {
+            return connectTimeout;
+        }
+
+        public void setConnectTimeout(Duration connectTimeout) {
+            this.connectTimeout = connectTimeout;
+        }
+
+        public Duration getWriteTimeout() {
+            return writeTimeout;
+        }
+
+        public void setWriteTimeout(Duration writeTimeout) {
+            this.writeTimeout = writeTimeout;
+        }
+
+        public Duration getResponseTimeout() {
+            return responseTimeout;
+        }
+
+        public void setResponseTimeout(Duration responseTimeout) {
+            this.responseTimeout = responseTimeout;
+        }
+
+        public Duration getSearchResponseTimeout() {
+            return searchResponseTimeout;
+        }
+
+        public void setSearchResponseTimeout(Duration searchResponseTimeout) {
+            this.searchResponseTimeout = searchResponseTimeout;
+        }
+
+        public boolean isCompression() {
+            return compression;
+        }
+
+        public void setCompression(boolean compression) {
+            this.compression = compression;
+        }
+
+        public boolean isHttp2() {
+            return http2;
+        }
+
+        public void setHttp2(boolean http2) {
+            this.http2 = http2;
+        }
+
+        public boolean isMetrics() {
+            return metrics;
+        }
+
+        public void setMetrics(boolean metrics) {
+            this.metrics = metrics;
+        }
+
+        public boolean isWarmUp() {
+            return warmUp;
+        }
+
+        public void setWarmUp(boolean warmUp) {
+            this.warmUp = warmUp;
+        }
+    }
+
+    /**
+     * How Amadeus calls are run (amadeus.api.execution.*): as Reactor chains on the Netty event
+     * loops, or as blocking calls on virtual threads
+     */
+    public static class Execution {
+
+        public static final String REACTIVE = "reactive";
+        public static final String VIRTUAL_THREADS = "virtual-threads";
+
+        // reactive or virtual-threads
+        private String mode = REACTIVE;
+        // Virtual threads mode: airport name lookups not done by then are cancelled (their names
+        // fall back to the IATA code), and so are the airport pairs of a multi airport search
+        // (the finished ones are merged)
+        private Duration fanOutDeadline = Duration.ofSeconds(20);
+
+        public boolean isVirtualThreads() {
+            return VIRTUAL_THREADS.equalsIgnoreCase(mode);
+        }
+
+        public String getMode() {
+            return mode;
+        }
+
+        public void setMode(String mode) {
+            this.mode = mode;
+        }
+
+        public Duration getFanOutDeadline() {
+            return fanOutDeadline;
+        }
+
+        public void setFanOutDeadline(Duration fanOutDeadline) {
+            this.fanOutDeadline = fanOutDeadline;
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.flightsearch.backend.config;
+
+import io.opentelemetry.exporter.logging.LoggingSpanExporter;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Tracing Config
+ * With tracing.log-spans=true, sampled spans are also written to the log, for looking at
+ * traces without a collector. Spring Boot adds every SpanExporter bean next to the OTLP
+ * exporter (set up by management.otlp.tracing.endpoint).
+ */
+@Configuration
+public class TracingConfig {
+
+    @Bean
+    @ConditionalOnProperty(name = "tracing.log-spans", havingValue = "true")
+    public SpanExporter loggingSpanExporter() {
+        return LoggingSpanExporter.create();
+    }
+}
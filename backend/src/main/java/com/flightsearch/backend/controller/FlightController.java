@@ -3,20 +3,40 @@ package com.flightsearch.backend.controller;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.flightsearch.backend.config.AmadeusConfig;
+import com.flightsearch.backend.dto.BatchSearchQueryDTO;
+import com.flightsearch.backend.dto.BatchSearchRequestDTO;
+import com.flightsearch.backend.dto.BatchSearchResultDTO;
+import com.flightsearch.backend.dto.FareMatrixCellDTO;
 import com.flightsearch.backend.dto.FlightDetailsResponseDTO;
+import com.flightsearch.backend.dto.FlightSearchEventDTO;
+import com.flightsearch.backend.dto.amadeus.AmadeusFlightOffer;
 import com.flightsearch.backend.service.AmadeusService;
+import com.flightsearch.backend.service.FlightResultQuery;
+import com.flightsearch.backend.service.OfferExpiredException;
+import com.flightsearch.backend.service.SearchSessionNotFoundException;
+import com.flightsearch.backend.service.SerializedResults;
+import com.flightsearch.backend.service.ServerTiming;
+import com.flightsearch.backend.service.UpstreamRateLimitedException;
+import com.flightsearch.backend.service.UpstreamUnavailableException;
 
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.format.DateTimeParseException;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.*;
 
 import reactor.core.publisher.Flux;
@@ -28,6 +48,7 @@ import reactor.core.publisher.Mono;
 public class FlightController {
 
     private static final Logger logger = LoggerFactory.getLogger(FlightController.class);
+    private static final String SERVER_TIMING = "Server-Timing";
     private final AmadeusService amadeusService;
     private final ObjectMapper objectMapper;
 
@@ -69,6 +90,9 @@ public class FlightController {
                 return ResponseEntity.ok(response);
             })
             .onErrorResume(error -> {
+                if (error instanceof UpstreamRateLimitedException rateLimited) {
+                    return Mono.just(rateLimitedResponse(rateLimited).body(createErrorJson(rateLimited.getMessage())));
+                }
                 logger.error("Airport search failed: {}", error.getMessage(), error);
                 return Mono.just(ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body(createErrorJson("An unexpected error occurred during airport search.")));
@@ -77,7 +101,21 @@ public class FlightController {
 
     /**
      * Flight search
-     * GET /api/flights?origin=LAX&destination=JFK&departureDate=2025-07-15&adults=1&currency=USD&nonStop=false&returnDate=2025-07-20
+     * GET /api/flights?origin=LAX&destination=JFK&departureDate=2025-07-15&adults=1&currency=USD&nonStop=false&returnDate=2025-07-20&max=50
+     * origin and destination may list several airports or metro codes (origin=NYC,BOS); the
+     * results of all airport pairs are then merged, cheapest first.
+     *
+     * With group=true or any of the sort and filter parameters, whole offers (outbound and
+     * inbound together) are returned instead of the flat result list, e.g.
+     * GET /api/flights?...&sort=price&order=asc&maxPrice=450.00&maxDuration=PT12H&maxStops=1
+     *     &airlines=IB,AA&departureFrom=06:00&departureTo=12:00&maxLayover=PT3H&limit=20
+     *
+     * The flat result list is written from bytes serialized (and gzipped, for clients that
+     * accept it) once per cached search, with a strong ETag; If-None-Match with a current
+     * ETag gets 304 Not Modified.
+     *
+     * Responses carry a Server-Timing header with the time spent per phase (token,
+     * amadeus-search, mapping, airport-names) and whether the search cache was hit.
      */
     @GetMapping("/flights")
     public Mono<ResponseEntity<Object>> searchFlights( 
@@ -87,24 +125,443 @@ public class FlightController {
         @RequestParam(defaultValue = "1") Integer adults,
         @RequestParam(defaultValue = "USD") String currency,
         @RequestParam(defaultValue = "false") Boolean nonStop,
-        @RequestParam(required = false) String returnDate
+        @RequestParam(required = false) String returnDate,
+        @RequestParam(required = false) Integer max,
+        @RequestParam(defaultValue = "false") Boolean group,
+        @RequestParam(required = false) String sort,
+        @RequestParam(required = false) String order,
+        @RequestParam(required = false) String maxPrice,
+        @RequestParam(required = false) String maxDuration,
+        @RequestParam(required = false) Integer maxStops,
+        @RequestParam(required = false) String airlines,
+        @RequestParam(required = false) String departureFrom,
+        @RequestParam(required = false) String departureTo,
+        @RequestParam(required = false) String maxLayover,
+        @RequestParam(required = false) Integer limit,
+        @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+        @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding
+    ) {
+        logger.info("Flight search request received: origin={}, destination={}, departureDate={}, adults={}, currency={}, nonStop={}, returnDate={}, max={}",
+            origin, destination, departureDate, adults, currency, nonStop, returnDate, max);
+
+        String validationError = validateSearch(departureDate, returnDate, max);
+        if (validationError != null) {
+            return Mono.just(ResponseEntity.badRequest().body(createErrorJson(validationError)));
+        }
+
+        boolean grouped = Boolean.TRUE.equals(group) || sort != null || order != null || maxPrice != null || maxDuration != null
+            || maxStops != null || airlines != null || departureFrom != null || departureTo != null || maxLayover != null || limit != null;
+        if (grouped) {
+            FlightResultQuery query;
+            try {
+                query = FlightResultQuery.of(sort, order, maxPrice, maxDuration, maxStops, airlines, departureFrom, departureTo, maxLayover, limit);
+            } catch (IllegalArgumentException e) {
+                logger.warn("Invalid flight result query: {}", e.getMessage());
+                return Mono.just(ResponseEntity.badRequest().body(createErrorJson(e.getMessage())));
+            }
+            return withServerTiming(new ServerTiming(),
+                amadeusService.searchFlightsGrouped(origin, destination, departureDate, adults, currency, nonStop, returnDate, max, query)
+                    .map(result -> ResponseEntity.ok().<Object>body(result))
+                    .onErrorResume(error -> searchError(error)));
+        }
+
+        // Call the Amadeus service to search for flights
+        return withServerTiming(new ServerTiming(),
+            amadeusService.searchFlightsSerialized(origin, destination, departureDate, adults, currency, nonStop, returnDate, max)
+                .map(body -> serializedResponse(body, ifNoneMatch, acceptEncoding))
+                .onErrorResume(error -> searchError(error)));
+    }
+
+    // Hands the timing to the service through the Reactor context, and sends it back with the response
+    private Mono<ResponseEntity<Object>> withServerTiming(ServerTiming timing, Mono<ResponseEntity<Object>> response) {
+        return response
+            .map(entity -> ResponseEntity.status(entity.getStatusCode())
+                .headers(entity.getHeaders())
+                .header(SERVER_TIMING, timing.header())
+                .body(entity.getBody()))
+            .contextWrite(timing::addTo);
+    }
+
+    // Pre-serialized body as is: no Jackson, no compression on the way out
+    private ResponseEntity<Object> serializedResponse(SerializedResults body, String ifNoneMatch, String acceptEncoding) {
+        if (!body.tagged()) {
+            // Served once, not worth an ETag or compressing
+            return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body.json());
+        }
+        boolean gzip = acceptsGzip(acceptEncoding);
+        if (body.matches(ifNoneMatch)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                .eTag(body.etag(gzip))
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING)
+                .build();
+        }
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+            .contentType(MediaType.APPLICATION_JSON)
+            .eTag(body.etag(gzip))
+            .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) {
+            return response.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(body.gzip());
+        }
+        return response.body(body.json());
+    }
+
+    // "gzip" listed in Accept-Encoding, and not with q=0
+    private static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.trim().split(";");
+            if (parts[0].trim().equalsIgnoreCase("gzip")) {
+                for (int i = 1; i < parts.length; i++) {
+                    String parameter = parts[i].trim().replace(" ", "");
+                    if (parameter.matches("q=0(\\.0{0,3})?")) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Mono<ResponseEntity<Object>> searchError(Throwable error) {
+        if (error instanceof IllegalArgumentException) {
+            // E.g. origin and destination lists that make too many airport pairs
+            logger.warn("Invalid flight search: {}", error.getMessage());
+            return Mono.just(ResponseEntity.badRequest().body(createErrorJson(error.getMessage())));
+        }
+        ResponseEntity<Object> upstreamLimited = upstreamLimitedResponse(error);
+        if (upstreamLimited != null) {
+            return Mono.just(upstreamLimited);
+        }
+        logger.error("Error during flight search: {}", error.getMessage(), error);
+        return Mono.just(ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+            .body(createErrorJson("An unexpected error occurred during flight search. Please try again later.")));
+    }
+
+    // The answer to Amadeus limiting us (429) or failing fast (503), the same on every endpoint
+    // that searches; null for other errors
+    private ResponseEntity<Object> upstreamLimitedResponse(Throwable error) {
+        if (error instanceof UpstreamRateLimitedException rateLimited) {
+            return rateLimitedResponse(rateLimited).body(createErrorJson(rateLimited.getMessage()));
+        }
+        if (error instanceof UpstreamUnavailableException unavailable) {
+            return unavailableResponse(unavailable).body(createErrorJson(unavailable.getMessage()));
+        }
+        return null;
+    }
+
+    // Amadeus kept rejecting calls as too many; the client should back off as well
+    private ResponseEntity.BodyBuilder rateLimitedResponse(UpstreamRateLimitedException error) {
+        logger.warn("Rate limited by Amadeus: {}", error.getMessage());
+        return retryLater(HttpStatus.TOO_MANY_REQUESTS, error.getRetryAfter());
+    }
+
+    // Circuit open or bulkhead full: Amadeus was not even called
+    private ResponseEntity.BodyBuilder unavailableResponse(UpstreamUnavailableException error) {
+        logger.warn("Amadeus unavailable: {}", error.getMessage());
+        return retryLater(HttpStatus.SERVICE_UNAVAILABLE, error.getRetryAfter());
+    }
+
+    private ResponseEntity.BodyBuilder retryLater(HttpStatus status, Duration retryAfter) {
+        return ResponseEntity.status(status)
+            .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds(retryAfter)));
+    }
+
+    // Whole seconds, rounded up, at least one
+    private static long retryAfterSeconds(Duration retryAfter) {
+        return Math.max(1, (retryAfter.toMillis() + 999) / 1000);
+    }
+
+    /**
+     * Streaming flight search
+     * GET /api/flights/stream?origin=LAX&destination=JFK&departureDate=2025-07-15&...
+     * Same parameters as /api/flights. Emits events as soon as each result is mapped:
+     * "result" events first, then a "names" event with the airport and airline names to fill
+     * into them, then "complete". A failure ends the stream with an "error" event, with the
+     * status /api/flights would answer and, when Amadeus limited us or is unavailable (429 or
+     * 503), retryAfter in seconds.
+     * NDJSON (one event per line) by default; Server-Sent Events, with the event type as the
+     * event name, for Accept: text/event-stream.
+     */
+    @GetMapping(value = "/flights/stream", produces = { MediaType.APPLICATION_NDJSON_VALUE, MediaType.TEXT_EVENT_STREAM_VALUE })
+    public ResponseEntity<Flux<Object>> streamFlights(
+        @RequestParam String origin,
+        @RequestParam String destination,
+        @RequestParam String departureDate,
+        @RequestParam(defaultValue = "1") Integer adults,
+        @RequestParam(defaultValue = "USD") String currency,
+        @RequestParam(defaultValue = "false") Boolean nonStop,
+        @RequestParam(required = false) String returnDate,
+        @RequestParam(required = false) Integer max,
+        @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept
+    ) {
+        logger.info("Flight stream request received: origin={}, destination={}, departureDate={}, adults={}, currency={}, nonStop={}, returnDate={}, max={}",
+            origin, destination, departureDate, adults, currency, nonStop, returnDate, max);
+
+        boolean serverSentEvents = accept != null && accept.contains(MediaType.TEXT_EVENT_STREAM_VALUE);
+        String validationError = validateSearch(departureDate, returnDate, max);
+        if (validationError != null) {
+            return ResponseEntity.badRequest().body(streamEvents(Flux.just(errorEvent(validationError)), serverSentEvents));
+        }
+
+        Flux<FlightSearchEventDTO> events = amadeusService.streamFlights(origin, destination, departureDate, adults, currency, nonStop, returnDate, max)
+            .onErrorResume(error -> Flux.just(streamErrorEvent(error)));
+        return ResponseEntity.ok(streamEvents(events, serverSentEvents));
+    }
+
+    // As Server-Sent Events the event type becomes the SSE event name, and the data the SSE data
+    private Flux<Object> streamEvents(Flux<FlightSearchEventDTO> events, boolean serverSentEvents) {
+        if (serverSentEvents) {
+            return events.<Object>map(event -> ServerSentEvent.builder(event.getData()).event(event.getType()).build());
+        }
+        return events.cast(Object.class);
+    }
+
+    private FlightSearchEventDTO errorEvent(String message) {
+        return new FlightSearchEventDTO(FlightSearchEventDTO.ERROR, createErrorJson(message));
+    }
+
+    // The stream has already answered 200, so the status and Retry-After /api/flights would send go into the event
+    private FlightSearchEventDTO streamErrorEvent(Throwable error) {
+        if (error instanceof UpstreamRateLimitedException rateLimited) {
+            logger.warn("Rate limited by Amadeus during streaming flight search: {}", rateLimited.getMessage());
+            return retryLaterEvent(rateLimited.getMessage(), HttpStatus.TOO_MANY_REQUESTS, rateLimited.getRetryAfter());
+        }
+        if (error instanceof UpstreamUnavailableException unavailable) {
+            logger.warn("Amadeus unavailable during streaming flight search: {}", unavailable.getMessage());
+            return retryLaterEvent(unavailable.getMessage(), HttpStatus.SERVICE_UNAVAILABLE, unavailable.getRetryAfter());
+        }
+        logger.error("Error during streaming flight search: {}", error.getMessage(), error);
+        ObjectNode data = (ObjectNode) createErrorJson("An unexpected error occurred during flight search. Please try again later.");
+        data.put("status", HttpStatus.INTERNAL_SERVER_ERROR.value());
+        return new FlightSearchEventDTO(FlightSearchEventDTO.ERROR, data);
+    }
+
+    private FlightSearchEventDTO retryLaterEvent(String message, HttpStatus status, Duration retryAfter) {
+        ObjectNode data = (ObjectNode) createErrorJson(message);
+        data.put("status", status.value());
+        data.put("retryAfter", retryAfterSeconds(retryAfter));
+        return new FlightSearchEventDTO(FlightSearchEventDTO.ERROR, data);
+    }
+
+    /**
+     * Streaming fare matrix
+     * GET /api/flights/matrix/stream?origin=LAX&destination=JFK&departureDate=2025-07-15&returnDate=2025-07-20&window=3
+     * The cheapest fare for every date pair up to window days around the given dates, as
+     * NDJSON, one cell per line as each cell's search completes.
+     */
+    @GetMapping(value = "/flights/matrix/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<Flux<Object>> streamFareMatrix(
+        @RequestParam String origin,
+        @RequestParam String destination,
+        @RequestParam String departureDate,
+        @RequestParam(required = false) String returnDate,
+        @RequestParam(required = false) Integer window,
+        @RequestParam(defaultValue = "1") Integer adults,
+        @RequestParam(defaultValue = "USD") String currency,
+        @RequestParam(defaultValue = "false") Boolean nonStop
+    ) {
+        logger.info("Fare matrix request received: origin={}, destination={}, departureDate={}, returnDate={}, window={}",
+            origin, destination, departureDate, returnDate, window);
+
+        String validationError = validateFareMatrix(departureDate, returnDate, window);
+        if (validationError != null) {
+            return ResponseEntity.badRequest().body(Flux.just(createErrorJson(validationError)));
+        }
+        return ResponseEntity.ok(amadeusService.searchFareMatrix(origin, destination, departureDate, returnDate, window, adults, currency, nonStop)
+            .cast(Object.class)
+            .onErrorResume(error -> {
+                logger.error("Error during fare matrix search: {}", error.getMessage(), error);
+                return Flux.just(createErrorJson("An unexpected error occurred during fare matrix search. Please try again later."));
+            }));
+    }
+
+    /**
+     * Fare matrix
+     * GET /api/flights/matrix?origin=LAX&destination=JFK&departureDate=2025-07-15&returnDate=2025-07-20&window=3
+     * The whole matrix at once, ordered by departure and return date.
+     */
+    @GetMapping("/flights/matrix")
+    public Mono<ResponseEntity<Object>> getFareMatrix(
+        @RequestParam String origin,
+        @RequestParam String destination,
+        @RequestParam String departureDate,
+        @RequestParam(required = false) String returnDate,
+        @RequestParam(required = false) Integer window,
+        @RequestParam(defaultValue = "1") Integer adults,
+        @RequestParam(defaultValue = "USD") String currency,
+        @RequestParam(defaultValue = "false") Boolean nonStop
+    ) {
+        String validationError = validateFareMatrix(departureDate, returnDate, window);
+        if (validationError != null) {
+            return Mono.just(ResponseEntity.badRequest().body(createErrorJson(validationError)));
+        }
+        return amadeusService.searchFareMatrix(origin, destination, departureDate, returnDate, window, adults, currency, nonStop)
+            .sort(Comparator.comparing(FareMatrixCellDTO::getDepartureDate)
+                .thenComparing(FareMatrixCellDTO::getReturnDate, Comparator.nullsFirst(Comparator.naturalOrder())))
+            .collectList()
+            .map(cells -> ResponseEntity.ok().<Object>body(cells))
+            .onErrorResume(error -> {
+                logger.error("Error during fare matrix search: {}", error.getMessage(), error);
+                return Mono.just(ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(createErrorJson("An unexpected error occurred during fare matrix search. Please try again later.")));
+            });
+    }
+
+    private String validateFareMatrix(String departureDate, String returnDate, Integer window) {
+        String validationError = validateSearch(departureDate, returnDate, null);
+        if (validationError != null) {
+            return validationError;
+        }
+        try {
+            amadeusService.resolveMatrixWindow(window);
+        } catch (IllegalArgumentException e) {
+            logger.warn("Invalid fare matrix window {}", window);
+            return e.getMessage();
+        }
+        return null;
+    }
+
+    /**
+     * Batch flight search
+     * POST /api/flights/batch
+     * {"queries": [{"id": "q1", "origin": "LAX", "destination": "JFK", "departureDate": "2025-07-15", "priority": 1}, ...],
+     *  "includeResults": false}
+     * Runs every query like /api/flights and streams one result per query as NDJSON, in the
+     * order the queries complete. Each line carries the query's index and id, its status and
+     * the cheapest offer; an invalid or failed query is reported on its line without stopping
+     * the batch.
+     */
+    @PostMapping(value = "/flights/batch", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<Flux<Object>> searchBatch(@RequestBody BatchSearchRequestDTO request) {
+        List<BatchSearchQueryDTO> queries = request.getQueries() != null ? request.getQueries() : List.of();
+        logger.info("Batch flight search received with {} queries", queries.size());
+
+        try {
+            amadeusService.validateBatchSize(queries.size());
+        } catch (IllegalArgumentException e) {
+            logger.warn("Invalid batch flight search: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(Flux.just(createErrorJson(e.getMessage())));
+        }
+
+        // Every query is handed to the service at once; its search queue decides what runs when
+        return ResponseEntity.ok(Flux.range(0, queries.size())
+            .flatMap(index -> {
+                BatchSearchQueryDTO query = queries.get(index);
+                String validationError = validateBatchQuery(query);
+                if (validationError != null) {
+                    BatchSearchResultDTO result = new BatchSearchResultDTO(index, query != null ? query.getId() : null, BatchSearchResultDTO.INVALID);
+                    result.setError(validationError);
+                    return Mono.just(result);
+                }
+                return amadeusService.searchBatchQuery(index, query, request.isIncludeResults());
+            }, queries.size())
+            .cast(Object.class)
+            .onErrorResume(error -> {
+                logger.error("Error during batch flight search: {}", error.getMessage(), error);
+                return Flux.just(createErrorJson("An unexpected error occurred during batch flight search. Please try again later."));
+            }));
+    }
+
+    private String validateBatchQuery(BatchSearchQueryDTO query) {
+        if (query == null) {
+            return "Empty query.";
+        }
+        if (query.getOrigin() == null || query.getOrigin().isBlank()
+            || query.getDestination() == null || query.getDestination().isBlank()) {
+            return "origin and destination are required.";
+        }
+        if (query.getDepartureDate() == null) {
+            return "departureDate is required.";
+        }
+        return validateSearch(query.getDepartureDate(), query.getReturnDate(), query.getMax());
+    }
+
+    /**
+     * Flight search session
+     * POST /api/flights/sessions?origin=LAX&destination=JFK&departureDate=2025-07-15&...&max=250&sort=price&pageSize=20
+     * Searches like /api/flights, keeps the results on the server and returns the session id
+     * with the first page.
+     */
+    @PostMapping("/flights/sessions")
+    public Mono<ResponseEntity<Object>> createSearchSession(
+        @RequestParam String origin,
+        @RequestParam String destination,
+        @RequestParam String departureDate,
+        @RequestParam(defaultValue = "1") Integer adults,
+        @RequestParam(defaultValue = "USD") String currency,
+        @RequestParam(defaultValue = "false") Boolean nonStop,
+        @RequestParam(required = false) String returnDate,
+        @RequestParam(required = false) Integer max,
+        @RequestParam(required = false) String sort,
+        @RequestParam(required = false) Integer pageSize
     ) {
-        logger.info("Flight search request received: origin={}, destination={}, departureDate={}, adults={}, currency={}, nonStop={}, returnDate={}",
-            origin, destination, departureDate, adults, currency, nonStop, returnDate);
+        logger.info("Search session request received: origin={}, destination={}, departureDate={}, adults={}, currency={}, nonStop={}, returnDate={}, max={}, sort={}, pageSize={}",
+            origin, destination, departureDate, adults, currency, nonStop, returnDate, max, sort, pageSize);
 
+        String validationError = validateSearch(departureDate, returnDate, max);
+        if (validationError != null) {
+            return Mono.just(ResponseEntity.badRequest().body(createErrorJson(validationError)));
+        }
+
+        return amadeusService.createSearchSession(origin, destination, departureDate, adults, currency, nonStop, returnDate, max, sort, pageSize)
+            .map(page -> ResponseEntity.status(HttpStatus.CREATED).<Object>body(page))
+            .onErrorResume(error -> sessionError("creating a search session", error));
+    }
+
+    /**
+     * Search session page
+     * GET /api/flights/sessions/{sessionId}?cursor=...  next page
+     * GET /api/flights/sessions/{sessionId}?sort=duration  first page in another order
+     * Served from the session, without calling Amadeus again.
+     */
+    @GetMapping("/flights/sessions/{sessionId}")
+    public Mono<ResponseEntity<Object>> getSearchSessionPage(
+        @PathVariable String sessionId,
+        @RequestParam(required = false) String cursor,
+        @RequestParam(required = false) String sort,
+        @RequestParam(required = false) Integer pageSize
+    ) {
+        return amadeusService.getSearchSessionPage(sessionId, cursor, sort, pageSize)
+            .map(page -> ResponseEntity.ok().<Object>body(page))
+            .onErrorResume(error -> sessionError("reading search session " + sessionId, error));
+    }
+
+    private Mono<ResponseEntity<Object>> sessionError(String action, Throwable error) {
+        ResponseEntity<Object> upstreamLimited = upstreamLimitedResponse(error);
+        if (upstreamLimited != null) {
+            return Mono.just(upstreamLimited);
+        }
+        if (error instanceof SearchSessionNotFoundException) {
+            return Mono.just(ResponseEntity.status(HttpStatus.NOT_FOUND).body(createErrorJson(error.getMessage())));
+        }
+        if (error instanceof IllegalArgumentException) {
+            return Mono.just(ResponseEntity.badRequest().body(createErrorJson(error.getMessage())));
+        }
+        logger.error("Error while {}: {}", action, error.getMessage(), error);
+        return Mono.just(ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+            .body(createErrorJson("An unexpected error occurred during flight search. Please try again later.")));
+    }
+
+    /**
+     * Checks the search dates and result count. Returns the error message, or null if the search is valid.
+     */
+    private String validateSearch(String departureDate, String returnDate, Integer max) {
         // --- Date validation ---
         LocalDate parsedDepartureDate;
         try {
             parsedDepartureDate = LocalDate.parse(departureDate);
         } catch (DateTimeParseException e) {
             logger.warn("Invalid departureDate format: {}", departureDate);
-            return Mono.just(ResponseEntity.badRequest().body(createErrorJson("Invalid departure date format. Please use YYYY-MM-DD.")));
+            return "Invalid departure date format. Please use YYYY-MM-DD.";
         }
 
         LocalDate today = LocalDate.now(); // Current date 
         if (parsedDepartureDate.isBefore(today)) {
             logger.warn("Departure date {} is in the past (today is {}).", departureDate, today);
-            return Mono.just(ResponseEntity.badRequest().body(createErrorJson("Departure date cannot be in the past.")));
+            return "Departure date cannot be in the past.";
         }
 
         if (returnDate != null && !returnDate.isEmpty()) {
@@ -113,113 +570,74 @@ public class FlightController {
                 parsedReturnDate = LocalDate.parse(returnDate);
             } catch (DateTimeParseException e) {
                 logger.warn("Invalid returnDate format: {}", returnDate);
-                return Mono.just(ResponseEntity.badRequest().body(createErrorJson("Invalid return date format. Please use YYYY-MM-DD.")));
+                return "Invalid return date format. Please use YYYY-MM-DD.";
             }
 
             if (parsedReturnDate.isBefore(parsedDepartureDate)) {
                 logger.warn("Return date {} is before departure date {}.", returnDate, departureDate);
-                return Mono.just(ResponseEntity.badRequest().body(createErrorJson("Return date cannot be before departure date.")));
+                return "Return date cannot be before departure date.";
             }
             if (parsedReturnDate.isEqual(parsedDepartureDate)) {
                 logger.warn("Return date {} is same as departure date {}. For roundtrip flights, return date cannot be the same as departure date.", returnDate, departureDate);
-                return Mono.just(ResponseEntity.badRequest().body(createErrorJson("For roundtrip flights, return date cannot be the same as departure date.")));
+                return "For roundtrip flights, return date cannot be the same as departure date.";
             }
         }
 
-        // Call the Amadeus service to search for flights
-        return amadeusService.searchFlights(origin, destination, departureDate, adults, currency, nonStop, returnDate)
-            .map(result -> ResponseEntity.ok().<Object>body(result)) 
-            .onErrorResume(error -> {
-                logger.error("Error during flight search: {}", error.getMessage(), error);
-                return Mono.just(ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-                    .body(createErrorJson("An unexpected error occurred during flight search. Please try again later.")));
-            });
+        if (max != null && (max < 1 || max > AmadeusConfig.Search.MAX_RESULTS_LIMIT)) {
+            logger.warn("Invalid max {}", max);
+            return "max must be between 1 and " + AmadeusConfig.Search.MAX_RESULTS_LIMIT + ".";
+        }
+        return null;
     }
 
     /**
      * Flight details endpoint
      * GET /api/flights/{amadeusOfferId}/details
+     * With a Server-Timing header (offer-cache, airport-names, mapping).
      */
     @GetMapping("/flights/{amadeusOfferId}/details")
     public Mono<ResponseEntity<Object>> getFlightDetails(@PathVariable String amadeusOfferId) {
         logger.info("Received request for flight details for Amadeus Offer ID: {}", amadeusOfferId);
 
-        return amadeusService.getFlightOfferDetails(amadeusOfferId) // Mono<JsonNode> (this is now the *individual flight offer* JsonNode)
-            .flatMap(individualFlightOfferNode -> { 
-                final JsonNode mainFlightOfferNode = individualFlightOfferNode; 
-
+        ServerTiming timing = new ServerTiming();
+        return withServerTiming(timing, amadeusService.getFlightOffer(amadeusOfferId) // Mono<AmadeusFlightOffer> (the cached offer, bound to the typed model)
+            .flatMap(flightOffer -> { 
                 Set<String> uniqueAirportCodes = new HashSet<>();
-                JsonNode itineraries = mainFlightOfferNode.get("itineraries");
-                if (itineraries != null && itineraries.isArray()) {
-                    for (JsonNode itinerary : itineraries) {
-                        JsonNode segmentsArray = itinerary.get("segments");
-                        if (segmentsArray != null && segmentsArray.isArray()) {
-                            for (JsonNode segment : segmentsArray) {
-                                if (segment.has("departure") && segment.get("departure").has("iataCode")) {
-                                    uniqueAirportCodes.add(amadeusService.safeGetText(segment.get("departure"), "iataCode"));
-                                }
-                                if (segment.has("arrival") && segment.get("arrival").has("iataCode")) {
-                                    uniqueAirportCodes.add(amadeusService.safeGetText(segment.get("arrival"), "iataCode"));
-                                }
-                            }
-                        }
-                    }
-                }
+                amadeusService.collectAirportCodes(flightOffer, uniqueAirportCodes);
 
-                Map<String, String> fullAirportNamesMap = new ConcurrentHashMap<>();
                 Mono<FlightDetailsResponseDTO> resultMono; 
 
                 if (uniqueAirportCodes.isEmpty()) {
                     logger.warn("No airport codes found in flight offer details response for offer ID: {}. Skipping airport name lookup.", amadeusOfferId);
-                    resultMono = Mono.just(amadeusService.mapToFlightDetailsResponseDTO(amadeusOfferId, mainFlightOfferNode, fullAirportNamesMap));
+                    resultMono = Mono.just(mapDetails(timing, amadeusOfferId, flightOffer, new HashMap<>()));
                 } else {
-                    resultMono = Flux.fromIterable(uniqueAirportCodes)
-                        .flatMap(iataCode -> 
-                            amadeusService.searchAirportsSimple(iataCode)
-                                .map(airportDetailsNode -> {
-                                    String airportName = null;
-                                    if (airportDetailsNode != null && airportDetailsNode.has("data") && airportDetailsNode.get("data").isArray() && airportDetailsNode.get("data").size() > 0) {
-                                        JsonNode airportData = airportDetailsNode.get("data").get(0);
-                                        airportName = amadeusService.safeGetText(airportData, "name");
-                                        if (airportName == null) {
-                                            JsonNode addressNode = airportData.get("address");
-                                            if (addressNode != null) {
-                                                airportName = amadeusService.safeGetText(addressNode, "cityName");
-                                            }
-                                        }
-                                        if (airportName == null) {
-                                            String detailedName = amadeusService.safeGetText(airportData, "detailedName");
-                                            if (detailedName != null && detailedName.contains(":")) {
-                                                airportName = detailedName.substring(detailedName.indexOf(":") + 1).trim();
-                                            } else {
-                                                airportName = detailedName;
-                                            }
-                                        }
-                                    }
-                                    fullAirportNamesMap.put(iataCode, airportName != null ? airportName : iataCode);
-                                    return (Void) null;
-                                })
-                                .onErrorResume(e -> {
-                                    logger.error("Error fetching airport details for {}: {}. Falling back to IATA code.", iataCode, e.getMessage());
-                                    fullAirportNamesMap.put(iataCode, iataCode);
-                                    return Mono.empty();
-                                })
-                        )
-                        .then(Mono.defer(() -> {
+                    resultMono = ServerTiming.timed(ServerTiming.AIRPORT_NAMES, amadeusService.resolveAirportNames(uniqueAirportCodes))
+                        .map(fullAirportNamesMap -> {
                             logger.info("Finished fetching all airport names for flight details for offer ID: {}. Mapping details response.", amadeusOfferId);
-                            return Mono.just(amadeusService.mapToFlightDetailsResponseDTO(amadeusOfferId, mainFlightOfferNode, fullAirportNamesMap));
-                        }));
+                            return mapDetails(timing, amadeusOfferId, flightOffer, fullAirportNamesMap);
+                        });
                 }
                 
                 return resultMono.map(detailsDTO -> ResponseEntity.ok().<Object>body(detailsDTO)); 
             })
             .onErrorResume(error -> {
                 logger.error("Error during flight details fetch for offer ID {}: {}", amadeusOfferId, error.getMessage(), error);
+                if (error instanceof OfferExpiredException) {
+                    return Mono.just(ResponseEntity.status(HttpStatus.GONE).body(createErrorJson(error.getMessage())));
+                }
                 if (error instanceof IllegalArgumentException) {
                     return Mono.just(ResponseEntity.status(HttpStatus.NOT_FOUND).body(createErrorJson(error.getMessage())));
                 }
                 return Mono.just(ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(createErrorJson("An unexpected error occurred while fetching flight details. Please try again later.")));
-            });
+            }));
+    }
+
+    private FlightDetailsResponseDTO mapDetails(ServerTiming timing, String amadeusOfferId, AmadeusFlightOffer flightOffer,
+            Map<String, String> airportNames) {
+        long startedAt = System.nanoTime();
+        FlightDetailsResponseDTO details = amadeusService.mapToFlightDetailsResponseDTO(amadeusOfferId, flightOffer, airportNames);
+        timing.add(ServerTiming.MAPPING, System.nanoTime() - startedAt);
+        return details;
     }
 
     private JsonNode createErrorJson(String message) {
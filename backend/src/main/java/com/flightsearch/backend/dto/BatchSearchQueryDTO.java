@@ -0,0 +1,98 @@
+package com.flightsearch.backend.dto;
+
+public class BatchSearchQueryDTO {
+    private String id; // Caller's own reference, echoed in the query's result
+    private String origin; // Airport or metro codes, comma separated, as for /api/flights
+    private String destination;
+    private String departureDate;
+    private String returnDate; // Null for one way searches
+    private Integer adults;
+    private String currency;
+    private Boolean nonStop;
+    private Integer max; // Offers to request from Amadeus, the configured default if null
+    private Integer priority; // Higher priorities are searched first; 0 if null
+
+    public BatchSearchQueryDTO() {
+    }
+
+    // Getters and Setters
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getOrigin() {
+        return origin;
+    }
+
+    public void setOrigin(String origin) {
+        this.origin = origin;
+    }
+
+    public String getDestination() {
+        return destination;
+    }
+
+    public void setDestination(String destination) {
+        this.destination = destination;
+    }
+
+    public String getDepartureDate() {
+        return departureDate;
+    }
+
+    public void setDepartureDate(String departureDate) {
+        this.departureDate = departureDate;
+    }
+
+    public String getReturnDate() {
+        return returnDate;
+    }
+
+    public void setReturnDate(String returnDate) {
+        this.returnDate = returnDate;
+    }
+
+    public Integer getAdults() {
+        return adults;
+    }
+
+    public void setAdults(Integer adults) {
+        this.adults = adults;
+    }
+
+    public String getCurrency() {
+        return currency;
+    }
+
+    public void setCurrency(String currency) {
+        this.currency = currency;
+    }
+
+    public Boolean getNonStop() {
+        return nonStop;
+    }
+
+    public void setNonStop(Boolean nonStop) {
+        this.nonStop = nonStop;
+    }
+
+    public Integer getMax() {
+        return max;
+    }
+
+    public void setMax(Integer max) {
+        this.max = max;
+    }
+
+    public Integer getPriority() {
+        return priority;
+    }
+
+    public void setPriority(Integer priority) {
+        this.priority = priority;
+    }
+}
@@ -0,0 +1,28 @@
+package com.flightsearch.backend.dto;
+
+import java.util.List;
+
+public class BatchSearchRequestDTO {
+    private List<BatchSearchQueryDTO> queries;
+    private boolean includeResults; // Adds every result to each query's line; by default only the cheapest offer is reported
+
+    public BatchSearchRequestDTO() {
+    }
+
+    // Getters and Setters
+    public List<BatchSearchQueryDTO> getQueries() {
+        return queries;
+    }
+
+    public void setQueries(List<BatchSearchQueryDTO> queries) {
+        this.queries = queries;
+    }
+
+    public boolean isIncludeResults() {
+        return includeResults;
+    }
+
+    public void setIncludeResults(boolean includeResults) {
+        this.includeResults = includeResults;
+    }
+}
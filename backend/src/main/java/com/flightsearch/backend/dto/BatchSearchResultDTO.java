@@ -0,0 +1,111 @@
+package com.flightsearch.backend.dto;
+
+import java.util.List;
+
+public class BatchSearchResultDTO {
+    public static final String OK = "OK";
+    public static final String NO_OFFERS = "NO_OFFERS"; // Amadeus found nothing for this query
+    public static final String INVALID = "INVALID"; // The query was not searched, see error
+    public static final String ERROR = "ERROR"; // The search failed; the other queries are unaffected
+
+    private int index; // Position of the query in the request
+    private String id; // The query's id, if it had one
+    private String status;
+    private boolean cached; // Served from cached results, without calling Amadeus
+    private int offerCount;
+    private PriceDTO cheapestPrice; // Null unless status is OK
+    private String cheapestOfferId; // For /api/flights/{offerId}/details
+    private List<FlightSearchResultDTO> results; // Only with includeResults
+    private String error;
+    private long elapsedMs; // From the query's submission to its result, waiting for a search slot included
+
+    public BatchSearchResultDTO() {
+    }
+
+    public BatchSearchResultDTO(int index, String id, String status) {
+        this.index = index;
+        this.id = id;
+        this.status = status;
+    }
+
+    // Getters and Setters
+    public int getIndex() {
+        return index;
+    }
+
+    public void setIndex(int index) {
+        this.index = index;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public boolean isCached() {
+        return cached;
+    }
+
+    public void setCached(boolean cached) {
+        this.cached = cached;
+    }
+
+    public int getOfferCount() {
+        return offerCount;
+    }
+
+    public void setOfferCount(int offerCount) {
+        this.offerCount = offerCount;
+    }
+
+    public PriceDTO getCheapestPrice() {
+        return cheapestPrice;
+    }
+
+    public void setCheapestPrice(PriceDTO cheapestPrice) {
+        this.cheapestPrice = cheapestPrice;
+    }
+
+    public String getCheapestOfferId() {
+        return cheapestOfferId;
+    }
+
+    public void setCheapestOfferId(String cheapestOfferId) {
+        this.cheapestOfferId = cheapestOfferId;
+    }
+
+    public List<FlightSearchResultDTO> getResults() {
+        return results;
+    }
+
+    public void setResults(List<FlightSearchResultDTO> results) {
+        this.results = results;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+
+    public long getElapsedMs() {
+        return elapsedMs;
+    }
+
+    public void setElapsedMs(long elapsedMs) {
+        this.elapsedMs = elapsedMs;
+    }
+}
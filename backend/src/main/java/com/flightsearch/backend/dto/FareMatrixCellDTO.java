@@ -0,0 +1,91 @@
+package com.flightsearch.backend.dto;
+
+public class FareMatrixCellDTO {
+    public static final String OK = "OK";
+    public static final String NO_OFFERS = "NO_OFFERS"; // Amadeus found nothing for these dates
+    public static final String SKIPPED = "SKIPPED"; // Not cached, and the matrix used up its Amadeus searches
+    public static final String ERROR = "ERROR"; // The search for these dates failed; the other cells are unaffected
+
+    private String departureDate;
+    private String returnDate; // Null for one way matrices
+    private String status;
+    private PriceDTO cheapestPrice; // Null unless status is OK
+    private String offerId; // Amadeus offer id of the cheapest fare, for /api/flights/{offerId}/details
+    private int offerCount;
+    private boolean cached; // Served from cached results, without calling Amadeus
+    private String error;
+
+    public FareMatrixCellDTO() {
+    }
+
+    public FareMatrixCellDTO(String departureDate, String returnDate, String status) {
+        this.departureDate = departureDate;
+        this.returnDate = returnDate;
+        this.status = status;
+    }
+
+    // Getters and Setters
+    public String getDepartureDate() {
+        return departureDate;
+    }
+
+    public void setDepartureDate(String departureDate) {
+        this.departureDate = departureDate;
+    }
+
+    public String getReturnDate() {
+        return returnDate;
+    }
+
+    public void setReturnDate(String returnDate) {
+        this.returnDate = returnDate;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public PriceDTO getCheapestPrice() {
+        return cheapestPrice;
+    }
+
+    public void setCheapestPrice(PriceDTO cheapestPrice) {
+        this.cheapestPrice = cheapestPrice;
+    }
+
+    public String getOfferId() {
+        return offerId;
+    }
+
+    public void setOfferId(String offerId) {
+        this.offerId = offerId;
+    }
+
+    public int getOfferCount() {
+        return offerCount;
+    }
+
+    public void setOfferCount(int offerCount) {
+        this.offerCount = offerCount;
+    }
+
+    public boolean isCached() {
+        return cached;
+    }
+
+    public void setCached(boolean cached) {
+        this.cached = cached;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+}
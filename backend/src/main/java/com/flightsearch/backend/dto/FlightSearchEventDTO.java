@@ -0,0 +1,38 @@
+package com.flightsearch.backend.dto;
+
+public class FlightSearchEventDTO {
+    public static final String RESULT = "result"; // data: one FlightSearchResultDTO
+    public static final String NAMES = "names"; // data: {"airports": {code: name}, "airlines": {code: name}}
+    public static final String COMPLETE = "complete"; // data: {"results": n, "offers": n, "cached": bool}
+    // data: {"error": message, "status": HTTP status /api/flights would answer, "retryAfter": seconds (429 and 503)};
+    // last event of a failed search
+    public static final String ERROR = "error";
+
+    private String type;
+    private Object data;
+
+    public FlightSearchEventDTO() {
+    }
+
+    public FlightSearchEventDTO(String type, Object data) {
+        this.type = type;
+        this.data = data;
+    }
+
+    // Getters and Setters
+    public String getType() {
+        return type;
+    }
+
+    public void setType(String type) {
+        this.type = type;
+    }
+
+    public Object getData() {
+        return data;
+    }
+
+    public void setData(Object data) {
+        this.data = data;
+    }
+}
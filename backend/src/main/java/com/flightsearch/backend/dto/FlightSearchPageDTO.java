@@ -0,0 +1,63 @@
+package com.flightsearch.backend.dto;
+
+import java.util.List;
+
+public class FlightSearchPageDTO {
+    private String sessionId; // Server-side search session the page was served from
+    private String sort;
+    private int totalOffers; // Offers in the whole session (a round trip offer has two results)
+    private List<FlightSearchResultDTO> results; // Every result of the offers on this page
+    private String nextCursor; // Null on the last page
+
+    public FlightSearchPageDTO() {
+    }
+
+    public FlightSearchPageDTO(String sessionId, String sort, int totalOffers, List<FlightSearchResultDTO> results, String nextCursor) {
+        this.sessionId = sessionId;
+        this.sort = sort;
+        this.totalOffers = totalOffers;
+        this.results = results;
+        this.nextCursor = nextCursor;
+    }
+
+    // Getters and Setters
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    public void setSessionId(String sessionId) {
+        this.sessionId = sessionId;
+    }
+
+    public String getSort() {
+        return sort;
+    }
+
+    public void setSort(String sort) {
+        this.sort = sort;
+    }
+
+    public int getTotalOffers() {
+        return totalOffers;
+    }
+
+    public void setTotalOffers(int totalOffers) {
+        this.totalOffers = totalOffers;
+    }
+
+    public List<FlightSearchResultDTO> getResults() {
+        return results;
+    }
+
+    public void setResults(List<FlightSearchResultDTO> results) {
+        this.results = results;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+}
@@ -0,0 +1,85 @@
+package com.flightsearch.backend.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+public class GroupedFlightOfferDTO {
+    private String offerId; // Amadeus offer id, for /api/flights/{offerId}/details
+    private FlightSearchResultDTO outboundFlight;
+    private FlightSearchResultDTO inboundFlight; // Null for one way offers
+    private PriceDTO totalPrice; // Price of the whole offer, both directions
+    private int numberOfAdults;
+    private boolean roundTrip;
+    private String totalDuration; // ISO-8601, both directions together, e.g. "PT14H35M"
+
+    public GroupedFlightOfferDTO() {
+    }
+
+    public GroupedFlightOfferDTO(String offerId, FlightSearchResultDTO outboundFlight, FlightSearchResultDTO inboundFlight,
+                                 PriceDTO totalPrice, int numberOfAdults, boolean roundTrip, String totalDuration) {
+        this.offerId = offerId;
+        this.outboundFlight = outboundFlight;
+        this.inboundFlight = inboundFlight;
+        this.totalPrice = totalPrice;
+        this.numberOfAdults = numberOfAdults;
+        this.roundTrip = roundTrip;
+        this.totalDuration = totalDuration;
+    }
+
+    // Getters and Setters
+    public String getOfferId() {
+        return offerId;
+    }
+
+    public void setOfferId(String offerId) {
+        this.offerId = offerId;
+    }
+
+    public FlightSearchResultDTO getOutboundFlight() {
+        return outboundFlight;
+    }
+
+    public void setOutboundFlight(FlightSearchResultDTO outboundFlight) {
+        this.outboundFlight = outboundFlight;
+    }
+
+    public FlightSearchResultDTO getInboundFlight() {
+        return inboundFlight;
+    }
+
+    public void setInboundFlight(FlightSearchResultDTO inboundFlight) {
+        this.inboundFlight = inboundFlight;
+    }
+
+    public PriceDTO getTotalPrice() {
+        return totalPrice;
+    }
+
+    public void setTotalPrice(PriceDTO totalPrice) {
+        this.totalPrice = totalPrice;
+    }
+
+    public int getNumberOfAdults() {
+        return numberOfAdults;
+    }
+
+    public void setNumberOfAdults(int numberOfAdults) {
+        this.numberOfAdults = numberOfAdults;
+    }
+
+    @JsonProperty("isRoundTrip") // Name the frontend's GroupedFlightOffer uses
+    public boolean isRoundTrip() {
+        return roundTrip;
+    }
+
+    public void setRoundTrip(boolean roundTrip) {
+        this.roundTrip = roundTrip;
+    }
+
+    public String getTotalDuration() {
+        return totalDuration;
+    }
+
+    public void setTotalDuration(String totalDuration) {
+        this.totalDuration = totalDuration;
+    }
+}
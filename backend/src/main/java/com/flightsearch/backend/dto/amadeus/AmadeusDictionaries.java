@@ -0,0 +1,15 @@
+package com.flightsearch.backend.dto.amadeus;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+import java.util.Map;
+
+/**
+ * Amadeus Dictionaries
+ * The "dictionaries" part of a flight offers response: names for the codes used in the offers.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record AmadeusDictionaries(
+    Map<String, String> carriers,
+    Map<String, String> aircraft) {
+}
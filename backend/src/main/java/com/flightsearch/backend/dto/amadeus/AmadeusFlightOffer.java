@@ -0,0 +1,76 @@
+package com.flightsearch.backend.dto.amadeus;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+import java.util.List;
+
+/**
+ * Amadeus Flight Offer
+ * One element of "data" in a /v2/shopping/flight-offers response, bound directly by Jackson.
+ * Only the fields the mappings read are declared; everything else is skipped while binding.
+ * Missing fields stay null, so callers can tell "absent" from "empty".
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record AmadeusFlightOffer(
+    String id,
+    String lastTicketingDate,
+    String lastTicketingDateTime,
+    Integer numberOfBookableSeats,
+    List<Itinerary> itineraries,
+    AmadeusPrice price,
+    List<AmadeusTravelerPricing> travelerPricings) {
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public record Itinerary(String duration, List<Segment> segments) {
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public record Segment(
+        String id,
+        Endpoint departure,
+        Endpoint arrival,
+        String carrierCode,
+        String number,
+        String duration,
+        Aircraft aircraft,
+        Operating operating,
+        Integer numberOfStops) {
+
+        public String departureIataCode() {
+            return departure != null ? departure.iataCode() : null;
+        }
+
+        public String departureAt() {
+            return departure != null ? departure.at() : null;
+        }
+
+        public String arrivalIataCode() {
+            return arrival != null ? arrival.iataCode() : null;
+        }
+
+        public String arrivalAt() {
+            return arrival != null ? arrival.at() : null;
+        }
+
+        public String operatingCarrierCode() {
+            return operating != null ? operating.carrierCode() : null;
+        }
+
+        public String aircraftCode() {
+            return aircraft != null ? aircraft.code() : null;
+        }
+    }
+
+    // Departure or arrival of a segment
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public record Endpoint(String iataCode, String terminal, String at) {
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public record Aircraft(String code) {
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public record Operating(String carrierCode) {
+    }
+}
@@ -0,0 +1,25 @@
+package com.flightsearch.backend.dto.amadeus;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+/**
+ * Amadeus Location
+ * An airport or city from the reference data locations API.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record AmadeusLocation(
+    String type,
+    String subType,
+    String name,
+    String detailedName,
+    String iataCode,
+    Address address) {
+
+    public String cityName() {
+        return address != null ? address.cityName() : null;
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public record Address(String cityName, String countryCode) {
+    }
+}
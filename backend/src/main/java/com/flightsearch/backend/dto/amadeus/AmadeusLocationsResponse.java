@@ -0,0 +1,13 @@
+package com.flightsearch.backend.dto.amadeus;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+import java.util.List;
+
+/**
+ * Amadeus Locations Response
+ * A /v1/reference-data/locations response.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record AmadeusLocationsResponse(List<AmadeusLocation> data) {
+}
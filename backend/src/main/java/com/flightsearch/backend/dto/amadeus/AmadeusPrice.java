@@ -0,0 +1,23 @@
+package com.flightsearch.backend.dto.amadeus;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+import java.util.List;
+
+/**
+ * Amadeus Price
+ * Price of a whole flight offer or of one traveler. Amounts are kept as the decimal strings
+ * Amadeus sends, so they can be passed through without rounding.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record AmadeusPrice(
+    String currency,
+    String total,
+    String base,
+    String grandTotal,
+    List<Fee> fees) {
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public record Fee(String amount, String type) {
+    }
+}
@@ -0,0 +1,36 @@
+package com.flightsearch.backend.dto.amadeus;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+/**
+ * Amadeus Traveler Pricing
+ * Price and fare details of one traveler of a flight offer ("travelerPricings").
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record AmadeusTravelerPricing(
+    String travelerId,
+    String fareOption,
+    String travelerType,
+    AmadeusPrice price,
+    List<FareDetailsBySegment> fareDetailsBySegment) {
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public record FareDetailsBySegment(
+        String segmentId,
+        String cabin,
+        String fareBasis,
+        String brandedFare,
+        @JsonProperty("class") String fareClass,
+        List<Amenity> amenities) {
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public record Amenity(
+        String description,
+        @JsonProperty("isChargeable") Boolean chargeable,
+        String amenityType) {
+    }
+}
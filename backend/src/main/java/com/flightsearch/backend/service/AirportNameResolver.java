@@ -0,0 +1,108 @@
+package com.flightsearch.backend.service;
+
+import com.flightsearch.backend.config.AmadeusConfig;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * Airport Name Resolver
+ * Shared IATA code -> airport name lookup used by flight search and flight details.
+ * Names are kept in a bounded, expiring cache. Codes Amadeus does not know are cached
+ * too (for a shorter time), and concurrent lookups of the same code share one request.
+ */
+public class AirportNameResolver {
+
+    private static final Logger logger = LoggerFactory.getLogger(AirportNameResolver.class);
+
+    public static final String CACHE_NAME = "airportNames";
+
+    private final AsyncCache<String, Optional<String>> cache;
+    private final Function<String, Mono<Optional<String>>> loader;
+
+    /**
+     * @param loader Looks up the name of one airport. An empty Optional means the code is unknown
+     *               and is cached as a negative result; errors are not cached.
+     */
+    public AirportNameResolver(Function<String, Mono<Optional<String>>> loader, AmadeusConfig.AirportCache settings,
+                               MeterRegistry meterRegistry) {
+        this.loader = loader;
+        this.cache = Caffeine.newBuilder()
+            .maximumSize(settings.getMaxSize())
+            .expireAfter(new NameExpiry(settings.getTtl().toNanos(), settings.getNegativeTtl().toNanos()))
+            .recordStats()
+            .buildAsync();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache.synchronous(), CACHE_NAME);
+    }
+
+    /**
+     * Resolves one airport name. Falls back to the IATA code when the name is unknown
+     * or the lookup fails.
+     */
+    public Mono<String> resolve(String iataCode) {
+        String code = iataCode.trim().toUpperCase(Locale.ROOT);
+        // suppressCancel: the future is shared by every caller waiting on the same code
+        return Mono.fromFuture(() -> cache.get(code, (key, executor) -> loader.apply(key).toFuture()), true)
+            .map(name -> name.orElse(code))
+            .defaultIfEmpty(code)
+            .onErrorResume(e -> {
+                logger.error("Error fetching airport details for {}: {}. Falling back to IATA code.", code, e.getMessage());
+                return Mono.just(code);
+            });
+    }
+
+    /**
+     * Resolves a set of airport codes into an IATA code -> name map.
+     */
+    public Mono<Map<String, String>> resolveAll(Collection<String> iataCodes) {
+        return Flux.fromIterable(iataCodes)
+            .flatMap(code -> resolve(code).map(name -> Map.entry(code, name)))
+            .collectMap(Map.Entry::getKey, Map.Entry::getValue);
+    }
+
+    /**
+     * Hit, miss and eviction counters of the name cache.
+     */
+    public CacheStats stats() {
+        return cache.synchronous().stats();
+    }
+
+    public long estimatedSize() {
+        return cache.synchronous().estimatedSize();
+    }
+
+    // Known names use the regular TTL, unknown codes the negative TTL
+    private record NameExpiry(long ttlNanos, long negativeTtlNanos) implements Expiry<String, Optional<String>> {
+
+        @Override
+        public long expireAfterCreate(String key, Optional<String> value, long currentTime) {
+            return value.isPresent() ? ttlNanos : negativeTtlNanos;
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, Optional<String> value, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, value, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String key, Optional<String> value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
@@ -0,0 +1,245 @@
+package com.flightsearch.backend.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Airport Reference Index
+ * Local airport reference data (IATA code, name, city, country, coordinates and timezone)
+ * loaded once at startup, so known airports never need a network lookup.
+ *
+ * The data is packed into a few primitive arrays instead of one object per airport:
+ * IATA codes are encoded as sorted ints and searched with a binary search, names and
+ * cities share one UTF-8 byte pool, and timezones are deduplicated.
+ */
+public final class AirportReferenceIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(AirportReferenceIndex.class);
+
+    public static final String DEFAULT_LOCATION = "airports/airports.csv";
+
+    // Rough per-array overhead used for the footprint estimate
+    private static final int ARRAY_HEADER_BYTES = 16;
+
+    private final int[] codes;
+    // Airport i: name = pool[stringOffsets[2i], stringOffsets[2i+1]), city = pool[stringOffsets[2i+1], stringOffsets[2i+2])
+    private final int[] stringOffsets;
+    private final byte[] stringPool;
+    private final char[] countries;
+    private final float[] latitudes;
+    private final float[] longitudes;
+    private final short[] zoneIndexes;
+    private final String[] zones;
+    private final Duration loadTime;
+
+    public record Airport(String iataCode, String name, String city, String countryCode,
+                          double latitude, double longitude, String timezone) {
+    }
+
+    private AirportReferenceIndex(List<Airport> airports, Duration loadTime) {
+        List<Airport> sorted = new ArrayList<>(airports);
+        sorted.sort(Comparator.comparingInt(airport -> encode(airport.iataCode())));
+
+        int size = sorted.size();
+        this.codes = new int[size];
+        this.stringOffsets = new int[size * 2 + 1];
+        this.countries = new char[size * 2];
+        this.latitudes = new float[size];
+        this.longitudes = new float[size];
+        this.zoneIndexes = new short[size];
+
+        Map<String, Short> zoneIds = new LinkedHashMap<>();
+        ByteArrayOutputStream pool = new ByteArrayOutputStream(size * 48);
+        for (int i = 0; i < size; i++) {
+            Airport airport = sorted.get(i);
+            codes[i] = encode(airport.iataCode());
+            stringOffsets[2 * i] = pool.size();
+            pool.writeBytes(airport.name().getBytes(StandardCharsets.UTF_8));
+            stringOffsets[2 * i + 1] = pool.size();
+            pool.writeBytes(airport.city().getBytes(StandardCharsets.UTF_8));
+            countries[2 * i] = airport.countryCode().charAt(0);
+            countries[2 * i + 1] = airport.countryCode().charAt(1);
+            latitudes[i] = (float) airport.latitude();
+            longitudes[i] = (float) airport.longitude();
+            zoneIndexes[i] = zoneIds.computeIfAbsent(airport.timezone(), zone -> (short) zoneIds.size());
+        }
+        stringOffsets[size * 2] = pool.size();
+        this.stringPool = pool.toByteArray();
+        this.zones = zoneIds.keySet().toArray(new String[0]);
+        this.loadTime = loadTime;
+    }
+
+    /**
+     * Loads the reference data from a classpath CSV resource. A missing or unreadable resource
+     * results in an empty index, so every airport falls back to the network lookup.
+     */
+    public static AirportReferenceIndex load(String classpathLocation) {
+        long start = System.nanoTime();
+        List<Airport> airports = new ArrayList<>();
+
+        try (InputStream input = AirportReferenceIndex.class.getClassLoader().getResourceAsStream(classpathLocation)) {
+            if (input == null) {
+                logger.warn("Airport reference data '{}' not found on the classpath. All airport names will be looked up remotely.", classpathLocation);
+            } else {
+                readCsv(input, airports);
+            }
+        } catch (IOException e) {
+            logger.error("Could not read airport reference data '{}': {}", classpathLocation, e.getMessage());
+            airports.clear();
+        }
+
+        AirportReferenceIndex index = new AirportReferenceIndex(airports, Duration.ofNanos(System.nanoTime() - start));
+        logger.info("Loaded {} airports from '{}' in {} ms (~{} KB retained)",
+            index.size(), classpathLocation, index.getLoadTime().toMillis(), index.estimatedFootprintBytes() / 1024);
+        return index;
+    }
+
+    private static void readCsv(InputStream input, List<Airport> airports) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+        String line;
+        int lineNumber = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank() || line.startsWith("#")) {
+                continue;
+            }
+            String[] columns = line.split(",", -1);
+            if (columns.length != 7 || !isValidCode(columns[0]) || columns[3].length() != 2) {
+                logger.warn("Skipping malformed airport reference line {}: {}", lineNumber, line);
+                continue;
+            }
+            try {
+                airports.add(new Airport(columns[0], columns[1], columns[2], columns[3],
+                    Double.parseDouble(columns[4]), Double.parseDouble(columns[5]), columns[6]));
+            } catch (NumberFormatException e) {
+                logger.warn("Skipping airport reference line {} with invalid coordinates: {}", lineNumber, line);
+            }
+        }
+    }
+
+    /**
+     * Looks up the full reference entry of an airport.
+     */
+    public Optional<Airport> find(String iataCode) {
+        int i = indexOf(iataCode);
+        if (i < 0) {
+            return Optional.empty();
+        }
+        String countryCode = new String(countries, 2 * i, 2);
+        return Optional.of(new Airport(iataCode.toUpperCase(Locale.ROOT), string(2 * i), string(2 * i + 1), countryCode,
+            latitudes[i], longitudes[i], zones[zoneIndexes[i]]));
+    }
+
+    /**
+     * Looks up only the airport name, or null if the code is not in the reference data.
+     */
+    public String findName(String iataCode) {
+        int i = indexOf(iataCode);
+        return i < 0 ? null : string(2 * i);
+    }
+
+    /**
+     * Airports whose code is the keyword, followed by those whose name or city contains it
+     * (case-insensitive), at most limit in total. Serves airport search while Amadeus is unavailable.
+     */
+    public List<Airport> search(String keyword, int limit) {
+        List<Airport> matches = new ArrayList<>();
+        if (keyword == null || keyword.isBlank()) {
+            return matches;
+        }
+        String normalized = keyword.trim().toLowerCase(Locale.ROOT);
+        find(normalized).ifPresent(matches::add);
+        for (int i = 0; i < codes.length && matches.size() < limit; i++) {
+            if (string(2 * i).toLowerCase(Locale.ROOT).contains(normalized)
+                || string(2 * i + 1).toLowerCase(Locale.ROOT).contains(normalized)) {
+                String code = decode(codes[i]);
+                if (!code.equalsIgnoreCase(normalized)) {
+                    matches.add(find(code).orElseThrow());
+                }
+            }
+        }
+        return matches.size() > limit ? matches.subList(0, limit) : matches;
+    }
+
+    public int size() {
+        return codes.length;
+    }
+
+    public Duration getLoadTime() {
+        return loadTime;
+    }
+
+    /**
+     * Approximate heap retained by the index (arrays plus the deduplicated timezone strings).
+     */
+    public long estimatedFootprintBytes() {
+        long bytes = 8L * ARRAY_HEADER_BYTES
+            + 4L * codes.length
+            + 4L * stringOffsets.length
+            + stringPool.length
+            + 2L * countries.length
+            + 4L * latitudes.length
+            + 4L * longitudes.length
+            + 2L * zoneIndexes.length
+            + 4L * zones.length;
+        for (String zone : zones) {
+            bytes += ARRAY_HEADER_BYTES + 24 + zone.length();
+        }
+        return bytes;
+    }
+
+    private int indexOf(String iataCode) {
+        if (iataCode == null || iataCode.length() != 3) {
+            return -1;
+        }
+        int key = encode(iataCode);
+        return key < 0 ? -1 : Math.max(-1, Arrays.binarySearch(codes, key));
+    }
+
+    private String string(int slot) {
+        int from = stringOffsets[slot];
+        return new String(stringPool, from, stringOffsets[slot + 1] - from, StandardCharsets.UTF_8);
+    }
+
+    private static boolean isValidCode(String code) {
+        return code.length() == 3 && encode(code) >= 0;
+    }
+
+    private static String decode(int key) {
+        char[] code = new char[3];
+        for (int i = 2; i >= 0; i--) {
+            code[i] = (char) ('A' + key % 26);
+            key /= 26;
+        }
+        return new String(code);
+    }
+
+    // Packs a three letter code into an int (base 26), or -1 if it contains anything else
+    private static int encode(String code) {
+        int value = 0;
+        for (int i = 0; i < 3; i++) {
+            char c = Character.toUpperCase(code.charAt(i));
+            if (c < 'A' || c > 'Z') {
+                return -1;
+            }
+            value = value * 26 + (c - 'A');
+        }
+        return value;
+    }
+}
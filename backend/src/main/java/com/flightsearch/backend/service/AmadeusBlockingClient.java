@@ -0,0 +1,129 @@
+package com.flightsearch.backend.service;
+
+import com.flightsearch.backend.config.AmadeusConfig;
+
+import io.micrometer.observation.ObservationRegistry;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.web.client.RestClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import org.springframework.web.util.UriBuilder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.function.Function;
+
+/**
+ * Amadeus Blocking Client
+ * The Amadeus client of the virtual threads execution mode: a RestClient on the JDK HttpClient,
+ * whose calls block the calling (virtual) thread until the response has been read. The JDK
+ * client keeps its own connection pool, and its internal tasks run on virtual threads too.
+ * Connect and response timeouts and HTTP/2 follow amadeus.api.http.*; the pool size and gzip
+ * do not apply to it.
+ *
+ * Error responses are thrown as the same WebClientResponseException types the reactive
+ * WebClient raises, so token renewal, rate limiting, circuit breaking and the controller's
+ * error mapping treat both modes alike. Calls are observed like the WebClient's, so they show
+ * up as client spans (and http.client.requests) in the same way.
+ */
+public class AmadeusBlockingClient {
+
+    private static final Logger logger = LoggerFactory.getLogger(AmadeusBlockingClient.class);
+
+    /**
+     * Reads a response body; the stream is closed afterwards.
+     */
+    @FunctionalInterface
+    public interface BodyReader<T> {
+        T read(InputStream body) throws IOException;
+    }
+
+    private final ExecutorService executor;
+    private final HttpClient httpClient;
+    private final RestClient restClient;
+    private final RestClient searchClient;
+    private final ObservationRegistry observationRegistry;
+
+    public AmadeusBlockingClient(AmadeusConfig.Http settings, String baseUrl, ThreadFactory threadFactory,
+            ObservationRegistry observationRegistry) {
+        this.observationRegistry = observationRegistry;
+        this.executor = Executors.newThreadPerTaskExecutor(threadFactory);
+        // As with the reactive client, plain http stays on HTTP/1.1 (no h2c upgrade attempts)
+        boolean http2 = settings.isHttp2() && baseUrl != null && baseUrl.startsWith("https:");
+        this.httpClient = HttpClient.newBuilder()
+            .connectTimeout(settings.getConnectTimeout())
+            .version(http2 ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1)
+            .followRedirects(HttpClient.Redirect.NEVER)
+            .executor(executor)
+            .build();
+        // Same connections, only the response timeout differs: flight searches take much longer
+        this.restClient = restClient(baseUrl, settings.getResponseTimeout());
+        this.searchClient = restClient(baseUrl, settings.getSearchResponseTimeout());
+        logger.info("Amadeus blocking HTTP client: connect timeout {}, response timeout {}, HTTP/2 {}",
+            settings.getConnectTimeout(), settings.getResponseTimeout(), http2);
+    }
+
+    private RestClient restClient(String baseUrl, Duration responseTimeout) {
+        JdkClientHttpRequestFactory requestFactory = new JdkClientHttpRequestFactory(httpClient);
+        requestFactory.setReadTimeout(responseTimeout);
+        return RestClient.builder()
+            .baseUrl(baseUrl)
+            .requestFactory(requestFactory)
+            .observationRegistry(observationRegistry)
+            .build();
+    }
+
+    /**
+     * GET with the regular response timeout (locations), the body read by the given reader.
+     */
+    public <T> T get(Function<UriBuilder, URI> uri, String token, BodyReader<T> reader) {
+        return get(restClient, uri, token, reader);
+    }
+
+    /**
+     * GET with the flight search response timeout, the body read by the given reader.
+     */
+    public <T> T search(Function<UriBuilder, URI> uri, String token, BodyReader<T> reader) {
+        return get(searchClient, uri, token, reader);
+    }
+
+    private <T> T get(RestClient client, Function<UriBuilder, URI> uri, String token, BodyReader<T> reader) {
+        return client.get()
+            .uri(uri)
+            .header(HttpHeaders.AUTHORIZATION, "Bearer " + token)
+            .exchange((request, response) -> {
+                if (response.getStatusCode().isError()) {
+                    throw responseException(request, response);
+                }
+                try (InputStream body = response.getBody()) {
+                    return reader.read(body);
+                }
+            });
+    }
+
+    private static WebClientResponseException responseException(HttpRequest request, ClientHttpResponse response)
+            throws IOException {
+        byte[] body;
+        try (InputStream stream = response.getBody()) {
+            body = stream.readAllBytes();
+        }
+        return WebClientResponseException.create(response.getStatusCode(), response.getStatusText(),
+            response.getHeaders(), body, null, request);
+    }
+
+    public void close() {
+        httpClient.close();
+        executor.close();
+    }
+}
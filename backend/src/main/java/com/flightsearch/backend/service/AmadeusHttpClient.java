@@ -0,0 +1,108 @@
+package com.flightsearch.backend.service;
+
+import com.flightsearch.backend.config.AmadeusConfig;
+
+import io.netty.channel.ChannelOption;
+import io.netty.handler.timeout.WriteTimeoutHandler;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.client.reactive.ClientHttpConnector;
+import org.springframework.http.client.reactive.ClientHttpRequest;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+
+import reactor.core.publisher.Mono;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.http.client.HttpClientRequest;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Amadeus HTTP Client
+ * The Reactor Netty client behind the Amadeus WebClient, set up from amadeus.api.http.*: a
+ * dedicated connection pool (size, pending acquire limits, idle and lifetime eviction),
+ * connect and write timeouts, gzip, keep-alive and HTTP/2 over TLS. Response timeouts are set
+ * per call, as flight searches take much longer than token or location calls.
+ *
+ * With metrics on, pool and client meters (reactor.netty.connection.provider.*,
+ * reactor.netty.http.client.*) go to the global registry, which Spring Boot exports. The uri
+ * tag holds the path only, so query parameters do not create a meter per search.
+ */
+public class AmadeusHttpClient {
+
+    private static final Logger logger = LoggerFactory.getLogger(AmadeusHttpClient.class);
+
+    private final ConnectionProvider connectionProvider;
+    private final HttpClient httpClient;
+
+    public AmadeusHttpClient(AmadeusConfig.Http settings, String baseUrl) {
+        this.connectionProvider = ConnectionProvider.builder("amadeus")
+            .maxConnections(Math.max(1, settings.getMaxConnections()))
+            .pendingAcquireMaxCount(settings.getPendingAcquireMaxCount())
+            .pendingAcquireTimeout(settings.getPendingAcquireTimeout())
+            .maxIdleTime(settings.getMaxIdleTime())
+            .maxLifeTime(settings.getMaxLifeTime())
+            .evictInBackground(settings.getEvictionInterval())
+            .metrics(settings.isMetrics())
+            .build();
+
+        boolean tls = baseUrl != null && baseUrl.startsWith("https:");
+        HttpClient client = HttpClient.create(connectionProvider)
+            .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) settings.getConnectTimeout().toMillis())
+            .option(ChannelOption.SO_KEEPALIVE, true)
+            .keepAlive(true)
+            .compress(settings.isCompression())
+            .responseTimeout(settings.getResponseTimeout())
+            .doOnConnected(connection -> connection.addHandlerLast(
+                new WriteTimeoutHandler(settings.getWriteTimeout().toMillis(), TimeUnit.MILLISECONDS)));
+        if (settings.isHttp2() && tls) {
+            // Negotiated with ALPN; servers without HTTP/2 are spoken to in HTTP/1.1
+            client = client.protocol(HttpProtocol.H2, HttpProtocol.HTTP11).secure();
+        }
+        if (settings.isMetrics()) {
+            client = client.metrics(true, AmadeusHttpClient::pathOnly);
+        }
+        this.httpClient = client;
+        logger.info("Amadeus HTTP client: {} connections, connect timeout {}, response timeout {}, gzip {}, HTTP/2 {}",
+            settings.getMaxConnections(), settings.getConnectTimeout(), settings.getResponseTimeout(),
+            settings.isCompression(), settings.isHttp2() && tls);
+    }
+
+    public ClientHttpConnector connector() {
+        return new ReactorClientHttpConnector(httpClient);
+    }
+
+    /**
+     * Per call response timeout, for WebClient's httpRequest(...).
+     */
+    public static Consumer<ClientHttpRequest> responseTimeout(Duration timeout) {
+        return request -> {
+            HttpClientRequest nativeRequest = request.getNativeRequest();
+            nativeRequest.responseTimeout(timeout);
+        };
+    }
+
+    /**
+     * Loads the event loops, the DNS resolver and the TLS and codec classes ahead of the first call.
+     */
+    public Mono<Void> warmUp() {
+        return httpClient.warmup();
+    }
+
+    public void close() {
+        connectionProvider.disposeLater()
+            .doOnError(error -> logger.warn("Closing the Amadeus connection pool failed: {}", error.getMessage()))
+            .onErrorComplete()
+            .block(Duration.ofSeconds(5));
+    }
+
+    // "/v2/shopping/flight-offers?originLocationCode=..." -> "/v2/shopping/flight-offers"
+    private static String pathOnly(String uri) {
+        int query = uri.indexOf('?');
+        return query < 0 ? uri : uri.substring(0, query);
+    }
+}
@@ -1,11 +1,19 @@
 package com.flightsearch.backend.service;
 
 import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 
 import com.flightsearch.backend.config.AmadeusConfig;
 import com.flightsearch.backend.dto.AirlineDTO;
 import com.flightsearch.backend.dto.AirportDTO;
+import com.flightsearch.backend.dto.BatchSearchQueryDTO;
+import com.flightsearch.backend.dto.BatchSearchResultDTO;
+import com.flightsearch.backend.dto.FareMatrixCellDTO;
+import com.flightsearch.backend.dto.FlightSearchEventDTO;
+import com.flightsearch.backend.dto.FlightSearchPageDTO;
+import com.flightsearch.backend.dto.GroupedFlightOfferDTO;
 import com.flightsearch.backend.dto.FlightSearchResultDTO;
 import com.flightsearch.backend.dto.FlightSegmentDTO;
 import com.flightsearch.backend.dto.ItineraryDTO;
@@ -15,43 +23,118 @@ import com.flightsearch.backend.dto.FlightDetailsResponseDTO;
 import com.flightsearch.backend.dto.StopDTO; 
 import com.flightsearch.backend.dto.FareDetailDTO;
 import com.flightsearch.backend.dto.AmenityDTO; 
+import com.flightsearch.backend.dto.amadeus.AmadeusDictionaries;
+import com.flightsearch.backend.dto.amadeus.AmadeusFlightOffer;
+import com.flightsearch.backend.dto.amadeus.AmadeusLocation;
+import com.flightsearch.backend.dto.amadeus.AmadeusLocationsResponse;
+import com.flightsearch.backend.dto.amadeus.AmadeusPrice;
+import com.flightsearch.backend.dto.amadeus.AmadeusTravelerPricing;
 
 
+import jakarta.annotation.PreDestroy;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import io.micrometer.observation.contextpropagation.ObservationThreadLocalAccessor;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.io.buffer.DataBuffer;
 import org.springframework.http.HttpHeaders;
-import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import org.springframework.web.util.UriBuilder;
 
+import reactor.core.Exceptions;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.context.ContextView;
+
+import java.net.URI;
 
 import java.time.Duration;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
-import java.util.Base64;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.Objects; 
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 @Service
 public class AmadeusService {
 
     private static final Logger logger = LoggerFactory.getLogger(AmadeusService.class);
 
+    private final AmadeusHttpClient httpClient;
     private final WebClient webClient;
     private final AmadeusConfig amadeusConfig;
-    private String accessToken;
+    private final AmadeusTokenManager tokenManager;
+    private final AirportNameResolver airportNameResolver;
+    private final AirportReferenceIndex airportReferenceIndex;
+    private final MetroAreas metroAreas;
+    private final RequestCoalescer<FlightSearchKey, FlightSearchResultCache.CachedSearch> searchCoalescer;
+    // Events of streamed searches in flight, replayed to every stream of the same key
+    private final Map<FlightSearchKey, Flux<FlightSearchEventDTO>> streamedSearches = new ConcurrentHashMap<>();
+    private final FlightSearchResultCache searchResultCache;
+    private final SearchSessionStore searchSessions;
+    private final PriorityWorkQueue batchQueue;
+    private final OutboundLimiter flightOffersLimiter;
+    private final OutboundLimiter locationsLimiter;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final FlightOfferStreamDecoder offerStreamDecoder;
+    // Trace spans for Amadeus calls and airport pairs (no-op unless tracing is set up)
+    private final ObservationRegistry observationRegistry;
+
+    // Virtual threads execution mode only (null otherwise): blocking Amadeus calls run on
+    // virtual threads of this factory, through the blocking client
+    private final ThreadFactory virtualThreadFactory;
+    private final Scheduler virtualThreadScheduler;
+    private final AmadeusBlockingClient blockingClient;
+
+    private final Timer fanOutSucceeded;
+    private final Timer fanOutFailed;
+    private final Counter failedPairs;
+    private final Timer searchMapping;
+    private final Timer detailsMapping;
+    private final Timer localAirportNames;
+    private final Timer remoteAirportNames;
 
     // --- CACHE FOR FLIGHT OFFERS ---
-    // Stores the raw JsonNode of the flight offer by its Amadeus 'id'
-    private final Map<String, JsonNode> flightOffersCache = new ConcurrentHashMap<>();
+    // Stores the full flight offer by its Amadeus 'id', encoded (bounded and expiring)
+    private final FlightOfferCache flightOffersCache;
     // --- END CACHE ---
 
     // Static maps for airline and aircraft names
@@ -90,38 +173,119 @@ public class AmadeusService {
     }
 
 
-    public AmadeusService(AmadeusConfig amadeusConfig) {
+    public AmadeusService(AmadeusConfig amadeusConfig, MeterRegistry meterRegistry) {
+        this(amadeusConfig, meterRegistry, ObservationRegistry.NOOP);
+    }
+
+    @Autowired
+    public AmadeusService(AmadeusConfig amadeusConfig, MeterRegistry meterRegistry, ObservationRegistry observationRegistry) {
         this.amadeusConfig = amadeusConfig;
+        this.observationRegistry = observationRegistry;
+        this.httpClient = new AmadeusHttpClient(amadeusConfig.getHttp(), amadeusConfig.getBaseUrl());
+        // Every Amadeus call (token, locations, flight offers) gets a client span, with the
+        // trace context propagated to Amadeus in a traceparent header
         this.webClient = WebClient.builder()
             .baseUrl(amadeusConfig.getBaseUrl())
+            .clientConnector(httpClient.connector())
+            .observationRegistry(observationRegistry)
             .build();
+        this.airportNameResolver = new AirportNameResolver(this::fetchAirportName, amadeusConfig.getAirportCache(), meterRegistry);
+        this.airportReferenceIndex = AirportReferenceIndex.load(AirportReferenceIndex.DEFAULT_LOCATION);
+        this.metroAreas = MetroAreas.load(MetroAreas.DEFAULT_LOCATION);
+        this.searchCoalescer = new RequestCoalescer<>("flight.search", meterRegistry);
+        this.searchResultCache = new FlightSearchResultCache(amadeusConfig.getSearchCache(), meterRegistry);
+        this.searchSessions = new SearchSessionStore(amadeusConfig.getSessions(), meterRegistry);
+        this.batchQueue = new PriorityWorkQueue("flight.batch", amadeusConfig.getBatch().getConcurrency(), meterRegistry);
+        AmadeusConfig.RateLimit rateLimit = amadeusConfig.getRateLimit();
+        this.flightOffersLimiter = new OutboundLimiter("amadeus.flight-offers", rateLimit, rateLimit.getFlightOffers(), meterRegistry);
+        this.locationsLimiter = new OutboundLimiter("amadeus.locations", rateLimit, rateLimit.getLocations(), meterRegistry);
+        this.tokenManager = new AmadeusTokenManager(webClient, amadeusConfig,
+            new OutboundLimiter("amadeus.token", rateLimit, rateLimit.getToken(), meterRegistry), meterRegistry);
+        this.flightOffersCache = new FlightOfferCache(amadeusConfig.getOfferCache(), meterRegistry);
+        this.offerStreamDecoder = new FlightOfferStreamDecoder(objectMapper);
+        if (amadeusConfig.getExecution().isVirtualThreads()) {
+            this.virtualThreadFactory = Thread.ofVirtual().name("amadeus-vt-", 0).factory();
+            this.virtualThreadScheduler = Schedulers.fromExecutorService(
+                Executors.newThreadPerTaskExecutor(virtualThreadFactory), "amadeus-vt");
+            this.blockingClient = new AmadeusBlockingClient(amadeusConfig.getHttp(), amadeusConfig.getBaseUrl(),
+                virtualThreadFactory, observationRegistry);
+            logger.info("Execution mode: blocking Amadeus calls on virtual threads");
+        } else {
+            this.virtualThreadFactory = null;
+            this.virtualThreadScheduler = null;
+            this.blockingClient = null;
+        }
+
+        this.fanOutSucceeded = fanOutTimer(meterRegistry, "success");
+        this.fanOutFailed = fanOutTimer(meterRegistry, "failure");
+        this.failedPairs = Counter.builder("flight.search.fanout.pair.failures")
+            .description("Airport pairs of multi airport searches that failed or missed the deadline, left out of the merge")
+            .register(meterRegistry);
+        this.searchMapping = mappingTimer(meterRegistry, "search");
+        this.detailsMapping = mappingTimer(meterRegistry, "details");
+        this.localAirportNames = airportNamesTimer(meterRegistry, false);
+        this.remoteAirportNames = airportNamesTimer(meterRegistry, true);
+
+        // Startup cost and footprint of the embedded airport data
+        Gauge.builder("airports.reference.entries", airportReferenceIndex, AirportReferenceIndex::size)
+            .description("Airports in the embedded reference data")
+            .register(meterRegistry);
+        Gauge.builder("airports.reference.footprint", airportReferenceIndex, AirportReferenceIndex::estimatedFootprintBytes)
+            .description("Estimated heap retained by the embedded airport reference data")
+            .baseUnit("bytes")
+            .register(meterRegistry);
+        Gauge.builder("airports.reference.load.time", airportReferenceIndex, index -> index.getLoadTime().toNanos() / 1_000_000.0)
+            .description("Time spent loading the embedded airport reference data at startup")
+            .baseUnit("milliseconds")
+            .register(meterRegistry);
+    }
+
+    private static Timer fanOutTimer(MeterRegistry meterRegistry, String outcome) {
+        return Timer.builder("flight.search.fanout")
+            .description("Multi airport searches, all airport pairs searched and merged")
+            .tag("outcome", outcome)
+            .publishPercentileHistogram()
+            .register(meterRegistry);
+    }
+
+    private static Timer airportNamesTimer(MeterRegistry meterRegistry, boolean remote) {
+        return Timer.builder("airports.names.resolve")
+            .description("Resolving the airport names of a search or of flight details, i.e. the airport fan-out; "
+                + "remote=true when some codes had to be looked up")
+            .tag("remote", String.valueOf(remote))
+            .publishPercentileHistogram()
+            .register(meterRegistry);
+    }
+
+    private static Timer mappingTimer(MeterRegistry meterRegistry, String type) {
+        return Timer.builder("flight.mapping")
+            .description("Mapping one Amadeus flight offer to search results or to flight details")
+            .tag("type", type)
+            .publishPercentileHistogram()
+            .register(meterRegistry);
     }
 
     /**
      * Get Access Token
-     * Amadeus API requires OAuth2 authentication
+     * Amadeus API requires OAuth2 authentication. The token is cached by the token manager
+     * and only requested again when it is about to expire.
      */
     public Mono<String> getAccessToken() {
-        logger.info("Getting access token from Amadeus...");
-
-        String credentials = Base64.getEncoder()
-            .encodeToString((amadeusConfig.getKey() + ":" + amadeusConfig.getSecret()).getBytes());
-
-        return webClient.post()
-            .uri("/v1/security/oauth2/token")
-            .header(HttpHeaders.AUTHORIZATION, "Basic " + credentials)
-            .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_FORM_URLENCODED_VALUE)
-            .bodyValue("grant_type=client_credentials")
-            .retrieve()
-            .bodyToMono(JsonNode.class)
-            .map(response -> {
-                accessToken = response.get("access_token").asText();
-                logger.info("Successfully got access token: {}", accessToken.substring(0, 10) + "...");
-                return accessToken;
-            })
-            .doOnError(error -> {
-                logger.error("Failed to get access token: {}", error.getMessage());
-            });
+        return tokenManager.getAccessToken();
+    }
+
+    /**
+     * Runs an authenticated Amadeus call. If Amadeus rejects the token with 401
+     * the token is invalidated and the call is retried once with a fresh one.
+     */
+    private <T> Mono<T> withAccessToken(Function<String, Mono<T>> call) {
+        return ServerTiming.timed(ServerTiming.TOKEN, tokenManager.getAccessToken())
+            .flatMap(token -> call.apply(token)
+                .onErrorResume(WebClientResponseException.Unauthorized.class, error -> {
+                    logger.warn("Amadeus rejected the access token ({}). Retrying once with a new token.", error.getStatusCode());
+                    tokenManager.invalidate(token);
+                    return ServerTiming.timed(ServerTiming.TOKEN, tokenManager.getAccessToken()).flatMap(call);
+                }));
     }
 
     /**
@@ -131,29 +295,209 @@ public class AmadeusService {
     public Mono<JsonNode> searchAirportsSimple(String keyword) {
         logger.info("Searching for airports with keyword: {}", keyword);
 
-        return getAccessToken()
-            .flatMap(token -> {
-                logger.info("Using token to search airports...");
-
-                return webClient.get()
-                    .uri(uriBuilder -> uriBuilder
-                        .path("/v1/reference-data/locations")
-                        .queryParam("subType", "AIRPORT")
-                        .queryParam("keyword", keyword)
-                        .queryParam("page[limit]", 5)
-                        .build())
-                    .header(HttpHeaders.AUTHORIZATION, "Bearer " + token)
-                    .retrieve()
-                    .bodyToMono(JsonNode.class);
-            })
+        return searchLocations(keyword, JsonNode.class)
             .doOnSuccess(response -> {
                 logger.info("Successfully got airport search response");
             })
+            .onErrorResume(UpstreamUnavailableException.class, error -> {
+                // Fallback while the locations circuit is open: the embedded reference data
+                logger.warn("Airport search unavailable ({}). Answering from the airport reference data.", error.getMessage());
+                return Mono.just(localAirportSearch(keyword));
+            })
             .doOnError(error -> {
                 logger.error("Airport search failed: {}", error.getMessage());
             });
     }
 
+    // Same shape as the Amadeus locations response, so clients read both alike
+    private JsonNode localAirportSearch(String keyword) {
+        ObjectNode response = objectMapper.createObjectNode();
+        ArrayNode data = response.putArray("data");
+        for (AirportReferenceIndex.Airport airport : airportReferenceIndex.search(keyword, 5)) {
+            ObjectNode location = data.addObject();
+            location.put("type", "location");
+            location.put("subType", "AIRPORT");
+            location.put("name", airport.name());
+            location.put("iataCode", airport.iataCode());
+            ObjectNode address = location.putObject("address");
+            address.put("cityName", airport.city());
+            address.put("countryCode", airport.countryCode());
+        }
+        response.putObject("meta").put("source", "reference-data");
+        return response;
+    }
+
+    // /v1/reference-data/locations call, bound to the given type
+    private <T> Mono<T> searchLocations(String keyword, Class<T> type) {
+        Function<UriBuilder, URI> uri = uriBuilder -> uriBuilder
+            .path("/v1/reference-data/locations")
+            .queryParam("subType", "AIRPORT")
+            .queryParam("keyword", keyword)
+            .queryParam("page[limit]", 5)
+            .build();
+        return withAccessToken(token -> {
+            logger.info("Using token to search airports...");
+
+            if (blockingClient != null) {
+                return locationsLimiter.execute(() -> onVirtualThread(
+                    () -> blockingClient.get(uri, token, body -> objectMapper.readValue(body, type))));
+            }
+            return locationsLimiter.execute(() -> webClient.get()
+                .uri(uri)
+                .httpRequest(AmadeusHttpClient.responseTimeout(amadeusConfig.getHttp().getResponseTimeout()))
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + token)
+                .retrieve()
+                .bodyToMono(type));
+        });
+    }
+
+    /**
+     * Airport Names
+     * Resolves IATA codes to airport names. Codes in the embedded reference data are answered
+     * locally; only unknown codes go through the shared, cached remote resolver.
+     */
+    public Mono<Map<String, String>> resolveAirportNames(Set<String> iataCodes) {
+        return Mono.defer(() -> {
+            long startedAt = System.nanoTime();
+            Map<String, String> airportNames = new HashMap<>();
+            Set<String> unknownCodes = new HashSet<>();
+            for (String iataCode : iataCodes) {
+                String name = airportReferenceIndex.findName(iataCode);
+                if (name != null) {
+                    airportNames.put(iataCode, name);
+                } else {
+                    unknownCodes.add(iataCode);
+                }
+            }
+
+            if (unknownCodes.isEmpty()) {
+                localAirportNames.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+                return Mono.just(airportNames);
+            }
+            logger.debug("Airport codes not in the reference data, resolving remotely: {}", unknownCodes);
+            Mono<Map<String, String>> resolved = virtualThreadFactory != null
+                ? onVirtualThread(() -> resolveAirportNamesScoped(unknownCodes))
+                : airportNameResolver.resolveAll(unknownCodes);
+            return resolved
+                .map(resolvedNames -> {
+                    airportNames.putAll(resolvedNames);
+                    return airportNames;
+                })
+                .doFinally(signal -> remoteAirportNames.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS));
+        });
+    }
+
+    /**
+     * Virtual threads mode airport fan-out: every unknown code is looked up as a blocking call
+     * on its own virtual thread, in a scope that ends with this method. Lookups not done by the
+     * fan-out deadline are cancelled and fall back to the IATA code, as failed lookups do.
+     */
+    private Map<String, String> resolveAirportNamesScoped(Set<String> iataCodes) throws InterruptedException {
+        List<String> codes = new ArrayList<>(iataCodes);
+        List<Callable<String>> lookups = new ArrayList<>();
+        for (String code : codes) {
+            lookups.add(() -> airportNameResolver.resolve(code).block());
+        }
+
+        Duration deadline = amadeusConfig.getExecution().getFanOutDeadline();
+        Map<String, String> names = new HashMap<>();
+        try (ExecutorService scope = Executors.newThreadPerTaskExecutor(virtualThreadFactory)) {
+            List<Future<String>> results = scope.invokeAll(lookups, deadline.toNanos(), TimeUnit.NANOSECONDS);
+            for (int i = 0; i < results.size(); i++) {
+                String code = codes.get(i);
+                try {
+                    String name = results.get(i).get();
+                    names.put(code, name != null ? name : code);
+                } catch (CancellationException e) {
+                    logger.warn("Airport name lookup for {} did not finish within {}. Falling back to IATA code.", code, deadline);
+                    names.put(code, code);
+                } catch (ExecutionException e) {
+                    logger.error("Airport name lookup for {} failed: {}. Falling back to IATA code.", code, e.getCause().getMessage());
+                    names.put(code, code);
+                }
+            }
+        }
+        return names;
+    }
+
+    public AirportReferenceIndex getAirportReferenceIndex() {
+        return airportReferenceIndex;
+    }
+
+    public AirportNameResolver getAirportNameResolver() {
+        return airportNameResolver;
+    }
+
+    // Loader for the airport name cache: one /v1/reference-data/locations call per unknown code
+    private Mono<Optional<String>> fetchAirportName(String iataCode) {
+        logger.info("Searching for airports with keyword: {}", iataCode);
+        return searchLocations(iataCode, AmadeusLocationsResponse.class)
+            .map(locations -> {
+                String airportName = extractAirportName(locations, iataCode);
+                if (airportName != null) {
+                    logger.debug("Fetched full airport name for {}: {}", iataCode, airportName);
+                } else {
+                    logger.warn("Could not find a suitable name for airport IATA: {}", iataCode);
+                }
+                return Optional.ofNullable(airportName);
+            })
+            .doOnError(error -> logger.error("Airport search failed: {}", error.getMessage()));
+    }
+
+    /**
+     * Picks the airport name out of a locations response, preferring the entry whose
+     * IATA code matches. Falls back to the city name and then to the detailed name.
+     */
+    private String extractAirportName(AmadeusLocationsResponse locations, String iataCode) {
+        if (locations == null || locations.data() == null || locations.data().isEmpty()) {
+            return null;
+        }
+        AmadeusLocation airportData = locations.data().get(0);
+        for (AmadeusLocation candidate : locations.data()) {
+            if (iataCode.equalsIgnoreCase(candidate.iataCode())) {
+                airportData = candidate;
+                break;
+            }
+        }
+
+        String airportName = airportData.name();
+        if (airportName == null) {
+            airportName = airportData.cityName();
+        }
+        if (airportName == null) {
+            String detailedName = airportData.detailedName();
+            if (detailedName != null && detailedName.contains(":")) {
+                airportName = detailedName.substring(detailedName.indexOf(":") + 1).trim();
+            } else {
+                airportName = detailedName;
+            }
+        }
+        return airportName;
+    }
+
+    /**
+     * Adds the departure and arrival IATA codes of every segment of a flight offer to the given set.
+     */
+    public void collectAirportCodes(AmadeusFlightOffer offer, Set<String> airportCodes) {
+        if (offer.itineraries() == null) {
+            return;
+        }
+        for (AmadeusFlightOffer.Itinerary itinerary : offer.itineraries()) {
+            if (itinerary.segments() != null) {
+                for (AmadeusFlightOffer.Segment segment : itinerary.segments()) {
+                    String departureCode = segment.departureIataCode();
+                    if (departureCode != null) {
+                        airportCodes.add(departureCode);
+                    }
+                    String arrivalCode = segment.arrivalIataCode();
+                    if (arrivalCode != null) {
+                        airportCodes.add(arrivalCode);
+                    }
+                }
+            }
+        }
+    }
+
     /**
      * Flight Search
      * Search for flights based on criteria
@@ -161,370 +505,1071 @@ public class AmadeusService {
 
     public Mono<List<FlightSearchResultDTO>> searchFlights(String origin, String destination, String departureDate,
                                                      Integer adults, String currency, Boolean nonStop, String returnDate) {
-        logger.info("Searching flights from {} to {} on {}, {} adults, currency: {}, nonStop: {}, returnDate: {}", origin, destination, departureDate, adults, currency, nonStop, returnDate);
+        return searchFlights(origin, destination, departureDate, adults, currency, nonStop, returnDate, null);
+    }
 
-        return getAccessToken()
-            .flatMap(token -> {
-                logger.info("Using token to search flights...");
+    /**
+     * @param maxResults Offers to ask Amadeus for (1 to 250); null for the configured default
+     */
+    public Mono<List<FlightSearchResultDTO>> searchFlights(String origin, String destination, String departureDate,
+                                                     Integer adults, String currency, Boolean nonStop, String returnDate,
+                                                     Integer maxResults) {
+        logger.info("Searching flights from {} to {} on {}, {} adults, currency: {}, nonStop: {}, returnDate: {}, max: {}", origin, destination, departureDate, adults, currency, nonStop, returnDate, maxResults);
+
+        return Mono.defer(() -> {
+            FlightSearchKey searchKey = FlightSearchKey.of(origin, destination, departureDate, adults, currency, nonStop, returnDate, resolveMaxResults(maxResults));
+            return searchAllAirports(searchKey).map(FlightSearchResultCache.CachedSearch::results);
+        });
+    }
 
-                return webClient.get()
-                    .uri(uriBuilder -> {
-                        var builder = uriBuilder
-                            .path("/v2/shopping/flight-offers")
-                            .queryParam("originLocationCode", origin)
-                            .queryParam("destinationLocationCode", destination)
-                            .queryParam("departureDate", departureDate)
-                            .queryParam("adults", adults)
-                            .queryParam("currencyCode", currency)
-                            .queryParam("nonStop", nonStop)
-                            .queryParam("max", 5);
-                        if (returnDate != null && !returnDate.isEmpty()) {
-                            builder.queryParam("returnDate", returnDate);
-                        }
-                        return builder.build();
-                    })
-                    .header(HttpHeaders.AUTHORIZATION, "Bearer " + token)
-                    .retrieve()
-                    .bodyToMono(JsonNode.class)
-                    .doOnSuccess(response -> logger.info("Successfully received raw flight search response"))
-                    .doOnError(error -> logger.error("Raw flight search failed: {}", error.getMessage()))
-                    .flatMap(rawFlightResponse -> {
-
-                        JsonNode dataNodeForCaching = rawFlightResponse.get("data");
-                        if (dataNodeForCaching != null && dataNodeForCaching.isArray()) {
-                            for (JsonNode offerToCache : dataNodeForCaching) {
-                                if (offerToCache.has("id")) {
-                                    String amadeusOfferId = offerToCache.get("id").asText();
-                                    flightOffersCache.put(amadeusOfferId, offerToCache);
-                                    logger.debug("Cached flight offer with ID: {}", amadeusOfferId);
-                                }
-                            }
-                        } else {
-                             logger.warn("No 'data' found in raw flight response for caching purposes.");
-                        }
+    /**
+     * Same search, as the ready to write response body. Cached searches keep their serialized
+     * body (and gzip variant, once asked for), so serving one again costs no serialization at
+     * all. Searches merged from several airport pairs are merged per request and not cached,
+     * so their body is the plain JSON, untagged and not compressed.
+     */
+    public Mono<SerializedResults> searchFlightsSerialized(String origin, String destination, String departureDate,
+                                                           Integer adults, String currency, Boolean nonStop, String returnDate,
+                                                           Integer maxResults) {
+        logger.info("Searching flights from {} to {} on {}, {} adults, currency: {}, nonStop: {}, returnDate: {}, max: {}", origin, destination, departureDate, adults, currency, nonStop, returnDate, maxResults);
+
+        return Mono.defer(() -> {
+            FlightSearchKey searchKey = FlightSearchKey.of(origin, destination, departureDate, adults, currency, nonStop, returnDate, resolveMaxResults(maxResults));
+            boolean merged = pairKeys(searchKey).size() > 1;
+            return searchAllAirports(searchKey).map(search -> merged
+                ? SerializedResults.untagged(search.results(), objectMapper)
+                : search.serialized().get(objectMapper));
+        });
+    }
 
-                        Set<String> uniqueAirportCodes = new HashSet<>();
-                        JsonNode dataNode = rawFlightResponse.get("data");
-                        if (dataNode != null && dataNode.isArray()) {
-                            for (JsonNode offer : dataNode) {
-                                JsonNode itineraries = offer.get("itineraries");
-                                if (itineraries != null && itineraries.isArray()) {
-                                    for (JsonNode itinerary : itineraries) {
-                                        JsonNode segmentsArray = itinerary.get("segments");
-                                        if (segmentsArray != null && segmentsArray.isArray()) {
-                                            for (JsonNode segment : segmentsArray) {
-                                                if (segment.has("departure") && segment.get("departure").has("iataCode")) {
-                                                    uniqueAirportCodes.add(segment.get("departure").get("iataCode").asText());
-                                                }
-                                                if (segment.has("arrival") && segment.get("arrival").has("iataCode")) {
-                                                    uniqueAirportCodes.add(segment.get("arrival").get("iataCode").asText());
-                                                }
-                                            }
-                                        }
-                                    }
-                                }
-                            }
-                        }
+    /**
+     * Streaming Flight Search
+     * Emits each result as soon as its offer is read from the Amadeus response, instead of
+     * after the whole response is mapped and every airport name resolved. The results come
+     * with IATA codes in place of names; one "names" event with the airport and airline names
+     * follows once they are known, then a "complete" event. Cached results are emitted named,
+     * without a "names" event.
+     *
+     * The search goes through the search coalescer like a regular one and is cached when done.
+     * Streams of the same key share it and get all of its events, from the start. A stream
+     * that joins a regular search already running gets its results, named, once it is done.
+     */
+    public Flux<FlightSearchEventDTO> streamFlights(String origin, String destination, String departureDate,
+                                                    Integer adults, String currency, Boolean nonStop, String returnDate,
+                                                    Integer maxResults) {
+        logger.info("Streaming flights from {} to {} on {}, {} adults, currency: {}, nonStop: {}, returnDate: {}, max: {}", origin, destination, departureDate, adults, currency, nonStop, returnDate, maxResults);
+
+        return Flux.defer(() -> {
+            FlightSearchKey searchKey = FlightSearchKey.of(origin, destination, departureDate, adults, currency, nonStop, returnDate, resolveMaxResults(maxResults));
+
+            FlightSearchResultCache.Hit cached = searchResultCache.lookup(searchKey);
+            if (cached != null) {
+                flightOffersCache.putAll(cached.search().offers());
+                if (cached.stale()) {
+                    revalidateInBackground(searchKey);
+                }
+                List<FlightSearchResultDTO> results = cached.search().results();
+                return Flux.fromIterable(results)
+                    .map(result -> new FlightSearchEventDTO(FlightSearchEventDTO.RESULT, result))
+                    .concatWithValues(completeEvent(results.size(), cached.search().index().offerCount(), true));
+            }
+
+            return streamedSearches.computeIfAbsent(searchKey, this::streamedSearch);
+        });
+    }
 
-                        Map<String, String> fullAirportNamesMap = new ConcurrentHashMap<>();
+    // The events of one search, started by the first subscriber and kept for later ones until it is done
+    private Flux<FlightSearchEventDTO> streamedSearch(FlightSearchKey searchKey) {
+        Sinks.Many<FlightSearchEventDTO> events = Sinks.many().replay().all();
+        SearchListener listener = new SearchListener() {
+            @Override
+            public void onResult(FlightSearchResultDTO result) {
+                // A copy: the result itself is named in place once the names are resolved
+                events.tryEmitNext(new FlightSearchEventDTO(FlightSearchEventDTO.RESULT, objectMapper.valueToTree(result)));
+            }
 
-                        if (uniqueAirportCodes.isEmpty()) {
-                            logger.warn("No airport codes found in flight offers response. Skipping airport name lookup.");
-                            return Mono.just(mapToFlightSearchResultInternal(rawFlightResponse, fullAirportNamesMap));
+            @Override
+            public void onNames(Map<String, String> airportNames, Map<String, String> airlineNames) {
+                Map<String, Map<String, String>> names = new LinkedHashMap<>();
+                names.put("airports", airportNames);
+                names.put("airlines", airlineNames);
+                events.tryEmitNext(new FlightSearchEventDTO(FlightSearchEventDTO.NAMES, names));
+            }
+        };
+
+        AtomicBoolean started = new AtomicBoolean();
+        AtomicBoolean ownSearch = new AtomicBoolean();
+        Flux<FlightSearchEventDTO> shared = events.asFlux();
+        return shared.doOnSubscribe(subscription -> {
+            if (!started.compareAndSet(false, true)) {
+                return;
+            }
+            // Keeps running if every stream goes away, the result is cached for the next one
+            searchCoalescer.execute(searchKey, () -> {
+                    ownSearch.set(true);
+                    return fetchAndCache(searchKey, listener);
+                })
+                .doFinally(signal -> streamedSearches.remove(searchKey, shared))
+                .subscribe(
+                    search -> {
+                        if (!ownSearch.get()) {
+                            // Joined a regular search, which streamed nothing
+                            search.results().forEach(result ->
+                                events.tryEmitNext(new FlightSearchEventDTO(FlightSearchEventDTO.RESULT, result)));
                         }
+                        events.tryEmitNext(completeEvent(search.results().size(), search.index().offerCount(), false));
+                        events.tryEmitComplete();
+                    },
+                    events::tryEmitError);
+        });
+    }
 
-                        return Flux.fromIterable(uniqueAirportCodes)
-                            .flatMap(iataCode -> {
-                                return searchAirportsSimple(iataCode)
-                                    .map(airportDetailsNode -> {
-                                        if (airportDetailsNode != null && airportDetailsNode.has("data") && airportDetailsNode.get("data").isArray()) {
-                                            JsonNode firstAirport = airportDetailsNode.get("data").get(0);
-                                            if (firstAirport != null) {
-                                                String airportName = safeGetText(firstAirport, "name");
-                                                if (airportName == null) {
-                                                    airportName = safeGetText(firstAirport, "address", "cityName");
-                                                }
-                                                if (airportName == null) {
-                                                    String detailedName = safeGetText(firstAirport, "detailedName");
-                                                    if (detailedName != null && detailedName.contains(":")) {
-                                                        airportName = detailedName.substring(detailedName.indexOf(":") + 1).trim();
-                                                    } else {
-                                                        airportName = detailedName;
-                                                    }
-                                                }
-                                                if (airportName != null) {
-                                                    fullAirportNamesMap.put(iataCode, airportName);
-                                                    logger.debug("Fetched full airport name for {}: {}", iataCode, airportName);
-                                                } else {
-                                                    logger.warn("Could not find a suitable name for airport IATA: {}", iataCode);
-                                                    fullAirportNamesMap.put(iataCode, iataCode);
-                                                }
-                                            }
-                                        }
-                                        return iataCode;
-                                    })
-                                    .onErrorResume(e -> {
-                                        logger.error("Error fetching airport details for {}: {}", iataCode, e.getMessage());
-                                        fullAirportNamesMap.put(iataCode, iataCode);
-                                        return Mono.just(iataCode);
-                                    });
-                            })
-                            .then(Mono.defer(() -> {
-                                logger.info("Finished fetching all airport names. Proceeding to map flight offers.");
-                                return Mono.just(mapToFlightSearchResultInternal(rawFlightResponse, fullAirportNamesMap));
-                            }));
-                    });
+    private FlightSearchEventDTO completeEvent(int results, int offers, boolean cached) {
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("results", results);
+        summary.put("offers", offers);
+        summary.put("cached", cached);
+        return new FlightSearchEventDTO(FlightSearchEventDTO.COMPLETE, summary);
+    }
+
+    /**
+     * Grouped Flight Search
+     * Searches like searchFlights, then returns whole offers (outbound and inbound together)
+     * filtered, sorted and cut to the query's limit on the server, using the index kept with
+     * the cached results.
+     */
+    public Mono<List<GroupedFlightOfferDTO>> searchFlightsGrouped(String origin, String destination, String departureDate,
+                                                            Integer adults, String currency, Boolean nonStop, String returnDate,
+                                                            Integer maxResults, FlightResultQuery query) {
+        logger.info("Searching grouped flights from {} to {} on {}, returnDate: {}, query: {}", origin, destination, departureDate, returnDate, query);
+
+        return Mono.defer(() -> {
+            FlightSearchKey searchKey = FlightSearchKey.of(origin, destination, departureDate, adults, currency, nonStop, returnDate, resolveMaxResults(maxResults));
+            return searchAllAirports(searchKey).map(search -> {
+                FlightResultIndex index = search.index();
+                int[] selected = index.select(query);
+                logger.info("Selected {} of {} offers for {}", selected.length, index.offerCount(), searchKey);
+                List<GroupedFlightOfferDTO> grouped = new ArrayList<>(selected.length);
+                for (int offer : selected) {
+                    grouped.add(toGroupedOffer(index, offer));
+                }
+                return grouped;
+            });
+        });
+    }
+
+    private GroupedFlightOfferDTO toGroupedOffer(FlightResultIndex index, int offer) {
+        List<FlightSearchResultDTO> results = index.results(offer);
+        FlightSearchResultDTO outbound = results.get(0);
+        FlightSearchResultDTO inbound = results.size() > 1 ? results.get(1) : null;
+        Duration totalDuration = index.totalDuration(offer);
+        return new GroupedFlightOfferDTO(
+            index.offerId(offer),
+            outbound,
+            inbound,
+            outbound.getPrice(), // The offer price covers both directions
+            outbound.getNumberOfAdults(),
+            inbound != null,
+            formatDuration(totalDuration));
+    }
+
+    /**
+     * Fare Matrix
+     * The cheapest fare for every pair of departure and return dates up to window days before
+     * and after the requested ones (departure dates only for one way searches). Each cell is a
+     * regular cached search, so cells with fresh results are answered from cache. The others
+     * (stale ones included) are searched in parallel, at most the configured concurrency at a
+     * time, and at most the configured number of Amadeus searches per matrix; cells beyond that
+     * budget are skipped, or served stale if they have stale results. Joining an identical
+     * search already in flight does not count against the budget.
+     * Cells are emitted as they complete, and a failing cell is emitted with its error instead
+     * of failing the matrix.
+     */
+    public Flux<FareMatrixCellDTO> searchFareMatrix(String origin, String destination, String departureDate, String returnDate,
+                                                    Integer window, Integer adults, String currency, Boolean nonStop) {
+        logger.info("Fare matrix from {} to {} around {} / {}, window: {}", origin, destination, departureDate, returnDate, window);
+
+        return Flux.defer(() -> {
+            int days = resolveMatrixWindow(window);
+            int maxResults = resolveMaxResults(null);
+            LocalDate today = LocalDate.now();
+            LocalDate departure = LocalDate.parse(departureDate);
+            LocalDate inbound = returnDate != null && !returnDate.isEmpty() ? LocalDate.parse(returnDate) : null;
+
+            List<FlightSearchKey> cells = new ArrayList<>();
+            for (int d = -days; d <= days; d++) {
+                LocalDate cellDeparture = departure.plusDays(d);
+                if (cellDeparture.isBefore(today)) {
+                    continue;
+                }
+                if (inbound == null) {
+                    cells.add(FlightSearchKey.of(origin, destination, cellDeparture.toString(), adults, currency, nonStop, null, maxResults));
+                    continue;
+                }
+                for (int r = -days; r <= days; r++) {
+                    LocalDate cellReturn = inbound.plusDays(r);
+                    if (cellReturn.isAfter(cellDeparture)) {
+                        cells.add(FlightSearchKey.of(origin, destination, cellDeparture.toString(), adults, currency, nonStop, cellReturn.toString(), maxResults));
+                    }
+                }
+            }
+
+            AtomicInteger upstreamBudget = new AtomicInteger(amadeusConfig.getMatrix().getMaxUpstreamCalls());
+            return Flux.fromIterable(cells)
+                .flatMap(cell -> fareMatrixCell(cell, upstreamBudget), Math.max(1, amadeusConfig.getMatrix().getConcurrency()));
+        });
+    }
+
+    /**
+     * Checks a requested matrix window in days, null standing for the largest one allowed.
+     */
+    public int resolveMatrixWindow(Integer window) {
+        int maxWindow = amadeusConfig.getMatrix().getMaxWindow();
+        int days = window != null ? window : maxWindow;
+        if (days < 0 || days > maxWindow) {
+            throw new IllegalArgumentException("window must be between 0 and " + maxWindow + " days.");
+        }
+        return days;
+    }
+
+    private Mono<FareMatrixCellDTO> fareMatrixCell(FlightSearchKey searchKey, AtomicInteger upstreamBudget) {
+        return Mono.defer(() -> {
+                FlightSearchResultCache.Hit hit = searchResultCache.lookup(searchKey);
+                Mono<FlightSearchResultCache.CachedSearch> search = null;
+                if (hit == null || hit.stale()) {
+                    // Missing and stale cells are searched again here, within the matrix's budget and
+                    // concurrency (never as a background revalidation). Only a search actually started
+                    // is charged; joining one already in flight is free.
+                    search = searchCoalescer.execute(searchKey, () -> upstreamBudget.getAndDecrement() > 0,
+                        () -> fetchAndCache(searchKey));
+                    if (search == null && hit == null) {
+                        logger.debug("Fare matrix search budget used up, skipping {}", searchKey);
+                        return Mono.just(new FareMatrixCellDTO(searchKey.departureDate(), searchKey.returnDate(), FareMatrixCellDTO.SKIPPED));
+                    }
+                }
+                boolean cached = search == null;
+                if (cached) {
+                    // Fresh, or stale with the budget used up: served as cached
+                    flightOffersCache.putAll(hit.search().offers());
+                    search = Mono.just(hit.search());
+                }
+                return search.map(result -> {
+                    FareMatrixCellDTO cell = new FareMatrixCellDTO(searchKey.departureDate(), searchKey.returnDate(), FareMatrixCellDTO.OK);
+                    FlightResultIndex index = result.index();
+                    cell.setCached(cached);
+                    cell.setOfferCount(index.offerCount());
+                    if (index.offerCount() == 0) {
+                        cell.setStatus(FareMatrixCellDTO.NO_OFFERS);
+                        return cell;
+                    }
+                    int cheapest = index.ordering(FlightResultQuery.Sort.PRICE)[0];
+                    cell.setOfferId(index.offerId(cheapest));
+                    cell.setCheapestPrice(index.results(cheapest).get(0).getPrice());
+                    return cell;
+                });
             })
-            .doOnSuccess(response -> logger.info("Successfully mapped flight search response with airport names"))
-            .doOnError(error -> logger.error("Flight search failed: {}", error.getMessage()));
+            .onErrorResume(error -> {
+                logger.warn("Fare matrix cell {} failed: {}", searchKey, error.getMessage());
+                FareMatrixCellDTO cell = new FareMatrixCellDTO(searchKey.departureDate(), searchKey.returnDate(), FareMatrixCellDTO.ERROR);
+                cell.setError("The search for these dates failed. Please try again later.");
+                return Mono.just(cell);
+            });
     }
 
-    public Map<String, JsonNode> getFlightOffersCache() {
-        return flightOffersCache;
+    /**
+     * Batch Search Query
+     * Searches one query of a batch like /api/flights does, through the same token, caches and
+     * coalescing, so a batch repeating a route and date calls Amadeus once. Queries whose
+     * results are cached and fresh are answered right away; the others wait for one of the configured
+     * number of batch search slots, which all batches share, higher priority first. The query
+     * always completes with a result: a failed search is reported with status ERROR, and an
+     * invalid one (e.g. too many airport pairs) with status INVALID.
+     */
+    public Mono<BatchSearchResultDTO> searchBatchQuery(int index, BatchSearchQueryDTO query, boolean includeResults) {
+        long submittedAt = System.nanoTime();
+        return Mono.defer(() -> {
+                FlightSearchKey searchKey = FlightSearchKey.of(query.getOrigin(), query.getDestination(), query.getDepartureDate(),
+                    query.getAdults(), query.getCurrency(), query.getNonStop(), query.getReturnDate(), resolveMaxResults(query.getMax()));
+                // Only fresh results skip the queue. Stale ones are searched again inside a batch
+                // slot, never as background revalidations outside the queue and its concurrency.
+                boolean cached = pairKeys(searchKey).stream().allMatch(searchResultCache::isFresh);
+                Mono<FlightSearchResultCache.CachedSearch> search = cached
+                    ? searchAllAirports(searchKey)
+                    : batchQueue.submit(query.getPriority() != null ? query.getPriority() : 0, () -> searchAllAirports(searchKey, true));
+                return search.map(result -> toBatchResult(index, query, result, cached, includeResults));
+            })
+            .onErrorResume(error -> {
+                BatchSearchResultDTO result;
+                if (error instanceof IllegalArgumentException) {
+                    logger.warn("Batch query {} is invalid: {}", index, error.getMessage());
+                    result = new BatchSearchResultDTO(index, query.getId(), BatchSearchResultDTO.INVALID);
+                    result.setError(error.getMessage());
+                } else {
+                    logger.warn("Batch query {} failed: {}", index, error.getMessage());
+                    result = new BatchSearchResultDTO(index, query.getId(), BatchSearchResultDTO.ERROR);
+                    result.setError("The search for this query failed. Please try again later.");
+                }
+                return Mono.just(result);
+            })
+            .doOnNext(result -> result.setElapsedMs((System.nanoTime() - submittedAt) / 1_000_000));
     }
 
-    // --- Internal mapping method ---
-    private List<FlightSearchResultDTO> mapToFlightSearchResultInternal(JsonNode jsonNode, Map<String, String> fullAirportNamesMap) {
-        List<FlightSearchResultDTO> flightOffers = new ArrayList<>();
+    /**
+     * Checks the number of queries in a batch against the configured maximum.
+     */
+    public void validateBatchSize(int queries) {
+        int maxQueries = amadeusConfig.getBatch().getMaxQueries();
+        if (queries < 1 || queries > maxQueries) {
+            throw new IllegalArgumentException("A batch must hold between 1 and " + maxQueries + " queries.");
+        }
+    }
+
+    private BatchSearchResultDTO toBatchResult(int index, BatchSearchQueryDTO query, FlightSearchResultCache.CachedSearch search,
+                                               boolean cached, boolean includeResults) {
+        BatchSearchResultDTO result = new BatchSearchResultDTO(index, query.getId(), BatchSearchResultDTO.OK);
+        FlightResultIndex resultIndex = search.index();
+        result.setCached(cached);
+        result.setOfferCount(resultIndex.offerCount());
+        if (includeResults) {
+            result.setResults(search.results());
+        }
+        if (resultIndex.offerCount() == 0) {
+            result.setStatus(BatchSearchResultDTO.NO_OFFERS);
+            return result;
+        }
+        int cheapest = resultIndex.ordering(FlightResultQuery.Sort.PRICE)[0];
+        result.setCheapestOfferId(resultIndex.offerId(cheapest));
+        result.setCheapestPrice(resultIndex.results(cheapest).get(0).getPrice());
+        return result;
+    }
+
+    public PriorityWorkQueue getBatchQueue() {
+        return batchQueue;
+    }
 
-        Map<String, String> airlineNames = new HashMap<>(); // This is local to search mapping for now
+    public OutboundLimiter getFlightOffersLimiter() {
+        return flightOffersLimiter;
+    }
 
-        JsonNode dictionaries = jsonNode.get("dictionaries");
-        if (dictionaries != null) {
-            JsonNode carriers = dictionaries.get("carriers");
-            if (carriers != null) {
-                carriers.properties().forEach(entry -> {
-                    String iataCode = entry.getKey();
-                    String name = entry.getValue().asText();
-                    airlineNames.put(iataCode, name);
+    public OutboundLimiter getLocationsLimiter() {
+        return locationsLimiter;
+    }
+
+    /**
+     * Search Session
+     * Runs a search (or reuses cached results) and keeps its results on the server under a new
+     * session id. Returns the first page; the rest is read with getSearchSessionPage.
+     */
+    public Mono<FlightSearchPageDTO> createSearchSession(String origin, String destination, String departureDate,
+                                                         Integer adults, String currency, Boolean nonStop, String returnDate,
+                                                         Integer maxResults, String sort, Integer pageSize) {
+        return Mono.defer(() -> {
+            FlightSearchKey searchKey = FlightSearchKey.of(origin, destination, departureDate, adults, currency, nonStop, returnDate, resolveMaxResults(maxResults));
+            // Rejected before searching, so no session is left behind for a bad request
+            FlightResultQuery.Sort.from(sort);
+            searchSessions.resolvePageSize(pageSize);
+            return searchAllAirports(searchKey)
+                .map(search -> {
+                    SearchSessionStore.SearchSession session = searchSessions.create(searchKey, search);
+                    logger.info("Created search session {} with {} offers for {}", session.getId(), session.offerCount(), searchKey);
+                    return toPageDTO(searchSessions.page(session, null, sort, pageSize));
                 });
-                logger.debug("Mapped Airline Names (from flight offers dictionaries): {}", airlineNames);
+        });
+    }
+
+    /**
+     * A further page, or a re-sorted first page, of a search session. Served from the session
+     * only, Amadeus is not called again.
+     */
+    public Mono<FlightSearchPageDTO> getSearchSessionPage(String sessionId, String cursor, String sort, Integer pageSize) {
+        return Mono.fromCallable(() -> {
+            SearchSessionStore.SearchSession session = searchSessions.get(sessionId);
+            if (session == null) {
+                logger.warn("Search session {} not found or expired.", sessionId);
+                throw new SearchSessionNotFoundException("Search session " + sessionId + " not found or expired. Please perform a new search.");
             }
-        } else {
-            logger.warn("No 'dictionaries' found in Amadeus API response. Airline names might be missing.");
+            return toPageDTO(searchSessions.page(session, cursor, sort, pageSize));
+        });
+    }
+
+    public SearchSessionStore getSearchSessions() {
+        return searchSessions;
+    }
+
+    private FlightSearchPageDTO toPageDTO(SearchSessionStore.Page page) {
+        // The session may outlive the offer cache entries, put the page's offers back for /details
+        flightOffersCache.putAll(page.offers());
+        return new FlightSearchPageDTO(
+            page.session().getId(),
+            page.sort().paramValue(),
+            page.session().offerCount(),
+            page.results(),
+            page.nextCursor() != null ? page.nextCursor().encode() : null);
+    }
+
+    private int resolveMaxResults(Integer maxResults) {
+        int max = maxResults != null ? maxResults : amadeusConfig.getSearch().getMaxResults();
+        if (max < 1 || max > AmadeusConfig.Search.MAX_RESULTS_LIMIT) {
+            throw new IllegalArgumentException("max must be between 1 and " + AmadeusConfig.Search.MAX_RESULTS_LIMIT + ".");
+        }
+        return max;
+    }
+
+    /**
+     * Multi Airport Search
+     * Origin and destination may each list several airports or metro codes ("NYC,BOS"). Every
+     * airport pair is searched through the result cache, a bounded number at a time, and the
+     * pairs' results are merged into one list, cheapest first, without duplicate itineraries.
+     * A pair that fails is left out, unless every pair fails. A single pair is searched as is.
+     */
+    private Mono<FlightSearchResultCache.CachedSearch> searchAllAirports(FlightSearchKey searchKey) {
+        return searchAllAirports(searchKey, false);
+    }
+
+    /**
+     * @param refreshStale Whether pairs with stale results are searched again right away, instead
+     *                     of being served stale and revalidated in the background
+     */
+    private Mono<FlightSearchResultCache.CachedSearch> searchAllAirports(FlightSearchKey searchKey, boolean refreshStale) {
+        List<FlightSearchKey> pairKeys = pairKeys(searchKey);
+        int maxPairs = amadeusConfig.getMultiAirport().getMaxPairs();
+        if (pairKeys.isEmpty()) {
+            return Mono.error(new IllegalArgumentException("Origin and destination must include different airports."));
         }
+        if (pairKeys.size() > maxPairs) {
+            return Mono.error(new IllegalArgumentException("The origin and destination airports make " + pairKeys.size()
+                + " airport pairs; at most " + maxPairs + " can be searched at once."));
+        }
+        if (pairKeys.size() == 1) {
+            return cachedSearch(pairKeys.get(0), refreshStale);
+        }
+
+        logger.info("Searching {} airport pairs for {}", pairKeys.size(), searchKey);
+        if (virtualThreadFactory != null) {
+            // The pairs run on threads of their own, so they are handed the request's context
+            return timedFanOut(Mono.deferContextual(context ->
+                onVirtualThread(() -> searchAirportPairs(searchKey, pairKeys, refreshStale, context))));
+        }
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        return timedFanOut(Flux.fromIterable(pairKeys)
+            .flatMapSequential(pairKey -> observedPairSearch(pairKey, refreshStale)
+                    .map(search -> new FlightResultMerger.PairSearch(pairKey, search))
+                    .onErrorResume(error -> {
+                        logger.warn("Search for airport pair {} failed, merging the other pairs: {}", pairKey, error.getMessage());
+                        failedPairs.increment();
+                        failure.set(error);
+                        return Mono.empty();
+                    }),
+                Math.max(1, amadeusConfig.getMultiAirport().getConcurrency()))
+            .collectList()
+            .flatMap(searches -> {
+                if (searches.isEmpty()) {
+                    return Mono.error(failure.get());
+                }
+                FlightSearchResultCache.CachedSearch merged = FlightResultMerger.merge(searches, searchKey.maxResults());
+                // Merged offers are cached under their pair scoped ids, for /details
+                flightOffersCache.putAll(merged.offers());
+                logger.info("Merged {} offers from {} of {} airport pairs", merged.offers().size(), searches.size(), pairKeys.size());
+                return Mono.just(merged);
+            }));
+    }
 
-        JsonNode dataNode = jsonNode.get("data");
-        if (dataNode == null || !dataNode.isArray() || dataNode.isEmpty()) {
-            logger.warn("No 'data' (flight offers) found in Amadeus API response or it's not an array/empty.");
-            return flightOffers;
+    // The airport pairs of a search, its metro codes expanded
+    private List<FlightSearchKey> pairKeys(FlightSearchKey searchKey) {
+        List<FlightSearchKey> pairKeys = new ArrayList<>();
+        for (String origin : metroAreas.expand(searchKey.origin())) {
+            for (String destination : metroAreas.expand(searchKey.destination())) {
+                if (!origin.equals(destination)) {
+                    pairKeys.add(new FlightSearchKey(origin, destination, searchKey.departureDate(), searchKey.returnDate(),
+                        searchKey.adults(), searchKey.currency(), searchKey.nonStop(), searchKey.maxResults()));
+                }
+            }
         }
+        return pairKeys;
+    }
 
-        for (JsonNode offer : dataNode) {
-            String offerId = offer.get("id") != null ? offer.get("id").asText() : null;
-            logger.debug("Processing flight offer ID: {}", offerId);
+    // Whole multi airport searches, from the first pair started to the merged results
+    private Mono<FlightSearchResultCache.CachedSearch> timedFanOut(Mono<FlightSearchResultCache.CachedSearch> fanOut) {
+        return Mono.defer(() -> {
+            long startedAt = System.nanoTime();
+            return fanOut
+                .doOnSuccess(merged -> fanOutSucceeded.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS))
+                .doOnError(error -> fanOutFailed.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS));
+        });
+    }
 
-            int numberOfAdults = 1;
-            JsonNode travelerPricingsNode = offer.get("travelerPricings");
-            if (travelerPricingsNode != null && travelerPricingsNode.isArray()) {
-                numberOfAdults = travelerPricingsNode.size();
-            } else {
-                logger.warn("travelerPricings not found or not array for offer ID: {}. Defaulting adults to 1.", offerId);
+    /**
+     * Virtual threads mode fan-out: every pair is searched as a blocking call on its own virtual
+     * thread, at most multi-airport.concurrency at a time. The pairs live in a scope that ends
+     * with this method: those not done by the fan-out deadline are cancelled (interrupted, which
+     * cancels their Amadeus call), and none outlives the request.
+     */
+    private FlightSearchResultCache.CachedSearch searchAirportPairs(FlightSearchKey searchKey, List<FlightSearchKey> pairKeys,
+            boolean refreshStale, ContextView context) throws InterruptedException {
+        Semaphore pairSlots = new Semaphore(Math.max(1, amadeusConfig.getMultiAirport().getConcurrency()));
+        List<Callable<FlightResultMerger.PairSearch>> pairSearches = new ArrayList<>();
+        for (FlightSearchKey pairKey : pairKeys) {
+            pairSearches.add(() -> {
+                pairSlots.acquire();
+                try {
+                    return new FlightResultMerger.PairSearch(pairKey, observedPairSearch(pairKey, refreshStale).contextWrite(context).block());
+                } finally {
+                    pairSlots.release();
+                }
+            });
+        }
+
+        Duration deadline = amadeusConfig.getExecution().getFanOutDeadline();
+        List<FlightResultMerger.PairSearch> searches = new ArrayList<>();
+        Throwable failure = null;
+        try (ExecutorService scope = Executors.newThreadPerTaskExecutor(virtualThreadFactory)) {
+            // Returns once every pair is done, or at the deadline with the rest cancelled
+            List<Future<FlightResultMerger.PairSearch>> results = scope.invokeAll(pairSearches, deadline.toNanos(), TimeUnit.NANOSECONDS);
+            for (int i = 0; i < results.size(); i++) {
+                FlightSearchKey pairKey = pairKeys.get(i);
+                try {
+                    searches.add(results.get(i).get());
+                } catch (CancellationException e) {
+                    logger.warn("Search for airport pair {} did not finish within {}, merging the other pairs", pairKey, deadline);
+                    failedPairs.increment();
+                    failure = new UpstreamUnavailableException("Amadeus did not answer within " + deadline.toSeconds()
+                        + " seconds. Please try again later.", Duration.ofSeconds(1));
+                } catch (ExecutionException e) {
+                    logger.warn("Search for airport pair {} failed, merging the other pairs: {}", pairKey, e.getCause().getMessage());
+                    failedPairs.increment();
+                    failure = e.getCause();
+                }
+            }
+        }
+        if (searches.isEmpty()) {
+            throw Exceptions.propagate(failure);
+        }
+        FlightSearchResultCache.CachedSearch merged = FlightResultMerger.merge(searches, searchKey.maxResults());
+        // Merged offers are cached under their pair scoped ids, for /details
+        flightOffersCache.putAll(merged.offers());
+        logger.info("Merged {} offers from {} of {} airport pairs", merged.offers().size(), searches.size(), pairKeys.size());
+        return merged;
+    }
+
+    /**
+     * One airport pair of a multi airport search, as a span of its own (flight.search.pair),
+     * child of the request's span, so a trace shows how the pairs of a fan-out overlapped and
+     * which one held the response up. Its Amadeus calls become children of the pair's span.
+     */
+    private Mono<FlightSearchResultCache.CachedSearch> observedPairSearch(FlightSearchKey pairKey, boolean refreshStale) {
+        return Mono.deferContextual(context -> {
+            Observation parent = context.getOrDefault(ObservationThreadLocalAccessor.KEY,
+                observationRegistry.getCurrentObservation());
+            Observation observation = Observation.createNotStarted("flight.search.pair", observationRegistry)
+                .contextualName("airport pair " + pairKey.origin() + "-" + pairKey.destination())
+                // High cardinality: on the span only, not on the flight.search.pair timer
+                .highCardinalityKeyValue("pair", pairKey.origin() + "-" + pairKey.destination())
+                .parentObservation(parent)
+                .start();
+            return cachedSearch(pairKey, refreshStale)
+                .doOnError(observation::error)
+                .doFinally(signal -> observation.stop())
+                .contextWrite(ctx -> ctx.put(ObservationThreadLocalAccessor.KEY, observation));
+        });
+    }
+
+    // Runs a blocking call on a virtual thread of its own, wherever it is subscribed from
+    private <T> Mono<T> onVirtualThread(Callable<T> call) {
+        return Mono.fromCallable(call).subscribeOn(virtualThreadScheduler);
+    }
+
+    // Cached results for the key, or a (shared) search if there are none
+    private Mono<FlightSearchResultCache.CachedSearch> cachedSearch(FlightSearchKey searchKey) {
+        return cachedSearch(searchKey, false);
+    }
+
+    // With refreshStale, stale results are searched again in the caller's flow, not in the background
+    private Mono<FlightSearchResultCache.CachedSearch> cachedSearch(FlightSearchKey searchKey, boolean refreshStale) {
+        return Mono.deferContextual(context -> {
+            FlightSearchResultCache.Hit cached = searchResultCache.lookup(searchKey);
+            ServerTiming timing = ServerTiming.from(context);
+            if (timing != null) {
+                timing.describe(ServerTiming.CACHE, cached == null ? "miss" : cached.stale() ? "stale" : "hit");
+            }
+            if (cached != null && !(cached.stale() && refreshStale)) {
+                // Offers may have been overwritten by other searches since, put ours back for /details
+                flightOffersCache.putAll(cached.search().offers());
+                if (cached.stale()) {
+                    revalidateInBackground(searchKey);
+                }
+                logger.info("Serving {} flight search results from cache for {}", cached.stale() ? "stale" : "fresh", searchKey);
+                return Mono.just(cached.search());
             }
 
-            JsonNode priceNode = offer.get("price");
-            PriceDTO offerPrice = null;
-            if (priceNode != null) {
-                offerPrice = new PriceDTO();
-                offerPrice.setCurrency(safeGetText(priceNode, "currency"));
-                offerPrice.setTotal(safeGetText(priceNode, "grandTotal"));
-                offerPrice.setBase(safeGetText(priceNode, "base"));
-
-                if (offerPrice.getBase() != null && offerPrice.getTotal() != null) {
-                    try {
-                        double base = Double.parseDouble(offerPrice.getBase());
-                        double total = Double.parseDouble(offerPrice.getTotal());
-                        double fees = total - base;
-                        offerPrice.setFees(String.format("%.2f", (fees)));
-                    } catch (NumberFormatException e) {
-                        logger.warn("Could not parse price numbers for fees calculation for offer ID {}: {}", offerId, e.getMessage());
-                        offerPrice.setFees(null);
+            return searchAndCache(searchKey);
+        });
+    }
+
+    public RequestCoalescer<FlightSearchKey, FlightSearchResultCache.CachedSearch> getSearchCoalescer() {
+        return searchCoalescer;
+    }
+
+    // Identical searches arriving while one is in flight share its upstream call and result list
+    private Mono<FlightSearchResultCache.CachedSearch> searchAndCache(FlightSearchKey searchKey) {
+        return searchCoalescer.execute(searchKey, () -> fetchAndCache(searchKey));
+    }
+
+    private Mono<FlightSearchResultCache.CachedSearch> fetchAndCache(FlightSearchKey searchKey) {
+        return fetchAndCache(searchKey, SearchListener.NONE);
+    }
+
+    private Mono<FlightSearchResultCache.CachedSearch> fetchAndCache(FlightSearchKey searchKey, SearchListener listener) {
+        return fetchFlights(searchKey, listener)
+            .doOnNext(search -> searchResultCache.put(searchKey, search));
+    }
+
+    // Stale hit: refresh once in the background, the caller already got the stale results
+    private void revalidateInBackground(FlightSearchKey searchKey) {
+        if (!searchResultCache.startRevalidation(searchKey)) {
+            return;
+        }
+        logger.debug("Revalidating stale flight search results for {}", searchKey);
+        searchAndCache(searchKey)
+            .doFinally(signal -> searchResultCache.finishRevalidation(searchKey))
+            .subscribe(
+                search -> logger.debug("Revalidated flight search results for {}", searchKey),
+                error -> logger.warn("Background revalidation for {} failed: {}", searchKey, error.getMessage()));
+    }
+
+    /**
+     * Receives a search's results while the Amadeus response is still being read, and the
+     * airport and airline names once they are known. Results are handed over unnamed, as
+     * they are mapped; they are named in place later, so a listener must copy what it keeps.
+     */
+    private interface SearchListener {
+
+        SearchListener NONE = new SearchListener() {
+            @Override
+            public void onResult(FlightSearchResultDTO result) {
+            }
+
+            @Override
+            public void onNames(Map<String, String> airportNames, Map<String, String> airlineNames) {
+            }
+        };
+
+        void onResult(FlightSearchResultDTO result);
+
+        void onNames(Map<String, String> airportNames, Map<String, String> airlineNames);
+    }
+
+    private Mono<FlightSearchResultCache.CachedSearch> fetchFlights(FlightSearchKey searchKey, SearchListener listener) {
+        return withAccessToken(token -> Mono.deferContextual(context -> {
+                logger.info("Using token to search flights...");
+                ServerTiming timing = ServerTiming.from(context);
+
+                // Filled in a single pass while the response body streams in.
+                // Offers are encoded once, shared by the offer cache and the search result cache.
+                Map<String, FlightOfferCache.EncodedOffer> searchOffers = new LinkedHashMap<>();
+                Set<String> uniqueAirportCodes = new HashSet<>();
+                List<FlightSearchResultDTO> results = new ArrayList<>();
+                Map<String, String> airlineNames = new HashMap<>();
+
+                Function<UriBuilder, URI> uri = uriBuilder -> {
+                    var builder = uriBuilder
+                        .path("/v2/shopping/flight-offers")
+                        .queryParam("originLocationCode", searchKey.origin())
+                        .queryParam("destinationLocationCode", searchKey.destination())
+                        .queryParam("departureDate", searchKey.departureDate())
+                        .queryParam("adults", searchKey.adults())
+                        .queryParam("currencyCode", searchKey.currency())
+                        .queryParam("nonStop", searchKey.nonStop())
+                        .queryParam("max", searchKey.maxResults());
+                    if (searchKey.isRoundTrip()) {
+                        builder.queryParam("returnDate", searchKey.returnDate());
+                    }
+                    return builder.build();
+                };
+
+                Consumer<FlightOfferStreamDecoder.DecodedOffer> onOffer = decoded -> {
+                    AmadeusFlightOffer offer = decoded.offer();
+                    if (offer.id() != null) {
+                        String amadeusOfferId = offer.id();
+                        // Stored from the received tokens, so the cached offer keeps every field
+                        FlightOfferCache.EncodedOffer encodedOffer = flightOffersCache.encode(offer, decoded.tokens());
+                        flightOffersCache.put(amadeusOfferId, encodedOffer);
+                        searchOffers.put(amadeusOfferId, encodedOffer);
+                        logger.debug("Cached flight offer with ID: {}", amadeusOfferId);
                     }
+                    collectAirportCodes(offer, uniqueAirportCodes);
+                    // Airport and airline names are filled in once the whole response is read
+                    int mapped = results.size();
+                    long mappingStartedAt = System.nanoTime();
+                    mapOfferToResults(offer, Collections.emptyMap(), Collections.emptyMap(), results);
+                    long mappingTime = System.nanoTime() - mappingStartedAt;
+                    searchMapping.record(mappingTime, TimeUnit.NANOSECONDS);
+                    if (timing != null) {
+                        timing.add(ServerTiming.MAPPING, mappingTime);
+                    }
+                    for (int i = mapped; i < results.size(); i++) {
+                        listener.onResult(results.get(i));
+                    }
+                };
+                Consumer<AmadeusDictionaries> onDictionaries = dictionaries -> airlineNames.putAll(extractAirlineNames(dictionaries));
+
+                // Only the Amadeus call itself holds a rate limiter slot, not the airport name lookup after it
+                Mono<Void> response;
+                if (blockingClient != null) {
+                    response = flightOffersLimiter.execute(() -> onVirtualThread(() -> blockingClient.search(uri, token, body -> {
+                        offerStreamDecoder.decode(body, onOffer, onDictionaries);
+                        return null;
+                    })));
                 } else {
-                    JsonNode feesArray = priceNode.get("fees");
-                    if (feesArray != null && feesArray.isArray()) {
-                        double totalFees = 0.0;
-                        for (JsonNode fee : feesArray) {
-                            if (fee.has("amount")) {
-                                try {
-                                    totalFees += fee.get("amount").asDouble();
-                                } catch (Exception e) {
-                                    logger.warn("Error parsing individual fee amount for offer ID {}: {}", offerId, e.getMessage());
-                                }
+                    Flux<DataBuffer> body = webClient.get()
+                        .uri(uri)
+                        .httpRequest(AmadeusHttpClient.responseTimeout(amadeusConfig.getHttp().getSearchResponseTimeout()))
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + token)
+                        .retrieve()
+                        .bodyToFlux(DataBuffer.class);
+                    response = flightOffersLimiter.execute(() -> offerStreamDecoder.decode(body, onOffer, onDictionaries));
+                }
+
+                // The search phase includes the mapping done while the body streams in
+                return ServerTiming.timed(ServerTiming.SEARCH, response)
+                    .doOnSuccess(done -> logger.info("Successfully received raw flight search response ({} offers)", searchOffers.size()))
+                    .doOnError(error -> logger.error("Raw flight search failed: {}", error.getMessage()))
+                    .then(Mono.defer(() -> {
+                        if (searchOffers.isEmpty()) {
+                            logger.warn("No 'data' (flight offers) found in Amadeus API response or it's not an array/empty.");
+                        }
+                        if (airlineNames.isEmpty()) {
+                            logger.warn("No 'dictionaries' found in Amadeus API response. Airline names might be missing.");
+                        }
+                        if (uniqueAirportCodes.isEmpty()) {
+                            logger.warn("No airport codes found in flight offers response. Skipping airport name lookup.");
+                            return Mono.just(Collections.<String, String>emptyMap());
+                        }
+                        return ServerTiming.timed(ServerTiming.AIRPORT_NAMES, resolveAirportNames(uniqueAirportCodes));
+                    }))
+                    .map(fullAirportNamesMap -> {
+                        logger.info("Finished fetching all airport names. Proceeding to map flight offers.");
+                        applyNames(results, fullAirportNamesMap, airlineNames);
+                        listener.onNames(fullAirportNamesMap, airlineNames);
+                        return FlightSearchResultCache.CachedSearch.of(Collections.unmodifiableList(results), searchOffers);
+                    });
+            }))
+            .doOnSuccess(response -> logger.info("Successfully mapped flight search response with airport names"))
+            .doOnError(error -> logger.error("Flight search failed: {}", error.getMessage()));
+    }
+
+    public FlightOfferCache getFlightOffersCache() {
+        return flightOffersCache;
+    }
+
+    /**
+     * Warms the HTTP client up and fetches the first access token once the application is
+     * ready, so the first search does not pay for them. Failures are only logged; the first
+     * call simply tries again.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        if (!amadeusConfig.getHttp().isWarmUp()) {
+            return;
+        }
+        long startedAt = System.nanoTime();
+        httpClient.warmUp()
+            .then(tokenManager.getAccessToken())
+            .subscribe(
+                token -> logger.info("Amadeus HTTP client warmed up in {} ms", (System.nanoTime() - startedAt) / 1_000_000),
+                error -> logger.warn("Amadeus HTTP client warm-up failed: {}", error.getMessage()));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flightOffersCache.close();
+        httpClient.close();
+        if (blockingClient != null) {
+            blockingClient.close();
+            virtualThreadScheduler.dispose();
+        }
+    }
+
+    // --- Internal mapping methods ---
+
+    // Airline names from the "dictionaries" part of a flight offers response
+    private Map<String, String> extractAirlineNames(AmadeusDictionaries dictionaries) {
+        Map<String, String> airlineNames = new HashMap<>();
+        if (dictionaries.carriers() != null) {
+            airlineNames.putAll(dictionaries.carriers());
+            logger.debug("Mapped Airline Names (from flight offers dictionaries): {}", airlineNames);
+        }
+        return airlineNames;
+    }
+
+    // Maps one flight offer into one result per itinerary (package-private for the JMH benchmarks)
+    void mapOfferToResults(AmadeusFlightOffer offer, Map<String, String> fullAirportNamesMap, Map<String, String> airlineNames,
+                           List<FlightSearchResultDTO> flightOffers) {
+        String offerId = offer.id();
+        logger.debug("Processing flight offer ID: {}", offerId);
+
+        int numberOfAdults = 1;
+        List<AmadeusTravelerPricing> travelerPricings = offer.travelerPricings();
+        if (travelerPricings != null) {
+            numberOfAdults = travelerPricings.size();
+        } else {
+            logger.warn("travelerPricings not found or not array for offer ID: {}. Defaulting adults to 1.", offerId);
+        }
+
+        AmadeusPrice price = offer.price();
+        PriceDTO offerPrice = null;
+        if (price != null) {
+            offerPrice = new PriceDTO();
+            offerPrice.setCurrency(price.currency());
+            offerPrice.setTotal(price.grandTotal());
+            offerPrice.setBase(price.base());
+
+            if (offerPrice.getBase() != null && offerPrice.getTotal() != null) {
+                try {
+                    double base = Double.parseDouble(offerPrice.getBase());
+                    double total = Double.parseDouble(offerPrice.getTotal());
+                    double fees = total - base;
+                    offerPrice.setFees(String.format("%.2f", (fees)));
+                } catch (NumberFormatException e) {
+                    logger.warn("Could not parse price numbers for fees calculation for offer ID {}: {}", offerId, e.getMessage());
+                    offerPrice.setFees(null);
+                }
+            } else {
+                if (price.fees() != null) {
+                    double totalFees = 0.0;
+                    for (AmadeusPrice.Fee fee : price.fees()) {
+                        if (fee.amount() != null) {
+                            try {
+                                totalFees += Double.parseDouble(fee.amount());
+                            } catch (NumberFormatException e) {
+                                logger.warn("Error parsing individual fee amount for offer ID {}: {}", offerId, e.getMessage());
                             }
                         }
-                        offerPrice.setFees(String.format("%.2f", totalFees));
-                    } else {
-                        offerPrice.setFees(null);
                     }
+                    offerPrice.setFees(String.format("%.2f", totalFees));
+                } else {
+                    offerPrice.setFees(null);
                 }
+            }
 
-                if (travelerPricingsNode != null && travelerPricingsNode.isArray() && travelerPricingsNode.size() > 0) {
-                    JsonNode firstTravelerPricing = travelerPricingsNode.get(0);
-                    if (firstTravelerPricing.has("price") && firstTravelerPricing.get("price").has("total")) {
-                        offerPrice.setPricePerAdult(firstTravelerPricing.get("price").get("total").asText());
-                    } else {
-                        logger.warn("pricePerAdult not found in travelerPricings for offer ID: {}", offerId);
-                        offerPrice.setPricePerAdult(offerPrice.getTotal());
-                    }
+            if (travelerPricings != null && !travelerPricings.isEmpty()) {
+                AmadeusPrice firstTravelerPrice = travelerPricings.get(0).price();
+                if (firstTravelerPrice != null && firstTravelerPrice.total() != null) {
+                    offerPrice.setPricePerAdult(firstTravelerPrice.total());
                 } else {
-                    logger.warn("travelerPricings array not found or empty for offer ID: {}", offerId);
+                    logger.warn("pricePerAdult not found in travelerPricings for offer ID: {}", offerId);
                     offerPrice.setPricePerAdult(offerPrice.getTotal());
                 }
             } else {
-                logger.warn("No 'price' node found for offer ID: {}", offerId);
+                logger.warn("travelerPricings array not found or empty for offer ID: {}", offerId);
+                offerPrice.setPricePerAdult(offerPrice.getTotal());
             }
+        } else {
+            logger.warn("No 'price' node found for offer ID: {}", offerId);
+        }
 
-            // --- Mapping method Itineraries ---
-            JsonNode itineraries = offer.get("itineraries");
-            if (itineraries != null && itineraries.isArray() && itineraries.size() > 0) {
-                boolean isRoundTrip = itineraries.size() > 1;
-
-                for (int itineraryIndex = 0; itineraryIndex < itineraries.size(); itineraryIndex++) {
-                    JsonNode itinerary = itineraries.get(itineraryIndex);
-                    FlightSearchResultDTO result = new FlightSearchResultDTO();
+        // --- Mapping method Itineraries ---
+        List<AmadeusFlightOffer.Itinerary> itineraries = offer.itineraries();
+        if (itineraries != null && !itineraries.isEmpty()) {
+            boolean isRoundTrip = itineraries.size() > 1;
 
-                    result.setId(offerId + "-" + itineraryIndex);
+            for (int itineraryIndex = 0; itineraryIndex < itineraries.size(); itineraryIndex++) {
+                AmadeusFlightOffer.Itinerary itinerary = itineraries.get(itineraryIndex);
+                FlightSearchResultDTO result = new FlightSearchResultDTO();
 
-                    if (isRoundTrip) {
-                        result.setParentOfferId(offerId);
-                    } else {
-                        result.setParentOfferId(null);
-                    }
+                result.setId(offerId + "-" + itineraryIndex);
 
-                    result.setNumberOfAdults(numberOfAdults);
-                    result.setPrice(offerPrice);
-
-                    result.setDuration(itinerary.get("duration") != null ? itinerary.get("duration").asText() : null);
-
-                    List<FlightSegmentDTO> segments = new ArrayList<>();
-                    List<StopDTO> stops = new ArrayList<>(); 
-                    LocalDateTime previousSegmentArrival = null;
-
-                    JsonNode segmentsArray = itinerary.get("segments");
-                    if (segmentsArray != null && segmentsArray.isArray() && segmentsArray.size() > 0) {
-                        for (int i = 0; i < segmentsArray.size(); i++) {
-                            JsonNode segment = segmentsArray.get(i);
-                            FlightSegmentDTO flightSegment = new FlightSegmentDTO();
-
-                            String departureIataCode = safeGetText(segment.get("departure"), "iataCode"); 
-                            String departureDateTime = safeGetText(segment.get("departure"), "at");     
-                            String arrivalIataCode = safeGetText(segment.get("arrival"), "iataCode");     
-                            String arrivalDateTime = safeGetText(segment.get("arrival"), "at");         
-                            String carrierCode = safeGetText(segment, "carrierCode");
-                            String number = safeGetText(segment, "number");
-                            String segmentDuration = safeGetText(segment, "duration");
-                            String operatingCarrierCode = null;
-                            if (segment.has("operating") && segment.get("operating").has("carrierCode")) {
-                                operatingCarrierCode = segment.get("operating").get("carrierCode").asText();
-                            }
+                if (isRoundTrip) {
+                    result.setParentOfferId(offerId);
+                } else {
+                    result.setParentOfferId(null);
+                }
 
-                            flightSegment.setDepartureIataCode(departureIataCode);
-                            flightSegment.setDepartureDateTime(departureDateTime);
-                            flightSegment.setArrivalIataCode(arrivalIataCode);
-                            flightSegment.setArrivalDateTime(arrivalDateTime);
-                            flightSegment.setCarrierCode(carrierCode);
-                            flightSegment.setNumber(number);
-                            flightSegment.setDuration(segmentDuration);
-                            flightSegment.setOperatingCarrierCode(operatingCarrierCode);
-
-                            segments.add(flightSegment);
-
-                            if (i == 0) {
-                                result.setDepartureDateTime(departureDateTime);
-                                result.setDepartureAirport(new AirportDTO(departureIataCode, fullAirportNamesMap.getOrDefault(departureIataCode, departureIataCode)));
-                                result.setAirline(new AirlineDTO(carrierCode, airlineNames.getOrDefault(carrierCode, carrierCode)));
-                                if (operatingCarrierCode != null && !Objects.equals(operatingCarrierCode, carrierCode)) { // Use Objects.equals for string comparison
-                                    result.setOperatingAirline(new AirlineDTO(operatingCarrierCode, airlineNames.getOrDefault(operatingCarrierCode, operatingCarrierCode)));
-                                } else {
-                                    result.setOperatingAirline(null);
-                                }
-                            }
-                            if (i == segmentsArray.size() - 1) {
-                                result.setArrivalDateTime(arrivalDateTime);
-                                result.setArrivalAirport(new AirportDTO(arrivalIataCode, fullAirportNamesMap.getOrDefault(arrivalIataCode, arrivalIataCode)));
+                result.setNumberOfAdults(numberOfAdults);
+                result.setPrice(offerPrice);
+
+                result.setDuration(itinerary.duration());
+
+                List<FlightSegmentDTO> segments = new ArrayList<>();
+                List<StopDTO> stops = new ArrayList<>(); 
+                LocalDateTime previousSegmentArrival = null;
+
+                List<AmadeusFlightOffer.Segment> segmentsArray = itinerary.segments();
+                if (segmentsArray != null && !segmentsArray.isEmpty()) {
+                    for (int i = 0; i < segmentsArray.size(); i++) {
+                        AmadeusFlightOffer.Segment segment = segmentsArray.get(i);
+                        FlightSegmentDTO flightSegment = new FlightSegmentDTO();
+
+                        String departureIataCode = segment.departureIataCode();
+                        String departureDateTime = segment.departureAt();
+                        String arrivalIataCode = segment.arrivalIataCode();
+                        String arrivalDateTime = segment.arrivalAt();
+                        String carrierCode = segment.carrierCode();
+                        String number = segment.number();
+                        String segmentDuration = segment.duration();
+                        String operatingCarrierCode = segment.operatingCarrierCode();
+
+                        flightSegment.setDepartureIataCode(departureIataCode);
+                        flightSegment.setDepartureDateTime(departureDateTime);
+                        flightSegment.setArrivalIataCode(arrivalIataCode);
+                        flightSegment.setArrivalDateTime(arrivalDateTime);
+                        flightSegment.setCarrierCode(carrierCode);
+                        flightSegment.setNumber(number);
+                        flightSegment.setDuration(segmentDuration);
+                        flightSegment.setOperatingCarrierCode(operatingCarrierCode);
+
+                        segments.add(flightSegment);
+
+                        if (i == 0) {
+                            result.setDepartureDateTime(departureDateTime);
+                            result.setDepartureAirport(new AirportDTO(departureIataCode, fullAirportNamesMap.getOrDefault(departureIataCode, departureIataCode)));
+                            result.setAirline(new AirlineDTO(carrierCode, airlineNames.getOrDefault(carrierCode, carrierCode)));
+                            if (operatingCarrierCode != null && !Objects.equals(operatingCarrierCode, carrierCode)) { // Use Objects.equals for string comparison
+                                result.setOperatingAirline(new AirlineDTO(operatingCarrierCode, airlineNames.getOrDefault(operatingCarrierCode, operatingCarrierCode)));
+                            } else {
+                                result.setOperatingAirline(null);
                             }
+                        }
+                        if (i == segmentsArray.size() - 1) {
+                            result.setArrivalDateTime(arrivalDateTime);
+                            result.setArrivalAirport(new AirportDTO(arrivalIataCode, fullAirportNamesMap.getOrDefault(arrivalIataCode, arrivalIataCode)));
+                        }
 
-                            // Calculate layover time and add stops (as before)
-                            if (previousSegmentArrival != null && departureDateTime != null) {
-                                try {
-                                    LocalDateTime currentSegmentDeparture = LocalDateTime.parse(departureDateTime);
-                                    Duration layoverDuration = Duration.between(previousSegmentArrival, currentSegmentDeparture);
+                        // Calculate layover time and add stops (as before)
+                        if (previousSegmentArrival != null && departureDateTime != null) {
+                            try {
+                                LocalDateTime currentSegmentDeparture = LocalDateTime.parse(departureDateTime);
+                                Duration layoverDuration = Duration.between(previousSegmentArrival, currentSegmentDeparture);
 
-                                    if (!layoverDuration.isNegative() && !layoverDuration.isZero()) {
-                                        String stopAirportCode = safeGetText(segmentsArray.get(i-1).get("arrival"), "iataCode"); // Access nested arrival node
-                                        String stopAirportName = fullAirportNamesMap.getOrDefault(stopAirportCode, stopAirportCode); // Get name from map
+                                if (!layoverDuration.isNegative() && !layoverDuration.isZero()) {
+                                    String stopAirportCode = segmentsArray.get(i - 1).arrivalIataCode();
+                                    String stopAirportName = fullAirportNamesMap.getOrDefault(stopAirportCode, stopAirportCode); // Get name from map
 
-                                        StopDTO stopDto = new StopDTO(); 
-                                        stopDto.setAirportCode(stopAirportCode);
-                                        stopDto.setAirportName(stopAirportName);
-                                        stopDto.setLayoverDuration(formatDuration(layoverDuration)); // Use formatDuration helper
+                                    StopDTO stopDto = new StopDTO(); 
+                                    stopDto.setAirportCode(stopAirportCode);
+                                    stopDto.setAirportName(stopAirportName);
+                                    stopDto.setLayoverDuration(formatDuration(layoverDuration)); // Use formatDuration helper
 
-                                        stops.add(stopDto);
-                                    }
-                                } catch (DateTimeParseException e) {
-                                    logger.warn("Could not parse date/time for layover calculation for offer ID {}: {}", offerId, e.getMessage());
-                                } catch (IllegalArgumentException e) {
-                                    logger.warn("IllegalArgumentException during layover calculation for offer ID {}: {}", offerId, e.getMessage());
+                                    stops.add(stopDto);
                                 }
+                            } catch (DateTimeParseException e) {
+                                logger.warn("Could not parse date/time for layover calculation for offer ID {}: {}", offerId, e.getMessage());
+                            } catch (IllegalArgumentException e) {
+                                logger.warn("IllegalArgumentException during layover calculation for offer ID {}: {}", offerId, e.getMessage());
                             }
-                            if (arrivalDateTime != null) {
-                                try {
-                                    previousSegmentArrival = LocalDateTime.parse(arrivalDateTime);
-                                } catch (DateTimeParseException e) {
-                                    logger.warn("Could not parse arrivalDateTime for previousSegmentArrival tracking for offer ID {}: {}", offerId, e.getMessage());
-                                    previousSegmentArrival = null;
-                                }
-                            } else {
+                        }
+                        if (arrivalDateTime != null) {
+                            try {
+                                previousSegmentArrival = LocalDateTime.parse(arrivalDateTime);
+                            } catch (DateTimeParseException e) {
+                                logger.warn("Could not parse arrivalDateTime for previousSegmentArrival tracking for offer ID {}: {}", offerId, e.getMessage());
                                 previousSegmentArrival = null;
                             }
-                        } // End of segments loop
-                    } else {
-                        logger.warn("No 'segments' found or not array/empty for itinerary {} of offer ID: {}", itineraryIndex, offerId);
-                    }
-                    result.setSegments(segments);
-                    result.setStops(stops);
-                    flightOffers.add(result);
+                        } else {
+                            previousSegmentArrival = null;
+                        }
+                    } // End of segments loop
+                } else {
+                    logger.warn("No 'segments' found or not array/empty for itinerary {} of offer ID: {}", itineraryIndex, offerId);
+                }
+                result.setSegments(segments);
+                result.setStops(stops);
+                flightOffers.add(result);
+            }
+        } else {
+            logger.warn("No 'itineraries' found or not array/empty for offer ID: {}", offerId);
+        }
+    }
+
+    // Names are only known after the whole response was read, so they are filled into the mapped results afterwards
+    // (package-private for the JMH benchmarks)
+    void applyNames(List<FlightSearchResultDTO> results, Map<String, String> fullAirportNamesMap, Map<String, String> airlineNames) {
+        for (FlightSearchResultDTO result : results) {
+            nameAirport(result.getDepartureAirport(), fullAirportNamesMap);
+            nameAirport(result.getArrivalAirport(), fullAirportNamesMap);
+            nameAirline(result.getAirline(), airlineNames);
+            nameAirline(result.getOperatingAirline(), airlineNames);
+            if (result.getStops() != null) {
+                for (StopDTO stop : result.getStops()) {
+                    stop.setAirportName(fullAirportNamesMap.getOrDefault(stop.getAirportCode(), stop.getAirportCode()));
                 }
-            } else {
-                logger.warn("No 'itineraries' found or not array/empty for offer ID: {}", offerId);
             }
         }
-        return flightOffers;
+    }
+
+    private void nameAirport(AirportDTO airport, Map<String, String> fullAirportNamesMap) {
+        if (airport != null) {
+            airport.setName(fullAirportNamesMap.getOrDefault(airport.getCode(), airport.getCode()));
+        }
+    }
+
+    private void nameAirline(AirlineDTO airline, Map<String, String> airlineNames) {
+        if (airline != null) {
+            airline.setName(airlineNames.getOrDefault(airline.getCode(), airline.getCode()));
+        }
     }
 
     // FETCH FLIGHT OFFER DETAILS
     public Mono<JsonNode> getFlightOfferDetails(String amadeusOfferId) {
-        logger.info("Attempting to retrieve flight offer details for Amadeus ID: {} from cache.", amadeusOfferId);
+        return getCachedOffer(amadeusOfferId, JsonNode.class);
+    }
+
+    /**
+     * The cached flight offer bound to the typed Amadeus model.
+     */
+    public Mono<AmadeusFlightOffer> getFlightOffer(String amadeusOfferId) {
+        return getCachedOffer(amadeusOfferId, AmadeusFlightOffer.class);
+    }
 
-        JsonNode cachedOffer = flightOffersCache.get(amadeusOfferId);
+    private <T> Mono<T> getCachedOffer(String amadeusOfferId, Class<T> type) {
+        logger.info("Attempting to retrieve flight offer details for Amadeus ID: {} from cache.", amadeusOfferId);
 
-        if (cachedOffer == null) {
-            logger.error("Flight offer with ID {} not found in cache. This offer cannot be detailed.", amadeusOfferId);
-            // It's critical that the offer is in the cache from the initial search.
-            // If not, there's no way to get its details without re-running a search.
-            return Mono.error(new IllegalArgumentException("Flight offer details for ID " + amadeusOfferId + " not found or expired in cache. Please perform a new search."));
-        } else {
-            logger.info("Successfully retrieved flight offer ID {} from cache for detailed mapping.", amadeusOfferId);
-            // This is the full original flight offer from the search.
-            return Mono.just(cachedOffer);
-        }
+        // Decoded from the stored bytes only when the details are actually subscribed to. A miss
+        // may wait a moment for the offer store to catch up with other replicas, off this thread.
+        Mono<FlightOfferCache.Lookup<T>> cached = Mono.fromFuture(() -> flightOffersCache.lookupAsync(amadeusOfferId, type));
+        return ServerTiming.timed(ServerTiming.OFFER_CACHE, cached.flatMap(lookup -> {
+            if (lookup.status() == OfferStore.Status.EXPIRED) {
+                logger.warn("Flight offer with ID {} was cached but has expired or been evicted.", amadeusOfferId);
+                return Mono.error(new OfferExpiredException("Flight offer " + amadeusOfferId + " has expired. Please perform a new search."));
+            } else if (lookup.status() == OfferStore.Status.NOT_FOUND) {
+                logger.error("Flight offer with ID {} not found in cache. This offer cannot be detailed.", amadeusOfferId);
+                // It's critical that the offer is in the cache from the initial search.
+                // If not, there's no way to get its details without re-running a search.
+                return Mono.error(new IllegalArgumentException("Flight offer details for ID " + amadeusOfferId + " not found or expired in cache. Please perform a new search."));
+            } else {
+                logger.info("Successfully retrieved flight offer ID {} from cache for detailed mapping.", amadeusOfferId);
+                // This is the full original flight offer from the search.
+                return Mono.just(lookup.offer());
+            }
+        }));
     }
 
     //--- mapToFlightDetailsResponseDTO ---
     public FlightDetailsResponseDTO mapToFlightDetailsResponseDTO(String amadeusOfferId, JsonNode flightOffer, Map<String, String> airportNamesMap) {
+        return mapToFlightDetailsResponseDTO(amadeusOfferId, objectMapper.convertValue(flightOffer, AmadeusFlightOffer.class), airportNamesMap);
+    }
+
+    public FlightDetailsResponseDTO mapToFlightDetailsResponseDTO(String amadeusOfferId, AmadeusFlightOffer flightOffer, Map<String, String> airportNamesMap) {
+        long startedAt = System.nanoTime();
+        try {
+            return mapDetails(amadeusOfferId, flightOffer, airportNamesMap);
+        } finally {
+            detailsMapping.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private FlightDetailsResponseDTO mapDetails(String amadeusOfferId, AmadeusFlightOffer flightOffer, Map<String, String> airportNamesMap) {
         FlightDetailsResponseDTO dto = new FlightDetailsResponseDTO();
         dto.setAmadeusOfferId(amadeusOfferId);
 
-        JsonNode travelerPricingsNode = flightOffer.get("travelerPricings");
+        List<AmadeusTravelerPricing> travelerPricings = flightOffer.travelerPricings();
 
         // --- TotalPrice ---
-        JsonNode priceNode = flightOffer.get("price");
-        if (priceNode != null) {
+        AmadeusPrice price = flightOffer.price();
+        if (price != null) {
             PriceDTO priceDTO = new PriceDTO();
-            priceDTO.setBase(safeGetText(priceNode, "base"));
-            priceDTO.setTotal(safeGetText(priceNode, "grandTotal")); 
-            priceDTO.setCurrency(safeGetText(priceNode, "currency"));
+            priceDTO.setBase(price.base());
+            priceDTO.setTotal(price.grandTotal());
+            priceDTO.setCurrency(price.currency());
 
             // Calculate fees as total - base
             if (priceDTO.getBase() != null && priceDTO.getTotal() != null) {
@@ -543,14 +1588,14 @@ public class AmadeusService {
             }
 
             int numberOfAdults = 0;
-            if (travelerPricingsNode != null && travelerPricingsNode.isArray()) {
-                numberOfAdults = ((ArrayNode) travelerPricingsNode).size();
+            if (travelerPricings != null) {
+                numberOfAdults = travelerPricings.size();
                 dto.setNumberOfAdults(numberOfAdults);
 
-                if (travelerPricingsNode.size() > 0) {
-                    JsonNode firstTravelerPricing = travelerPricingsNode.get(0);
-                    if (firstTravelerPricing.has("price") && firstTravelerPricing.get("price").has("total")) {
-                        priceDTO.setPricePerAdult(firstTravelerPricing.get("price").get("total").asText());
+                if (!travelerPricings.isEmpty()) {
+                    AmadeusPrice firstTravelerPrice = travelerPricings.get(0).price();
+                    if (firstTravelerPrice != null && firstTravelerPrice.total() != null) {
+                        priceDTO.setPricePerAdult(firstTravelerPrice.total());
                     } else {
                         logger.warn("pricePerAdult not found in travelerPricings for offer ID: {}. Falling back to total price.", amadeusOfferId);
                         priceDTO.setPricePerAdult(priceDTO.getTotal()); // Fallback
@@ -572,36 +1617,35 @@ public class AmadeusService {
 
         // --- Itineraries ---
         List<ItineraryDTO> itineraries = new ArrayList<>();
-        JsonNode itinerariesNode = flightOffer.get("itineraries");
-        if (itinerariesNode != null && itinerariesNode.isArray()) {
+        if (flightOffer.itineraries() != null) {
             int itineraryIndex = 0;
-            for (JsonNode itineraryNode : itinerariesNode) {
+            for (AmadeusFlightOffer.Itinerary itinerary : flightOffer.itineraries()) {
                 ItineraryDTO itineraryDTO = new ItineraryDTO();
                 itineraryDTO.setId(amadeusOfferId + "-" + itineraryIndex++);
-                itineraryDTO.setDuration(safeGetText(itineraryNode, "duration"));
+                itineraryDTO.setDuration(itinerary.duration());
 
                 itineraryDTO.setDirection(itineraryIndex == 1 ? "OUTBOUND" : "INBOUND");
 
 
-                JsonNode segmentsNode = itineraryNode.get("segments");
-                if (segmentsNode != null && segmentsNode.isArray() && segmentsNode.size() > 0) {
-                    JsonNode firstSegment = segmentsNode.get(0);
-                    JsonNode lastSegment = segmentsNode.get(segmentsNode.size() - 1);
+                List<AmadeusFlightOffer.Segment> segmentsList = itinerary.segments();
+                if (segmentsList != null && !segmentsList.isEmpty()) {
+                    AmadeusFlightOffer.Segment firstSegment = segmentsList.get(0);
+                    AmadeusFlightOffer.Segment lastSegment = segmentsList.get(segmentsList.size() - 1);
 
                     // This is where is set the departure and arrival times for the ITINERARY
                     // They are taken from the first and last segments of that itinerary.
-                    itineraryDTO.setDepartureDateTime(safeGetText(firstSegment.get("departure"), "at"));
-                    itineraryDTO.setArrivalDateTime(safeGetText(lastSegment.get("arrival"), "at"));
+                    itineraryDTO.setDepartureDateTime(firstSegment.departureAt());
+                    itineraryDTO.setArrivalDateTime(lastSegment.arrivalAt());
 
                     // Departure Airport for Itinerary (from the first segment's departure)
                     AirportDTO departureAirport = new AirportDTO();
-                    departureAirport.setCode(safeGetText(firstSegment.get("departure"), "iataCode"));
+                    departureAirport.setCode(firstSegment.departureIataCode());
                     departureAirport.setName(airportNamesMap.getOrDefault(departureAirport.getCode(), departureAirport.getCode())); 
                     itineraryDTO.setDepartureAirport(departureAirport);
 
                     // Arrival Airport for Itinerary (from the last segment's arrival)
                     AirportDTO arrivalAirport = new AirportDTO();
-                    arrivalAirport.setCode(safeGetText(lastSegment.get("arrival"), "iataCode"));
+                    arrivalAirport.setCode(lastSegment.arrivalIataCode());
                     arrivalAirport.setName(airportNamesMap.getOrDefault(arrivalAirport.getCode(), arrivalAirport.getCode())); 
                     itineraryDTO.setArrivalAirport(arrivalAirport);
                 }
@@ -609,15 +1653,15 @@ public class AmadeusService {
 
                 // Stops (layovers)
                 List<StopDTO> stops = new ArrayList<>();
-                if (segmentsNode != null && segmentsNode.isArray()) {
+                if (segmentsList != null) {
                     // Loop through segments to find layovers. A layover exists between N and N+1 segments.
-                    for (int i = 0; i < segmentsNode.size() - 1; i++) {
-                        JsonNode currentSegment = segmentsNode.get(i);
-                        JsonNode nextSegment = segmentsNode.get(i + 1);
+                    for (int i = 0; i < segmentsList.size() - 1; i++) {
+                        AmadeusFlightOffer.Segment currentSegment = segmentsList.get(i);
+                        AmadeusFlightOffer.Segment nextSegment = segmentsList.get(i + 1);
 
-                        String stopAirportCode = safeGetText(currentSegment.get("arrival"), "iataCode");
-                        String nextDepartureTimeStr = safeGetText(nextSegment.get("departure"), "at");
-                        String currentArrivalTimeStr = safeGetText(currentSegment.get("arrival"), "at");
+                        String stopAirportCode = currentSegment.arrivalIataCode();
+                        String nextDepartureTimeStr = nextSegment.departureAt();
+                        String currentArrivalTimeStr = currentSegment.arrivalAt();
 
                         if (stopAirportCode != null && nextDepartureTimeStr != null && currentArrivalTimeStr != null) {
                             try {
@@ -643,22 +1687,22 @@ public class AmadeusService {
 
                 // Mapping of Segments
                 List<DetailedSegmentDTO> detailedSegments = new ArrayList<>();
-                if (segmentsNode != null && segmentsNode.isArray()) {
-                    for (JsonNode segmentNode : segmentsNode) {
+                if (segmentsList != null) {
+                    for (AmadeusFlightOffer.Segment segment : segmentsList) {
                         DetailedSegmentDTO detailedSegment = new DetailedSegmentDTO();
 
-                        String currentSegmentId = safeGetText(segmentNode, "id"); 
+                        String currentSegmentId = segment.id();
                         logger.debug("Processing segment with ID: {}", currentSegmentId);
 
-                        detailedSegment.setDepartureIataCode(safeGetText(segmentNode.get("departure"), "iataCode"));
-                        detailedSegment.setArrivalIataCode(safeGetText(segmentNode.get("arrival"), "iataCode"));
-                        detailedSegment.setDepartureDateTime(safeGetText(segmentNode.get("departure"), "at"));
-                        detailedSegment.setArrivalDateTime(safeGetText(segmentNode.get("arrival"), "at"));
-                        detailedSegment.setCarrierCode(safeGetText(segmentNode, "carrierCode"));
-                        detailedSegment.setNumber(safeGetText(segmentNode, "number"));
-                        detailedSegment.setDuration(safeGetText(segmentNode, "duration"));
-                        detailedSegment.setOperatingCarrierCode(safeGetText(segmentNode.get("operating"), "carrierCode"));
-                        detailedSegment.setAircraftCode(safeGetText(segmentNode.get("aircraft"), "code"));
+                        detailedSegment.setDepartureIataCode(segment.departureIataCode());
+                        detailedSegment.setArrivalIataCode(segment.arrivalIataCode());
+                        detailedSegment.setDepartureDateTime(segment.departureAt());
+                        detailedSegment.setArrivalDateTime(segment.arrivalAt());
+                        detailedSegment.setCarrierCode(segment.carrierCode());
+                        detailedSegment.setNumber(segment.number());
+                        detailedSegment.setDuration(segment.duration());
+                        detailedSegment.setOperatingCarrierCode(segment.operatingCarrierCode());
+                        detailedSegment.setAircraftCode(segment.aircraftCode());
 
                         // Lookup names using predefined maps or a more comprehensive dictionary
                         detailedSegment.setDepartureAirportName(detailedSegment.getDepartureIataCode()); 
@@ -671,43 +1715,39 @@ public class AmadeusService {
                         // --- Mapping of FareDetails and AMENITIES ---
                         // For each segment, find the corresponding fare details for each traveler
                         List<FareDetailDTO> travelerFareDetailsForSegment = new ArrayList<>();
-                        if (travelerPricingsNode != null && travelerPricingsNode.isArray()) {
-                            for (JsonNode travelerPricingNode : travelerPricingsNode) {
-                                JsonNode fareDetailsBySegmentArrayNode = travelerPricingNode.get("fareDetailsBySegment");
-                                if (fareDetailsBySegmentArrayNode != null && fareDetailsBySegmentArrayNode.isArray()) {
-                                    for (JsonNode fareDetailNode : fareDetailsBySegmentArrayNode) {
-                                        String fareDetailSegmentId = safeGetText(fareDetailNode, "segmentId");
-                                        logger.debug("  Comparing fareDetailNode segmentId '{}' with currentSegmentId '{}' for traveler ID '{}'",
-                                            fareDetailSegmentId, currentSegmentId, safeGetText(travelerPricingNode, "travelerId"));
+                        if (travelerPricings != null) {
+                            for (AmadeusTravelerPricing travelerPricing : travelerPricings) {
+                                if (travelerPricing.fareDetailsBySegment() != null) {
+                                    for (AmadeusTravelerPricing.FareDetailsBySegment fareDetails : travelerPricing.fareDetailsBySegment()) {
+                                        String fareDetailSegmentId = fareDetails.segmentId();
+                                        logger.debug("  Comparing fareDetails segmentId '{}' with currentSegmentId '{}' for traveler ID '{}'",
+                                            fareDetailSegmentId, currentSegmentId, travelerPricing.travelerId());
 
                                         // Match current segment's ID with the segmentId in fareDetailsBySegment
                                         if (fareDetailSegmentId != null && fareDetailSegmentId.equals(currentSegmentId)) {
-                                            logger.debug("  MATCH FOUND! Processing fareDetailNode for segmentId: {}", currentSegmentId);
+                                            logger.debug("  MATCH FOUND! Processing fareDetails for segmentId: {}", currentSegmentId);
 
                                             FareDetailDTO fareDetail = new FareDetailDTO();
-                                            fareDetail.setCabin(safeGetText(fareDetailNode, "cabin"));
-                                            fareDetail.setFareBasis(safeGetText(fareDetailNode, "fareBasis"));
-                                            fareDetail.setBrandedFare(safeGetText(fareDetailNode, "brandedFare"));
-                                            fareDetail.setClassCode(safeGetText(fareDetailNode, "class"));
+                                            fareDetail.setCabin(fareDetails.cabin());
+                                            fareDetail.setFareBasis(fareDetails.fareBasis());
+                                            fareDetail.setBrandedFare(fareDetails.brandedFare());
+                                            fareDetail.setClassCode(fareDetails.fareClass());
 
                                             // Initialize amenities list for this TravelerFareDetail
                                             fareDetail.setAmenities(new ArrayList<>());
 
-                                            JsonNode amenitiesArrayNode = fareDetailNode.get("amenities");
-                                            if (amenitiesArrayNode == null) {
+                                            List<AmadeusTravelerPricing.Amenity> amenities = fareDetails.amenities();
+                                            if (amenities == null) {
                                                 logger.debug("    Amenities node is NULL for segmentId {} / fareBasis {}", fareDetailSegmentId, fareDetail.getFareBasis());
-                                            } else if (!amenitiesArrayNode.isArray()) {
-                                                logger.debug("    Amenities node is NOT an array for segmentId {} / fareBasis {}. Type: {}", fareDetailSegmentId, fareDetail.getFareBasis(), amenitiesArrayNode.getNodeType());
-                                            } else if (amenitiesArrayNode.size() == 0) {
+                                            } else if (amenities.isEmpty()) {
                                                 logger.debug("    Amenities array is EMPTY for segmentId {} / fareBasis {}.", fareDetailSegmentId, fareDetail.getFareBasis());
                                             } else {
-                                                logger.debug("    Amenities array found with size {} for segmentId {} / fareBasis {}.", amenitiesArrayNode.size(), fareDetailSegmentId, fareDetail.getFareBasis());
-                                                // Only iterate if the array has elements
-                                                for (JsonNode amenityNode : amenitiesArrayNode) {
+                                                logger.debug("    Amenities array found with size {} for segmentId {} / fareBasis {}.", amenities.size(), fareDetailSegmentId, fareDetail.getFareBasis());
+                                                for (AmadeusTravelerPricing.Amenity amenity : amenities) {
                                                     AmenityDTO amenityDTO = new AmenityDTO();
-                                                    amenityDTO.setDescription(safeGetText(amenityNode, "description"));
-                                                    amenityDTO.setChargeable(safeGetBoolean(amenityNode, "isChargeable", false));
-                                                    amenityDTO.setAmenityType(safeGetText(amenityNode, "amenityType"));
+                                                    amenityDTO.setDescription(amenity.description());
+                                                    amenityDTO.setChargeable(Boolean.TRUE.equals(amenity.chargeable()));
+                                                    amenityDTO.setAmenityType(amenity.amenityType());
 
                                                     fareDetail.getAmenities().add(amenityDTO);
                                                     logger.debug("      Added Amenity: Description='{}'", amenityDTO.getDescription());
@@ -715,7 +1755,7 @@ public class AmadeusService {
                                             }
                                             travelerFareDetailsForSegment.add(fareDetail);
                                         } else {
-                                            logger.debug("  NO MATCH: fareDetailNode segmentId '{}' != currentSegmentId '{}'", fareDetailSegmentId, currentSegmentId);
+                                            logger.debug("  NO MATCH: fareDetails segmentId '{}' != currentSegmentId '{}'", fareDetailSegmentId, currentSegmentId);
                                         }
                                     }
                                 }
@@ -769,43 +1809,4 @@ public class AmadeusService {
         }
         return duration.toString();
     }
-
-    /**
-     * Safely gets text from a JsonNode, returning null if the node or value is missing.
-     * Handles nested fields by passing an array of field names.
-     * @param node The parent JsonNode.
-     * @param fieldNames The names of the fields to retrieve, in hierarchical order.
-     * @return The text value of the field, or null if not found.
-     */
-    public String safeGetText(JsonNode node, String... fieldNames) {
-        if (node == null || fieldNames == null || fieldNames.length == 0) {
-            return null;
-        }
-        JsonNode currentNode = node;
-        for (String fieldName : fieldNames) {
-            if (currentNode != null && currentNode.has(fieldName) && !currentNode.get(fieldName).isNull()) {
-                currentNode = currentNode.get(fieldName);
-            } else {
-                return null;
-            }
-        }
-        return currentNode != null ? currentNode.asText() : null;
-    }
-
-   
-    /**
-     * Helper method to safely get a boolean from a JsonNode.
-     *
-     * @param node The JsonNode to extract from.
-     * @param fieldName The name of the field.
-     * @param defaultValue The default value if not found or not boolean.
-     * @return The boolean value, or defaultValue.
-     */
-    private boolean safeGetBoolean(JsonNode node, String fieldName, boolean defaultValue) {
-        if (node != null && node.has(fieldName) && node.get(fieldName).isBoolean()) {
-            return node.get(fieldName).asBoolean();
-        }
-        return defaultValue;
-    }
-
 }
@@ -0,0 +1,190 @@
+package com.flightsearch.backend.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.flightsearch.backend.config.AmadeusConfig;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Access Token Manager
+ * Keeps the Amadeus OAuth2 token between calls instead of requesting a new one every time.
+ * The token is reused until shortly before its expires_in deadline, a background refresh
+ * starts when it gets close to that deadline, and concurrent callers that need a new token
+ * share a single in-flight request. Each refresh is timed (amadeus.token.refresh, by outcome),
+ * including any wait for the token endpoint's rate limit and retries.
+ */
+public class AmadeusTokenManager {
+
+    private static final Logger logger = LoggerFactory.getLogger(AmadeusTokenManager.class);
+
+    // Amadeus tokens currently live for 1799 seconds, used if the response has no expires_in
+    private static final long DEFAULT_EXPIRES_IN_SECONDS = 1799;
+
+    private final WebClient webClient;
+    private final AmadeusConfig amadeusConfig;
+    private final OutboundLimiter tokenLimiter;
+    private final Clock clock;
+    private final Timer refreshSucceeded;
+    private final Timer refreshFailed;
+
+    private final AtomicReference<CachedToken> currentToken = new AtomicReference<>();
+    private final AtomicReference<Mono<CachedToken>> inFlightRefresh = new AtomicReference<>();
+
+    public AmadeusTokenManager(WebClient webClient, AmadeusConfig amadeusConfig, OutboundLimiter tokenLimiter,
+                               MeterRegistry meterRegistry) {
+        this(webClient, amadeusConfig, tokenLimiter, meterRegistry, Clock.systemUTC());
+    }
+
+    AmadeusTokenManager(WebClient webClient, AmadeusConfig amadeusConfig, OutboundLimiter tokenLimiter,
+                        MeterRegistry meterRegistry, Clock clock) {
+        this.webClient = webClient;
+        this.amadeusConfig = amadeusConfig;
+        this.tokenLimiter = tokenLimiter;
+        this.clock = clock;
+        this.refreshSucceeded = refreshTimer(meterRegistry, "success");
+        this.refreshFailed = refreshTimer(meterRegistry, "failure");
+    }
+
+    private static Timer refreshTimer(MeterRegistry meterRegistry, String outcome) {
+        return Timer.builder("amadeus.token.refresh")
+            .description("Access token requests, including rate limit waits and retries")
+            .tag("outcome", outcome)
+            .publishPercentileHistogram()
+            .register(meterRegistry);
+    }
+
+    /**
+     * Returns a usable access token, requesting a new one only when needed.
+     */
+    public Mono<String> getAccessToken() {
+        return Mono.defer(() -> {
+            CachedToken token = currentToken.get();
+            Instant now = clock.instant();
+
+            if (token != null && token.isUsableAt(now)) {
+                if (token.isDueForRefreshAt(now)) {
+                    refreshInBackground();
+                }
+                return Mono.just(token.value());
+            }
+            return sharedRefresh().map(CachedToken::value);
+        });
+    }
+
+    /**
+     * Drops the given token if it is still the current one (e.g. after Amadeus answered 401),
+     * so the next caller fetches a fresh token.
+     */
+    public void invalidate(String rejectedToken) {
+        CachedToken token = currentToken.get();
+        if (token != null && token.value().equals(rejectedToken) && currentToken.compareAndSet(token, null)) {
+            logger.warn("Invalidated rejected Amadeus access token");
+        }
+    }
+
+    private void refreshInBackground() {
+        if (inFlightRefresh.get() != null) {
+            return;
+        }
+        logger.debug("Access token is close to expiring. Refreshing it in the background.");
+        sharedRefresh().subscribe(
+            token -> logger.debug("Background access token refresh completed"),
+            error -> logger.warn("Background access token refresh failed: {}", error.getMessage()));
+    }
+
+    // All callers arriving while a refresh is running subscribe to the same cached request
+    private Mono<CachedToken> sharedRefresh() {
+        Mono<CachedToken> pending = inFlightRefresh.get();
+        if (pending != null) {
+            return pending;
+        }
+
+        Mono<CachedToken> refresh = timed(requestToken())
+            .doOnNext(currentToken::set)
+            .doFinally(signal -> inFlightRefresh.set(null))
+            .cache();
+
+        if (inFlightRefresh.compareAndSet(null, refresh)) {
+            return refresh;
+        }
+        // Another caller started a refresh in the meantime, join it instead
+        return sharedRefresh();
+    }
+
+    private Mono<CachedToken> timed(Mono<CachedToken> refresh) {
+        return Mono.defer(() -> {
+            long startedAt = System.nanoTime();
+            return refresh
+                .doOnSuccess(token -> refreshSucceeded.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS))
+                .doOnError(error -> refreshFailed.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS));
+        });
+    }
+
+    private Mono<CachedToken> requestToken() {
+        logger.info("Getting access token from Amadeus...");
+
+        String credentials = Base64.getEncoder()
+            .encodeToString((amadeusConfig.getKey() + ":" + amadeusConfig.getSecret()).getBytes(StandardCharsets.UTF_8));
+
+        // The token endpoint has its own bulkhead and circuit breaker, apart from the API calls
+        return tokenLimiter.execute(() -> webClient.post()
+                .uri("/v1/security/oauth2/token")
+                .header(HttpHeaders.AUTHORIZATION, "Basic " + credentials)
+                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_FORM_URLENCODED_VALUE)
+                .bodyValue("grant_type=client_credentials")
+                .retrieve()
+                .bodyToMono(JsonNode.class))
+            .map(response -> {
+                String accessToken = response.get("access_token").asText();
+                long expiresIn = response.hasNonNull("expires_in") ? response.get("expires_in").asLong() : DEFAULT_EXPIRES_IN_SECONDS;
+                CachedToken token = CachedToken.issued(accessToken, Duration.ofSeconds(expiresIn), clock.instant(), amadeusConfig.getToken());
+                logger.info("Successfully got access token: {} (expires in {}s)",
+                    accessToken.substring(0, Math.min(10, accessToken.length())) + "...", expiresIn);
+                return token;
+            })
+            .doOnError(error -> logger.error("Failed to get access token: {}", error.getMessage()));
+    }
+
+    /**
+     * Token value plus the instants at which it should be refreshed and stop being used.
+     */
+    record CachedToken(String value, Instant refreshAfter, Instant usableUntil) {
+
+        static CachedToken issued(String value, Duration lifetime, Instant issuedAt, AmadeusConfig.Token settings) {
+            // Clamp the configured windows so very short-lived tokens are still usable for a while
+            Duration margin = min(settings.getExpiryMargin(), lifetime.dividedBy(4));
+            Duration refreshAhead = min(settings.getRefreshAhead(), lifetime.dividedBy(2));
+            Instant expiresAt = issuedAt.plus(lifetime);
+            return new CachedToken(value, expiresAt.minus(refreshAhead), expiresAt.minus(margin));
+        }
+
+        boolean isUsableAt(Instant now) {
+            return now.isBefore(usableUntil);
+        }
+
+        boolean isDueForRefreshAt(Instant now) {
+            return !now.isBefore(refreshAfter);
+        }
+
+        private static Duration min(Duration a, Duration b) {
+            return a.compareTo(b) <= 0 ? a : b;
+        }
+    }
+}
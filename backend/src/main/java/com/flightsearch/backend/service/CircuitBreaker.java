@@ -0,0 +1,204 @@
+package com.flightsearch.backend.service;
+
+import com.flightsearch.backend.config.AmadeusConfig;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import java.time.Duration;
+
+/**
+ * Circuit Breaker
+ * Tracks the outcome of the last window-size calls to one Amadeus endpoint family. Once enough
+ * of them failed or were slow, the circuit opens and calls fail at once with
+ * UpstreamUnavailableException instead of piling up behind an endpoint that is down. After
+ * the open duration a few trial calls are let through (half open): if all succeed the circuit
+ * closes, if one fails it opens again.
+ *
+ * Only server side trouble counts as failure: 5xx responses, connection errors, timeouts and
+ * unreadable responses. 4xx responses (including 429, handled by the rate limiter) do not.
+ */
+public class CircuitBreaker {
+
+    private static final Logger logger = LoggerFactory.getLogger(CircuitBreaker.class);
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final String name;
+    private final AmadeusConfig.RateLimit.Endpoint settings;
+
+    // All guarded by this
+    private State state = State.CLOSED;
+    private final boolean[] failedCalls;
+    private final boolean[] slowCalls;
+    private int recorded;
+    private int next;
+    private int failures;
+    private int slow;
+    private long openedAt;
+    private int trialPermits;
+    private int trialSuccesses;
+
+    private final Counter opened;
+    private final Counter rejected;
+
+    public CircuitBreaker(String name, AmadeusConfig.RateLimit.Endpoint settings, MeterRegistry meterRegistry) {
+        this.name = name;
+        this.settings = settings;
+        int windowSize = Math.max(1, settings.getCircuit().getWindowSize());
+        this.failedCalls = new boolean[windowSize];
+        this.slowCalls = new boolean[windowSize];
+
+        this.opened = Counter.builder(name + ".circuit.opened")
+            .description("Times the circuit breaker opened")
+            .register(meterRegistry);
+        this.rejected = Counter.builder(name + ".circuit.rejected")
+            .description("Calls failed at once because the circuit was open")
+            .register(meterRegistry);
+        Gauge.builder(name + ".circuit.state", this, breaker -> breaker.getState().ordinal())
+            .description("Circuit breaker state: 0 closed, 1 open, 2 half open")
+            .register(meterRegistry);
+        Gauge.builder(name + ".circuit.failure.rate", this, CircuitBreaker::failureRate)
+            .description("Share of failed calls in the current window")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Lets a call through, or throws UpstreamUnavailableException while the circuit is open
+     * (or half open with all trial calls taken). A permitted call must end with exactly one of
+     * onSuccess, onError or release.
+     */
+    public void acquirePermission() {
+        Duration retryAfter;
+        synchronized (this) {
+            long now = System.nanoTime();
+            long openNanos = settings.getCircuit().getOpenDuration().toNanos();
+            if (state == State.OPEN && now - openedAt >= openNanos) {
+                logger.info("{}: circuit half open, letting trial calls through", name);
+                state = State.HALF_OPEN;
+                trialPermits = Math.max(1, settings.getCircuit().getHalfOpenCalls());
+                trialSuccesses = 0;
+            }
+            if (state == State.CLOSED) {
+                return;
+            }
+            if (state == State.HALF_OPEN && trialPermits > 0) {
+                trialPermits--;
+                return;
+            }
+            retryAfter = state == State.OPEN ? Duration.ofNanos(openNanos - (now - openedAt)) : Duration.ofSeconds(1);
+        }
+        rejected.increment();
+        throw new UpstreamUnavailableException("Amadeus (" + name + ") is currently unavailable. Please try again later.", retryAfter);
+    }
+
+    public void onSuccess(long durationNanos) {
+        boolean slowCall = durationNanos > settings.getLatencyThreshold().toNanos();
+        synchronized (this) {
+            if (state == State.HALF_OPEN) {
+                if (slowCall) {
+                    open("a slow trial call");
+                } else if (++trialSuccesses >= Math.max(1, settings.getCircuit().getHalfOpenCalls())) {
+                    close();
+                }
+                return;
+            }
+            if (state == State.CLOSED) {
+                record(false, slowCall);
+            }
+        }
+    }
+
+    public void onError(long durationNanos, Throwable error) {
+        if (!isFailure(error)) {
+            onSuccess(durationNanos);
+            return;
+        }
+        synchronized (this) {
+            if (state == State.HALF_OPEN) {
+                open("a failed trial call");
+            } else if (state == State.CLOSED) {
+                record(true, durationNanos > settings.getLatencyThreshold().toNanos());
+            }
+        }
+    }
+
+    /**
+     * Gives back the permission of a call that never reached Amadeus (e.g. cancelled while waiting).
+     */
+    public synchronized void release() {
+        if (state == State.HALF_OPEN) {
+            trialPermits++;
+        }
+    }
+
+    private static boolean isFailure(Throwable error) {
+        if (error instanceof WebClientResponseException response) {
+            return response.getStatusCode().is5xxServerError();
+        }
+        return true;
+    }
+
+    // Guarded by this
+    private void record(boolean failed, boolean slowCall) {
+        if (recorded == failedCalls.length) {
+            failures -= failedCalls[next] ? 1 : 0;
+            slow -= slowCalls[next] ? 1 : 0;
+        } else {
+            recorded++;
+        }
+        failedCalls[next] = failed;
+        slowCalls[next] = slowCall;
+        failures += failed ? 1 : 0;
+        slow += slowCall ? 1 : 0;
+        next = (next + 1) % failedCalls.length;
+
+        AmadeusConfig.RateLimit.Circuit circuit = settings.getCircuit();
+        if (recorded < Math.min(failedCalls.length, Math.max(1, circuit.getMinimumCalls()))) {
+            return;
+        }
+        if (failures * 100 >= circuit.getFailureRateThreshold() * recorded) {
+            open(failures + " of the last " + recorded + " calls failed");
+        } else if (slow * 100 >= circuit.getSlowCallRateThreshold() * recorded) {
+            open(slow + " of the last " + recorded + " calls were slow");
+        }
+    }
+
+    // Guarded by this
+    private void open(String reason) {
+        logger.warn("{}: circuit opened for {} ({})", name, settings.getCircuit().getOpenDuration(), reason);
+        state = State.OPEN;
+        openedAt = System.nanoTime();
+        opened.increment();
+        resetWindow();
+    }
+
+    // Guarded by this
+    private void close() {
+        logger.info("{}: circuit closed, trial calls succeeded", name);
+        state = State.CLOSED;
+        resetWindow();
+    }
+
+    private void resetWindow() {
+        recorded = 0;
+        next = 0;
+        failures = 0;
+        slow = 0;
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    public synchronized double failureRate() {
+        return recorded == 0 ? 0.0 : (double) failures / recorded;
+    }
+}
@@ -0,0 +1,201 @@
+package com.flightsearch.backend.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import com.flightsearch.backend.config.AmadeusConfig;
+import com.flightsearch.backend.dto.amadeus.AmadeusFlightOffer;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.UncheckedIOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Flight Offer Cache
+ * Keeps the raw flight offers of recent searches so /flights/{id}/details can be served
+ * without calling Amadeus again. Offers are stored encoded (see {@link OfferCodec}) and only
+ * decoded when their details are requested. Every offer expires at the end of its validity.
+ *
+ * Where the encoded offers live is up to the configured {@link OfferStore}: in this process
+ * only (memory) or in memory-mapped segment files shared by all replicas (mapped).
+ */
+public class FlightOfferCache implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(FlightOfferCache.class);
+
+    public record Lookup<T>(OfferStore.Status status, T offer) {
+    }
+
+    /**
+     * An offer in its stored form. Can be shared with other caches (e.g. the search result
+     * cache) and put back later without encoding it again.
+     */
+    public record EncodedOffer(byte[] bytes, Instant lastTicketing) {
+    }
+
+    private final OfferCodec codec;
+    private final OfferStore store;
+    private final Duration ttl;
+    private final Clock clock;
+
+    public FlightOfferCache(AmadeusConfig.OfferCache settings, MeterRegistry meterRegistry) {
+        this(settings, meterRegistry, Clock.systemUTC());
+    }
+
+    FlightOfferCache(AmadeusConfig.OfferCache settings, MeterRegistry meterRegistry, Clock clock) {
+        this(settings, createStore(settings, meterRegistry, clock), meterRegistry, clock);
+    }
+
+    FlightOfferCache(AmadeusConfig.OfferCache settings, OfferStore store, MeterRegistry meterRegistry, Clock clock) {
+        this.ttl = settings.getTtl();
+        this.clock = clock;
+        this.codec = new OfferCodec(settings.isCompress(), (int) settings.getCompressMinSize().toBytes());
+        this.store = store;
+
+        Gauge.builder("flight.offers.cache.size", store, OfferStore::size)
+            .description("Flight offers held by the offer store")
+            .register(meterRegistry);
+        Gauge.builder("flight.offers.cache.weight", store, OfferStore::sizeInBytes)
+            .description("Bytes used by cached flight offers")
+            .baseUnit("bytes")
+            .register(meterRegistry);
+    }
+
+    private static OfferStore createStore(AmadeusConfig.OfferCache settings, MeterRegistry meterRegistry, Clock clock) {
+        if (settings.getStore() == AmadeusConfig.OfferCache.StoreType.MAPPED) {
+            return new MappedOfferStore(settings.getMapped(), settings.getTtl(), meterRegistry, clock);
+        }
+        return new InMemoryOfferStore(settings, meterRegistry, clock);
+    }
+
+    /**
+     * Encodes an offer into its stored form.
+     */
+    public EncodedOffer encode(JsonNode offer) {
+        return new EncodedOffer(codec.encode(offer),
+            lastTicketingInstant(offer.path("id").asText(null), textOrNull(offer.get("lastTicketingDateTime")), textOrNull(offer.get("lastTicketingDate"))));
+    }
+
+    /**
+     * Encodes an offer from the tokens it was parsed from, so it is stored exactly as received.
+     */
+    public EncodedOffer encode(AmadeusFlightOffer offer, TokenBuffer tokens) {
+        return new EncodedOffer(codec.encode(tokens),
+            lastTicketingInstant(offer.id(), offer.lastTicketingDateTime(), offer.lastTicketingDate()));
+    }
+
+    public void put(String offerId, JsonNode offer) {
+        put(offerId, encode(offer));
+    }
+
+    public void put(String offerId, EncodedOffer offer) {
+        store.put(offerId, offer.bytes(), expiresAt(offer.lastTicketing()));
+    }
+
+    public void putAll(Map<String, EncodedOffer> offers) {
+        offers.forEach(this::put);
+    }
+
+    /**
+     * Returns the decoded offer, or null if it is not (or no longer) cached.
+     */
+    public JsonNode get(String offerId) {
+        return lookup(offerId).offer();
+    }
+
+    public Lookup<JsonNode> lookup(String offerId) {
+        return lookup(offerId, JsonNode.class);
+    }
+
+    /**
+     * Looks an offer up and decodes it into the given type (a tree or the typed model).
+     */
+    public <T> Lookup<T> lookup(String offerId, Class<T> type) {
+        return decode(offerId, store.get(offerId), type);
+    }
+
+    /**
+     * Like lookup, but a miss may wait for offers other replicas stored (see {@link OfferStore#getAsync}).
+     */
+    public <T> CompletableFuture<Lookup<T>> lookupAsync(String offerId, Class<T> type) {
+        return store.getAsync(offerId).thenApply(entry -> decode(offerId, entry, type));
+    }
+
+    private <T> Lookup<T> decode(String offerId, OfferStore.Entry entry, Class<T> type) {
+        if (entry.status() != OfferStore.Status.FOUND) {
+            return new Lookup<>(entry.status(), null);
+        }
+        try {
+            return new Lookup<>(OfferStore.Status.FOUND, codec.decode(entry.bytes(), type));
+        } catch (UncheckedIOException e) {
+            logger.error("Dropping unreadable cached flight offer {}: {}", offerId, e.getMessage());
+            store.remove(offerId);
+            return new Lookup<>(OfferStore.Status.NOT_FOUND, null);
+        }
+    }
+
+    public void remove(String offerId) {
+        store.remove(offerId);
+    }
+
+    public long size() {
+        return store.size();
+    }
+
+    public long weightedSize() {
+        return store.sizeInBytes();
+    }
+
+    public OfferStore getStore() {
+        return store;
+    }
+
+    @Override
+    public void close() {
+        store.close();
+    }
+
+    // --- Offer validity ---
+
+    /**
+     * Offers live for the configured TTL, or until their last ticketing date/time if that comes first.
+     */
+    private Instant expiresAt(Instant lastTicketing) {
+        Instant expiresAt = clock.instant().plus(ttl);
+        if (lastTicketing != null && lastTicketing.isBefore(expiresAt)) {
+            expiresAt = lastTicketing;
+        }
+        return expiresAt;
+    }
+
+    private Instant lastTicketingInstant(String offerId, String dateTime, String date) {
+        try {
+            if (dateTime != null) {
+                return LocalDateTime.parse(dateTime).toInstant(ZoneOffset.UTC);
+            }
+            if (date != null) {
+                // Tickets can be issued until the end of that day
+                return LocalDate.parse(date).plusDays(1).atStartOfDay().toInstant(ZoneOffset.UTC);
+            }
+        } catch (DateTimeParseException e) {
+            logger.debug("Could not parse last ticketing date of offer {}: {}", offerId, e.getMessage());
+        }
+        return null;
+    }
+
+    private static String textOrNull(JsonNode node) {
+        return node != null && node.isTextual() ? node.asText() : null;
+    }
+}
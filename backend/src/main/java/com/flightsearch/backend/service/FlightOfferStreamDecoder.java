@@ -0,0 +1,227 @@
+package com.flightsearch.backend.service;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import com.flightsearch.backend.dto.amadeus.AmadeusDictionaries;
+import com.flightsearch.backend.dto.amadeus.AmadeusFlightOffer;
+
+import org.springframework.core.codec.DecodingException;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.function.Consumer;
+
+/**
+ * Flight Offer Stream Decoder
+ * Reads a /v2/shopping/flight-offers response body chunk by chunk with Jackson's non-blocking
+ * parser. Every element of "data" is bound to an {@link AmadeusFlightOffer} as soon as it is
+ * complete, so the whole response never has to be buffered or turned into a tree, and there
+ * is no in-memory size limit on the body. "dictionaries" is handed over as a whole; everything
+ * else ("meta", "warnings") is skipped.
+ */
+public class FlightOfferStreamDecoder {
+
+    /**
+     * A flight offer of the response.
+     *
+     * @param offer  The offer bound to the typed model
+     * @param tokens The offer's complete JSON tokens, e.g. for storing the offer as received
+     */
+    public record DecodedOffer(AmadeusFlightOffer offer, TokenBuffer tokens) {
+    }
+
+    private final ObjectMapper objectMapper;
+
+    public FlightOfferStreamDecoder(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * @param body           Response body
+     * @param onOffer        Called with each flight offer, in response order
+     * @param onDictionaries Called with the "dictionaries" object, if the response has one
+     * @return Completes when the whole body has been read
+     */
+    public Mono<Void> decode(Flux<DataBuffer> body, Consumer<DecodedOffer> onOffer, Consumer<AmadeusDictionaries> onDictionaries) {
+        return Mono.defer(() -> {
+            Decoding decoding = new Decoding(onOffer, onDictionaries);
+            return body
+                .doOnNext(decoding::feed)
+                .doOnDiscard(DataBuffer.class, DataBufferUtils::release)
+                .then(Mono.fromRunnable(decoding::finish))
+                .doFinally(signal -> decoding.close())
+                .then();
+        });
+    }
+
+    /**
+     * Blocking variant, reading the body from a stream on the calling thread.
+     *
+     * @param body           Response body, read to its end but not closed
+     * @param onOffer        Called with each flight offer, in response order
+     * @param onDictionaries Called with the "dictionaries" object, if the response has one
+     */
+    public void decode(InputStream body, Consumer<DecodedOffer> onOffer, Consumer<AmadeusDictionaries> onDictionaries)
+            throws IOException {
+        Decoding decoding = new Decoding(onOffer, onDictionaries);
+        try {
+            byte[] chunk = new byte[8192];
+            int read;
+            while ((read = body.read(chunk)) != -1) {
+                decoding.feed(chunk, read);
+            }
+            decoding.finish();
+        } finally {
+            decoding.close();
+        }
+    }
+
+    // Parser state of one response body
+    private final class Decoding {
+
+        private final JsonParser parser;
+        private final Consumer<DecodedOffer> onOffer;
+        private final Consumer<AmadeusDictionaries> onDictionaries;
+
+        // Nesting level of the parser: 1 inside the root object, 2 inside "data", ...
+        private int depth;
+        private String rootField;
+        private boolean inData;
+        // Tokens of the value being captured (an offer or the dictionaries)
+        private TokenBuffer capture;
+        private int captureDepth;
+
+        Decoding(Consumer<DecodedOffer> onOffer, Consumer<AmadeusDictionaries> onDictionaries) {
+            this.onOffer = onOffer;
+            this.onDictionaries = onDictionaries;
+            try {
+                this.parser = objectMapper.getFactory().createNonBlockingByteArrayParser();
+            } catch (IOException e) {
+                throw new DecodingException("Could not create JSON parser", e);
+            }
+        }
+
+        void feed(DataBuffer buffer) {
+            byte[] bytes = new byte[buffer.readableByteCount()];
+            buffer.read(bytes);
+            DataBufferUtils.release(buffer);
+            feed(bytes, bytes.length);
+        }
+
+        // The parser keeps the array until it has read it all; drain() does before returning
+        void feed(byte[] bytes, int length) {
+            try {
+                ((ByteArrayFeeder) parser.getNonBlockingInputFeeder()).feedInput(bytes, 0, length);
+                drain();
+            } catch (IOException e) {
+                throw new DecodingException("Invalid flight offers response: " + e.getMessage(), e);
+            }
+        }
+
+        void finish() {
+            try {
+                ((ByteArrayFeeder) parser.getNonBlockingInputFeeder()).endOfInput();
+                drain();
+            } catch (IOException e) {
+                throw new DecodingException("Invalid flight offers response: " + e.getMessage(), e);
+            }
+            if (depth != 0) {
+                throw new DecodingException("Flight offers response ended unexpectedly");
+            }
+        }
+
+        void close() {
+            try {
+                parser.close();
+            } catch (IOException e) {
+                // Nothing left to release
+            }
+        }
+
+        private void drain() throws IOException {
+            JsonToken token;
+            while ((token = parser.nextToken()) != null && token != JsonToken.NOT_AVAILABLE) {
+                if (capture != null) {
+                    captureToken(token);
+                } else {
+                    handleToken(token);
+                }
+            }
+        }
+
+        private void handleToken(JsonToken token) {
+            if (token == JsonToken.FIELD_NAME && depth == 1) {
+                rootField = currentName();
+                return;
+            }
+            if (token.isStructStart()) {
+                if (depth == 2 && inData && token == JsonToken.START_OBJECT) {
+                    startCapture();
+                    return;
+                }
+                if (depth == 1 && "dictionaries".equals(rootField) && token == JsonToken.START_OBJECT) {
+                    startCapture();
+                    return;
+                }
+                if (depth == 1 && "data".equals(rootField) && token == JsonToken.START_ARRAY) {
+                    inData = true;
+                }
+                depth++;
+            } else if (token.isStructEnd()) {
+                depth--;
+                if (depth == 1) {
+                    inData = false;
+                }
+            }
+        }
+
+        private void startCapture() {
+            capture = new TokenBuffer(parser);
+            captureDepth = 0;
+            captureToken(parser.currentToken());
+        }
+
+        private void captureToken(JsonToken token) {
+            try {
+                capture.copyCurrentEvent(parser);
+            } catch (IOException e) {
+                throw new DecodingException("Could not buffer flight offer", e);
+            }
+            if (token.isStructStart()) {
+                captureDepth++;
+            } else if (token.isStructEnd() && --captureDepth == 0) {
+                TokenBuffer tokens = capture;
+                capture = null;
+                if (inData) {
+                    onOffer.accept(new DecodedOffer(bind(tokens, AmadeusFlightOffer.class), tokens));
+                } else {
+                    onDictionaries.accept(bind(tokens, AmadeusDictionaries.class));
+                }
+            }
+        }
+
+        private <T> T bind(TokenBuffer tokens, Class<T> type) {
+            try (JsonParser captured = tokens.asParser(objectMapper)) {
+                return objectMapper.readValue(captured, type);
+            } catch (IOException e) {
+                throw new DecodingException("Could not read flight offer: " + e.getMessage(), e);
+            }
+        }
+
+        private String currentName() {
+            try {
+                return parser.currentName();
+            } catch (IOException e) {
+                throw new DecodingException("Could not read field name", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,322 @@
+package com.flightsearch.backend.service;
+
+import com.flightsearch.backend.dto.FlightSearchResultDTO;
+import com.flightsearch.backend.dto.FlightSegmentDTO;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Flight Result Index
+ * The mapped results of one search grouped by offer (outbound and inbound of a round trip
+ * together), with every value the results can be sorted or filtered by parsed once into
+ * primitive arrays. Prices, durations and times are strings in the results; comparing them
+ * per request would parse them again for every comparison.
+ *
+ * Immutable once built, so it is cached together with the results and shared by every
+ * request and session that serves them.
+ */
+public final class FlightResultIndex {
+
+    // Key of an offer whose value could not be read; such offers are sorted last
+    private static final long MISSING = Long.MAX_VALUE;
+
+    private final List<String> offerIds;
+    private final List<List<FlightSearchResultDTO>> offerResults;
+
+    // Sort keys, one per offer: cents, minutes over all directions, stops over all directions, epoch minute
+    private final long[] priceCents;
+    private final long[] totalDurationMinutes;
+    private final long[] totalStops;
+    private final long[] departureEpochMinutes;
+
+    // Filter keys, one per offer: the worst direction of a round trip decides
+    private final int[] maxLegDurationMinutes;
+    private final int[] maxLegStops;
+    private final int[] maxLayoverMinutes;
+    private final int[] departureMinuteOfDay;
+    private final String[][] legAirlines;
+
+    private final Map<FlightResultQuery.Sort, int[]> orderings = new ConcurrentHashMap<>();
+
+    public FlightResultIndex(List<FlightSearchResultDTO> results) {
+        // Results of an offer are mapped one after the other, with ids "<offer id>-<itinerary index>"
+        Map<String, List<FlightSearchResultDTO>> byOffer = new LinkedHashMap<>();
+        for (FlightSearchResultDTO result : results) {
+            byOffer.computeIfAbsent(offerIdOf(result), offerId -> new ArrayList<>(2)).add(result);
+        }
+        this.offerIds = List.copyOf(byOffer.keySet());
+        this.offerResults = List.copyOf(byOffer.values());
+
+        int count = offerIds.size();
+        priceCents = new long[count];
+        totalDurationMinutes = new long[count];
+        totalStops = new long[count];
+        departureEpochMinutes = new long[count];
+        maxLegDurationMinutes = new int[count];
+        maxLegStops = new int[count];
+        maxLayoverMinutes = new int[count];
+        departureMinuteOfDay = new int[count];
+        legAirlines = new String[count][];
+
+        for (int i = 0; i < count; i++) {
+            List<FlightSearchResultDTO> legs = offerResults.get(i);
+            FlightSearchResultDTO outbound = legs.get(0);
+
+            priceCents[i] = cents(outbound);
+
+            long durationSum = 0;
+            int longestLeg = 0;
+            int stopSum = 0;
+            int mostStops = 0;
+            int longestLayover = 0;
+            String[] airlines = new String[legs.size()];
+            for (int leg = 0; leg < legs.size(); leg++) {
+                FlightSearchResultDTO result = legs.get(leg);
+                int minutes = minutes(result.getDuration());
+                durationSum = minutes == Integer.MAX_VALUE || durationSum == MISSING ? MISSING : durationSum + minutes;
+                longestLeg = Math.max(longestLeg, minutes);
+
+                int stops = result.getSegments() != null ? Math.max(0, result.getSegments().size() - 1) : 0;
+                stopSum += stops;
+                mostStops = Math.max(mostStops, stops);
+                longestLayover = Math.max(longestLayover, longestLayoverMinutes(result.getSegments()));
+
+                airlines[leg] = result.getAirline() != null ? result.getAirline().getCode() : null;
+            }
+            totalDurationMinutes[i] = durationSum;
+            maxLegDurationMinutes[i] = longestLeg;
+            totalStops[i] = stopSum;
+            maxLegStops[i] = mostStops;
+            maxLayoverMinutes[i] = longestLayover;
+            legAirlines[i] = airlines;
+
+            LocalDateTime departure = dateTime(outbound.getDepartureDateTime());
+            departureEpochMinutes[i] = departure != null ? departure.toEpochSecond(ZoneOffset.UTC) / 60 : MISSING;
+            departureMinuteOfDay[i] = departure != null ? departure.getHour() * 60 + departure.getMinute() : -1;
+        }
+    }
+
+    public int offerCount() {
+        return offerIds.size();
+    }
+
+    public String offerId(int offer) {
+        return offerIds.get(offer);
+    }
+
+    /**
+     * The results of an offer, outbound first.
+     */
+    public List<FlightSearchResultDTO> results(int offer) {
+        return offerResults.get(offer);
+    }
+
+    /**
+     * Total price of an offer in cents, Long.MAX_VALUE if it could not be read.
+     */
+    public long priceCents(int offer) {
+        return priceCents[offer];
+    }
+
+    /**
+     * Duration of all directions of an offer together, null if one of them is unknown.
+     */
+    public Duration totalDuration(int offer) {
+        return totalDurationMinutes[offer] != MISSING ? Duration.ofMinutes(totalDurationMinutes[offer]) : null;
+    }
+
+    /**
+     * All offers in the given ascending order, computed once per sort.
+     */
+    public int[] ordering(FlightResultQuery.Sort sort) {
+        return orderings.computeIfAbsent(sort, s -> select(FlightResultQuery.sortedBy(s)));
+    }
+
+    /**
+     * The offers matching the query's filters, in the query's order, at most the query's limit.
+     * When only the best K of N offers are wanted they are picked with a K sized heap instead
+     * of sorting all N. Equal offers keep the order Amadeus returned them in.
+     */
+    public int[] select(FlightResultQuery query) {
+        long[] keys = sortKeys(query.sort());
+        IndexComparator comparator = new IndexComparator(keys, query.descending());
+
+        int count = offerCount();
+        int[] matches = new int[count];
+        int matchCount = 0;
+        for (int i = 0; i < count; i++) {
+            if (matches(i, query)) {
+                matches[matchCount++] = i;
+            }
+        }
+
+        if (keys == null && !query.descending()) {
+            // Matches are collected in Amadeus order already
+            return Arrays.copyOf(matches, Math.min(matchCount, query.limit()));
+        }
+        if (query.limit() >= matchCount) {
+            return sorted(Arrays.copyOf(matches, matchCount), comparator);
+        }
+
+        // Worst of the best K on top, replaced whenever a better offer comes along
+        PriorityQueue<Integer> best = new PriorityQueue<>(query.limit(), comparator.reversed());
+        for (int m = 0; m < matchCount; m++) {
+            int offer = matches[m];
+            if (best.size() < query.limit()) {
+                best.add(offer);
+            } else if (comparator.compare(offer, best.peek()) < 0) {
+                best.poll();
+                best.add(offer);
+            }
+        }
+        int[] selected = new int[best.size()];
+        int n = 0;
+        for (Integer offer : best) {
+            selected[n++] = offer;
+        }
+        return sorted(selected, comparator);
+    }
+
+    private boolean matches(int offer, FlightResultQuery query) {
+        if (priceCents[offer] > query.maxPriceCents()
+            || maxLegDurationMinutes[offer] > query.maxDurationMinutes()
+            || maxLegStops[offer] > query.maxStops()
+            || maxLayoverMinutes[offer] > query.maxLayoverMinutes()) {
+            return false;
+        }
+        if (!query.airlines().isEmpty()) {
+            for (String airline : legAirlines[offer]) {
+                if (airline == null || !query.airlines().contains(airline)) {
+                    return false;
+                }
+            }
+        }
+        if (query.hasDepartureWindow()) {
+            int minute = departureMinuteOfDay[offer];
+            if (minute < 0) {
+                return false;
+            }
+            int from = query.departureFromMinute();
+            int to = query.departureToMinute();
+            boolean inWindow = from <= to ? minute >= from && minute <= to : minute >= from || minute <= to;
+            if (!inWindow) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private long[] sortKeys(FlightResultQuery.Sort sort) {
+        return switch (sort) {
+            case BEST -> null;
+            case PRICE -> priceCents;
+            case DURATION -> totalDurationMinutes;
+            case STOPS -> totalStops;
+            case DEPARTURE -> departureEpochMinutes;
+        };
+    }
+
+    private static int[] sorted(int[] offers, IndexComparator comparator) {
+        // Stable, so equal offers keep the Amadeus order
+        return Arrays.stream(offers).boxed().sorted(comparator).mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Compares offer indexes by a key array; missing keys go last in both directions and
+     * ties keep the Amadeus order. No keys means Amadeus order.
+     */
+    private record IndexComparator(long[] keys, boolean descending) implements Comparator<Integer> {
+
+        @Override
+        public int compare(Integer a, Integer b) {
+            if (keys != null) {
+                long keyA = keys[a];
+                long keyB = keys[b];
+                if (keyA != keyB) {
+                    if (keyA == MISSING) {
+                        return 1;
+                    }
+                    if (keyB == MISSING) {
+                        return -1;
+                    }
+                    int byKey = Long.compare(keyA, keyB);
+                    return descending ? -byKey : byKey;
+                }
+                return Integer.compare(a, b);
+            }
+            int byIndex = Integer.compare(a, b);
+            return descending ? -byIndex : byIndex;
+        }
+    }
+
+    private static String offerIdOf(FlightSearchResultDTO result) {
+        if (result.getParentOfferId() != null) {
+            return result.getParentOfferId();
+        }
+        String id = result.getId();
+        int separator = id != null ? id.lastIndexOf('-') : -1;
+        return separator > 0 ? id.substring(0, separator) : id;
+    }
+
+    private static long cents(FlightSearchResultDTO result) {
+        if (result.getPrice() != null && result.getPrice().getTotal() != null) {
+            try {
+                return new BigDecimal(result.getPrice().getTotal()).movePointRight(2).longValue();
+            } catch (NumberFormatException e) {
+                // Sorted last
+            }
+        }
+        return MISSING;
+    }
+
+    private static int minutes(String duration) {
+        if (duration == null) {
+            return Integer.MAX_VALUE;
+        }
+        try {
+            return (int) Math.min(Integer.MAX_VALUE, Duration.parse(duration).toMinutes());
+        } catch (DateTimeParseException e) {
+            return Integer.MAX_VALUE;
+        }
+    }
+
+    // Longest wait between two segments; an unreadable time counts as too long for any limit
+    private static int longestLayoverMinutes(List<FlightSegmentDTO> segments) {
+        int longest = 0;
+        if (segments == null) {
+            return longest;
+        }
+        for (int i = 1; i < segments.size(); i++) {
+            LocalDateTime arrival = dateTime(segments.get(i - 1).getArrivalDateTime());
+            LocalDateTime departure = dateTime(segments.get(i).getDepartureDateTime());
+            if (arrival == null || departure == null) {
+                return Integer.MAX_VALUE;
+            }
+            longest = (int) Math.max(longest, Duration.between(arrival, departure).toMinutes());
+        }
+        return longest;
+    }
+
+    private static LocalDateTime dateTime(String dateTime) {
+        if (dateTime == null) {
+            return null;
+        }
+        try {
+            return LocalDateTime.parse(dateTime);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+}
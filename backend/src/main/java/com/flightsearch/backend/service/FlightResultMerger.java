@@ -0,0 +1,128 @@
+package com.flightsearch.backend.service;
+
+import com.flightsearch.backend.dto.FlightSearchResultDTO;
+import com.flightsearch.backend.dto.FlightSegmentDTO;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Flight Result Merger
+ * Merges the searches of several origin/destination pairs into one result list, cheapest
+ * offer first. Every pair's offers are already in price order in its result index, so the
+ * lists are merged k-way: a heap holds the next offer of each pair, and only as many offers
+ * are taken as the merged list may hold, without sorting all of them again.
+ *
+ * Offers flying the same segments (carrier, flight number and departure time) are kept only
+ * once, at the cheapest price, which is the first one the merge comes across.
+ *
+ * Amadeus numbers the offers of every search from 1, so the ids of merged offers are
+ * prefixed with their pair ("JFK-LAX-1") to keep them unique in the offer cache.
+ */
+final class FlightResultMerger {
+
+    /**
+     * The search of one origin/destination pair.
+     */
+    record PairSearch(FlightSearchKey key, FlightSearchResultCache.CachedSearch search) {
+    }
+
+    private FlightResultMerger() {
+    }
+
+    /**
+     * @param searches  In the order ties in price are decided by
+     * @param maxOffers Offers the merged list holds at most
+     */
+    static FlightSearchResultCache.CachedSearch merge(List<PairSearch> searches, int maxOffers) {
+        int pairs = searches.size();
+        FlightResultIndex[] indexes = new FlightResultIndex[pairs];
+        int[][] orderings = new int[pairs][];
+        int[] positions = new int[pairs];
+        for (int p = 0; p < pairs; p++) {
+            indexes[p] = searches.get(p).search().index();
+            orderings[p] = indexes[p].ordering(FlightResultQuery.Sort.PRICE);
+        }
+
+        // Pairs by the price of their next offer; missing prices are Long.MAX_VALUE, so they come last
+        PriorityQueue<Integer> heads = new PriorityQueue<>(Math.max(1, pairs), Comparator
+            .comparingLong((Integer p) -> indexes[p].priceCents(orderings[p][positions[p]]))
+            .thenComparingInt(p -> p));
+        for (int p = 0; p < pairs; p++) {
+            if (orderings[p].length > 0) {
+                heads.add(p);
+            }
+        }
+
+        List<FlightSearchResultDTO> results = new ArrayList<>();
+        Map<String, FlightOfferCache.EncodedOffer> offers = new LinkedHashMap<>();
+        Set<String> itineraries = new HashSet<>();
+        int merged = 0;
+        while (merged < maxOffers && !heads.isEmpty()) {
+            int p = heads.poll();
+            int offer = orderings[p][positions[p]++];
+            if (positions[p] < orderings[p].length) {
+                heads.add(p);
+            }
+
+            List<FlightSearchResultDTO> offerResults = indexes[p].results(offer);
+            String signature = itinerarySignature(offerResults);
+            if (!signature.isEmpty() && !itineraries.add(signature)) {
+                continue;
+            }
+            FlightSearchKey key = searches.get(p).key();
+            String offerId = indexes[p].offerId(offer);
+            String prefix = key.origin() + "-" + key.destination() + "-";
+            String scopedId = prefix + offerId;
+            for (FlightSearchResultDTO result : offerResults) {
+                results.add(rescoped(result, prefix, scopedId));
+            }
+            FlightOfferCache.EncodedOffer encodedOffer = searches.get(p).search().offers().get(offerId);
+            if (encodedOffer != null) {
+                offers.put(scopedId, encodedOffer);
+            }
+            merged++;
+        }
+        return FlightSearchResultCache.CachedSearch.of(Collections.unmodifiableList(results), offers);
+    }
+
+    // Every segment of every direction, e.g. "AA100@2025-07-01T08:00:00|AA200@2025-07-08T09:00:00"
+    private static String itinerarySignature(List<FlightSearchResultDTO> offerResults) {
+        StringBuilder signature = new StringBuilder();
+        for (FlightSearchResultDTO result : offerResults) {
+            if (result.getSegments() == null) {
+                continue;
+            }
+            for (FlightSegmentDTO segment : result.getSegments()) {
+                signature.append(segment.getCarrierCode()).append(segment.getNumber())
+                    .append('@').append(segment.getDepartureDateTime()).append('|');
+            }
+        }
+        return signature.toString();
+    }
+
+    // A copy with pair scoped ids; the cached pair results are shared and must not change
+    private static FlightSearchResultDTO rescoped(FlightSearchResultDTO result, String prefix, String scopedOfferId) {
+        return new FlightSearchResultDTO(
+            prefix + result.getId(),
+            result.getParentOfferId() != null ? scopedOfferId : null,
+            result.getDepartureDateTime(),
+            result.getArrivalDateTime(),
+            result.getDepartureAirport(),
+            result.getArrivalAirport(),
+            result.getAirline(),
+            result.getOperatingAirline(),
+            result.getDuration(),
+            result.getSegments(),
+            result.getStops(),
+            result.getPrice(),
+            result.getNumberOfAdults());
+    }
+}
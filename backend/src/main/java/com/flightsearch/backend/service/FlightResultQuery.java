@@ -0,0 +1,150 @@
+package com.flightsearch.backend.service;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Sorting, filtering and size of a grouped flight search result, as requested by the client.
+ * All values are converted once into the units of {@link FlightResultIndex}'s keys (cents,
+ * minutes), so evaluating the query never parses anything per offer.
+ *
+ * @param maxPriceCents        Highest total price, or Long.MAX_VALUE
+ * @param maxDurationMinutes   Longest duration of any direction, or Integer.MAX_VALUE
+ * @param maxStops             Most stops in any direction, or Integer.MAX_VALUE
+ * @param airlines             IATA codes every direction's airline must be one of; empty for any
+ * @param departureFromMinute  Earliest outbound departure time of day (minutes after midnight), or -1
+ * @param departureToMinute    Latest outbound departure time of day, or -1. A window ending before
+ *                             it starts wraps around midnight.
+ * @param maxLayoverMinutes    Longest single layover, or Integer.MAX_VALUE
+ * @param limit                Offers to return at most, or Integer.MAX_VALUE for all
+ */
+public record FlightResultQuery(Sort sort, boolean descending, long maxPriceCents, int maxDurationMinutes, int maxStops,
+                                Set<String> airlines, int departureFromMinute, int departureToMinute,
+                                int maxLayoverMinutes, int limit) {
+
+    /**
+     * Orders grouped offers can be returned in. BEST keeps the order Amadeus returned.
+     */
+    public enum Sort {
+        BEST, PRICE, DURATION, STOPS, DEPARTURE;
+
+        public static Sort from(String value) {
+            if (value == null || value.isBlank()) {
+                return BEST;
+            }
+            try {
+                return valueOf(value.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown sort '" + value + "'. Use one of best, price, duration, stops, departure.");
+            }
+        }
+
+        public String paramValue() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    public static FlightResultQuery sortedBy(Sort sort) {
+        return new FlightResultQuery(sort, false, Long.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE, Set.of(),
+            -1, -1, Integer.MAX_VALUE, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Builds a query from request parameters; every parameter is optional.
+     *
+     * @param order         asc or desc
+     * @param maxPrice      Decimal amount in the search currency, e.g. 450.00
+     * @param maxDuration   ISO-8601 duration, e.g. PT12H
+     * @param airlines      Comma separated IATA codes
+     * @param departureFrom Time of day, e.g. 06:00
+     * @param departureTo   Time of day, e.g. 12:00
+     * @param maxLayover    ISO-8601 duration, e.g. PT3H
+     * @throws IllegalArgumentException if a parameter cannot be understood
+     */
+    public static FlightResultQuery of(String sort, String order, String maxPrice, String maxDuration, Integer maxStops,
+                                       String airlines, String departureFrom, String departureTo, String maxLayover,
+                                       Integer limit) {
+        boolean descending = false;
+        if (order != null && !order.isBlank()) {
+            switch (order.trim().toLowerCase(Locale.ROOT)) {
+                case "asc" -> descending = false;
+                case "desc" -> descending = true;
+                default -> throw new IllegalArgumentException("Unknown order '" + order + "'. Use asc or desc.");
+            }
+        }
+        if (maxStops != null && maxStops < 0) {
+            throw new IllegalArgumentException("maxStops cannot be negative.");
+        }
+        if (limit != null && limit < 1) {
+            throw new IllegalArgumentException("limit must be at least 1.");
+        }
+        Set<String> airlineCodes = airlines == null ? Set.of() : Arrays.stream(airlines.split(","))
+            .map(code -> code.trim().toUpperCase(Locale.ROOT))
+            .filter(code -> !code.isEmpty())
+            .collect(Collectors.toUnmodifiableSet());
+
+        int from = parseTimeOfDay("departureFrom", departureFrom);
+        int to = parseTimeOfDay("departureTo", departureTo);
+        if ((from < 0) != (to < 0)) {
+            // An open window ends at midnight or starts at midnight
+            from = from < 0 ? 0 : from;
+            to = to < 0 ? 24 * 60 - 1 : to;
+        }
+
+        return new FlightResultQuery(
+            Sort.from(sort),
+            descending,
+            parseCents(maxPrice),
+            parseMinutes("maxDuration", maxDuration),
+            maxStops != null ? maxStops : Integer.MAX_VALUE,
+            airlineCodes,
+            from,
+            to,
+            parseMinutes("maxLayover", maxLayover),
+            limit != null ? limit : Integer.MAX_VALUE);
+    }
+
+    public boolean hasDepartureWindow() {
+        return departureFromMinute >= 0;
+    }
+
+    private static long parseCents(String amount) {
+        if (amount == null || amount.isBlank()) {
+            return Long.MAX_VALUE;
+        }
+        try {
+            return new BigDecimal(amount.trim()).movePointRight(2).longValue();
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid maxPrice '" + amount + "'. Use a decimal amount such as 450.00.");
+        }
+    }
+
+    private static int parseMinutes(String name, String duration) {
+        if (duration == null || duration.isBlank()) {
+            return Integer.MAX_VALUE;
+        }
+        try {
+            return (int) Math.min(Integer.MAX_VALUE, Duration.parse(duration.trim()).toMinutes());
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid " + name + " '" + duration + "'. Use an ISO-8601 duration such as PT12H.");
+        }
+    }
+
+    private static int parseTimeOfDay(String name, String time) {
+        if (time == null || time.isBlank()) {
+            return -1;
+        }
+        try {
+            LocalTime parsed = LocalTime.parse(time.trim());
+            return parsed.getHour() * 60 + parsed.getMinute();
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid " + name + " '" + time + "'. Use a time of day such as 06:00.");
+        }
+    }
+}
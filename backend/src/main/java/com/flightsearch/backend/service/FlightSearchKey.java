@@ -0,0 +1,36 @@
+package com.flightsearch.backend.service;
+
+import java.util.Locale;
+
+/**
+ * Normalized flight search parameters.
+ * Two searches with the same key ask Amadeus exactly the same question, so the key is used
+ * to share in-flight requests between them.
+ */
+public record FlightSearchKey(String origin, String destination, String departureDate, String returnDate,
+                              int adults, String currency, boolean nonStop, int maxResults) {
+
+    /**
+     * @param maxResults Offers to ask Amadeus for
+     */
+    public static FlightSearchKey of(String origin, String destination, String departureDate,
+                                     Integer adults, String currency, Boolean nonStop, String returnDate, int maxResults) {
+        return new FlightSearchKey(
+            normalizeCode(origin),
+            normalizeCode(destination),
+            departureDate != null ? departureDate.trim() : null,
+            returnDate != null && !returnDate.isBlank() ? returnDate.trim() : null,
+            adults != null ? adults : 1,
+            currency != null && !currency.isBlank() ? currency.trim().toUpperCase(Locale.ROOT) : "USD",
+            Boolean.TRUE.equals(nonStop),
+            maxResults);
+    }
+
+    public boolean isRoundTrip() {
+        return returnDate != null;
+    }
+
+    private static String normalizeCode(String code) {
+        return code != null ? code.trim().toUpperCase(Locale.ROOT) : null;
+    }
+}
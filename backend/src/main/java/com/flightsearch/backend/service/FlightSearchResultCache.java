@@ -0,0 +1,122 @@
+package com.flightsearch.backend.service;
+
+import com.flightsearch.backend.config.AmadeusConfig;
+import com.flightsearch.backend.dto.FlightSearchResultDTO;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Flight Search Result Cache
+ * Keeps mapped search results per normalized search key. Results younger than the TTL are
+ * fresh; for a further stale window they are still served, but the caller is expected to
+ * start one background refresh. After that they expire.
+ */
+public class FlightSearchResultCache {
+
+    public static final String CACHE_NAME = "flightSearchResults";
+
+    /**
+     * Mapped results plus the (encoded) offers they came from, so the offers can be put back
+     * into the offer cache whenever the results are served again. The index is built once
+     * here, so sorting and filtering cached results never parses them again; likewise the
+     * response body is serialized and compressed once, when the results are first served.
+     */
+    public record CachedSearch(List<FlightSearchResultDTO> results, Map<String, FlightOfferCache.EncodedOffer> offers,
+                               FlightResultIndex index, long fetchedAtNanos, SerializedResults.Lazy serialized) {
+
+        public static CachedSearch of(List<FlightSearchResultDTO> results, Map<String, FlightOfferCache.EncodedOffer> offers) {
+            return new CachedSearch(results, offers, new FlightResultIndex(results), System.nanoTime(),
+                new SerializedResults.Lazy(results));
+        }
+    }
+
+    public record Hit(CachedSearch search, boolean stale) {
+    }
+
+    private final Cache<FlightSearchKey, CachedSearch> cache;
+    private final long ttlNanos;
+    private final Set<FlightSearchKey> revalidating = ConcurrentHashMap.newKeySet();
+
+    private final Counter freshHits;
+    private final Counter staleHits;
+    private final Counter misses;
+    private final Counter revalidations;
+
+    public FlightSearchResultCache(AmadeusConfig.SearchCache settings, MeterRegistry meterRegistry) {
+        this.ttlNanos = settings.getTtl().toNanos();
+        this.cache = Caffeine.newBuilder()
+            .maximumSize(settings.getMaxEntries())
+            .expireAfterWrite(settings.getTtl().plus(settings.getStaleWindow()))
+            .recordStats()
+            .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+
+        this.freshHits = lookupCounter(meterRegistry, "fresh");
+        this.staleHits = lookupCounter(meterRegistry, "stale");
+        this.misses = lookupCounter(meterRegistry, "miss");
+        this.revalidations = Counter.builder("flight.search.cache.revalidations")
+            .description("Background refreshes started for stale search results")
+            .register(meterRegistry);
+    }
+
+    private static Counter lookupCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("flight.search.cache.lookups")
+            .description("Search result cache lookups by freshness")
+            .tag("result", result)
+            .register(meterRegistry);
+    }
+
+    /**
+     * Returns the cached search and whether it is stale, or null on a miss.
+     */
+    public Hit lookup(FlightSearchKey key) {
+        CachedSearch search = cache.getIfPresent(key);
+        if (search == null) {
+            misses.increment();
+            return null;
+        }
+        boolean stale = System.nanoTime() - search.fetchedAtNanos() > ttlNanos;
+        (stale ? staleHits : freshHits).increment();
+        return new Hit(search, stale);
+    }
+
+    /**
+     * Whether fresh results are cached for the key. Not counted as a lookup.
+     */
+    public boolean isFresh(FlightSearchKey key) {
+        CachedSearch search = cache.asMap().get(key);
+        return search != null && System.nanoTime() - search.fetchedAtNanos() <= ttlNanos;
+    }
+
+    public void put(FlightSearchKey key, CachedSearch search) {
+        cache.put(key, search);
+    }
+
+    /**
+     * Claims the background refresh of a key. Returns false if one is already running.
+     */
+    public boolean startRevalidation(FlightSearchKey key) {
+        if (revalidating.add(key)) {
+            revalidations.increment();
+            return true;
+        }
+        return false;
+    }
+
+    public void finishRevalidation(FlightSearchKey key) {
+        revalidating.remove(key);
+    }
+
+    public long estimatedSize() {
+        return cache.estimatedSize();
+    }
+}
@@ -0,0 +1,194 @@
+package com.flightsearch.backend.service;
+
+import com.flightsearch.backend.config.AmadeusConfig;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryNotificationInfo;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Set;
+
+import javax.management.ListenerNotFoundException;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+
+/**
+ * In-Memory Offer Store
+ * Keeps encoded offers in a Caffeine cache of this process. The cache is bounded by entry
+ * count and by size, every offer expires at its expiresAt, and half of the offers are dropped
+ * when the heap is still nearly full after a garbage collection.
+ *
+ * Offers that were evicted or expired are remembered for a while, so callers can tell
+ * an expired offer from one that never existed.
+ */
+public class InMemoryOfferStore implements OfferStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(InMemoryOfferStore.class);
+
+    public static final String CACHE_NAME = "flightOffers";
+
+    // How many removed offer IDs are remembered to answer "expired" instead of "not found"
+    private static final long MAX_TOMBSTONES = 50_000;
+    private static final Duration TOMBSTONE_TTL = Duration.ofHours(6);
+
+    // Key, record and array headers of one entry on top of the encoded bytes
+    private static final int ENTRY_OVERHEAD_BYTES = 112;
+
+    private record StoredOffer(byte[] bytes, long lifetimeNanos) {
+    }
+
+    private final Cache<String, StoredOffer> cache;
+    private final Cache<String, Boolean> tombstones;
+    private final Clock clock;
+    private final Counter memoryPressureEvictions;
+    private final NotificationListener memoryListener = (notification, handback) -> {
+        if (MemoryNotificationInfo.MEMORY_COLLECTION_THRESHOLD_EXCEEDED.equals(notification.getType())) {
+            shrinkForMemoryPressure();
+        }
+    };
+
+    public InMemoryOfferStore(AmadeusConfig.OfferCache settings, MeterRegistry meterRegistry, Clock clock) {
+        this.clock = clock;
+
+        long maxWeight = settings.getMaxWeight().toBytes();
+        // Every offer weighs at least maxWeight / maxEntries, which caps the entry count as well
+        int minWeight = (int) Math.min(Integer.MAX_VALUE, Math.max(1, maxWeight / Math.max(1, settings.getMaxEntries())));
+
+        this.tombstones = Caffeine.newBuilder()
+            .maximumSize(MAX_TOMBSTONES)
+            .expireAfterWrite(TOMBSTONE_TTL)
+            .build();
+        this.cache = Caffeine.newBuilder()
+            .maximumWeight(maxWeight)
+            .weigher((String id, StoredOffer stored) -> Math.max(stored.bytes().length + ENTRY_OVERHEAD_BYTES, minWeight))
+            .expireAfter(new OfferExpiry())
+            // Run the removal listener on the calling thread so tombstones are visible right away
+            .executor(Runnable::run)
+            .removalListener((String id, StoredOffer stored, RemovalCause cause) -> {
+                if (id != null && cause.wasEvicted()) {
+                    tombstones.put(id, Boolean.TRUE);
+                }
+            })
+            .recordStats()
+            .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+        this.memoryPressureEvictions = Counter.builder("flight.offers.cache.memory.pressure.evictions")
+            .description("Offers dropped because the heap was nearly full")
+            .register(meterRegistry);
+
+        registerMemoryPressureListener(settings.getMemoryPressureThreshold());
+    }
+
+    @Override
+    public void put(String offerId, byte[] encoded, Instant expiresAt) {
+        Duration lifetime = Duration.between(clock.instant(), expiresAt);
+        if (lifetime.isNegative() || lifetime.isZero()) {
+            // Already past its last ticketing date, no point in keeping it
+            cache.invalidate(offerId);
+            tombstones.put(offerId, Boolean.TRUE);
+            return;
+        }
+        cache.put(offerId, new StoredOffer(encoded, lifetime.toNanos()));
+        tombstones.invalidate(offerId);
+    }
+
+    @Override
+    public Entry get(String offerId) {
+        StoredOffer stored = cache.getIfPresent(offerId);
+        if (stored != null) {
+            return Entry.found(stored.bytes());
+        }
+        return tombstones.getIfPresent(offerId) != null ? Entry.EXPIRED : Entry.NOT_FOUND;
+    }
+
+    @Override
+    public void remove(String offerId) {
+        cache.invalidate(offerId);
+    }
+
+    @Override
+    public long size() {
+        return cache.estimatedSize();
+    }
+
+    @Override
+    public long sizeInBytes() {
+        return cache.policy().eviction()
+            .map(eviction -> eviction.weightedSize().orElse(0L))
+            .orElse(0L);
+    }
+
+    private static final class OfferExpiry implements Expiry<String, StoredOffer> {
+
+        @Override
+        public long expireAfterCreate(String id, StoredOffer stored, long currentTime) {
+            return stored.lifetimeNanos();
+        }
+
+        @Override
+        public long expireAfterUpdate(String id, StoredOffer stored, long currentTime, long currentDuration) {
+            return stored.lifetimeNanos();
+        }
+
+        @Override
+        public long expireAfterRead(String id, StoredOffer stored, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+
+    // --- Memory pressure ---
+
+    private void registerMemoryPressureListener(double threshold) {
+        if (threshold <= 0 || threshold >= 1) {
+            return;
+        }
+        // The thresholds are JVM-wide: keep one set by another store instance or component
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            long max = pool.getUsage().getMax();
+            if (pool.getType() == MemoryType.HEAP && pool.isCollectionUsageThresholdSupported() && max > 0
+                && pool.getCollectionUsageThreshold() == 0) {
+                pool.setCollectionUsageThreshold((long) (max * threshold));
+            }
+        }
+        // Removed again in close()
+        ((NotificationEmitter) ManagementFactory.getMemoryMXBean()).addNotificationListener(memoryListener, null, null);
+    }
+
+    private void shrinkForMemoryPressure() {
+        cache.policy().eviction().ifPresent(eviction -> {
+            long toDrop = cache.estimatedSize() / 2;
+            if (toDrop <= 0) {
+                return;
+            }
+            Set<String> coldest = eviction.coldest((int) Math.min(Integer.MAX_VALUE, toDrop)).keySet();
+            logger.warn("Heap is nearly full after GC. Dropping {} of {} cached flight offers.", coldest.size(), cache.estimatedSize());
+            coldest.forEach(id -> tombstones.put(id, Boolean.TRUE));
+            cache.invalidateAll(coldest);
+            memoryPressureEvictions.increment(coldest.size());
+        });
+    }
+
+    @Override
+    public void close() {
+        try {
+            ((NotificationEmitter) ManagementFactory.getMemoryMXBean()).removeNotificationListener(memoryListener);
+        } catch (ListenerNotFoundException e) {
+            // Never registered (memory pressure handling disabled)
+        }
+    }
+}
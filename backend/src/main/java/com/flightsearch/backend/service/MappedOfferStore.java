@@ -0,0 +1,551 @@
+package com.flightsearch.backend.service;
+
+import com.flightsearch.backend.config.AmadeusConfig;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.CRC32;
+
+/**
+ * Memory-Mapped Offer Store
+ * Appends encoded offers to memory-mapped segment files in a directory that several replicas
+ * can share (e.g. a mounted volume), so /flights/{id}/details works on every replica and
+ * offers survive restarts.
+ *
+ * Every replica only appends to its own segment files (named {@code <nodeId>-<sequence>.seg})
+ * and reads everybody's. An in-memory index maps offer IDs to their latest record; a lookup
+ * is a map lookup plus a copy out of the mapped file. Offers written by other replicas are
+ * picked up by the maintenance thread every catch-up-interval, and right after a lookup misses.
+ * Lookups never touch the file system themselves: {@link #getAsync} waits up to catch-up-wait
+ * for the catch-up its miss asked for, then looks again.
+ *
+ * A segment takes new records for segment-max-age and is sealed afterwards. Sealed segments
+ * whose records have all expired are deleted by any replica; the owner rewrites its sealed
+ * segments once less than compaction-threshold of them is still live.
+ */
+public class MappedOfferStore implements OfferStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(MappedOfferStore.class);
+
+    private static final String SEGMENT_SUFFIX = ".seg";
+
+    // Segment header: magic, format version, creation time
+    private static final int MAGIC = 0x4F464653;
+    private static final int VERSION = 1;
+    private static final int SEGMENT_HEADER_BYTES = 16;
+
+    // Record: body length, CRC32 of the rest, type, written at, expires at, key length, key, value.
+    // The body length is written last, a zero length marks the end of the written part.
+    private static final int RECORD_HEADER_BYTES = 27;
+    private static final byte PUT = 1;
+    private static final byte DELETE = 2;
+
+    // How many IDs of offers in deleted segments are remembered to answer "expired" instead of "not found"
+    private static final long MAX_TOMBSTONES = 50_000;
+    private static final Duration TOMBSTONE_TTL = Duration.ofHours(6);
+
+    private static final class Segment {
+        final Path path;
+        final long createdAtMillis;
+        final boolean own;
+        // Created by this process: written here and never scanned
+        final boolean writable;
+        final MappedByteBuffer buffer;
+        // Next position to write (own active segment) or to scan (everything else)
+        volatile int end = SEGMENT_HEADER_BYTES;
+
+        Segment(Path path, long createdAtMillis, boolean own, boolean writable, MappedByteBuffer buffer) {
+            this.path = path;
+            this.createdAtMillis = createdAtMillis;
+            this.own = own;
+            this.writable = writable;
+            this.buffer = buffer;
+        }
+    }
+
+    private record Location(Segment segment, int valueOffset, int valueLength, int recordLength,
+                            long writtenAtMillis, long expiresAtMillis) {
+    }
+
+    private final Path directory;
+    private final String nodeId;
+    private final int segmentSize;
+    private final long segmentMaxAgeMillis;
+    private final long ttlMillis;
+    private final double compactionThreshold;
+    private final Clock clock;
+    private final long catchUpWaitMillis;
+
+    private final Map<Path, Segment> segments = new ConcurrentHashMap<>();
+    private final Map<String, Location> index = new ConcurrentHashMap<>();
+    private final Cache<String, Boolean> tombstones = Caffeine.newBuilder()
+        .maximumSize(MAX_TOMBSTONES)
+        .expireAfterWrite(TOMBSTONE_TTL)
+        .build();
+    private final Object writeLock = new Object();
+    private final Object scanLock = new Object();
+    private volatile Segment active;
+    private int nextSequence;
+    private final AtomicBoolean catchUpRequested = new AtomicBoolean();
+    // Completed when the next catch-up to start is done
+    private volatile CompletableFuture<Void> nextCatchUp = new CompletableFuture<>();
+
+    private final ScheduledExecutorService maintenance;
+    private final Counter compactions;
+    private final Counter deletedSegments;
+
+    public MappedOfferStore(AmadeusConfig.Mapped settings, Duration ttl, MeterRegistry meterRegistry, Clock clock) {
+        this.directory = Paths.get(settings.getDirectory()).toAbsolutePath();
+        this.nodeId = settings.getNodeId() == null || settings.getNodeId().isBlank() ? defaultNodeId() : sanitize(settings.getNodeId());
+        this.segmentSize = (int) Math.min(Integer.MAX_VALUE, settings.getSegmentSize().toBytes());
+        this.segmentMaxAgeMillis = settings.getSegmentMaxAge().toMillis();
+        this.ttlMillis = ttl.toMillis();
+        this.compactionThreshold = settings.getCompactionThreshold();
+        this.clock = clock;
+        this.catchUpWaitMillis = settings.getCatchUpWait().toMillis();
+
+        long start = System.nanoTime();
+        try {
+            Files.createDirectories(directory);
+            synchronized (scanLock) {
+                listDirectory();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open offer store directory " + directory, e);
+        }
+        logger.info("Opened offer store {} as node '{}': {} segments, {} offers in {} ms",
+            directory, nodeId, segments.size(), index.size(), Duration.ofNanos(System.nanoTime() - start).toMillis());
+
+        this.compactions = Counter.builder("flight.offers.store.compactions")
+            .description("Sealed segments rewritten because most of their offers were dead")
+            .register(meterRegistry);
+        this.deletedSegments = Counter.builder("flight.offers.store.segments.deleted")
+            .description("Segment files deleted after all of their offers expired")
+            .register(meterRegistry);
+        Gauge.builder("flight.offers.store.segments", segments, Map::size)
+            .description("Segment files known to this replica")
+            .register(meterRegistry);
+
+        this.maintenance = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "offer-store-maintenance");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = Math.max(1, settings.getMaintenanceInterval().toMillis());
+        maintenance.scheduleWithFixedDelay(this::maintain, interval, interval, TimeUnit.MILLISECONDS);
+        long catchUpInterval = Math.max(1, settings.getCatchUpInterval().toMillis());
+        maintenance.scheduleWithFixedDelay(this::catchUp, catchUpInterval, catchUpInterval, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void put(String offerId, byte[] encoded, Instant expiresAt) {
+        long now = clock.millis();
+        // Segment deletion relies on no record outliving its segment by more than the TTL
+        write(PUT, offerId, encoded, now, Math.min(expiresAt.toEpochMilli(), now + ttlMillis));
+    }
+
+    @Override
+    public Entry get(String offerId) {
+        Location location = index.get(offerId);
+        if (location == null) {
+            // Maybe another replica stored it, the next lookup will know
+            requestCatchUp();
+        }
+        return entry(offerId, location);
+    }
+
+    /**
+     * On a miss, waits (on the maintenance thread, not the caller's) for a catch-up that starts
+     * after the miss, at most catch-up-wait, and looks again.
+     */
+    @Override
+    public CompletableFuture<Entry> getAsync(String offerId) {
+        Location location = index.get(offerId);
+        if (location != null || catchUpWaitMillis <= 0) {
+            return CompletableFuture.completedFuture(get(offerId));
+        }
+        CompletableFuture<Void> caughtUp = nextCatchUp;
+        requestCatchUp();
+        return caughtUp.copy()
+            .completeOnTimeout(null, catchUpWaitMillis, TimeUnit.MILLISECONDS)
+            .thenApply(ignored -> entry(offerId, index.get(offerId)));
+    }
+
+    private Entry entry(String offerId, Location location) {
+        if (location == null) {
+            return tombstones.getIfPresent(offerId) != null ? Entry.EXPIRED : Entry.NOT_FOUND;
+        }
+        if (location.expiresAtMillis() <= clock.millis()) {
+            return Entry.EXPIRED;
+        }
+        byte[] bytes = new byte[location.valueLength()];
+        location.segment().buffer.get(location.valueOffset(), bytes);
+        return Entry.found(bytes);
+    }
+
+    @Override
+    public void remove(String offerId) {
+        write(DELETE, offerId, new byte[0], clock.millis(), 0);
+    }
+
+    @Override
+    public long size() {
+        return index.size();
+    }
+
+    @Override
+    public long sizeInBytes() {
+        long bytes = 0;
+        for (Segment segment : segments.values()) {
+            bytes += segment.end - SEGMENT_HEADER_BYTES;
+        }
+        return bytes;
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    @Override
+    public void close() {
+        maintenance.shutdownNow();
+        // Lookups waiting for a catch-up answer with what is indexed
+        nextCatchUp.complete(null);
+        // The mappings are released once the buffers are garbage collected
+    }
+
+    // --- Writing ---
+
+    private void write(byte type, String offerId, byte[] value, long writtenAt, long expiresAt) {
+        try {
+            synchronized (writeLock) {
+                apply(offerId, type, append(type, offerId, value, writtenAt, expiresAt));
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            logger.error("Could not write flight offer {} to {}: {}", offerId, directory, e.getMessage());
+        }
+    }
+
+    // Caller holds writeLock
+    private Location append(byte type, String key, byte[] value, long writtenAt, long expiresAt) throws IOException {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        int recordLength = RECORD_HEADER_BYTES + keyBytes.length + value.length;
+        if (keyBytes.length > Short.MAX_VALUE || recordLength > segmentSize - SEGMENT_HEADER_BYTES) {
+            throw new IllegalArgumentException("Record of " + recordLength + " bytes does not fit into a segment");
+        }
+
+        Segment segment = active;
+        if (segment == null || segment.end + recordLength > segment.buffer.capacity() || isSealed(segment, clock.millis())) {
+            segment = rollOver();
+        }
+
+        MappedByteBuffer buffer = segment.buffer;
+        int position = segment.end;
+        buffer.put(position + 8, type);
+        buffer.putLong(position + 9, writtenAt);
+        buffer.putLong(position + 17, expiresAt);
+        buffer.putShort(position + 25, (short) keyBytes.length);
+        buffer.put(position + RECORD_HEADER_BYTES, keyBytes);
+        buffer.put(position + RECORD_HEADER_BYTES + keyBytes.length, value);
+        buffer.putInt(position + 4, checksum(buffer, position, recordLength));
+        // Publishing the length makes the record visible to readers
+        buffer.putInt(position, recordLength - 4);
+        segment.end = position + recordLength;
+
+        return new Location(segment, position + RECORD_HEADER_BYTES + keyBytes.length, value.length, recordLength,
+            writtenAt, expiresAt);
+    }
+
+    // Caller holds writeLock
+    private Segment rollOver() throws IOException {
+        Path path;
+        MappedByteBuffer buffer;
+        while (true) {
+            path = directory.resolve(String.format("%s-%08d%s", nodeId, nextSequence++, SEGMENT_SUFFIX));
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+                break;
+            } catch (FileAlreadyExistsException e) {
+                // Another process with the same node id, skip to the next sequence
+            }
+        }
+        long now = clock.millis();
+        buffer.putLong(8, now);
+        buffer.putInt(4, VERSION);
+        buffer.putInt(0, MAGIC);
+
+        Segment segment = new Segment(path, now, true, true, buffer);
+        segments.put(path, segment);
+        active = segment;
+        logger.debug("Started offer segment {}", path.getFileName());
+        return segment;
+    }
+
+    // Later writes win, so replicas agree on the latest version of an offer
+    private void apply(String key, byte type, Location location) {
+        index.compute(key, (id, current) -> {
+            if (current != null && current.writtenAtMillis() > location.writtenAtMillis()) {
+                return current;
+            }
+            return type == DELETE ? null : location;
+        });
+    }
+
+    private boolean isSealed(Segment segment, long now) {
+        return segment.createdAtMillis + segmentMaxAgeMillis <= now;
+    }
+
+    // --- Reading other replicas' segments ---
+
+    // Runs the catch-up on the maintenance thread soon, unless one is already waiting
+    private void requestCatchUp() {
+        if (catchUpRequested.compareAndSet(false, true)) {
+            try {
+                maintenance.execute(this::catchUp);
+            } catch (RejectedExecutionException e) {
+                // Closed
+                catchUpRequested.set(false);
+            }
+        }
+    }
+
+    // Runs on the maintenance thread
+    void catchUp() {
+        catchUpRequested.set(false);
+        CompletableFuture<Void> caughtUp = nextCatchUp;
+        nextCatchUp = new CompletableFuture<>();
+        try {
+            scanOtherReplicas();
+        } finally {
+            caughtUp.complete(null);
+        }
+    }
+
+    private void scanOtherReplicas() {
+        synchronized (scanLock) {
+            try {
+                listDirectory();
+                for (Segment segment : segments.values()) {
+                    if (!segment.writable) {
+                        scan(segment);
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                logger.warn("Could not read offer store directory {}: {}", directory, e.getMessage());
+            }
+        }
+    }
+
+    // Caller holds scanLock
+    private void listDirectory() throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SEGMENT_SUFFIX)) {
+            for (Path path : files) {
+                if (segments.containsKey(path)) {
+                    continue;
+                }
+                Segment segment = openExisting(path);
+                if (segment != null) {
+                    segments.put(path, segment);
+                    scan(segment);
+                }
+            }
+        }
+    }
+
+    // Returns null for files that are still being created (no valid header yet)
+    private Segment openExisting(Path path) throws IOException {
+        String name = path.getFileName().toString();
+        boolean own = false;
+        if (name.startsWith(nodeId + "-")) {
+            try {
+                int sequence = Integer.parseInt(name.substring(nodeId.length() + 1, name.length() - SEGMENT_SUFFIX.length()));
+                synchronized (writeLock) {
+                    nextSequence = Math.max(nextSequence, sequence + 1);
+                }
+                own = true;
+            } catch (NumberFormatException e) {
+                // Another node whose id starts with ours
+            }
+        }
+
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() < SEGMENT_HEADER_BYTES) {
+                return null;
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(channel.size(), Integer.MAX_VALUE));
+        }
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            return null;
+        }
+        return new Segment(path, buffer.getLong(8), own, false, buffer);
+    }
+
+    // Caller holds scanLock. Stops at the first record that is not (completely) written yet.
+    private void scan(Segment segment) {
+        MappedByteBuffer buffer = segment.buffer;
+        int position = segment.end;
+        while (position + RECORD_HEADER_BYTES <= buffer.capacity()) {
+            int recordLength = buffer.getInt(position) + 4;
+            if (recordLength < RECORD_HEADER_BYTES || position + recordLength > buffer.capacity()
+                || buffer.getInt(position + 4) != checksum(buffer, position, recordLength)) {
+                break;
+            }
+            byte type = buffer.get(position + 8);
+            int keyLength = buffer.getShort(position + 25);
+            byte[] keyBytes = new byte[keyLength];
+            buffer.get(position + RECORD_HEADER_BYTES, keyBytes);
+            int valueOffset = position + RECORD_HEADER_BYTES + keyLength;
+            apply(new String(keyBytes, StandardCharsets.UTF_8), type, new Location(segment, valueOffset,
+                recordLength - RECORD_HEADER_BYTES - keyLength, recordLength, buffer.getLong(position + 9), buffer.getLong(position + 17)));
+            position += recordLength;
+        }
+        segment.end = position;
+    }
+
+    private static int checksum(ByteBuffer buffer, int position, int recordLength) {
+        CRC32 crc = new CRC32();
+        crc.update(buffer.slice(position + 8, recordLength - 8));
+        return (int) crc.getValue();
+    }
+
+    // --- Maintenance ---
+
+    void maintain() {
+        try {
+            synchronized (scanLock) {
+                listDirectory();
+                dropVanishedSegments();
+            }
+            long now = clock.millis();
+            synchronized (writeLock) {
+                if (active != null && isSealed(active, now)) {
+                    active = null;
+                }
+            }
+
+            for (Segment segment : new ArrayList<>(segments.values())) {
+                if (segment == active || !isSealed(segment, now)) {
+                    continue;
+                }
+                // Records are written while the segment is open and live for at most the TTL
+                if (segment.createdAtMillis + segmentMaxAgeMillis + ttlMillis <= now) {
+                    deleteSegment(segment);
+                    deletedSegments.increment();
+                } else if (segment.own) {
+                    compactIfSparse(segment, now);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Offer store maintenance failed: {}", e.getMessage());
+        }
+    }
+
+    // Caller holds scanLock. Segments deleted by other replicas.
+    private void dropVanishedSegments() {
+        for (Segment segment : new ArrayList<>(segments.values())) {
+            if (segment != active && !Files.exists(segment.path)) {
+                forget(segment);
+            }
+        }
+    }
+
+    private void compactIfSparse(Segment segment, long now) throws IOException {
+        List<Map.Entry<String, Location>> live = new ArrayList<>();
+        long liveBytes = 0;
+        for (Map.Entry<String, Location> entry : index.entrySet()) {
+            Location location = entry.getValue();
+            if (location.segment() == segment && location.expiresAtMillis() > now) {
+                live.add(entry);
+                liveBytes += location.recordLength();
+            }
+        }
+        long usedBytes = segment.end - SEGMENT_HEADER_BYTES;
+        if (usedBytes <= 0 || liveBytes >= usedBytes * compactionThreshold) {
+            return;
+        }
+
+        synchronized (writeLock) {
+            for (Map.Entry<String, Location> entry : live) {
+                Location location = entry.getValue();
+                if (index.get(entry.getKey()) != location) {
+                    continue;
+                }
+                byte[] value = new byte[location.valueLength()];
+                segment.buffer.get(location.valueOffset(), value);
+                apply(entry.getKey(), PUT, append(PUT, entry.getKey(), value, location.writtenAtMillis(), location.expiresAtMillis()));
+            }
+        }
+        logger.debug("Compacted offer segment {}: moved {} live offers ({} of {} bytes)",
+            segment.path.getFileName(), live.size(), liveBytes, usedBytes);
+        deleteSegment(segment);
+        compactions.increment();
+    }
+
+    private void deleteSegment(Segment segment) throws IOException {
+        Files.deleteIfExists(segment.path);
+        forget(segment);
+    }
+
+    // The offers still indexed in the segment are dead, remember them as expired
+    private void forget(Segment segment) {
+        segments.remove(segment.path);
+        index.entrySet().removeIf(entry -> {
+            if (entry.getValue().segment() != segment) {
+                return false;
+            }
+            tombstones.put(entry.getKey(), Boolean.TRUE);
+            return true;
+        });
+    }
+
+    // --- Node id ---
+
+    private static String defaultNodeId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            host = "node";
+        }
+        return sanitize(host + "-" + ProcessHandle.current().pid());
+    }
+
+    private static String sanitize(String nodeId) {
+        return nodeId.replaceAll("[^A-Za-z0-9_.-]", "_");
+    }
+}
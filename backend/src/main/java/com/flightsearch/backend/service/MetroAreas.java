@@ -0,0 +1,104 @@
+package com.flightsearch.backend.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Metro Areas
+ * IATA metropolitan area codes (NYC, LON, ...) and the airports they stand for, loaded once
+ * at startup, so a search from "NYC" can be run as searches from JFK, EWR and LGA.
+ */
+public final class MetroAreas {
+
+    private static final Logger logger = LoggerFactory.getLogger(MetroAreas.class);
+
+    public static final String DEFAULT_LOCATION = "airports/metro-areas.csv";
+
+    private final Map<String, List<String>> airportsByCode;
+
+    MetroAreas(Map<String, List<String>> airportsByCode) {
+        this.airportsByCode = Map.copyOf(airportsByCode);
+    }
+
+    /**
+     * Loads the metro areas from a classpath CSV resource. A missing or unreadable resource
+     * results in no metro areas, so metro codes are passed to Amadeus unchanged.
+     */
+    public static MetroAreas load(String classpathLocation) {
+        Map<String, List<String>> airportsByCode = new HashMap<>();
+        try (InputStream input = MetroAreas.class.getClassLoader().getResourceAsStream(classpathLocation)) {
+            if (input == null) {
+                logger.warn("Metro area data '{}' not found on the classpath. Metro codes will not be expanded.", classpathLocation);
+            } else {
+                readCsv(input, airportsByCode);
+            }
+        } catch (IOException e) {
+            logger.error("Could not read metro area data '{}': {}", classpathLocation, e.getMessage());
+            airportsByCode.clear();
+        }
+        logger.info("Loaded {} metro areas from '{}'", airportsByCode.size(), classpathLocation);
+        return new MetroAreas(airportsByCode);
+    }
+
+    private static void readCsv(InputStream input, Map<String, List<String>> airportsByCode) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+        String line;
+        int lineNumber = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank() || line.startsWith("#")) {
+                continue;
+            }
+            String[] columns = line.split(",", -1);
+            if (columns.length != 2 || columns[0].trim().length() != 3 || columns[1].isBlank()) {
+                logger.warn("Skipping malformed metro area line {}: {}", lineNumber, line);
+                continue;
+            }
+            List<String> airports = new ArrayList<>();
+            for (String airport : columns[1].trim().split("\\s+")) {
+                airports.add(airport.toUpperCase(Locale.ROOT));
+            }
+            airportsByCode.put(columns[0].trim().toUpperCase(Locale.ROOT), List.copyOf(airports));
+        }
+    }
+
+    /**
+     * Expands a comma separated list of airport and metro codes into airport codes, in the
+     * given order and without duplicates, e.g. "NYC,BOS" into [JFK, EWR, LGA, BOS].
+     */
+    public List<String> expand(String codes) {
+        Set<String> airports = new LinkedHashSet<>();
+        if (codes != null) {
+            for (String code : codes.split(",")) {
+                String normalized = code.trim().toUpperCase(Locale.ROOT);
+                if (normalized.isEmpty()) {
+                    continue;
+                }
+                List<String> metroAirports = airportsByCode.get(normalized);
+                if (metroAirports != null) {
+                    airports.addAll(metroAirports);
+                } else {
+                    airports.add(normalized);
+                }
+            }
+        }
+        return List.copyOf(airports);
+    }
+
+    public int size() {
+        return airportsByCode.size();
+    }
+}
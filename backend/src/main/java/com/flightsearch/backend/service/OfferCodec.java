@@ -0,0 +1,136 @@
+package com.flightsearch.backend.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Offer Codec
+ * Turns a flight offer into compact bytes and back. Offers are written as Smile (binary JSON
+ * with back-references for repeated field names and short strings), and larger ones are
+ * additionally deflated. A retained JsonNode tree costs several times its wire size, while
+ * the encoded form is smaller than the JSON text itself.
+ *
+ * Offers can be encoded from a tree or straight from the tokens they were parsed from, and
+ * decoded into a tree or bound to a typed model.
+ */
+public class OfferCodec {
+
+    // Prefix byte telling how the rest of the array is encoded
+    private static final byte PLAIN = 0;
+    private static final byte DEFLATED = 1;
+
+    private final SmileMapper smileMapper = new SmileMapper();
+    private final boolean compress;
+    private final int compressMinBytes;
+
+    /**
+     * @param compress         Whether larger offers are deflated on top of the Smile encoding
+     * @param compressMinBytes Smile payloads smaller than this are stored without compression
+     */
+    public OfferCodec(boolean compress, int compressMinBytes) {
+        this.compress = compress;
+        this.compressMinBytes = compressMinBytes;
+    }
+
+    public byte[] encode(JsonNode offer) {
+        return encodeValue(offer);
+    }
+
+    public byte[] encode(TokenBuffer offer) {
+        return encodeValue(offer);
+    }
+
+    private byte[] encodeValue(Object offer) {
+        byte[] smile;
+        try {
+            smile = smileMapper.writeValueAsBytes(offer);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not encode flight offer", e);
+        }
+
+        if (compress && smile.length >= compressMinBytes) {
+            byte[] deflated = deflate(smile);
+            // Only keep the compressed form if it actually saves something
+            if (deflated.length < smile.length) {
+                return withPrefix(DEFLATED, deflated);
+            }
+        }
+        return withPrefix(PLAIN, smile);
+    }
+
+    public JsonNode decode(byte[] encoded) {
+        try {
+            if (encoded[0] == DEFLATED) {
+                byte[] smile = inflate(encoded);
+                return smileMapper.readTree(smile);
+            }
+            return smileMapper.readTree(encoded, 1, encoded.length - 1);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not decode cached flight offer", e);
+        }
+    }
+
+    public <T> T decode(byte[] encoded, Class<T> type) {
+        try {
+            if (encoded[0] == DEFLATED) {
+                byte[] smile = inflate(encoded);
+                return smileMapper.readValue(smile, type);
+            }
+            return smileMapper.readValue(encoded, 1, encoded.length - 1, type);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not decode cached flight offer", e);
+        }
+    }
+
+    private static byte[] withPrefix(byte format, byte[] payload) {
+        byte[] encoded = new byte[payload.length + 1];
+        encoded[0] = format;
+        System.arraycopy(payload, 0, encoded, 1, payload.length);
+        return encoded;
+    }
+
+    private static byte[] deflate(byte[] input) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(input);
+            deflater.finish();
+            ByteArrayOutputStream output = new ByteArrayOutputStream(input.length / 2);
+            byte[] buffer = new byte[1024];
+            while (!deflater.finished()) {
+                output.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return output.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] encoded) throws IOException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(encoded, 1, encoded.length - 1);
+            ByteArrayOutputStream output = new ByteArrayOutputStream(encoded.length * 3);
+            byte[] buffer = new byte[1024];
+            while (!inflater.finished()) {
+                int count = inflater.inflate(buffer);
+                if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IOException("Truncated compressed flight offer");
+                }
+                output.write(buffer, 0, count);
+            }
+            return output.toByteArray();
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt compressed flight offer", e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.flightsearch.backend.service;
+
+/**
+ * Thrown when a flight offer was cached by an earlier search but has since expired or been evicted.
+ */
+public class OfferExpiredException extends RuntimeException {
+
+    public OfferExpiredException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,61 @@
+package com.flightsearch.backend.service;
+
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Offer Store
+ * Where {@link FlightOfferCache} keeps encoded flight offers. Implementations decide how offers
+ * are bounded and shared: {@link InMemoryOfferStore} keeps them in this process only,
+ * {@link MappedOfferStore} writes them to segment files that survive restarts and can be read
+ * by every replica mounting the same directory.
+ */
+public interface OfferStore extends AutoCloseable {
+
+    enum Status { FOUND, EXPIRED, NOT_FOUND }
+
+    record Entry(Status status, byte[] bytes) {
+
+        public static final Entry EXPIRED = new Entry(Status.EXPIRED, null);
+        public static final Entry NOT_FOUND = new Entry(Status.NOT_FOUND, null);
+
+        public static Entry found(byte[] bytes) {
+            return new Entry(Status.FOUND, bytes);
+        }
+    }
+
+    /**
+     * Stores (or replaces) an offer. Offers whose expiresAt has already passed are reported
+     * as expired from then on.
+     */
+    void put(String offerId, byte[] encoded, Instant expiresAt);
+
+    /**
+     * Returns the stored bytes, or whether the offer expired or is unknown.
+     */
+    Entry get(String offerId);
+
+    /**
+     * Like get, for stores that may have to wait for offers of other replicas. The future is
+     * never completed on the calling thread while waiting, so it is safe on an event loop.
+     */
+    default CompletableFuture<Entry> getAsync(String offerId) {
+        return CompletableFuture.completedFuture(get(offerId));
+    }
+
+    void remove(String offerId);
+
+    /**
+     * Number of stored offers (may include expired ones not cleaned up yet).
+     */
+    long size();
+
+    /**
+     * Bytes used by the stored offers.
+     */
+    long sizeInBytes();
+
+    @Override
+    default void close() {
+    }
+}
@@ -0,0 +1,370 @@
+package com.flightsearch.backend.service;
+
+import com.flightsearch.backend.config.AmadeusConfig;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.codec.DecodingException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.net.http.HttpTimeoutException;
+import java.nio.channels.ClosedChannelException;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Outbound Limiter
+ * Paces the calls to one Amadeus endpoint family. Every call needs a slot and a token:
+ *
+ * - Slots bound the calls in flight. Their number adapts AIMD style: it grows by one for
+ *   every "limit" successful calls and is cut by the decrease factor when Amadeus answers 429
+ *   or responds slower than the latency threshold, at most once per decrease interval.
+ * - Tokens come from a bucket refilled at permits-per-second, holding at most burst tokens.
+ *   A call waits for its token, or fails with UpstreamRateLimitedException if that would take
+ *   longer than max-wait; a rate of 0 turns the bucket off. A 429 with Retry-After empties
+ *   the bucket until then, so the other calls of the family hold back too.
+ *
+ * A call answered with 429 is retried after its Retry-After, or an exponential backoff with
+ * jitter, up to max-retries times; then it fails with UpstreamRateLimitedException.
+ *
+ * The slots are also the family's bulkhead: at most max-queued calls wait for one, further
+ * calls fail at once with UpstreamUnavailableException. So does every call while the family's
+ * circuit breaker is open. Each family has its own slots, bucket and breaker, so a slow
+ * locations endpoint cannot hold up flight searches.
+ *
+ * Every call that reaches Amadeus is timed (amadeus.calls, by endpoint and outcome, with a
+ * percentile histogram); failed ones are also counted by error class (amadeus.errors).
+ */
+public class OutboundLimiter {
+
+    private static final Logger logger = LoggerFactory.getLogger(OutboundLimiter.class);
+
+    // Outcomes of a call that reached Amadeus; all but success are also error classes
+    static final String SUCCESS = "success";
+    static final String RATE_LIMITED = "rate_limited";
+    static final String CLIENT_ERROR = "client_error";
+    static final String SERVER_ERROR = "server_error";
+    static final String TIMEOUT = "timeout";
+    static final String CONNECTION = "connection";
+    static final String INVALID_RESPONSE = "invalid_response";
+    static final String OTHER = "other";
+    private static final List<String> OUTCOMES = List.of(SUCCESS, RATE_LIMITED, CLIENT_ERROR, SERVER_ERROR, TIMEOUT,
+        CONNECTION, INVALID_RESPONSE, OTHER);
+
+    private final String name;
+    private final AmadeusConfig.RateLimit rateLimit;
+    private final AmadeusConfig.RateLimit.Endpoint settings;
+    private final PriorityWorkQueue slots;
+    private final CircuitBreaker circuitBreaker;
+
+    // Token bucket, guarded by this. refilledAt lies in the future while paused by a Retry-After;
+    // tokens go negative for calls that reserved a token and are waiting for it.
+    private double tokens;
+    private long refilledAt;
+
+    // Adaptive concurrency, guarded by this
+    private double concurrencyLimit;
+    private long decreasedAt;
+
+    private final Counter throttled;
+    private final Counter retries;
+    private final Counter rejected;
+    private final Map<String, Timer> callTimers = new LinkedHashMap<>();
+    private final Map<String, Counter> errors = new LinkedHashMap<>();
+
+    public OutboundLimiter(String name, AmadeusConfig.RateLimit rateLimit, AmadeusConfig.RateLimit.Endpoint settings,
+                           MeterRegistry meterRegistry) {
+        this.name = name;
+        this.rateLimit = rateLimit;
+        this.settings = settings;
+        this.tokens = Math.max(1, settings.getBurst());
+        this.refilledAt = System.nanoTime();
+        this.concurrencyLimit = clampConcurrency(settings.getInitialConcurrency());
+        this.decreasedAt = refilledAt - settings.getDecreaseInterval().toNanos();
+        this.slots = new PriorityWorkQueue(name, (int) concurrencyLimit, settings.getMaxQueued(), meterRegistry);
+        this.circuitBreaker = new CircuitBreaker(name, settings, meterRegistry);
+
+        this.throttled = Counter.builder(name + ".ratelimit.throttled")
+            .description("Calls Amadeus answered with 429 Too Many Requests")
+            .register(meterRegistry);
+        this.retries = Counter.builder(name + ".ratelimit.retries")
+            .description("Calls retried after a 429")
+            .register(meterRegistry);
+        this.rejected = Counter.builder(name + ".ratelimit.rejected")
+            .description("Calls failed without reaching Amadeus because the rate limit wait was too long")
+            .register(meterRegistry);
+        Gauge.builder(name + ".concurrency.limit", this, OutboundLimiter::getConcurrencyLimit)
+            .description("Current adaptive limit of calls in flight")
+            .register(meterRegistry);
+        for (String outcome : OUTCOMES) {
+            callTimers.put(outcome, Timer.builder("amadeus.calls")
+                .description("Amadeus calls, from sending the request to reading the whole response")
+                .tag("endpoint", name)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry));
+            if (!outcome.equals(SUCCESS)) {
+                errors.put(outcome, Counter.builder("amadeus.errors")
+                    .description("Failed Amadeus calls by error class")
+                    .tag("endpoint", name)
+                    .tag("class", outcome)
+                    .register(meterRegistry));
+            }
+        }
+    }
+
+    /**
+     * Runs the call once the circuit lets it through and a slot and a token are free,
+     * retrying it on 429.
+     */
+    public <T> Mono<T> execute(Supplier<Mono<T>> call) {
+        return Mono.defer(() -> {
+                circuitBreaker.acquirePermission();
+                // Set once the call reached Amadeus and its outcome was recorded
+                AtomicBoolean recorded = new AtomicBoolean();
+                return slots.submit(0, () -> acquireToken().then(Mono.defer(() -> {
+                        long startedAt = System.nanoTime();
+                        return call.get()
+                            .doOnSuccess(result -> {
+                                recorded.set(true);
+                                long durationNanos = System.nanoTime() - startedAt;
+                                callTimers.get(SUCCESS).record(durationNanos, TimeUnit.NANOSECONDS);
+                                circuitBreaker.onSuccess(durationNanos);
+                                onResponse(durationNanos);
+                            })
+                            .doOnError(error -> {
+                                recorded.set(true);
+                                long durationNanos = System.nanoTime() - startedAt;
+                                String errorClass = errorClass(error);
+                                callTimers.get(errorClass).record(durationNanos, TimeUnit.NANOSECONDS);
+                                errors.get(errorClass).increment();
+                                circuitBreaker.onError(durationNanos, error);
+                                onError(error);
+                            });
+                    })))
+                    .onErrorMap(RejectedExecutionException.class, error -> new UpstreamUnavailableException(
+                        "Too many requests to Amadeus (" + name + ") are waiting. Please try again later.", Duration.ofSeconds(1)))
+                    .doFinally(signal -> {
+                        if (!recorded.get()) {
+                            circuitBreaker.release();
+                        }
+                    });
+            })
+            .retryWhen(Retry.from(signals -> signals.concatMap(signal -> retryDelay(signal.failure(), signal.totalRetries()))));
+    }
+
+    private Mono<Void> acquireToken() {
+        return Mono.defer(() -> {
+            long waitNanos = reserveToken();
+            if (waitNanos == 0) {
+                return Mono.empty();
+            }
+            logger.debug("{}: waiting {} ms for the rate limit", name, waitNanos / 1_000_000);
+            return Mono.delay(Duration.ofNanos(waitNanos)).then();
+        });
+    }
+
+    // Takes a token, possibly one not refilled yet, and returns how long to wait for it
+    private synchronized long reserveToken() {
+        if (settings.getPermitsPerSecond() <= 0) {
+            return 0; // Rate not limited
+        }
+        long now = System.nanoTime();
+        refill(now);
+        tokens -= 1;
+        long waitNanos = Math.max(0, refilledAt - now);
+        if (tokens < 0) {
+            waitNanos += (long) (-tokens * 1_000_000_000L / settings.getPermitsPerSecond());
+        }
+        if (waitNanos > settings.getMaxWait().toNanos()) {
+            tokens += 1;
+            rejected.increment();
+            throw new UpstreamRateLimitedException("Too many requests to Amadeus (" + name + "). Please try again later.",
+                Duration.ofNanos(waitNanos));
+        }
+        return waitNanos;
+    }
+
+    private void refill(long now) {
+        if (now > refilledAt) {
+            tokens = Math.min(settings.getBurst(), tokens + (now - refilledAt) * settings.getPermitsPerSecond() / 1_000_000_000L);
+            refilledAt = now;
+        }
+    }
+
+    // No token is handed out before the pause ends; then one is ready at once
+    private synchronized void pause(Duration duration) {
+        long now = System.nanoTime();
+        refill(now);
+        long until = now + duration.toNanos();
+        if (until > refilledAt) {
+            refilledAt = until;
+            tokens = Math.min(tokens, 1);
+        }
+    }
+
+    private void onResponse(long latencyNanos) {
+        if (latencyNanos > settings.getLatencyThreshold().toNanos()) {
+            logger.warn("{}: slow response ({} ms), lowering the concurrency limit", name, latencyNanos / 1_000_000);
+            decrease();
+            return;
+        }
+        int limit;
+        synchronized (this) {
+            concurrencyLimit = clampConcurrency(concurrencyLimit + 1.0 / concurrencyLimit);
+            limit = (int) concurrencyLimit;
+        }
+        if (limit != slots.getConcurrency()) {
+            slots.setConcurrency(limit);
+        }
+    }
+
+    private void onError(Throwable error) {
+        if (error instanceof WebClientResponseException.TooManyRequests tooManyRequests) {
+            throttled.increment();
+            Duration retryAfter = retryAfter(tooManyRequests);
+            if (retryAfter != null) {
+                pause(retryAfter);
+            }
+            decrease();
+        }
+    }
+
+    private void decrease() {
+        int limit;
+        synchronized (this) {
+            long now = System.nanoTime();
+            if (now - decreasedAt < settings.getDecreaseInterval().toNanos()) {
+                return;
+            }
+            decreasedAt = now;
+            concurrencyLimit = clampConcurrency(concurrencyLimit * settings.getDecreaseFactor());
+            limit = (int) concurrencyLimit;
+        }
+        logger.info("{}: concurrency limit lowered to {}", name, limit);
+        slots.setConcurrency(limit);
+    }
+
+    private double clampConcurrency(double limit) {
+        int min = Math.max(1, settings.getMinConcurrency());
+        return Math.max(min, Math.min(Math.max(min, settings.getMaxConcurrency()), limit));
+    }
+
+    private Mono<Long> retryDelay(Throwable failure, long retriesSoFar) {
+        if (!(failure instanceof WebClientResponseException.TooManyRequests tooManyRequests)) {
+            return Mono.error(failure);
+        }
+        Duration retryAfter = retryAfter(tooManyRequests);
+        Duration maxBackoff = rateLimit.getMaxBackoff();
+        if (retriesSoFar >= rateLimit.getMaxRetries() || (retryAfter != null && retryAfter.compareTo(maxBackoff) > 0)) {
+            logger.warn("{}: still rate limited by Amadeus after {} retries", name, retriesSoFar);
+            return Mono.error(new UpstreamRateLimitedException("Amadeus is rate limiting requests. Please try again later.",
+                retryAfter != null ? retryAfter : maxBackoff));
+        }
+
+        long backoffNanos = Math.min(maxBackoff.toNanos(), rateLimit.getInitialBackoff().toNanos() << Math.min(retriesSoFar, 20));
+        long delayNanos = Math.max(backoffNanos, retryAfter != null ? retryAfter.toNanos() : 0)
+            + (long) (ThreadLocalRandom.current().nextDouble() * rateLimit.getJitter() * backoffNanos);
+        retries.increment();
+        logger.info("{}: Amadeus answered 429, retry {} in {} ms", name, retriesSoFar + 1, delayNanos / 1_000_000);
+        return Mono.delay(Duration.ofNanos(delayNanos));
+    }
+
+    /**
+     * Error class of a failed call: the response status class, or what went wrong below HTTP.
+     */
+    static String errorClass(Throwable error) {
+        if (error instanceof WebClientResponseException response) {
+            if (response.getStatusCode().value() == 429) {
+                return RATE_LIMITED;
+            }
+            return response.getStatusCode().is5xxServerError() ? SERVER_ERROR : CLIENT_ERROR;
+        }
+        if (error instanceof DecodingException) {
+            return INVALID_RESPONSE;
+        }
+        // Timeouts and connection failures come wrapped (WebClientRequestException, ResourceAccessException)
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof TimeoutException || cause instanceof io.netty.handler.timeout.TimeoutException
+                    || cause instanceof SocketTimeoutException || cause instanceof HttpTimeoutException) {
+                return TIMEOUT;
+            }
+            if (cause instanceof ConnectException || cause instanceof UnknownHostException
+                    || cause instanceof ClosedChannelException) {
+                return CONNECTION;
+            }
+        }
+        if (error instanceof WebClientRequestException || error instanceof ResourceAccessException) {
+            return CONNECTION;
+        }
+        return OTHER;
+    }
+
+    /**
+     * The Retry-After of a response, given in seconds or as an HTTP date, or null if it has none.
+     */
+    static Duration retryAfter(WebClientResponseException error) {
+        String value = error.getHeaders().getFirst(HttpHeaders.RETRY_AFTER);
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        try {
+            return Duration.ofSeconds(Math.max(0, Long.parseLong(value.trim())));
+        } catch (NumberFormatException e) {
+            // Not a number of seconds, try an HTTP date
+        }
+        try {
+            ZonedDateTime at = ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME);
+            Duration untilThen = Duration.between(ZonedDateTime.now(at.getZone()), at);
+            return untilThen.isNegative() ? Duration.ZERO : untilThen;
+        } catch (DateTimeParseException e) {
+            logger.debug("Ignoring unreadable Retry-After '{}'", value);
+            return null;
+        }
+    }
+
+    public synchronized double getConcurrencyLimit() {
+        return concurrencyLimit;
+    }
+
+    public long getThrottledCount() {
+        return (long) throttled.count();
+    }
+
+    public long getRetryCount() {
+        return (long) retries.count();
+    }
+
+    public PriorityWorkQueue getSlots() {
+        return slots;
+    }
+
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+}
@@ -0,0 +1,211 @@
+package com.flightsearch.backend.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Priority Work Queue
+ * Runs asynchronous work with at most a fixed number of tasks at a time, shared by every
+ * caller. Waiting tasks start highest priority first, and in submission order within a
+ * priority. Work is only started once a slot is free, so a caller submitting thousands of
+ * tasks holds them in the queue instead of opening thousands of upstream calls.
+ *
+ * A task cancelled while waiting is dropped from the queue; a running one is disposed and
+ * frees its slot, also when the cancel lands while it is being started. A queue may bound its waiting tasks; work submitted to a full queue fails
+ * with RejectedExecutionException right away.
+ */
+public class PriorityWorkQueue {
+
+    private static final Logger logger = LoggerFactory.getLogger(PriorityWorkQueue.class);
+
+    private final class Task<T> {
+
+        private final int priority;
+        private final long sequence;
+        private final Supplier<Mono<T>> work;
+        private final MonoSink<T> sink;
+        // Both guarded by the queue. A cancel may land between leaving the queue and running.
+        private Disposable running;
+        private boolean cancelled;
+
+        Task(int priority, long sequence, Supplier<Mono<T>> work, MonoSink<T> sink) {
+            this.priority = priority;
+            this.sequence = sequence;
+            this.work = work;
+            this.sink = sink;
+        }
+
+        void start() {
+            boolean skip;
+            synchronized (PriorityWorkQueue.this) {
+                skip = cancelled;
+            }
+            if (skip) {
+                logger.debug("Skipped a task cancelled before it started");
+                finished();
+                return;
+            }
+            Disposable subscription = Mono.defer(work)
+                .doFinally(signal -> finished())
+                .subscribe(sink::success, sink::error, sink::success);
+            boolean dispose;
+            synchronized (PriorityWorkQueue.this) {
+                running = subscription;
+                dispose = cancelled;
+            }
+            if (dispose) {
+                subscription.dispose();
+            }
+        }
+    }
+
+    private volatile int concurrency;
+    private final int maxWaiting;
+    private final PriorityQueue<Task<?>> waiting = new PriorityQueue<>(Comparator
+        .comparingInt((Task<?> task) -> -task.priority)
+        .thenComparingLong(task -> task.sequence));
+    private final AtomicLong sequence = new AtomicLong();
+    // Drain passes requested; only one thread drains, the others leave their pass to it
+    private final AtomicInteger drainRequests = new AtomicInteger();
+    // Guarded by this
+    private int active;
+
+    private final Counter submitted;
+    private final Counter started;
+    private final Counter rejected;
+
+    public PriorityWorkQueue(String name, int concurrency, MeterRegistry meterRegistry) {
+        this(name, concurrency, Integer.MAX_VALUE, meterRegistry);
+    }
+
+    public PriorityWorkQueue(String name, int concurrency, int maxWaiting, MeterRegistry meterRegistry) {
+        this.concurrency = Math.max(1, concurrency);
+        this.maxWaiting = Math.max(0, maxWaiting);
+        this.submitted = Counter.builder(name + ".queue.submitted")
+            .description("Tasks submitted to the work queue")
+            .register(meterRegistry);
+        this.started = Counter.builder(name + ".queue.started")
+            .description("Tasks started from the work queue")
+            .register(meterRegistry);
+        this.rejected = Counter.builder(name + ".queue.rejected")
+            .description("Tasks rejected because the queue was full")
+            .register(meterRegistry);
+        Gauge.builder(name + ".queue.waiting", this, PriorityWorkQueue::waitingCount)
+            .description("Tasks waiting for a free slot")
+            .register(meterRegistry);
+        Gauge.builder(name + ".queue.active", this, PriorityWorkQueue::activeCount)
+            .description("Tasks currently running")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Queues work; it starts once a slot is free and no waiting task has a higher priority
+     * (or the same priority and was submitted earlier).
+     */
+    public <T> Mono<T> submit(int priority, Supplier<Mono<T>> work) {
+        return Mono.create(sink -> {
+            Task<T> task = new Task<>(priority, sequence.getAndIncrement(), work, sink);
+            submitted.increment();
+            boolean full;
+            synchronized (this) {
+                // A task that can start right away does not count against the bound
+                full = waiting.size() >= maxWaiting && active >= concurrency;
+                if (!full) {
+                    waiting.add(task);
+                }
+            }
+            if (full) {
+                rejected.increment();
+                sink.error(new RejectedExecutionException("Work queue full (" + maxWaiting + " waiting tasks)"));
+                return;
+            }
+            sink.onCancel(() -> cancel(task));
+            drain();
+        });
+    }
+
+    private void cancel(Task<?> task) {
+        Disposable running;
+        synchronized (this) {
+            if (waiting.remove(task)) {
+                logger.debug("Dropped a cancelled task from the queue");
+                return;
+            }
+            task.cancelled = true;
+            running = task.running;
+        }
+        if (running != null) {
+            running.dispose();
+        }
+    }
+
+    private void finished() {
+        synchronized (this) {
+            active--;
+        }
+        drain();
+    }
+
+    // Starts waiting tasks while slots are free. Tasks that finish right away (cached results)
+    // call back into drain; the loop below picks up their pass instead of recursing.
+    private void drain() {
+        if (drainRequests.getAndIncrement() != 0) {
+            return;
+        }
+        int missed = 1;
+        while (true) {
+            while (true) {
+                Task<?> next;
+                synchronized (this) {
+                    if (active >= concurrency || waiting.isEmpty()) {
+                        break;
+                    }
+                    next = waiting.poll();
+                    active++;
+                }
+                started.increment();
+                next.start();
+            }
+            missed = drainRequests.addAndGet(-missed);
+            if (missed == 0) {
+                return;
+            }
+        }
+    }
+
+    public synchronized int waitingCount() {
+        return waiting.size();
+    }
+
+    public synchronized int activeCount() {
+        return active;
+    }
+
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    /**
+     * Changes the number of slots. Running tasks are never interrupted: after a decrease, no
+     * task starts until enough of them have finished.
+     */
+    public void setConcurrency(int concurrency) {
+        this.concurrency = Math.max(1, concurrency);
+        drain();
+    }
+}
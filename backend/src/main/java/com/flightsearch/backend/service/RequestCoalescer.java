@@ -0,0 +1,95 @@
+package com.flightsearch.backend.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Request Coalescer
+ * Concurrent requests with the same key share one upstream call: the first caller starts it,
+ * everyone arriving while it is still running subscribes to the same result. Once the call
+ * finishes the key is released and the next request starts a new upstream call.
+ */
+public class RequestCoalescer<K, V> {
+
+    private static final Logger logger = LoggerFactory.getLogger(RequestCoalescer.class);
+
+    private final Map<K, Mono<V>> inFlight = new ConcurrentHashMap<>();
+    private final Counter requests;
+    private final Counter upstreamCalls;
+
+    public RequestCoalescer(String name, MeterRegistry meterRegistry) {
+        this.requests = Counter.builder(name + ".coalescing.requests")
+            .description("Requests received, including those joined to an in-flight call")
+            .register(meterRegistry);
+        this.upstreamCalls = Counter.builder(name + ".coalescing.upstream")
+            .description("Upstream calls actually started")
+            .register(meterRegistry);
+        Gauge.builder(name + ".coalescing.ratio", this, RequestCoalescer::coalescingRatio)
+            .description("Share of requests served by joining an in-flight call")
+            .register(meterRegistry);
+        Gauge.builder(name + ".coalescing.active", inFlight, Map::size)
+            .description("Upstream calls currently in flight")
+            .register(meterRegistry);
+    }
+
+    public Mono<V> execute(K key, Supplier<Mono<V>> upstream) {
+        return Mono.defer(() -> {
+            requests.increment();
+            return inFlight.computeIfAbsent(key, k -> startUpstream(k, upstream));
+        });
+    }
+
+    /**
+     * Joins the call in flight for the key, or starts one if admit agrees; admit is only asked
+     * when a call would actually be started. Returns null, without starting anything, if it
+     * does not agree.
+     */
+    public Mono<V> execute(K key, BooleanSupplier admit, Supplier<Mono<V>> upstream) {
+        Mono<V> shared = inFlight.computeIfAbsent(key, k -> admit.getAsBoolean() ? startUpstream(k, upstream) : null);
+        if (shared != null) {
+            requests.increment();
+        }
+        return shared;
+    }
+
+    private Mono<V> startUpstream(K key, Supplier<Mono<V>> upstream) {
+        upstreamCalls.increment();
+        logger.debug("Starting upstream call for {}", key);
+
+        AtomicReference<Mono<V>> self = new AtomicReference<>();
+        Mono<V> shared = upstream.get()
+            // Only release our own entry, never one started after we finished
+            .doFinally(signal -> inFlight.remove(key, self.get()))
+            .cache();
+        self.set(shared);
+        return shared;
+    }
+
+    public long getRequestCount() {
+        return (long) requests.count();
+    }
+
+    public long getUpstreamCallCount() {
+        return (long) upstreamCalls.count();
+    }
+
+    /**
+     * Share of requests that joined an in-flight call instead of starting their own (0 when idle).
+     */
+    public double coalescingRatio() {
+        double total = requests.count();
+        return total == 0 ? 0.0 : 1.0 - upstreamCalls.count() / total;
+    }
+}
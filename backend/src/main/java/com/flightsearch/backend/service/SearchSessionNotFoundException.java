@@ -0,0 +1,12 @@
+package com.flightsearch.backend.service;
+
+/**
+ * Thrown when a search session does not exist, e.g. because it expired or was evicted.
+ * The client has to run the search again.
+ */
+public class SearchSessionNotFoundException extends RuntimeException {
+
+    public SearchSessionNotFoundException(String message) {
+        super(message);
+    }
+}
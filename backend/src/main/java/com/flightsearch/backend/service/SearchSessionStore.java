@@ -0,0 +1,196 @@
+package com.flightsearch.backend.service;
+
+import com.flightsearch.backend.config.AmadeusConfig;
+import com.flightsearch.backend.dto.FlightSearchResultDTO;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Search Session Store
+ * Keeps the results of a search on the server under a session id, so the client can page
+ * through them and re-sort them with cursors instead of searching again. Sessions expire
+ * when they have not been read for the TTL, and the least recently used ones are dropped
+ * once all sessions together exceed the memory budget.
+ *
+ * Sessions are paged by offer: the outbound and inbound results of a round trip offer are
+ * always on the same page.
+ */
+public class SearchSessionStore {
+
+    public static final String CACHE_NAME = "searchSessions";
+
+    // Rough heap of one mapped result with its segments and stops, used to weigh sessions
+    private static final int RESULT_WEIGHT_ESTIMATE = 1024;
+
+    /**
+     * Position in a session: the sort order and the index of the next offer. Handed to the
+     * client as an opaque string.
+     */
+    public record Cursor(FlightResultQuery.Sort sort, int offset) {
+
+        public String encode() {
+            String raw = sort.paramValue() + ":" + offset;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
+
+        public static Cursor decode(String cursor) {
+            try {
+                String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+                int separator = raw.indexOf(':');
+                if (separator < 0) {
+                    throw new IllegalArgumentException();
+                }
+                int offset = Integer.parseInt(raw.substring(separator + 1));
+                if (offset < 0) {
+                    throw new IllegalArgumentException();
+                }
+                return new Cursor(FlightResultQuery.Sort.from(raw.substring(0, separator)), offset);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Invalid cursor '" + cursor + "'.");
+            }
+        }
+    }
+
+    /**
+     * One page of a session.
+     *
+     * @param offers     Encoded offers of the page, by Amadeus offer id
+     * @param nextCursor Null on the last page
+     */
+    public record Page(SearchSession session, FlightResultQuery.Sort sort, List<FlightSearchResultDTO> results,
+                       Map<String, FlightOfferCache.EncodedOffer> offers, Cursor nextCursor) {
+    }
+
+    /**
+     * The results of one search, served in the orders of its shared result index.
+     */
+    public static final class SearchSession {
+
+        private final String id;
+        private final FlightSearchKey searchKey;
+        private final FlightResultIndex index;
+        private final Map<String, FlightOfferCache.EncodedOffer> offers;
+        private final int weight;
+
+        SearchSession(String id, FlightSearchKey searchKey, FlightSearchResultCache.CachedSearch search) {
+            this.id = id;
+            this.searchKey = searchKey;
+            this.index = search.index();
+            this.offers = search.offers();
+
+            long bytes = (long) search.results().size() * RESULT_WEIGHT_ESTIMATE;
+            for (FlightOfferCache.EncodedOffer offer : offers.values()) {
+                bytes += offer.bytes().length;
+            }
+            this.weight = (int) Math.min(Integer.MAX_VALUE, bytes);
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public FlightSearchKey getSearchKey() {
+            return searchKey;
+        }
+
+        public int offerCount() {
+            return index.offerCount();
+        }
+
+        int weight() {
+            return weight;
+        }
+    }
+
+    private final Cache<String, SearchSession> cache;
+    private final int defaultPageSize;
+    private final int maxPageSize;
+
+    public SearchSessionStore(AmadeusConfig.Sessions settings, MeterRegistry meterRegistry) {
+        this.defaultPageSize = settings.getPageSize();
+        this.maxPageSize = settings.getMaxPageSize();
+        this.cache = Caffeine.newBuilder()
+            .expireAfterAccess(settings.getTtl())
+            .maximumWeight(settings.getMaxWeight().toBytes())
+            .weigher((String id, SearchSession session) -> session.weight())
+            .recordStats()
+            .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+    }
+
+    public SearchSession create(FlightSearchKey searchKey, FlightSearchResultCache.CachedSearch search) {
+        SearchSession session = new SearchSession(UUID.randomUUID().toString(), searchKey, search);
+        cache.put(session.getId(), session);
+        return session;
+    }
+
+    /**
+     * Returns null if the session does not exist (any more).
+     */
+    public SearchSession get(String sessionId) {
+        return cache.getIfPresent(sessionId);
+    }
+
+    /**
+     * Serves a page of a session.
+     *
+     * @param cursor   Continues where the previous page ended; null for the first page
+     * @param sort     Order of the offers; a different order than the cursor's starts over
+     *                 at the first page. Null keeps the cursor's order.
+     * @param pageSize Offers per page; null for the configured default
+     */
+    public Page page(SearchSession session, String cursor, String sort, Integer pageSize) {
+        Cursor position = cursor != null && !cursor.isBlank() ? Cursor.decode(cursor) : new Cursor(FlightResultQuery.Sort.BEST, 0);
+        if (sort != null && !sort.isBlank()) {
+            FlightResultQuery.Sort requested = FlightResultQuery.Sort.from(sort);
+            if (requested != position.sort()) {
+                position = new Cursor(requested, 0);
+            }
+        }
+        int size = resolvePageSize(pageSize);
+
+        FlightResultIndex index = session.index;
+        int[] ordering = index.ordering(position.sort());
+        int from = Math.min(position.offset(), ordering.length);
+        int to = Math.min(from + size, ordering.length);
+        List<FlightSearchResultDTO> results = new ArrayList<>();
+        Map<String, FlightOfferCache.EncodedOffer> offers = new LinkedHashMap<>();
+        for (int i = from; i < to; i++) {
+            String offerId = index.offerId(ordering[i]);
+            results.addAll(index.results(ordering[i]));
+            FlightOfferCache.EncodedOffer offer = session.offers.get(offerId);
+            if (offer != null) {
+                offers.put(offerId, offer);
+            }
+        }
+        Cursor next = to < ordering.length ? new Cursor(position.sort(), to) : null;
+        return new Page(session, position.sort(), Collections.unmodifiableList(results), offers, next);
+    }
+
+    /**
+     * Checks a requested page size, null standing for the configured default.
+     */
+    public int resolvePageSize(Integer pageSize) {
+        int size = pageSize != null ? pageSize : defaultPageSize;
+        if (size < 1 || size > maxPageSize) {
+            throw new IllegalArgumentException("Page size must be between 1 and " + maxPageSize + ".");
+        }
+        return size;
+    }
+
+    public long estimatedSize() {
+        return cache.estimatedSize();
+    }
+}
@@ -0,0 +1,156 @@
+package com.flightsearch.backend.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Serialized Results
+ * A search result list as the response body of /api/flights: the JSON bytes, their gzip
+ * variant and a strong ETag derived from the JSON. Built once per cached search, so serving
+ * the search again only writes these bytes, without running Jackson or gzip. The gzip variant
+ * is only compressed once a client accepting gzip asks for it.
+ *
+ * Each encoding has its own ETag (the gzip one ends in "-gzip"), as their bytes differ.
+ * Results that are served once (not cached) are untagged: JSON only, no ETag, no gzip.
+ */
+public final class SerializedResults {
+
+    private final byte[] json;
+    private final String etag;
+    private final String gzipEtag;
+    private volatile byte[] gzip;
+
+    private SerializedResults(byte[] json, String tag) {
+        this.json = json;
+        this.etag = tag == null ? null : "\"" + tag + "\"";
+        this.gzipEtag = tag == null ? null : "\"" + tag + "-gzip\"";
+    }
+
+    public static SerializedResults of(List<?> results, ObjectMapper objectMapper) {
+        byte[] json = json(results, objectMapper);
+        return new SerializedResults(json, tag(json));
+    }
+
+    /**
+     * The JSON only, for results that are not cached and so not worth hashing or compressing.
+     */
+    public static SerializedResults untagged(List<?> results, ObjectMapper objectMapper) {
+        return new SerializedResults(json(results, objectMapper), null);
+    }
+
+    private static byte[] json(List<?> results, ObjectMapper objectMapper) {
+        try {
+            return objectMapper.writeValueAsBytes(results);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize flight search results", e);
+        }
+    }
+
+    private static byte[] gzip(byte[] json) {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(json.length / 4 + 64);
+        try (GZIPOutputStream out = new GZIPOutputStream(compressed, 8192)) {
+            out.write(json);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return compressed.toByteArray();
+    }
+
+    // First 128 bits of the SHA-256 of the JSON
+    private static String tag(byte[] json) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(json);
+            return HexFormat.of().formatHex(digest, 0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    public byte[] json() {
+        return json;
+    }
+
+    /**
+     * The gzip variant, compressed on first use.
+     */
+    public byte[] gzip() {
+        byte[] current = gzip;
+        if (current == null) {
+            synchronized (this) {
+                current = gzip;
+                if (current == null) {
+                    current = gzip(json);
+                    gzip = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    public boolean tagged() {
+        return etag != null;
+    }
+
+    /**
+     * The ETag of the given encoding, null if untagged.
+     */
+    public String etag(boolean gzipped) {
+        return gzipped ? gzipEtag : etag;
+    }
+
+    /**
+     * Whether an If-None-Match header names this body in either encoding (or is "*").
+     * Weak comparison, as RFC 9110 asks for If-None-Match.
+     */
+    public boolean matches(String ifNoneMatch) {
+        if (etag == null || ifNoneMatch == null || ifNoneMatch.isBlank()) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String value = candidate.trim();
+            if (value.startsWith("W/")) {
+                value = value.substring(2);
+            }
+            if (value.equals("*") || value.equals(etag) || value.equals(gzipEtag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Serializes its results on first use, then hands out the same bytes.
+     */
+    public static final class Lazy {
+
+        private final List<?> results;
+        private volatile SerializedResults serialized;
+
+        public Lazy(List<?> results) {
+            this.results = results;
+        }
+
+        public SerializedResults get(ObjectMapper objectMapper) {
+            SerializedResults current = serialized;
+            if (current == null) {
+                synchronized (this) {
+                    current = serialized;
+                    if (current == null) {
+                        current = SerializedResults.of(results, objectMapper);
+                        serialized = current;
+                    }
+                }
+            }
+            return current;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.flightsearch.backend.service;
+
+import reactor.core.publisher.Mono;
+import reactor.util.context.Context;
+import reactor.util.context.ContextView;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Server Timing
+ * Per request phase durations, sent back in a Server-Timing header so a slow response shows
+ * where its time went (e.g. "token;dur=3.1, amadeus-search;dur=3890.4, ..., total;dur=3925.0").
+ * The controller puts one into the Reactor context of the request; the service adds to it
+ * wherever it finds one, so requests without it (batch, matrix, background refreshes) pay
+ * nothing.
+ *
+ * Phases are summed per request: the airport pairs of a multi airport search run at the
+ * same time, so their phases may add up to more than the total. A request that joins a
+ * search already in flight only sees the phases that ran under its own context.
+ */
+public final class ServerTiming {
+
+    public static final String TOKEN = "token";
+    public static final String SEARCH = "amadeus-search";
+    public static final String MAPPING = "mapping";
+    public static final String AIRPORT_NAMES = "airport-names";
+    public static final String OFFER_CACHE = "offer-cache";
+    public static final String CACHE = "cache";
+    public static final String TOTAL = "total";
+
+    private final long startedAt = System.nanoTime();
+    // Guarded by this, in the order phases first ran
+    private final Map<String, Long> durations = new LinkedHashMap<>();
+    private final Map<String, String> descriptions = new LinkedHashMap<>();
+
+    public static ServerTiming from(ContextView context) {
+        return context.getOrDefault(ServerTiming.class, null);
+    }
+
+    public Context addTo(Context context) {
+        return context.put(ServerTiming.class, this);
+    }
+
+    /**
+     * Adds the time from subscription to termination (or cancellation) of the Mono to a phase,
+     * if the subscriber's context has a ServerTiming.
+     */
+    public static <T> Mono<T> timed(String phase, Mono<T> mono) {
+        return Mono.deferContextual(context -> {
+            ServerTiming timing = from(context);
+            if (timing == null) {
+                return mono;
+            }
+            long phaseStartedAt = System.nanoTime();
+            return mono.doFinally(signal -> timing.add(phase, System.nanoTime() - phaseStartedAt));
+        });
+    }
+
+    public synchronized void add(String phase, long nanos) {
+        durations.merge(phase, nanos, Long::sum);
+    }
+
+    /**
+     * A metric without duration, e.g. cache;desc=hit. The first description of a metric stays.
+     */
+    public synchronized void describe(String metric, String description) {
+        descriptions.putIfAbsent(metric, description);
+    }
+
+    /**
+     * The Server-Timing header value, with the total time so far.
+     */
+    public synchronized String header() {
+        StringBuilder header = new StringBuilder();
+        for (Map.Entry<String, String> description : descriptions.entrySet()) {
+            header.append(description.getKey()).append(";desc=").append(description.getValue()).append(", ");
+        }
+        for (Map.Entry<String, Long> duration : durations.entrySet()) {
+            appendDuration(header, duration.getKey(), duration.getValue()).append(", ");
+        }
+        return appendDuration(header, TOTAL, System.nanoTime() - startedAt).toString();
+    }
+
+    private static StringBuilder appendDuration(StringBuilder header, String metric, long nanos) {
+        return header.append(metric).append(";dur=").append(String.format(Locale.ROOT, "%.1f", nanos / 1_000_000.0));
+    }
+}
@@ -0,0 +1,24 @@
+package com.flightsearch.backend.service;
+
+import java.time.Duration;
+
+/**
+ * Thrown when Amadeus keeps answering 429 Too Many Requests after the configured retries, or
+ * when a call would have to wait longer than allowed for the outbound rate limit.
+ */
+public class UpstreamRateLimitedException extends RuntimeException {
+
+    private final Duration retryAfter;
+
+    public UpstreamRateLimitedException(String message, Duration retryAfter) {
+        super(message);
+        this.retryAfter = retryAfter;
+    }
+
+    /**
+     * How long the caller should wait before trying again.
+     */
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
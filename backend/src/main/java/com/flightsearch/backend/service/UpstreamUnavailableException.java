@@ -0,0 +1,24 @@
+package com.flightsearch.backend.service;
+
+import java.time.Duration;
+
+/**
+ * Thrown without calling Amadeus when an endpoint's circuit breaker is open, or when its
+ * bulkhead already holds as many waiting calls as allowed.
+ */
+public class UpstreamUnavailableException extends RuntimeException {
+
+    private final Duration retryAfter;
+
+    public UpstreamUnavailableException(String message, Duration retryAfter) {
+        super(message);
+        this.retryAfter = retryAfter;
+    }
+
+    /**
+     * How long the caller should wait before trying again.
+     */
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
@@ -0,0 +1,192 @@
+package com.flightsearch.backend;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.util.ClassUtils;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Rough, opt-in load comparison of the servlet (Tomcat) and reactive (WebFlux/Netty) modes of
+ * the whole application, against a local Amadeus stub:
+ *
+ * - Requests per second of /api/flights answered from the search result cache, i.e. the cost
+ *   of the web stack itself.
+ * - Heap and threads per concurrent connection, while IN_FLIGHT searches wait for a slow stub.
+ *
+ * Both modes run in this JVM, one after the other, next to the load generator, so the numbers
+ * compare the two modes rather than describe a production deployment. Servlet mode is skipped
+ * for builds made with -Preactive.
+ * Run with: ./gradlew test -Pbenchmarks --tests '*ServerModeBenchmarkTest'
+ */
+@DisplayName("ServerModeBenchmarkTest")
+@EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+public class ServerModeBenchmarkTest {
+
+    private static final int CACHED_REQUESTS = 20_000;
+    private static final int CONCURRENCY = 64;
+    private static final int IN_FLIGHT = 500;
+    private static final long STUB_DELAY_MILLIS = 3000;
+
+    private static final String SEARCH_RESPONSE = """
+        {"data": [{"id": "1", "itineraries": [{"duration": "PT5H", "segments": [{
+            "departure": {"iataCode": "MEX", "at": "2099-07-01T08:00:00"},
+            "arrival": {"iataCode": "JFK", "at": "2099-07-01T13:00:00"},
+            "carrierCode": "AA", "number": "100", "duration": "PT5H", "numberOfStops": 0}]}],
+          "price": {"currency": "USD", "total": "500.00", "grandTotal": "500.00"},
+          "travelerPricings": [{"travelerId": "1", "price": {"currency": "USD", "total": "500.00"}}]}],
+         "dictionaries": {"carriers": {"AA": "AMERICAN AIRLINES"}}}
+        """;
+
+    @Test
+    void servletVersusReactive_requestsPerSecondAndMemoryPerConnection() throws Exception {
+        try (MockWebServer stub = new MockWebServer()) {
+            stub.setDispatcher(new Dispatcher() {
+                @Override
+                public MockResponse dispatch(RecordedRequest request) {
+                    if (request.getPath().startsWith("/v1/security/oauth2/token")) {
+                        return new MockResponse().addHeader("Content-Type", "application/json")
+                            .setBody("{\"access_token\":\"benchmarkToken\",\"expires_in\":3600}");
+                    }
+                    MockResponse response = new MockResponse().addHeader("Content-Type", "application/json")
+                        .setBody(SEARCH_RESPONSE);
+                    // The cached route answers at once, every other search keeps its connection busy
+                    return request.getPath().contains("departureDate=2099-01-01")
+                        ? response
+                        : response.setHeadersDelay(STUB_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+                }
+            });
+            stub.start();
+
+            List<WebApplicationType> modes = new ArrayList<>();
+            if (ClassUtils.isPresent("org.springframework.web.servlet.DispatcherServlet", null)) {
+                modes.add(WebApplicationType.SERVLET);
+            }
+            modes.add(WebApplicationType.REACTIVE);
+            for (WebApplicationType mode : modes) {
+                measure(mode, stub);
+            }
+        }
+    }
+
+    private void measure(WebApplicationType mode, MockWebServer stub) {
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(FlightSearchBackendApplication.class)
+            .web(mode)
+            .properties(
+                "server.port=0",
+                "amadeus.api.base-url=" + stub.url("/"),
+                "amadeus.api.key=key",
+                "amadeus.api.secret=secret",
+                "amadeus.api.http.warm-up=false",
+                "amadeus.api.http.max-connections=" + (2 * IN_FLIGHT),
+                "amadeus.api.rate-limit.flight-offers.permits-per-second=0",
+                "amadeus.api.rate-limit.flight-offers.initial-concurrency=" + (2 * IN_FLIGHT),
+                "amadeus.api.rate-limit.flight-offers.max-concurrency=" + (2 * IN_FLIGHT),
+                "amadeus.api.rate-limit.flight-offers.max-queued=" + (2 * IN_FLIGHT),
+                "amadeus.api.rate-limit.flight-offers.latency-threshold=1m",
+                "logging.level.com.flightsearch=WARN",
+                "logging.level.org.springframework.web.reactive.function.client=WARN")
+            .run();
+        ConnectionProvider connections = ConnectionProvider.builder("benchmark-client").maxConnections(2 * IN_FLIGHT).build();
+        try {
+            String port = context.getEnvironment().getProperty("local.server.port");
+            WebClient client = WebClient.builder()
+                .baseUrl("http://localhost:" + port)
+                .clientConnector(new ReactorClientHttpConnector(HttpClient.create(connections)))
+                .build();
+
+            // Requests per second, all answered from the search result cache after the first
+            search(client, "2099-01-01").block(Duration.ofSeconds(30));
+            runCached(client, CACHED_REQUESTS / 4); // Warm up
+            long start = System.nanoTime();
+            runCached(client, CACHED_REQUESTS);
+            double requestsPerSecond = CACHED_REQUESTS / ((System.nanoTime() - start) / 1e9);
+
+            // Heap and threads while IN_FLIGHT searches hold their connections
+            long heapBefore = usedHeapAfterGc();
+            int threadsBefore = ManagementFactory.getThreadMXBean().getThreadCount();
+            int requestsBefore = stub.getRequestCount();
+            Mono<List<String>> inFlight = Flux.range(0, IN_FLIGHT)
+                .flatMap(i -> search(client, LocalDate.of(2099, 2, 1).plusDays(i).toString()), IN_FLIGHT)
+                .collectList()
+                .cache();
+            inFlight.subscribe();
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(STUB_DELAY_MILLIS);
+            while (stub.getRequestCount() - requestsBefore < IN_FLIGHT && System.nanoTime() < deadline) {
+                sleep(10);
+            }
+            long heapDuring = usedHeapAfterGc();
+            int threadsDuring = ManagementFactory.getThreadMXBean().getThreadCount();
+            int reached = stub.getRequestCount() - requestsBefore;
+            List<String> responses = inFlight.block(Duration.ofSeconds(60));
+
+            System.out.printf("%s mode: %.0f cached requests/s at concurrency %d; %d of %d searches in flight together: "
+                    + "%.1f KB heap and %.2f threads per connection (%d -> %d threads)%n",
+                mode, requestsPerSecond, CONCURRENCY, reached, IN_FLIGHT,
+                (heapDuring - heapBefore) / 1024.0 / IN_FLIGHT, (threadsDuring - threadsBefore) / (double) IN_FLIGHT,
+                threadsBefore, threadsDuring);
+            assertNotNull(responses);
+            assertEquals(IN_FLIGHT, responses.size());
+        } finally {
+            connections.dispose();
+            context.close();
+        }
+    }
+
+    private void runCached(WebClient client, int requests) {
+        Flux.range(0, requests)
+            .flatMap(i -> search(client, "2099-01-01"), CONCURRENCY)
+            .blockLast(Duration.ofMinutes(2));
+    }
+
+    private Mono<String> search(WebClient client, String departureDate) {
+        return client.get()
+            .uri(uri -> uri.path("/api/flights")
+                .queryParam("origin", "MEX")
+                .queryParam("destination", "JFK")
+                .queryParam("departureDate", departureDate)
+                .build())
+            .retrieve()
+            .bodyToMono(String.class);
+    }
+
+    private static long usedHeapAfterGc() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            sleep(50);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
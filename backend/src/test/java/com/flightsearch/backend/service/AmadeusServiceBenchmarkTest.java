@@ -0,0 +1,488 @@
+package com.flightsearch.backend.service;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.flightsearch.backend.config.AmadeusConfig;
+import com.flightsearch.backend.dto.FlightSearchResultDTO;
+import com.flightsearch.backend.dto.amadeus.AmadeusFlightOffer;
+import com.flightsearch.backend.dto.amadeus.AmadeusTravelerPricing;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Rough, opt-in measurements of the caching, search and outbound HTTP code paths, and of the
+ * reactive and virtual threads execution modes.
+ * Run with: ./gradlew test -Pbenchmarks --tests '*AmadeusServiceBenchmarkTest'
+ */
+@DisplayName("AmadeusServiceBenchmarkTest")
+@EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+public class AmadeusServiceBenchmarkTest {
+
+    private static final int OFFER_COUNT = 10_000;
+    // Largest page Amadeus returns for one flight offers search
+    private static final int RESPONSE_OFFER_COUNT = 250;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void offerStorage_heapAndDecodeLatency() {
+        OfferCodec codec = new OfferCodec(true, 512);
+
+        long baseline = usedHeapAfterGc();
+        List<JsonNode> trees = new ArrayList<>(OFFER_COUNT);
+        for (int i = 0; i < OFFER_COUNT; i++) {
+            trees.add(sampleOffer(i));
+        }
+        long treeBytes = usedHeapAfterGc() - baseline;
+
+        List<byte[]> encoded = new ArrayList<>(OFFER_COUNT);
+        long wireBytes = 0;
+        for (JsonNode tree : trees) {
+            encoded.add(codec.encode(tree));
+            wireBytes += tree.toString().length();
+        }
+        trees.clear();
+        long encodedBytes = usedHeapAfterGc() - baseline;
+
+        // Warm up, then time decoding every offer once
+        for (int round = 0; round < 5; round++) {
+            for (byte[] bytes : encoded) {
+                codec.decode(bytes);
+            }
+        }
+        long start = System.nanoTime();
+        for (byte[] bytes : encoded) {
+            assertNotNull(codec.decode(bytes));
+        }
+        long decodeNanos = (System.nanoTime() - start) / OFFER_COUNT;
+
+        System.out.printf("Offer storage for %d offers: JSON text %d KB, JsonNode trees %d KB, encoded %d KB, decode %d ns/offer%n",
+            OFFER_COUNT, wireBytes / 1024, treeBytes / 1024, encodedBytes / 1024, decodeNanos);
+        assertTrue(encodedBytes < treeBytes, "Encoded offers should retain less heap than JsonNode trees");
+    }
+
+    @Test
+    void mappedOfferStore_lookupLatency(@TempDir Path directory) {
+        OfferCodec codec = new OfferCodec(true, 512);
+        AmadeusConfig.Mapped settings = new AmadeusConfig.Mapped();
+        settings.setDirectory(directory.toString());
+
+        try (MappedOfferStore store = new MappedOfferStore(settings, Duration.ofMinutes(30), new SimpleMeterRegistry(), Clock.systemUTC())) {
+            Instant expiresAt = Instant.now().plus(Duration.ofMinutes(10));
+            for (int i = 0; i < OFFER_COUNT; i++) {
+                store.put(String.valueOf(i), codec.encode(sampleOffer(i)), expiresAt);
+            }
+
+            for (int round = 0; round < 20; round++) {
+                for (int i = 0; i < OFFER_COUNT; i++) {
+                    store.get(String.valueOf(i));
+                }
+            }
+            long start = System.nanoTime();
+            for (int i = 0; i < OFFER_COUNT; i++) {
+                assertEquals(OfferStore.Status.FOUND, store.get(String.valueOf(i)).status());
+            }
+            long lookupNanos = (System.nanoTime() - start) / OFFER_COUNT;
+
+            System.out.printf("Mapped offer store: %d offers in %d KB of segments, lookup %d ns/offer (without decoding)%n",
+                store.size(), store.sizeInBytes() / 1024, lookupNanos);
+        }
+    }
+
+    @Test
+    void offerMapping_treeNavigationVersusTypedRecords() throws Exception {
+        ObjectNode response = objectMapper.createObjectNode();
+        ArrayNode data = response.putArray("data");
+        for (int i = 0; i < RESPONSE_OFFER_COUNT; i++) {
+            data.add(sampleOffer(i));
+        }
+        byte[] body = objectMapper.writeValueAsBytes(response);
+
+        // Warm up both paths, then time whole responses
+        for (int round = 0; round < 200; round++) {
+            readWithTree(body);
+            readWithRecords(body);
+        }
+        int rounds = 500;
+        long start = System.nanoTime();
+        long treeChecksum = 0;
+        for (int round = 0; round < rounds; round++) {
+            treeChecksum += readWithTree(body);
+        }
+        long treeNanos = (System.nanoTime() - start) / rounds;
+
+        start = System.nanoTime();
+        long recordChecksum = 0;
+        for (int round = 0; round < rounds; round++) {
+            recordChecksum += readWithRecords(body);
+        }
+        long recordNanos = (System.nanoTime() - start) / rounds;
+
+        System.out.printf("Mapping a %d-offer response (%d KB): JsonNode tree %d us, typed records %d us (%.1fx)%n",
+            RESPONSE_OFFER_COUNT, body.length / 1024, treeNanos / 1000, recordNanos / 1000, (double) treeNanos / recordNanos);
+        assertEquals(treeChecksum, recordChecksum, "Both paths should read the same values");
+    }
+
+    @Test
+    void outboundSearch_throughputAndP99AgainstLocalStub() throws Exception {
+        ObjectNode response = objectMapper.createObjectNode();
+        ArrayNode data = response.putArray("data");
+        for (int i = 0; i < 20; i++) {
+            data.add(sampleOffer(i));
+        }
+        String searchBody = objectMapper.writeValueAsString(response);
+
+        try (MockWebServer stub = new MockWebServer()) {
+            stub.setDispatcher(new Dispatcher() {
+                @Override
+                public MockResponse dispatch(RecordedRequest request) {
+                    if (request.getPath().startsWith("/v1/security/oauth2/token")) {
+                        return new MockResponse().addHeader("Content-Type", "application/json")
+                            .setBody("{\"access_token\":\"benchmarkToken\",\"expires_in\":3600}");
+                    }
+                    // Roughly the think time of a fast upstream search
+                    return new MockResponse().addHeader("Content-Type", "application/json")
+                        .setBody(searchBody)
+                        .setHeadersDelay(20, TimeUnit.MILLISECONDS);
+                }
+            });
+            stub.start();
+
+            for (int maxConnections : new int[] {4, 32}) {
+                AmadeusConfig config = new AmadeusConfig();
+                config.setBaseUrl(stub.url("/").toString());
+                config.setKey("key");
+                config.setSecret("secret");
+                config.getHttp().setMaxConnections(maxConnections);
+                config.getHttp().setMetrics(false);
+                // Measure the HTTP client, not the outbound rate limit
+                config.getRateLimit().getFlightOffers().setPermitsPerSecond(0);
+                config.getRateLimit().getFlightOffers().setInitialConcurrency(64);
+                config.getRateLimit().getFlightOffers().setMaxConcurrency(64);
+                config.getRateLimit().getFlightOffers().setMaxQueued(1000);
+                AmadeusService service = new AmadeusService(config, new SimpleMeterRegistry());
+                try {
+                    runSearches(service, "MEX", 50); // Warm up
+                    int searches = 400;
+                    long start = System.nanoTime();
+                    long[] latencies = runSearches(service, "MEX", searches);
+                    double seconds = (System.nanoTime() - start) / 1e9;
+                    Arrays.sort(latencies);
+                    System.out.printf("Searches against a local stub, %d pooled connections: %.0f searches/s, p50 %d ms, p99 %d ms%n",
+                        maxConnections, searches / seconds, latencies[searches / 2] / 1_000_000,
+                        latencies[(int) Math.ceil(searches * 0.99) - 1] / 1_000_000);
+                } finally {
+                    service.shutdown();
+                }
+            }
+        }
+    }
+
+    @Test
+    void cachedSearchHit_serializingVersusPreSerializedBody() throws Exception {
+        ObjectNode response = objectMapper.createObjectNode();
+        ArrayNode data = response.putArray("data");
+        for (int i = 0; i < RESPONSE_OFFER_COUNT; i++) {
+            data.add(sampleOffer(i));
+        }
+        String searchBody = objectMapper.writeValueAsString(response);
+
+        try (MockWebServer stub = new MockWebServer()) {
+            stub.enqueue(new MockResponse().addHeader("Content-Type", "application/json")
+                .setBody("{\"access_token\":\"benchmarkToken\",\"expires_in\":3600}"));
+            stub.enqueue(new MockResponse().addHeader("Content-Type", "application/json").setBody(searchBody));
+            stub.start();
+            AmadeusConfig config = new AmadeusConfig();
+            config.setBaseUrl(stub.url("/").toString());
+            config.setKey("key");
+            config.setSecret("secret");
+            AmadeusService service = new AmadeusService(config, new SimpleMeterRegistry());
+            try {
+                List<FlightSearchResultDTO> results = service.searchFlights("MEX", "JFK", "2099-07-01", 1, "USD", false, "2099-07-08").block();
+                SerializedResults serialized = service.searchFlightsSerialized("MEX", "JFK", "2099-07-01", 1, "USD", false, "2099-07-08", null).block();
+                assertNotNull(results);
+                assertNotNull(serialized);
+
+                int hits = 500;
+                long sink = 0;
+                for (int round = 0; round < 2; round++) { // The first round warms up
+                    long start = System.nanoTime();
+                    for (int i = 0; i < hits; i++) {
+                        // What every hit cost before: Jackson, then gzip on the way out
+                        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+                        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+                            gzip.write(objectMapper.writeValueAsBytes(results));
+                        }
+                        sink += compressed.size();
+                    }
+                    long serializingNanos = System.nanoTime() - start;
+
+                    start = System.nanoTime();
+                    for (int i = 0; i < hits; i++) {
+                        sink += service.searchFlightsSerialized("MEX", "JFK", "2099-07-01", 1, "USD", false, "2099-07-08", null)
+                            .block().gzip().length;
+                    }
+                    long preSerializedNanos = System.nanoTime() - start;
+                    if (round == 1) {
+                        System.out.printf("Cached hit with %d results (%d KB JSON, %d KB gzip): serialize + gzip %d us, "
+                                + "pre-serialized %d us per hit (cache lookup included)%n",
+                            results.size(), serialized.json().length / 1024, serialized.gzip().length / 1024,
+                            serializingNanos / hits / 1000, preSerializedNanos / hits / 1000);
+                    }
+                }
+                assertTrue(sink > 0);
+            } finally {
+                service.shutdown();
+            }
+        }
+    }
+
+    @Test
+    void executionModes_reactiveVersusVirtualThreads() throws Exception {
+        ObjectNode response = objectMapper.createObjectNode();
+        ArrayNode data = response.putArray("data");
+        for (int i = 0; i < 20; i++) {
+            data.add(sampleOffer(i));
+        }
+        String searchBody = objectMapper.writeValueAsString(response);
+
+        try (MockWebServer stub = new MockWebServer()) {
+            stub.setDispatcher(new Dispatcher() {
+                @Override
+                public MockResponse dispatch(RecordedRequest request) {
+                    if (request.getPath().startsWith("/v1/security/oauth2/token")) {
+                        return new MockResponse().addHeader("Content-Type", "application/json")
+                            .setBody("{\"access_token\":\"benchmarkToken\",\"expires_in\":3600}");
+                    }
+                    return new MockResponse().addHeader("Content-Type", "application/json")
+                        .setBody(searchBody)
+                        .setHeadersDelay(20, TimeUnit.MILLISECONDS);
+                }
+            });
+            stub.start();
+
+            for (String mode : new String[] {AmadeusConfig.Execution.REACTIVE, AmadeusConfig.Execution.VIRTUAL_THREADS}) {
+                AmadeusConfig config = new AmadeusConfig();
+                config.setBaseUrl(stub.url("/").toString());
+                config.setKey("key");
+                config.setSecret("secret");
+                config.getExecution().setMode(mode);
+                config.getHttp().setMaxConnections(128);
+                config.getHttp().setMetrics(false);
+                config.getRateLimit().getFlightOffers().setPermitsPerSecond(0);
+                config.getRateLimit().getFlightOffers().setInitialConcurrency(128);
+                config.getRateLimit().getFlightOffers().setMaxConcurrency(128);
+                config.getRateLimit().getFlightOffers().setMaxQueued(1000);
+                AmadeusService service = new AmadeusService(config, new SimpleMeterRegistry());
+                try {
+                    // NYC fans out to JFK, EWR and LGA: three Amadeus searches per search
+                    runSearches(service, "NYC", 50); // Warm up
+                    int searches = 300;
+                    long heapBefore = usedHeapAfterGc();
+                    AtomicLong peakHeap = new AtomicLong();
+                    Thread sampler = Thread.ofPlatform().daemon().start(() -> {
+                        while (!Thread.currentThread().isInterrupted()) {
+                            peakHeap.accumulateAndGet(ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed(), Math::max);
+                            try {
+                                Thread.sleep(5);
+                            } catch (InterruptedException e) {
+                                return;
+                            }
+                        }
+                    });
+                    long start = System.nanoTime();
+                    long[] latencies = runSearches(service, "NYC", searches);
+                    double seconds = (System.nanoTime() - start) / 1e9;
+                    sampler.interrupt();
+                    sampler.join();
+                    Arrays.sort(latencies);
+                    System.out.printf("%s mode, metro searches against a local stub: %.0f searches/s, p50 %d ms, p99 %d ms, "
+                            + "peak heap %d KB above the idle heap%n",
+                        mode, searches / seconds, latencies[searches / 2] / 1_000_000,
+                        latencies[(int) Math.ceil(searches * 0.99) - 1] / 1_000_000,
+                        Math.max(0, peakHeap.get() - heapBefore) / 1024);
+                } finally {
+                    service.shutdown();
+                }
+            }
+        }
+    }
+
+    // Distinct searches, 32 at a time, so none is answered from cache; returns each latency in ns
+    private long[] runSearches(AmadeusService service, String origin, int searches) {
+        long[] latencies = new long[searches];
+        int offset = (int) (System.nanoTime() % 10_000);
+        Flux.range(0, searches)
+            .flatMap(i -> Mono.defer(() -> {
+                long startedAt = System.nanoTime();
+                String date = LocalDate.of(2099, 1, 1).plusDays(offset + i).toString();
+                String destination = origin.equals("NYC") ? "LAX" : "JFK";
+                return service.searchFlights(origin, destination, date, 1, "USD", false, null)
+                    .doOnNext(results -> latencies[i] = System.nanoTime() - startedAt);
+            }), 32)
+            .blockLast(Duration.ofMinutes(2));
+        return latencies;
+    }
+
+    // --- Helpers ---
+
+    // Shaped like an Amadeus round trip offer with two segments per direction
+    private JsonNode sampleOffer(int i) {
+        ObjectNode offer = objectMapper.createObjectNode();
+        offer.put("type", "flight-offer");
+        offer.put("id", String.valueOf(i));
+        offer.put("source", "GDS");
+        offer.put("lastTicketingDate", "2099-01-01");
+        offer.put("numberOfBookableSeats", 1 + i % 9);
+
+        ArrayNode itineraries = offer.putArray("itineraries");
+        for (int direction = 0; direction < 2; direction++) {
+            ObjectNode itinerary = itineraries.addObject();
+            itinerary.put("duration", "PT" + (5 + i % 7) + "H" + (i % 60) + "M");
+            ArrayNode segments = itinerary.putArray("segments");
+            for (int s = 0; s < 2; s++) {
+                ObjectNode segment = segments.addObject();
+                segment.putObject("departure").put("iataCode", s == 0 ? "MEX" : "DFW").put("terminal", "1")
+                    .put("at", "2099-07-0" + (1 + direction) + "T0" + (s * 4) + ":" + (10 + i % 50) + ":00");
+                segment.putObject("arrival").put("iataCode", s == 0 ? "DFW" : "JFK").put("terminal", "2")
+                    .put("at", "2099-07-0" + (1 + direction) + "T1" + (s * 4) + ":" + (10 + i % 50) + ":00");
+                segment.put("carrierCode", "AA").put("number", String.valueOf(100 + i % 900));
+                segment.putObject("aircraft").put("code", "738");
+                segment.putObject("operating").put("carrierCode", "AA");
+                segment.put("duration", "PT2H" + (i % 60) + "M").put("id", String.valueOf(direction * 2 + s + 1));
+                segment.put("numberOfStops", 0).put("blacklistedInEU", false);
+            }
+        }
+
+        String total = String.format("%d.%02d", 300 + i % 700, i % 100);
+        offer.putObject("price").put("currency", "USD").put("total", total).put("base", "250.00")
+            .put("grandTotal", total);
+
+        ArrayNode travelerPricings = offer.putArray("travelerPricings");
+        ObjectNode traveler = travelerPricings.addObject();
+        traveler.put("travelerId", "1").put("fareOption", "STANDARD").put("travelerType", "ADULT");
+        traveler.putObject("price").put("currency", "USD").put("total", total).put("base", "250.00");
+        ArrayNode fareDetails = traveler.putArray("fareDetailsBySegment");
+        for (int s = 1; s <= 4; s++) {
+            ObjectNode detail = fareDetails.addObject();
+            detail.put("segmentId", String.valueOf(s)).put("cabin", "ECONOMY").put("fareBasis", "NLX0AHBN")
+                .put("class", "N");
+            detail.putObject("includedCheckedBags").put("quantity", i % 2);
+        }
+        return offer;
+    }
+
+    // Reads the fields the search result mapping uses, navigating a JsonNode tree as the mapping used to
+    private long readWithTree(byte[] body) throws Exception {
+        long checksum = 0;
+        for (JsonNode offer : objectMapper.readTree(body).get("data")) {
+            checksum += length(safeGetText(offer, "id"));
+            checksum += length(safeGetText(offer, "price", "currency")) + length(safeGetText(offer, "price", "grandTotal"))
+                + length(safeGetText(offer, "price", "base"));
+            JsonNode travelerPricings = offer.get("travelerPricings");
+            checksum += travelerPricings.size() + length(safeGetText(travelerPricings.get(0), "price", "total"));
+            for (JsonNode itinerary : offer.get("itineraries")) {
+                checksum += length(safeGetText(itinerary, "duration"));
+                for (JsonNode segment : itinerary.get("segments")) {
+                    checksum += length(safeGetText(segment.get("departure"), "iataCode")) + length(safeGetText(segment.get("departure"), "at"))
+                        + length(safeGetText(segment.get("arrival"), "iataCode")) + length(safeGetText(segment.get("arrival"), "at"))
+                        + length(safeGetText(segment, "carrierCode")) + length(safeGetText(segment, "number"))
+                        + length(safeGetText(segment, "duration")) + length(safeGetText(segment.get("operating"), "carrierCode"));
+                }
+            }
+            for (JsonNode fareDetails : travelerPricings.get(0).get("fareDetailsBySegment")) {
+                checksum += length(safeGetText(fareDetails, "cabin")) + length(safeGetText(fareDetails, "class"));
+            }
+        }
+        return checksum;
+    }
+
+    // The same fields, bound to the typed Amadeus model
+    private long readWithRecords(byte[] body) throws Exception {
+        long checksum = 0;
+        for (AmadeusFlightOffer offer : objectMapper.readValue(body, OffersPage.class).data()) {
+            checksum += length(offer.id());
+            checksum += length(offer.price().currency()) + length(offer.price().grandTotal()) + length(offer.price().base());
+            List<AmadeusTravelerPricing> travelerPricings = offer.travelerPricings();
+            checksum += travelerPricings.size() + length(travelerPricings.get(0).price().total());
+            for (AmadeusFlightOffer.Itinerary itinerary : offer.itineraries()) {
+                checksum += length(itinerary.duration());
+                for (AmadeusFlightOffer.Segment segment : itinerary.segments()) {
+                    checksum += length(segment.departureIataCode()) + length(segment.departureAt())
+                        + length(segment.arrivalIataCode()) + length(segment.arrivalAt())
+                        + length(segment.carrierCode()) + length(segment.number())
+                        + length(segment.duration()) + length(segment.operatingCarrierCode());
+                }
+            }
+            for (AmadeusTravelerPricing.FareDetailsBySegment fareDetails : travelerPricings.get(0).fareDetailsBySegment()) {
+                checksum += length(fareDetails.cabin()) + length(fareDetails.fareClass());
+            }
+        }
+        return checksum;
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    private record OffersPage(List<AmadeusFlightOffer> data) {
+    }
+
+    private static int length(String value) {
+        return value != null ? value.length() : 0;
+    }
+
+    private static String safeGetText(JsonNode node, String... fieldNames) {
+        JsonNode currentNode = node;
+        for (String fieldName : fieldNames) {
+            if (currentNode != null && currentNode.has(fieldName) && !currentNode.get(fieldName).isNull()) {
+                currentNode = currentNode.get(fieldName);
+            } else {
+                return null;
+            }
+        }
+        return currentNode != null ? currentNode.asText() : null;
+    }
+
+    private static long usedHeapAfterGc() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
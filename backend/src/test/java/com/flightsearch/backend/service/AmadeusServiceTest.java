@@ -1,13 +1,22 @@
 package com.flightsearch.backend.service;
 import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.io.TempDir;
 
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
@@ -17,7 +26,13 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.flightsearch.backend.config.AmadeusConfig;
+import com.flightsearch.backend.dto.BatchSearchQueryDTO;
+import com.flightsearch.backend.dto.BatchSearchResultDTO;
+import com.flightsearch.backend.dto.FareMatrixCellDTO;
 import com.flightsearch.backend.dto.FlightDetailsResponseDTO;
+import com.flightsearch.backend.dto.FlightSearchEventDTO;
+import com.flightsearch.backend.dto.FlightSearchPageDTO;
+import com.flightsearch.backend.dto.GroupedFlightOfferDTO;
 import com.flightsearch.backend.dto.FlightSearchResultDTO;
 
 import org.junit.jupiter.api.AfterEach;
@@ -29,6 +44,7 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.test.web.reactive.server.WebTestClient;
 
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
 
@@ -38,8 +54,12 @@ import static org.mockito.ArgumentMatchers.anyMap;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.when;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import okhttp3.mockwebserver.Dispatcher;
 import okhttp3.mockwebserver.MockWebServer;
 import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.RecordedRequest;
 
 @DisplayName("AmadeusServiceTest")
 public class AmadeusServiceTest {
@@ -49,25 +69,50 @@ public class AmadeusServiceTest {
     private WebTestClient webTestClient;
     private final com.fasterxml.jackson.databind.ObjectMapper objectMapper = new com.fasterxml.jackson.databind.ObjectMapper();
 
-    @Mock
+    private static final String ONE_WAY_OFFER_RESPONSE = """
+        {
+            "data": [
+                {
+                    "id": "1",
+                    "source": "GDS",
+                    "price": { "currency": "USD", "grandTotal": "500.00", "base": "450.00" },
+                    "itineraries": [
+                        {
+                            "duration": "PT2H",
+                            "segments": [
+                                {
+                                    "departure": { "iataCode": "MEX", "at": "2025-07-01T08:00:00" },
+                                    "arrival": { "iataCode": "LAX", "at": "2025-07-01T10:00:00" },
+                                    "carrierCode": "AA",
+                                    "number": "100",
+                                    "duration": "PT2H"
+                                }
+                            ]
+                        }
+                    ]
+                }
+            ]
+        }
+        """;
+
     private AmadeusConfig amadeusConfig;
 
     @BeforeEach
     void setUp() throws IOException {
-        MockitoAnnotations.openMocks(this);
-
         mockWebServer = new MockWebServer();
         mockWebServer.start();
-        // Mock the AmadeusConfig to return the mock server URL
-        when(amadeusConfig.getBaseUrl()).thenReturn(mockWebServer.url("/").toString());
-        when(amadeusConfig.getKey()).thenReturn("testApiKey");
-        when(amadeusConfig.getSecret()).thenReturn("testApiSecret");
+        // Point the AmadeusConfig to the mock server URL
+        amadeusConfig = new AmadeusConfig();
+        amadeusConfig.setBaseUrl(mockWebServer.url("/").toString());
+        amadeusConfig.setKey("testApiKey");
+        amadeusConfig.setSecret("testApiSecret");
 
-        amadeusService = new AmadeusService(amadeusConfig);
+        amadeusService = new AmadeusService(amadeusConfig, new SimpleMeterRegistry());
     }
 
     @AfterEach
     void tearDown() throws IOException {
+        amadeusService.shutdown();
         mockWebServer.shutdown();
     }
 
@@ -101,6 +146,55 @@ public class AmadeusServiceTest {
                 .verify();
     }
 
+    @Test
+    @DisplayName("Should reuse the cached access token instead of requesting a new one")
+    void getAccessToken_reusesCachedToken() {
+        mockWebServer.enqueue(new MockResponse()
+                .setResponseCode(200)
+                .addHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .setBody("{\"access_token\":\"testAccessToken\",\"token_type\":\"Bearer\",\"expires_in\":3600}"));
+
+        StepVerifier.create(amadeusService.getAccessToken())
+                .expectNext("testAccessToken")
+                .verifyComplete();
+        StepVerifier.create(amadeusService.getAccessToken())
+                .expectNext("testAccessToken")
+                .verifyComplete();
+
+        assertEquals(1, mockWebServer.getRequestCount(), "Token endpoint should only be called once");
+    }
+
+    @Test
+    @DisplayName("Should refresh the token and retry once when Amadeus answers 401")
+    void searchAirportsSimple_retriesOnceOnUnauthorized() throws InterruptedException {
+        mockWebServer.enqueue(new MockResponse()
+                .setResponseCode(200)
+                .addHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .setBody("{\"access_token\":\"expiredAccessToken\",\"token_type\":\"Bearer\",\"expires_in\":3600}"));
+        mockWebServer.enqueue(new MockResponse()
+                .setResponseCode(401)
+                .addHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .setBody("{\"errors\": [{\"status\": 401, \"code\": 38190, \"title\": \"Invalid access token\"}]}"));
+        mockWebServer.enqueue(new MockResponse()
+                .setResponseCode(200)
+                .addHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .setBody("{\"access_token\":\"freshAccessToken\",\"token_type\":\"Bearer\",\"expires_in\":3600}"));
+        mockWebServer.enqueue(new MockResponse()
+                .setResponseCode(200)
+                .addHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .setBody("{\"data\": [{\"iataCode\": \"MEX\", \"name\": \"Mexico City International Airport\"}]}"));
+
+        StepVerifier.create(amadeusService.searchAirportsSimple("MEX"))
+            .assertNext(jsonNode -> assertEquals("MEX", jsonNode.get("data").get(0).get("iataCode").asText()))
+            .verifyComplete();
+
+        assertEquals(4, mockWebServer.getRequestCount());
+        mockWebServer.takeRequest(); // first token
+        assertEquals("Bearer expiredAccessToken", mockWebServer.takeRequest().getHeader(HttpHeaders.AUTHORIZATION));
+        mockWebServer.takeRequest(); // refreshed token
+        assertEquals("Bearer freshAccessToken", mockWebServer.takeRequest().getHeader(HttpHeaders.AUTHORIZATION));
+    }
+
     @Test
     @DisplayName("Should successfully search airports")
     void searchAirportsSimple_success() throws IOException {
@@ -158,6 +252,56 @@ public class AmadeusServiceTest {
                 .verify();
     }
 
+    @Test
+    @DisplayName("Should resolve known airports from the embedded reference data without remote calls")
+    void resolveAirportNames_usesReferenceData() {
+        StepVerifier.create(amadeusService.resolveAirportNames(Set.of("MEX", "LAX")))
+            .assertNext(names -> {
+                assertEquals("Mexico City International Airport", names.get("MEX"));
+                assertEquals("Los Angeles International Airport", names.get("LAX"));
+            })
+            .verifyComplete();
+
+        assertEquals(0, mockWebServer.getRequestCount());
+        AirportReferenceIndex.Airport mex = amadeusService.getAirportReferenceIndex().find("mex").orElseThrow();
+        assertEquals("Mexico City", mex.city());
+        assertEquals("MX", mex.countryCode());
+        assertEquals("America/Mexico_City", mex.timezone());
+    }
+
+    @Test
+    @DisplayName("Should cache remotely resolved and unknown airport names")
+    void resolveAirportNames_cachesPositiveAndNegativeResults() {
+        mockWebServer.enqueue(new MockResponse()
+                .setResponseCode(200)
+                .addHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .setBody("{\"access_token\":\"testAccessToken\",\"token_type\":\"Bearer\",\"expires_in\":3600}"));
+        mockWebServer.enqueue(new MockResponse()
+                .setResponseCode(200)
+                .addHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .setBody("{\"data\": [{\"iataCode\": \"QQQ\", \"name\": \"Test Regional Airport\"}]}"));
+        mockWebServer.enqueue(new MockResponse()
+                .setResponseCode(200)
+                .addHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .setBody("{\"data\": []}"));
+
+        StepVerifier.create(amadeusService.resolveAirportNames(Set.of("QQQ")))
+            .assertNext(names -> assertEquals("Test Regional Airport", names.get("QQQ")))
+            .verifyComplete();
+        StepVerifier.create(amadeusService.resolveAirportNames(Set.of("XYZ")))
+            .assertNext(names -> assertEquals("XYZ", names.get("XYZ")))
+            .verifyComplete();
+        StepVerifier.create(amadeusService.resolveAirportNames(Set.of("QQQ", "XYZ")))
+            .assertNext(names -> {
+                assertEquals("Test Regional Airport", names.get("QQQ"));
+                assertEquals("XYZ", names.get("XYZ"));
+            })
+            .verifyComplete();
+
+        assertEquals(3, mockWebServer.getRequestCount(), "Second lookup should be served from the cache");
+        assertEquals(2, amadeusService.getAirportNameResolver().stats().hitCount());
+    }
+
     @Test
     @DisplayName("Should successfully search for flights and map results")
     void searchFlights_success() throws IOException {
@@ -276,6 +420,811 @@ public class AmadeusServiceTest {
             .verifyComplete();
     }
 
+    @Test
+    @DisplayName("Should coalesce identical concurrent flight searches into one upstream call")
+    void searchFlights_coalescesConcurrentIdenticalSearches() {
+        mockWebServer.enqueue(new MockResponse()
+            .setResponseCode(200)
+            .addHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+            .setBody("{\"access_token\":\"testAccessToken\",\"token_type\":\"Bearer\",\"expires_in\":3600}"));
+
+        // Slow response so the second search arrives while the first one is still in flight
+        mockWebServer.enqueue(new MockResponse()
+            .setResponseCode(200)
+            .addHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+            .setBodyDelay(300, TimeUnit.MILLISECONDS)
+            .setBody(ONE_WAY_OFFER_RESPONSE));
+
+        Mono<List<FlightSearchResultDTO>> first = amadeusService.searchFlights("MEX", "LAX", "2025-07-01", 1, "USD", false, null);
+        Mono<List<FlightSearchResultDTO>> second = amadeusService.searchFlights("mex", "lax", "2025-07-01", 1, "usd", false, "");
+
+        StepVerifier.create(Mono.zip(first, second))
+            .assertNext(results -> {
+                assertEquals(1, results.getT1().size());
+                assertSame(results.getT1(), results.getT2(), "Both callers should get the shared result list");
+            })
+            .verifyComplete();
+
+        assertEquals(2, mockWebServer.getRequestCount(), "Expected one token call and one flight search call");
+        assertEquals(2, amadeusService.getSearchCoalescer().getRequestCount());
+        assertEquals(1, amadeusService.getSearchCoalescer().getUpstreamCallCount());
+    }
+
+    @Test
+    @DisplayName("Should serve a repeated search from the result cache and keep its offers available for details")
+    void searchFlights_servesRepeatedSearchFromCache() {
+        mockWebServer.enqueue(new MockResponse()
+            .setResponseCode(200)
+            .addHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+            .setBody("{\"access_token\":\"testAccessToken\",\"token_type\":\"Bearer\",\"expires_in\":3600}"));
+        mockWebServer.enqueue(new MockResponse()
+            .setResponseCode(200)
+            .addHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+            .setBody(ONE_WAY_OFFER_RESPONSE));
+
+        List<FlightSearchResultDTO> firstResults = amadeusService.searchFlights("MEX", "LAX", "2025-07-01", 1, "USD", false, null).block();
+        amadeusService.getFlightOffersCache().remove("1");
+
+        StepVerifier.create(amadeusService.searchFlights("MEX", "LAX", "2025-07-01", 1, "USD", false, null))
+            .assertNext(results -> assertSame(firstResults, results))
+            .verifyComplete();
+
+        assertEquals(2, mockWebServer.getRequestCount(), "Second search should not reach Amadeus");
+        assertNotNull(amadeusService.getFlightOffersCache().get("1"), "Cached offers should be restored for details");
+    }
+
+    @Test
+    @DisplayName("Should serialize and gzip cached results once and match their ETag")
+    void searchFlightsSerialized_reusesBytesOfCachedSearch() throws IOException {
+        mockWebServer.enqueue(new MockResponse()
+            .setResponseCode(200)
+            .addHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+            .setBody("{\"access_token\":\"testAccessToken\",\"token_type\":\"Bearer\",\"expires_in\":3600}"));
+        mockWebServer.enqueue(new MockResponse()
+            .setResponseCode(200)
+            .addHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+            .setBody(ONE_WAY_OFFER_RESPONSE));
+
+        SerializedResults first = amadeusService.searchFlightsSerialized("MEX", "LAX", "2025-07-01", 1, "USD", false, null, null).block();
+        SerializedResults second = amadeusService.searchFlightsSerialized("MEX", "LAX", "2025-07-01", 1, "USD", false, null, null).block();
+
+        assertNotNull(first);
+        assertSame(first, second, "A cached search should hand out the bytes serialized the first time");
+        List<FlightSearchResultDTO> results = amadeusService.searchFlights("MEX", "LAX", "2025-07-01", 1, "USD", false, null).block();
+        assertArrayEquals(objectMapper.writeValueAsBytes(results), first.json());
+        try (var gunzip = new java.util.zip.GZIPInputStream(new java.io.ByteArrayInputStream(first.gzip()))) {
+            assertArrayEquals(first.json(), gunzip.readAllBytes());
+        }
+
+        assertTrue(first.tagged());
+        assertSame(first.gzip(), first.gzip(), "Compressed once");
+        assertTrue(first.etag(false).matches("\"[0-9a-f]{32}\""), first.etag(false));
+        assertNotEquals(first.etag(false), first.etag(true));
+        assertTrue(first.matches(first.etag(false)));
+        assertTrue(first.matches("\"other\", W/" + first.etag(true)));
+        assertFalse(first.matches("\"other\""));
+        assertFalse(first.matches(null));
+    }
+
+    @Test
+    @DisplayName("Should stream flight offer responses larger than the default in-memory limit")
+    void searchFlights_streamsLargeResponse() {
+        StringBuilder body = new StringBuilder("{\"meta\":{\"count\":5000},\"data\":[");
+        for (int i = 0; i < 5000; i++) {
+            if (i > 0) {
+                body.append(',');
+            }
+            body.append("{\"id\":\"").append(i).append("\",")
+                .append("\"price\":{\"currency\":\"USD\",\"grandTotal\":\"500.00\",\"base\":\"450.00\"},")
+                .append("\"itineraries\":[{\"duration\":\"PT2H\",\"segments\":[{")
+                .append("\"departure\":{\"iataCode\":\"MEX\",\"at\":\"2025-07-01T08:00:00\"},")
+                .append("\"arrival\":{\"iataCode\":\"LAX\",\"at\":\"2025-07-01T10:00:00\"},")
+                .append("\"carrierCode\":\"AA\",\"number\":\"").append(i).append("\",\"duration\":\"PT2H\"}]}]}");
+        }
+        body.append("],\"dictionaries\":{\"carriers\":{\"AA\":\"AMERICAN AIRLINES\"}}}");
+        assertTrue(body.length() > 1_000_000, "Response should be well above the 256 KB default limit");
+
+        mockWebServer.enqueue(new MockResponse()
+            .setResponseCode(200)
+            .addHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+            .setBody("{\"access_token\":\"testAccessToken\",\"token_type\":\"Bearer\",\"expires_in\":3600}"));
+        mockWebServer.enqueue(new MockResponse()
+            .setResponseCode(200)
+            .addHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+            .setBody(body.toString()));
+
+        StepVerifier.create(amadeusService.searchFlights("MEX", "LAX", "2025-07-01", 1, "USD", false, null))
+            .assertNext(results -> {
+                assertEquals(5000, results.size());
+                assertEquals("AMERICAN AIRLINES", results.get(4999).getAirline().getName());
+                assertEquals("LAX", results.get(0).getArrivalAirport().getCode());
+                assertNotEquals("LAX", results.get(0).getArrivalAirport().getName(), "Airport names are filled in after streaming");
+            })
+            .verifyComplete();
+
+        assertNotNull(amadeusService.getFlightOffersCache().get("4999"));
+    }
+
+    @Test
+    @DisplayName("Should stream results before names are resolved and serve a repeated stream from cache")
+    void streamFlights_emitsResultsThenNamesThenComplete() {
+        mockWebServer.enqueue(new MockResponse()
+            .setResponseCode(200)
+            .addHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+            .setBody("{\"access_token\":\"testAccessToken\",\"token_type\":\"Bearer\",\"expires_in\":3600}"));
+        mockWebServer.enqueue(new MockResponse()
+            .setResponseCode(200)
+            .addHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+            .setBody(ONE_WAY_OFFER_RESPONSE));
+
+        StepVerifier.create(amadeusService.streamFlights("MEX", "LAX", "2025-07-01", 1, "USD", false, null, null))
+            .assertNext(event -> {
+                assertEquals(FlightSearchEventDTO.RESULT, event.getType());
+                JsonNode result = (JsonNode) event.getData();
+                assertEquals("1-0", result.path("id").asText());
+                assertEquals("MEX", result.path("departureAirport").path("name").asText(), "Streamed results carry codes until the names event");
+            })
+            .assertNext(event -> {
+                assertEquals(FlightSearchEventDTO.NAMES, event.getType());
+                Map<?, ?> airports = (Map<?, ?>) ((Map<?, ?>) event.getData()).get("airports");
+                assertEquals("Mexico City International Airport", airports.get("MEX"));
+                assertEquals("Los Angeles International Airport", airports.get("LAX"));
+            })
+            .assertNext(event -> assertEquals(FlightSearchEventDTO.COMPLETE, event.getType()))
+            .verifyComplete();
+
+        List<FlightSearchResultDTO> cached = amadeusService.searchFlights("MEX", "LAX", "2025-07-01", 1, "USD", false, null).block();
+        assertNotNull(cached);
+        assertEquals("Mexico City International Airport", cached.get(0).getDepartureAirport().getName(), "The finished stream should be cached with names");
+
+        StepVerifier.create(amadeusService.streamFlights("MEX", "LAX", "2025-07-01", 1, "USD", false, null, null).map(FlightSearchEventDTO::getType))
+            .expectNext(FlightSearchEventDTO.RESULT, FlightSearchEventDTO.COMPLETE)
+            .verifyComplete();
+
+        assertEquals(2, mockWebServer.getRequestCount(), "Later searches should be served from the cached stream");
+    }
+
+    @Test
+    @DisplayName("Should share one upstream search between concurrent streams and a regular search")
+    void streamFlights_sharesOneSearchWithConcurrentStreamsAndSearches() {
+        mockWebServer.enqueue(new MockResponse()
+            .setResponseCode(200)
+            .addHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+            .setBody("{\"access_token\":\"testAccessToken\",\"token_type\":\"Bearer\",\"expires_in\":3600}"));
+        // Slow response so the others arrive while the first stream's search is in flight
+        mockWebServer.enqueue(new MockResponse()
+            .setResponseCode(200)
+            .addHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+            .setBodyDelay(300, TimeUnit.MILLISECONDS)
+            .setBody(ONE_WAY_OFFER_RESPONSE));
+
+        Mono<List<String>> first = amadeusService.streamFlights("MEX", "LAX", "2025-07-01", 1, "USD", false, null, null)
+            .map(FlightSearchEventDTO::getType).collectList();
+        Mono<List<String>> second = amadeusService.streamFlights("MEX", "LAX", "2025-07-01", 1, "USD", false, null, null)
+            .map(FlightSearchEventDTO::getType).collectList();
+        Mono<List<FlightSearchResultDTO>> search = amadeusService.searchFlights("MEX", "LAX", "2025-07-01", 1, "USD", false, null);
+
+        StepVerifier.create(Mono.zip(first, second, search))
+            .assertNext(results -> {
+                List<String> events = List.of(FlightSearchEventDTO.RESULT, FlightSearchEventDTO.NAMES, FlightSearchEventDTO.COMPLETE);
+                assertEquals(events, results.getT1());
+                assertEquals(events, results.getT2(), "The second stream should replay the first one's events");
+                assertEquals(1, results.getT3().size());
+            })
+            .verifyComplete();
+
+        assertEquals(2, mockWebServer.getRequestCount(), "Expected one token call and one flight search call");
+        assertEquals(1, amadeusService.getSearchCoalescer().getUpstreamCallCount());
+    }
+
+    @Test
+    @DisplayName("Should build a fare matrix from cached and parallel searches, reporting failed and skipped cells")
+    void searchFareMatrix_reportsEachCellWithoutFailingTheMatrix() {
+        LocalDate center = LocalDate.now().plusDays(30);
+        String failingDate = center.minusDays(1).toString();
+        mockWebServer.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                if (request.getPath().startsWith("/v1/security/oauth2/token")) {
+                    return new MockResponse()
+                        .addHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                        .setBody("{\"access_token\":\"testAccessToken\",\"token_type\":\"Bearer\",\"expires_in\":3600}");
+                }
+                if (request.getPath().contains("departureDate=" + failingDate)) {
+                    return new MockResponse().setResponseCode(500);
+                }
+                return new MockResponse()
+                    .addHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                    .setBody(ONE_WAY_OFFER_RESPONSE);
+            }
+        });
+        amadeusConfig.getMatrix().setMaxUpstreamCalls(2);
+
+        // The center date was searched before and is answered from cache
+        assertNotNull(amadeusService.searchFlights("MEX", "LAX", center.toString(), 1, "USD", false, null).block());
+
+        List<FareMatrixCellDTO> cells = amadeusService.searchFareMatrix("MEX", "LAX", center.toString(), null, 2, 1, "USD", false)
+            .collectList()
+            .block();
+        assertNotNull(cells);
+        Map<String, FareMatrixCellDTO> byDate = new HashMap<>();
+        cells.forEach(cell -> byDate.put(cell.getDepartureDate(), cell));
+        assertEquals(5, byDate.size());
+
+        FareMatrixCellDTO searched = byDate.get(center.minusDays(2).toString());
+        assertEquals(FareMatrixCellDTO.OK, searched.getStatus());
+        assertEquals("500.00", searched.getCheapestPrice().getTotal());
+        assertEquals("1", searched.getOfferId());
+        assertFalse(searched.isCached());
+        assertEquals(FareMatrixCellDTO.ERROR, byDate.get(failingDate).getStatus());
+        assertEquals(FareMatrixCellDTO.OK, byDate.get(center.toString()).getStatus());
+        assertTrue(byDate.get(center.toString()).isCached());
+        assertEquals(FareMatrixCellDTO.SKIPPED, byDate.get(center.plusDays(1).toString()).getStatus(), "The matrix may start only two Amadeus searches");
+        assertEquals(FareMatrixCellDTO.SKIPPED, byDate.get(center.plusDays(2).toString()).getStatus());
+
+        assertEquals(4, mockWebServer.getRequestCount(), "Token, the earlier search and the two searches within budget");
+    }
+
+    @Test
+    @DisplayName("Should charge stale fare matrix cells against the budget instead of revalidating them in the background")
+    void searchFareMatrix_staleCellsStayWithinBudget() throws InterruptedException {
+        LocalDate center = LocalDate.now().plusDays(30);
+        mockWebServer.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                if (request.getPath().startsWith("/v1/security/oauth2/token")) {
+                    return new MockResponse()
+                        .addHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                        .setBody("{\"access_token\":\"testAccessToken\",\"token_type\":\"Bearer\",\"expires_in\":3600}");
+                }
+                return new MockResponse()
+                    .addHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                    .setBody(ONE_WAY_OFFER_RESPONSE);
+            }
+        });
+        amadeusConfig.getSearchCache().setTtl(Duration.ofMillis(1));
+        amadeusConfig.getMatrix().setMaxUpstreamCalls(1);
+        AmadeusService staleService = new AmadeusService(amadeusConfig, new SimpleMeterRegistry());
+
+        try {
+            assertNotNull(staleService.searchFlights("MEX", "LAX", center.minusDays(1).toString(), 1, "USD", false, null).block());
+            assertNotNull(staleService.searchFlights("MEX", "LAX", center.toString(), 1, "USD", false, null).block());
+            Thread.sleep(10); // Both are stale now
+
+            List<FareMatrixCellDTO> cells = staleService.searchFareMatrix("MEX", "LAX", center.toString(), null, 1, 1, "USD", false)
+                .collectList()
+                .block();
+            assertNotNull(cells);
+            Map<String, FareMatrixCellDTO> byDate = new HashMap<>();
+            cells.forEach(cell -> byDate.put(cell.getDepartureDate(), cell));
+
+            assertFalse(byDate.get(center.minusDays(1).toString()).isCached(), "The first stale cell is searched again within the budget");
+            assertEquals(FareMatrixCellDTO.OK, byDate.get(center.toString()).getStatus());
+            assertTrue(byDate.get(center.toString()).isCached(), "With the budget used up, stale results are served as they are");
+            assertEquals(FareMatrixCellDTO.SKIPPED, byDate.get(center.plusDays(1).toString()).getStatus());
+
+            Thread.sleep(300);
+            assertEquals(4, mockWebServer.getRequestCount(), "Token, the two earlier searches and one matrix search; no background revalidation");
+        } finally {
+            staleService.shutdown();
+        }
+    }
+
+    @Test
+    @DisplayName("Should search every airport of a metro code and merge the pairs cheapest first")
+    void searchFlights_metroCodeMergesAirportPairs() {
+        mockWebServer.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                String path = request.getPath();
+                if (path.startsWith("/v1/security/oauth2/token")) {
+                    return new MockResponse()
+                        .addHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                        .setBody("{\"access_token\":\"testAccessToken\",\"token_type\":\"Bearer\",\"expires_in\":3600}");
+                }
+                if (path.contains("originLocationCode=JFK")) {
+                    return new MockResponse()
+                        .addHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                        .setBody(ONE_WAY_OFFER_RESPONSE);
+                }
+                if (path.contains("originLocationCode=EWR")) {
+                    return new MockResponse()
+                        .addHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                        .setBody(ONE_WAY_OFFER_RESPONSE.replace("500.00", "400.00").replace("\"100\"", "\"200\""));
+                }
+                return new MockResponse().setResponseCode(500); // LGA
+            }
+        });
+
+        StepVerifier.create(amadeusService.searchFlights("NYC", "LAX", "2025-07-01", 1, "USD", false, null))
+            .assertNext(results -> {
+                assertEquals(List.of("EWR-LAX-1-0", "JFK-LAX-1-0"), results.stream().map(FlightSearchResultDTO::getId).toList(),
+                    "Offers of both airports should be merged cheapest first, with ids scoped to their pair; the failed LGA pair is left out");
+                assertEquals("400.00", results.get(0).getPrice().getTotal());
+            })
+            .verifyComplete();
+
+        StepVerifier.create(amadeusService.getFlightOffer("JFK-LAX-1"))
+            .assertNext(offer -> assertEquals("500.00", offer.price().grandTotal()))
+            .verifyComplete();
+        // Merged per request: plain JSON, no ETag or gzip variant worth computing
+        StepVerifier.create(amadeusService.searchFlightsSerialized("NYC", "LAX", "2025-07-01", 1, "USD", false, null, null))
+            .assertNext(body -> {
+                assertFalse(body.tagged());
+                assertNull(body.etag(false));
+                assertTrue(new String(body.json()).contains("EWR-LAX-1-0"));
+            })
+            .verifyComplete();
+        StepVerifier.create(amadeusService.getFlightOffer("EWR-LAX-1"))
+            .assertNext(offer -> assertEquals("400.00", offer.price().grandTotal()))
+            .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("Should report every batch query with its own status and search repeated queries once")
+    void searchBatchQuery_reportsEachQueryAndSharesSearches() {
+        mockWebServer.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                String path = request.getPath();
+                if (path.startsWith("/v1/security/oauth2/token")) {
+                    return new MockResponse()
+                        .addHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                        .setBody("{\"access_token\":\"testAccessToken\",\"token_type\":\"Bearer\",\"expires_in\":3600}");
+                }
+                if (path.contains("originLocationCode=BOS")) {
+                    return new MockResponse().setResponseCode(500);
+                }
+                return new MockResponse()
+                    .addHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                    .setBody(ONE_WAY_OFFER_RESPONSE);
+            }
+        });
+        List<BatchSearchQueryDTO> queries = List.of(
+            batchQuery("a", "MEX", "LAX", 0),
+            batchQuery("b", "MEX", "LAX", 5),
+            batchQuery("c", "BOS", "LAX", 0),
+            batchQuery("d", "JFK", "JFK", 0));
+
+        List<BatchSearchResultDTO> results = Flux.range(0, queries.size())
+            .flatMap(index -> amadeusService.searchBatchQuery(index, queries.get(index), false))
+            .collectList()
+            .block();
+        assertNotNull(results);
+        Map<String, BatchSearchResultDTO> byId = new HashMap<>();
+        results.forEach(result -> byId.put(result.getId(), result));
+        assertEquals(4, byId.size());
+
+        for (String id : List.of("a", "b")) {
+            assertEquals(BatchSearchResultDTO.OK, byId.get(id).getStatus());
+            assertEquals("500.00", byId.get(id).getCheapestPrice().getTotal());
+            assertEquals("1", byId.get(id).getCheapestOfferId());
+            assertNull(byId.get(id).getResults(), "Results are only included on request");
+        }
+        assertEquals(1, byId.get("b").getIndex());
+        assertEquals(BatchSearchResultDTO.ERROR, byId.get("c").getStatus());
+        assertEquals(BatchSearchResultDTO.INVALID, byId.get("d").getStatus());
+        assertNotNull(byId.get("d").getError());
+
+        assertEquals(3, mockWebServer.getRequestCount(), "Token, one search for the repeated MEX query and the failed BOS search");
+        assertEquals(0, amadeusService.getBatchQueue().activeCount(), "Every search slot should be free again");
+        assertEquals(0, amadeusService.getBatchQueue().waitingCount());
+    }
+
+    @Test
+    @DisplayName("Should retry a search Amadeus answered with 429 and lower the concurrency limit")
+    void searchFlights_retriesTooManyRequestsAndBacksOff() {
+        AtomicInteger searches = new AtomicInteger();
+        mockWebServer.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                if (request.getPath().startsWith("/v1/security/oauth2/token")) {
+                    return new MockResponse()
+                        .addHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                        .setBody("{\"access_token\":\"testAccessToken\",\"token_type\":\"Bearer\",\"expires_in\":3600}");
+                }
+                if (searches.incrementAndGet() == 1) {
+                    return new MockResponse().setResponseCode(429).addHeader(HttpHeaders.RETRY_AFTER, "0");
+                }
+                return new MockResponse()
+                    .addHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                    .setBody(ONE_WAY_OFFER_RESPONSE);
+            }
+        });
+        OutboundLimiter limiter = amadeusService.getFlightOffersLimiter();
+        double initialLimit = limiter.getConcurrencyLimit();
+
+        StepVerifier.create(amadeusService.searchFlights("MEX", "LAX", "2025-07-01", 1, "USD", false, null))
+            .assertNext(results -> assertEquals("500.00", results.get(0).getPrice().getTotal()))
+            .verifyComplete();
+
+        assertEquals(2, searches.get(), "The throttled search should be retried once");
+        assertEquals(1, limiter.getThrottledCount());
+        assertEquals(1, limiter.getRetryCount());
+        assertTrue(limiter.getConcurrencyLimit() < initialLimit, "A 429 should lower the concurrency limit");
+    }
+
+    @Test
+    @DisplayName("Should fail with UpstreamRateLimitedException once Amadeus keeps answering 429")
+    void searchFlights_giveUpAfterRetriesOnTooManyRequests() {
+        mockWebServer.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                if (request.getPath().startsWith("/v1/security/oauth2/token")) {
+                    return new MockResponse()
+                        .addHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                        .setBody("{\"access_token\":\"testAccessToken\",\"token_type\":\"Bearer\",\"expires_in\":3600}");
+                }
+                return new MockResponse().setResponseCode(429);
+            }
+        });
+        amadeusConfig.getRateLimit().setMaxRetries(2);
+        amadeusConfig.getRateLimit().setInitialBackoff(Duration.ofMillis(10));
+
+        StepVerifier.create(amadeusService.searchFlights("MEX", "LAX", "2025-07-01", 1, "USD", false, null))
+            .expectError(UpstreamRateLimitedException.class)
+            .verify(Duration.ofSeconds(5));
+        assertEquals(4, mockWebServer.getRequestCount(), "Token, the search and its two retries");
+    }
+
+    @Test
+    @DisplayName("Should open the locations circuit after failures and answer airport searches locally")
+    void searchAirports_openCircuitFallsBackToReferenceData() {
+        mockWebServer.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                if (request.getPath().startsWith("/v1/security/oauth2/token")) {
+                    return new MockResponse()
+                        .addHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                        .setBody("{\"access_token\":\"testAccessToken\",\"token_type\":\"Bearer\",\"expires_in\":3600}");
+                }
+                return new MockResponse().setResponseCode(503);
+            }
+        });
+        amadeusConfig.getRateLimit().getLocations().getCircuit().setMinimumCalls(2);
+
+        for (int i = 0; i < 2; i++) {
+            StepVerifier.create(amadeusService.searchAirportsSimple("Mexico"))
+                .expectError()
+                .verify();
+        }
+        assertEquals(CircuitBreaker.State.OPEN, amadeusService.getLocationsLimiter().getCircuitBreaker().getState());
+
+        StepVerifier.create(amadeusService.searchAirportsSimple("Mexico"))
+            .assertNext(response -> {
+                assertEquals("reference-data", response.path("meta").path("source").asText());
+                assertEquals("MEX", response.path("data").path(0).path("iataCode").asText());
+            })
+            .verifyComplete();
+        assertEquals(3, mockWebServer.getRequestCount(), "Token and the two failed searches; the open circuit calls nothing");
+        assertEquals(CircuitBreaker.State.CLOSED, amadeusService.getFlightOffersLimiter().getCircuitBreaker().getState(),
+            "Flight searches have their own circuit");
+    }
+
+    @Test
+    @DisplayName("Should fail a flight search whose response exceeds the search response timeout")
+    void searchFlights_failsOnResponseTimeout() {
+        mockWebServer.enqueue(new MockResponse()
+            .setResponseCode(200)
+            .addHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+            .setBody("{\"access_token\":\"testAccessToken\",\"token_type\":\"Bearer\",\"expires_in\":3600}"));
+        mockWebServer.enqueue(new MockResponse()
+            .setResponseCode(200)
+            .addHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+            .setBody(ONE_WAY_OFFER_RESPONSE)
+            .setHeadersDelay(2, TimeUnit.SECONDS));
+        amadeusConfig.getHttp().setSearchResponseTimeout(Duration.ofMillis(200));
+
+        StepVerifier.create(amadeusService.searchFlights("MEX", "LAX", "2025-07-01", 1, "USD", false, null))
+            .expectError()
+            .verify(Duration.ofSeconds(1));
+    }
+
+    @Test
+    @DisplayName("Should search airport pairs on virtual threads and merge those done by the fan-out deadline")
+    void searchFlights_virtualThreadsModeMergesPairsDoneByDeadline() {
+        mockWebServer.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                String path = request.getPath();
+                if (path.startsWith("/v1/security/oauth2/token")) {
+                    return new MockResponse()
+                        .addHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                        .setBody("{\"access_token\":\"testAccessToken\",\"token_type\":\"Bearer\",\"expires_in\":3600}");
+                }
+                if (path.contains("originLocationCode=JFK")) {
+                    return new MockResponse()
+                        .addHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                        .setBody(ONE_WAY_OFFER_RESPONSE);
+                }
+                if (path.contains("originLocationCode=EWR")) {
+                    return new MockResponse()
+                        .addHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                        .setBody(ONE_WAY_OFFER_RESPONSE.replace("500.00", "400.00").replace("\"100\"", "\"200\""));
+                }
+                return new MockResponse() // LGA answers after the deadline
+                    .addHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                    .setBody(ONE_WAY_OFFER_RESPONSE)
+                    .setHeadersDelay(3, TimeUnit.SECONDS);
+            }
+        });
+        amadeusConfig.getExecution().setMode(AmadeusConfig.Execution.VIRTUAL_THREADS);
+        amadeusConfig.getExecution().setFanOutDeadline(Duration.ofMillis(1500));
+        AmadeusService virtualThreadsService = new AmadeusService(amadeusConfig, new SimpleMeterRegistry());
+
+        try {
+            StepVerifier.create(virtualThreadsService.searchFlights("NYC", "LAX", "2025-07-01", 1, "USD", false, null))
+                .assertNext(results -> assertEquals(List.of("EWR-LAX-1-0", "JFK-LAX-1-0"),
+                    results.stream().map(FlightSearchResultDTO::getId).toList(),
+                    "Pairs answered by the blocking client should be merged; the LGA pair past the deadline is left out"))
+                .expectComplete()
+                .verify(Duration.ofSeconds(3));
+
+            StepVerifier.create(virtualThreadsService.getFlightOffer("EWR-LAX-1"))
+                .assertNext(offer -> assertEquals("400.00", offer.price().grandTotal()))
+                .verifyComplete();
+        } finally {
+            virtualThreadsService.shutdown();
+        }
+    }
+
+    @Test
+    @DisplayName("Should look airport names up on virtual threads and fall back to the IATA code at the fan-out deadline")
+    void searchFlights_virtualThreadsModeFallsBackToCodeForLookupsPastDeadline() {
+        mockWebServer.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                String path = request.getPath();
+                if (path.startsWith("/v1/security/oauth2/token")) {
+                    return new MockResponse()
+                        .addHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                        .setBody("{\"access_token\":\"testAccessToken\",\"token_type\":\"Bearer\",\"expires_in\":3600}");
+                }
+                if (path.startsWith("/v1/reference-data/locations") && path.contains("keyword=ZZA")) {
+                    return new MockResponse()
+                        .addHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                        .setBody("{\"data\":[{\"iataCode\":\"ZZA\",\"name\":\"ZED ALPHA\"}]}");
+                }
+                if (path.startsWith("/v1/reference-data/locations")) {
+                    return new MockResponse() // ZZB answers after the deadline
+                        .addHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                        .setBody("{\"data\":[{\"iataCode\":\"ZZB\",\"name\":\"ZED BRAVO\"}]}")
+                        .setHeadersDelay(3, TimeUnit.SECONDS);
+                }
+                return new MockResponse()
+                    .addHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                    .setBody(ONE_WAY_OFFER_RESPONSE.replace("\"MEX\"", "\"ZZA\"").replace("\"LAX\"", "\"ZZB\""));
+            }
+        });
+        amadeusConfig.getExecution().setMode(AmadeusConfig.Execution.VIRTUAL_THREADS);
+        amadeusConfig.getExecution().setFanOutDeadline(Duration.ofMillis(1000));
+        AmadeusService virtualThreadsService = new AmadeusService(amadeusConfig, new SimpleMeterRegistry());
+
+        try {
+            StepVerifier.create(virtualThreadsService.searchFlights("ZZA", "ZZB", "2025-07-01", 1, "USD", false, null))
+                .assertNext(results -> {
+                    assertEquals("ZED ALPHA", results.get(0).getDepartureAirport().getName());
+                    assertEquals("ZZB", results.get(0).getArrivalAirport().getName(), "Lookup past the deadline falls back to the code");
+                })
+                .expectComplete()
+                .verify(Duration.ofMillis(2500));
+        } finally {
+            virtualThreadsService.shutdown();
+        }
+    }
+
+    @Test
+    @DisplayName("Should search stale batch queries again in a batch slot, not in the background")
+    void searchBatchQuery_refreshesStaleQueriesThroughTheQueue() throws InterruptedException {
+        mockWebServer.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                if (request.getPath().startsWith("/v1/security/oauth2/token")) {
+                    return new MockResponse()
+                        .addHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                        .setBody("{\"access_token\":\"testAccessToken\",\"token_type\":\"Bearer\",\"expires_in\":3600}");
+                }
+                return new MockResponse()
+                    .addHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                    .setBody(ONE_WAY_OFFER_RESPONSE);
+            }
+        });
+        amadeusConfig.getSearchCache().setTtl(Duration.ofMillis(1));
+        AmadeusService staleService = new AmadeusService(amadeusConfig, new SimpleMeterRegistry());
+
+        try {
+            assertNotNull(staleService.searchFlights("MEX", "LAX", "2025-07-01", 1, "USD", false, null).block());
+            Thread.sleep(10); // Stale now
+
+            StepVerifier.create(staleService.searchBatchQuery(0, batchQuery("q1", "MEX", "LAX", 0), false))
+                .assertNext(result -> {
+                    assertEquals(BatchSearchResultDTO.OK, result.getStatus());
+                    assertFalse(result.isCached(), "Stale results are searched again, not served from cache");
+                })
+                .verifyComplete();
+            assertEquals(3, mockWebServer.getRequestCount(), "Token, the earlier search and the batch's own search");
+
+            Thread.sleep(300);
+            assertEquals(3, mockWebServer.getRequestCount(), "No background revalidation outside the batch queue");
+        } finally {
+            staleService.shutdown();
+        }
+    }
+
+    private static BatchSearchQueryDTO batchQuery(String id, String origin, String destination, int priority) {
+        BatchSearchQueryDTO query = new BatchSearchQueryDTO();
+        query.setId(id);
+        query.setOrigin(origin);
+        query.setDestination(destination);
+        query.setDepartureDate("2025-07-01");
+        query.setPriority(priority);
+        return query;
+    }
+
+    @Test
+    @DisplayName("Should page and re-sort a search session without calling Amadeus again")
+    void searchSession_pagesAndResortsFromServerHeldResults() throws InterruptedException {
+        // Round trip offers, priced 300, 100, 200 and lasting 5, 9, 7 hours per direction
+        String[][] offers = { {"300.00", "PT5H"}, {"100.00", "PT9H"}, {"200.00", "PT7H"} };
+        mockWebServer.enqueue(new MockResponse()
+            .setResponseCode(200)
+            .addHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+            .setBody("{\"access_token\":\"testAccessToken\",\"token_type\":\"Bearer\",\"expires_in\":3600}"));
+        mockWebServer.enqueue(new MockResponse()
+            .setResponseCode(200)
+            .addHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+            .setBody(roundTripOffersResponse(offers)));
+
+        FlightSearchPageDTO first = amadeusService.createSearchSession("MEX", "LAX", "2025-07-01", 1, "USD", false, "2025-07-08",
+            250, "price", 2).block();
+        assertNotNull(first);
+        assertEquals(3, first.getTotalOffers());
+        assertEquals(List.of("2-0", "2-1", "3-0", "3-1"), first.getResults().stream().map(FlightSearchResultDTO::getId).toList(),
+            "Both directions of an offer should be on the same page, cheapest first");
+        assertNotNull(first.getNextCursor());
+
+        StepVerifier.create(amadeusService.getSearchSessionPage(first.getSessionId(), first.getNextCursor(), null, 2))
+            .assertNext(page -> {
+                assertEquals(List.of("1-0", "1-1"), page.getResults().stream().map(FlightSearchResultDTO::getId).toList());
+                assertNull(page.getNextCursor(), "Last page should have no cursor");
+            })
+            .verifyComplete();
+
+        StepVerifier.create(amadeusService.getSearchSessionPage(first.getSessionId(), first.getNextCursor(), "duration", 1))
+            .assertNext(page -> {
+                assertEquals("duration", page.getSort());
+                assertEquals(List.of("1-0", "1-1"), page.getResults().stream().map(FlightSearchResultDTO::getId).toList(),
+                    "A different sort should start over at the shortest offer");
+            })
+            .verifyComplete();
+
+        StepVerifier.create(amadeusService.getSearchSessionPage("unknown-session", null, null, null))
+            .expectError(SearchSessionNotFoundException.class)
+            .verify();
+
+        assertEquals(2, mockWebServer.getRequestCount(), "Pages should be served without calling Amadeus again");
+        mockWebServer.takeRequest(); // token
+        assertTrue(mockWebServer.takeRequest().getPath().contains("max=250"));
+    }
+
+    @Test
+    @DisplayName("Should return grouped round trip offers filtered and sorted on the server")
+    void searchFlightsGrouped_filtersSortsAndLimitsWholeOffers() {
+        // Round trip offers, priced 300, 100, 200 and lasting 5, 9, 7 hours per direction
+        String[][] offers = { {"300.00", "PT5H"}, {"100.00", "PT9H"}, {"200.00", "PT7H"} };
+        mockWebServer.enqueue(new MockResponse()
+            .setResponseCode(200)
+            .addHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+            .setBody("{\"access_token\":\"testAccessToken\",\"token_type\":\"Bearer\",\"expires_in\":3600}"));
+        mockWebServer.enqueue(new MockResponse()
+            .setResponseCode(200)
+            .addHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+            .setBody(roundTripOffersResponse(offers)));
+
+        FlightResultQuery underBudgetShortestFirst = FlightResultQuery.of("duration", null, "250.00", null, null, null, null, null, null, null);
+        StepVerifier.create(amadeusService.searchFlightsGrouped("MEX", "LAX", "2025-07-01", 1, "USD", false, "2025-07-08", null, underBudgetShortestFirst))
+            .assertNext(grouped -> {
+                assertEquals(List.of("3", "2"), grouped.stream().map(GroupedFlightOfferDTO::getOfferId).toList(),
+                    "The 300.00 offer should be filtered out, the rest ordered by total duration");
+                GroupedFlightOfferDTO shortest = grouped.get(0);
+                assertTrue(shortest.isRoundTrip());
+                assertEquals("3-0", shortest.getOutboundFlight().getId());
+                assertEquals("3-1", shortest.getInboundFlight().getId());
+                assertEquals("200.00", shortest.getTotalPrice().getTotal());
+                assertEquals("PT14H", shortest.getTotalDuration());
+            })
+            .verifyComplete();
+
+        FlightResultQuery cheapestOnly = FlightResultQuery.of("price", null, null, null, null, "AA", "07:00", "09:00", "PT1H", 1);
+        StepVerifier.create(amadeusService.searchFlightsGrouped("MEX", "LAX", "2025-07-01", 1, "USD", false, "2025-07-08", null, cheapestOnly))
+            .assertNext(grouped -> assertEquals(List.of("2"), grouped.stream().map(GroupedFlightOfferDTO::getOfferId).toList()))
+            .verifyComplete();
+
+        assertEquals(2, mockWebServer.getRequestCount(), "The second query should be served from the cached results");
+    }
+
+    @Test
+    @DisplayName("Should time Amadeus calls by outcome and count upstream errors by class")
+    void searchFlights_recordsCallTimersAndErrorClasses() {
+        mockWebServer.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                String path = request.getPath();
+                if (path.startsWith("/v1/security/oauth2/token")) {
+                    return new MockResponse()
+                        .addHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                        .setBody("{\"access_token\":\"testAccessToken\",\"token_type\":\"Bearer\",\"expires_in\":3600}");
+                }
+                if (path.contains("departureDate=2025-07-01")) {
+                    return new MockResponse()
+                        .addHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                        .setBody(ONE_WAY_OFFER_RESPONSE);
+                }
+                return new MockResponse().setResponseCode(503);
+            }
+        });
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        AmadeusService meteredService = new AmadeusService(amadeusConfig, meterRegistry);
+
+        try {
+            StepVerifier.create(meteredService.searchFlights("MEX", "LAX", "2025-07-01", 1, "USD", false, null))
+                .expectNextCount(1)
+                .verifyComplete();
+            StepVerifier.create(meteredService.searchFlights("MEX", "LAX", "2025-07-02", 1, "USD", false, null))
+                .expectError()
+                .verify();
+
+            assertEquals(1, meterRegistry.get("amadeus.calls").tag("endpoint", "amadeus.flight-offers").tag("outcome", "success")
+                .timer().count());
+            assertEquals(1, meterRegistry.get("amadeus.calls").tag("endpoint", "amadeus.flight-offers").tag("outcome", "server_error")
+                .timer().count());
+            assertEquals(1.0, meterRegistry.get("amadeus.errors").tag("endpoint", "amadeus.flight-offers").tag("class", "server_error")
+                .counter().count());
+            assertEquals(1, meterRegistry.get("amadeus.token.refresh").tag("outcome", "success").timer().count());
+            assertEquals(1, meterRegistry.get("flight.mapping").tag("type", "search").timer().count(), "One offer mapped");
+            assertEquals(1, meterRegistry.get("airports.names.resolve").tag("remote", "false").timer().count(),
+                "MEX and LAX are in the reference data");
+        } finally {
+            meteredService.shutdown();
+        }
+    }
+
+    @Test
+    @DisplayName("Should record the phases of a search in the Server-Timing of its context")
+    void searchFlights_recordsServerTimingPhases() {
+        mockWebServer.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                if (request.getPath().startsWith("/v1/security/oauth2/token")) {
+                    return new MockResponse()
+                        .addHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                        .setBody("{\"access_token\":\"testAccessToken\",\"token_type\":\"Bearer\",\"expires_in\":3600}");
+                }
+                return new MockResponse()
+                    .addHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                    .setBody(ONE_WAY_OFFER_RESPONSE);
+            }
+        });
+
+        ServerTiming miss = new ServerTiming();
+        StepVerifier.create(amadeusService.searchFlights("MEX", "LAX", "2025-07-01", 1, "USD", false, null)
+                .contextWrite(miss::addTo))
+            .expectNextCount(1)
+            .verifyComplete();
+        String header = miss.header();
+        assertTrue(header.startsWith("cache;desc=miss, "), header);
+        for (String phase : List.of("token", "amadeus-search", "mapping", "airport-names", "total")) {
+            assertTrue(header.matches(".*\\b" + phase + ";dur=\\d+\\.\\d.*"), phase + " missing from " + header);
+        }
+
+        ServerTiming hit = new ServerTiming();
+        StepVerifier.create(amadeusService.searchFlights("MEX", "LAX", "2025-07-01", 1, "USD", false, null)
+                .contextWrite(hit::addTo))
+            .expectNextCount(1)
+            .verifyComplete();
+        assertTrue(hit.header().matches("cache;desc=hit, total;dur=\\d+\\.\\d"), hit.header());
+    }
+
     @Test
     @DisplayName("Should handle error when flight search API fails")
     void searchFlights_errorFromAmadeus() throws IOException {
@@ -402,5 +1351,121 @@ public class AmadeusServiceTest {
             .verifyComplete();
     }
 
-    
+    @Test
+    void getFlightOfferDetails_expiredOffer_shouldReturnOfferExpired() {
+        ObjectNode offerNode = objectMapper.createObjectNode();
+        offerNode.put("id", "OLD1");
+        offerNode.put("lastTicketingDate", "2020-01-01");
+        amadeusService.getFlightOffersCache().put("OLD1", offerNode);
+
+        StepVerifier.create(amadeusService.getFlightOfferDetails("OLD1"))
+            .expectError(OfferExpiredException.class)
+            .verify();
+
+        StepVerifier.create(amadeusService.getFlightOfferDetails("NEVER_SEEN"))
+            .expectError(IllegalArgumentException.class)
+            .verify();
+    }
+
+    @Test
+    void getFlightOffer_afterSearch_returnsTypedOfferStoredAsReceived() throws IOException {
+        mockWebServer.enqueue(new MockResponse()
+            .setResponseCode(200)
+            .addHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+            .setBody("{\"access_token\":\"testAccessToken\",\"token_type\":\"Bearer\",\"expires_in\":3600}"));
+        mockWebServer.enqueue(new MockResponse()
+            .setResponseCode(200)
+            .addHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+            .setBody(ONE_WAY_OFFER_RESPONSE));
+
+        amadeusService.searchFlights("MEX", "LAX", "2025-07-01", 1, "USD", false, null).block();
+
+        StepVerifier.create(amadeusService.getFlightOffer("1"))
+            .assertNext(offer -> {
+                assertEquals("AA", offer.itineraries().get(0).segments().get(0).carrierCode());
+                FlightDetailsResponseDTO dto = amadeusService.mapToFlightDetailsResponseDTO("1", offer, Map.of());
+                assertEquals("500.00", dto.getTotalPrice().getTotal());
+                assertEquals("50.00", dto.getTotalPrice().getFees());
+                assertEquals("MEX", dto.getItineraries().get(0).getDepartureAirport().getCode());
+                assertEquals("LAX", dto.getItineraries().get(0).getArrivalAirport().getCode());
+            })
+            .verifyComplete();
+
+        // Fields the typed model does not declare are kept in the cache
+        JsonNode expected = objectMapper.readTree(ONE_WAY_OFFER_RESPONSE).get("data").get(0);
+        StepVerifier.create(amadeusService.getFlightOfferDetails("1"))
+            .assertNext(offer -> assertEquals(expected, offer))
+            .verifyComplete();
+    }
+
+    @Test
+    void getFlightOfferDetails_mappedStore_isSharedBetweenReplicas(@TempDir Path offerDirectory) {
+        amadeusConfig.getOfferCache().setStore(AmadeusConfig.OfferCache.StoreType.MAPPED);
+        amadeusConfig.getOfferCache().getMapped().setDirectory(offerDirectory.toString());
+        // Only the catch-up the miss asks for can find the offer in time
+        amadeusConfig.getOfferCache().getMapped().setCatchUpInterval(Duration.ofHours(1));
+        AmadeusService replicaA = new AmadeusService(amadeusConfig, new SimpleMeterRegistry());
+        AmadeusService replicaB = new AmadeusService(amadeusConfig, new SimpleMeterRegistry());
+
+        try {
+            ObjectNode offerNode = objectMapper.createObjectNode();
+            offerNode.put("id", "SHARED1");
+            offerNode.putObject("price").put("grandTotal", "123.45");
+            replicaA.getFlightOffersCache().put("SHARED1", offerNode);
+
+            // Replica B's miss waits for the catch-up it asked for, instead of answering 404
+            StepVerifier.create(replicaB.getFlightOfferDetails("SHARED1"))
+                .assertNext(offer -> assertEquals("123.45", offer.path("price").path("grandTotal").asText()))
+                .verifyComplete();
+        } finally {
+            replicaA.shutdown();
+            replicaB.shutdown();
+        }
+
+        // Survives a restart
+        AmadeusService restarted = new AmadeusService(amadeusConfig, new SimpleMeterRegistry());
+        assertNotNull(restarted.getFlightOffersCache().get("SHARED1"));
+        restarted.shutdown();
+    }
+
+    @Test
+    void mappedStore_offersOfDeletedSegmentsAreExpired(@TempDir Path offerDirectory) throws InterruptedException {
+        AmadeusConfig.Mapped settings = new AmadeusConfig.Mapped();
+        settings.setDirectory(offerDirectory.toString());
+        settings.setSegmentMaxAge(Duration.ofMillis(10));
+
+        try (MappedOfferStore store = new MappedOfferStore(settings, Duration.ofMillis(50), new SimpleMeterRegistry(), Clock.systemUTC())) {
+            store.put("OLD1", new byte[] {1, 2, 3}, Instant.now().plus(Duration.ofHours(1)));
+            Thread.sleep(100);
+            store.maintain();
+
+            assertEquals(0, store.size(), "Segment deleted");
+            assertEquals(OfferStore.Status.EXPIRED, store.get("OLD1").status());
+            assertEquals(OfferStore.Status.NOT_FOUND, store.get("NEVER1").status());
+        }
+    }
+
+    // Amadeus response with one round trip offer (MEX-LAX, one segment per direction) per {price, duration} pair, ids from 1
+    private static String roundTripOffersResponse(String[][] offers) {
+        StringBuilder body = new StringBuilder("{\"data\":[");
+        for (int i = 0; i < offers.length; i++) {
+            if (i > 0) {
+                body.append(',');
+            }
+            body.append("{\"id\":\"").append(i + 1).append("\",")
+                .append("\"price\":{\"currency\":\"USD\",\"grandTotal\":\"").append(offers[i][0]).append("\",\"base\":\"50.00\"},")
+                .append("\"itineraries\":[");
+            for (int direction = 0; direction < 2; direction++) {
+                String date = direction == 0 ? "2025-07-01" : "2025-07-08";
+                body.append(direction > 0 ? "," : "")
+                    .append("{\"duration\":\"").append(offers[i][1]).append("\",\"segments\":[{")
+                    .append("\"departure\":{\"iataCode\":\"").append(direction == 0 ? "MEX" : "LAX").append("\",\"at\":\"").append(date).append("T08:00:00\"},")
+                    .append("\"arrival\":{\"iataCode\":\"").append(direction == 0 ? "LAX" : "MEX").append("\",\"at\":\"").append(date).append("T12:00:00\"},")
+                    .append("\"carrierCode\":\"AA\",\"number\":\"").append(i).append("\",\"duration\":\"").append(offers[i][1]).append("\"}]}");
+            }
+            body.append("]}");
+        }
+        body.append("]}");
+        return body.toString();
+    }
 }